@@ -24,6 +24,7 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.giraph.comm.aggregators.DeltaWritable;
 import org.apache.hadoop.io.Writable;
 
 /**
@@ -32,7 +33,8 @@ import org.apache.hadoop.io.Writable;
  * with a single nonzero coordinate. This way we perform aggregations
  * efficiently.
  */
-public class DoubleDenseVector implements Writable {
+public class DoubleDenseVector implements Writable,
+    DeltaWritable<DoubleDenseVector> {
   /** The entries of the vector. */
   private final DoubleArrayList entries = new DoubleArrayList();
   /** If true, this vector is singleton */
@@ -168,4 +170,58 @@ public class DoubleDenseVector implements Writable {
       }
     }
   }
+
+  @Override
+  public boolean writeDelta(DoubleDenseVector previous, DataOutput out)
+    throws IOException {
+    if (isSingleton || previous.isSingleton) {
+      return false;
+    }
+    int changed = 0;
+    for (int i = 0; i < entries.size(); ++i) {
+      if (isChanged(previous, i)) {
+        ++changed;
+      }
+    }
+    // Each changed entry takes 8 bytes for its value and 4 for its index
+    if ((long) changed * 12 >= (long) entries.size() * 8) {
+      return false;
+    }
+    out.writeInt(entries.size());
+    out.writeInt(changed);
+    for (int i = 0; i < entries.size(); ++i) {
+      if (isChanged(previous, i)) {
+        out.writeInt(i);
+        out.writeDouble(entries.getDouble(i));
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void readDelta(DoubleDenseVector previous, DataInput in)
+    throws IOException {
+    isSingleton = false;
+    int size = in.readInt();
+    entries.clear();
+    for (int i = 0; i < size; ++i) {
+      entries.add(previous.get(i));
+    }
+    int changed = in.readInt();
+    for (int i = 0; i < changed; ++i) {
+      entries.set(in.readInt(), in.readDouble());
+    }
+  }
+
+  /**
+   * Check if an entry differs from the previous vector.
+   *
+   * @param previous the previous vector
+   * @param i the entry
+   * @return true if the entry changed
+   */
+  private boolean isChanged(DoubleDenseVector previous, int i) {
+    return Double.doubleToLongBits(entries.getDouble(i)) !=
+        Double.doubleToLongBits(previous.get(i));
+  }
 }
@@ -24,13 +24,15 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
 
+import org.apache.giraph.comm.aggregators.DeltaWritable;
 import org.apache.hadoop.io.Writable;
 
 /**
  * The long dense vector holds the values of a particular row.
  * See DoubleDenseVector for explanation on why the singleton is needed.
  */
-public class LongDenseVector implements Writable {
+public class LongDenseVector implements Writable,
+    DeltaWritable<LongDenseVector> {
   /** The entries of the vector. */
   private final LongArrayList entries = new LongArrayList();
   /** If true, this vector is singleton */
@@ -166,4 +168,57 @@ public class LongDenseVector implements Writable {
       }
     }
   }
+
+  @Override
+  public boolean writeDelta(LongDenseVector previous, DataOutput out)
+    throws IOException {
+    if (isSingleton || previous.isSingleton) {
+      return false;
+    }
+    int changed = 0;
+    for (int i = 0; i < entries.size(); ++i) {
+      if (isChanged(previous, i)) {
+        ++changed;
+      }
+    }
+    // Each changed entry takes 8 bytes for its value and 4 for its index
+    if ((long) changed * 12 >= (long) entries.size() * 8) {
+      return false;
+    }
+    out.writeInt(entries.size());
+    out.writeInt(changed);
+    for (int i = 0; i < entries.size(); ++i) {
+      if (isChanged(previous, i)) {
+        out.writeInt(i);
+        out.writeLong(entries.getLong(i));
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void readDelta(LongDenseVector previous, DataInput in)
+    throws IOException {
+    isSingleton = false;
+    int size = in.readInt();
+    entries.clear();
+    for (int i = 0; i < size; ++i) {
+      entries.add(previous.get(i));
+    }
+    int changed = in.readInt();
+    for (int i = 0; i < changed; ++i) {
+      entries.set(in.readInt(), in.readLong());
+    }
+  }
+
+  /**
+   * Check if an entry differs from the previous vector.
+   *
+   * @param previous the previous vector
+   * @param i the entry
+   * @return true if the entry changed
+   */
+  private boolean isChanged(LongDenseVector previous, int i) {
+    return entries.getLong(i) != previous.get(i);
+  }
 }
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.bsp.checkpoints;
+
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+
+/**
+ * Keeps track of the partitions of a worker which haven't changed since they
+ * were last written to a checkpoint, so incremental checkpoints only write
+ * the vertices of changed partitions. A partition changes when any of its
+ * vertices is computed or mutated. Unchanged partitions are found in the
+ * checkpoint of the superstep they were last written in, and every few
+ * checkpoints all partitions are written again.
+ */
+@ThreadSafe
+public class IncrementalCheckpointTracker {
+  /** Number of incremental checkpoints between full checkpoints */
+  private final int maxIncrementalCheckpoints;
+  /**
+   * Map from id of each unchanged partition to the superstep of the
+   * checkpoint holding its vertices
+   */
+  private final Int2LongOpenHashMap checkpointedPartitions =
+      new Int2LongOpenHashMap();
+  /** Number of incremental checkpoints since the last full one */
+  private int incrementalCheckpoints = 0;
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public IncrementalCheckpointTracker(
+      ImmutableClassesGiraphConfiguration<?, ?, ?> conf) {
+    maxIncrementalCheckpoints =
+        GiraphConstants.MAX_INCREMENTAL_CHECKPOINTS.get(conf);
+    checkpointedPartitions.defaultReturnValue(-1);
+  }
+
+  /**
+   * Mark a partition as changed, so it's written in the next checkpoint.
+   *
+   * @param partitionId Id of the changed partition
+   */
+  public synchronized void partitionChanged(int partitionId) {
+    checkpointedPartitions.remove(partitionId);
+  }
+
+  /**
+   * Mark all partitions as changed (i.e. when partitions moved between
+   * workers), so the next checkpoint is a full one.
+   */
+  public synchronized void allPartitionsChanged() {
+    checkpointedPartitions.clear();
+  }
+
+  /**
+   * Start a checkpoint, deciding whether it has to be a full one.
+   */
+  public synchronized void startCheckpoint() {
+    if (checkpointedPartitions.isEmpty() ||
+        incrementalCheckpoints >= maxIncrementalCheckpoints) {
+      checkpointedPartitions.clear();
+      incrementalCheckpoints = 0;
+    } else {
+      ++incrementalCheckpoints;
+    }
+  }
+
+  /**
+   * Get the superstep of the checkpoint holding the vertices of a partition
+   * which hasn't changed since.
+   *
+   * @param partitionId Partition id
+   * @return Superstep of the checkpoint, or -1 if the partition has to be
+   *         written in the current checkpoint
+   */
+  public synchronized long getCheckpointedSuperstep(int partitionId) {
+    return checkpointedPartitions.get(partitionId);
+  }
+
+  /**
+   * Record that the vertices of a partition were written to a checkpoint.
+   *
+   * @param partitionId Partition id
+   * @param superstep Superstep of the checkpoint
+   */
+  public synchronized void partitionCheckpointed(int partitionId,
+      long superstep) {
+    checkpointedPartitions.put(partitionId, superstep);
+  }
+}
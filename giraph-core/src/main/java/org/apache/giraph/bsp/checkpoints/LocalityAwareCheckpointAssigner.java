@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.bsp.checkpoints;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.giraph.worker.WorkerInfo;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+/**
+ * Assigns the checkpoint files saved by each worker to the restarted worker
+ * whose host holds most of their blocks, so restoring a checkpoint reads
+ * local replicas where possible. All files of a saved worker are restored by
+ * the same worker, since its partitions share a file of messages and worker
+ * context. Hosts are matched the same way as by the locality aware input
+ * splits organizer on master.
+ */
+public class LocalityAwareCheckpointAssigner {
+  /** Class logger */
+  private static final Logger LOG =
+      Logger.getLogger(LocalityAwareCheckpointAssigner.class);
+
+  /** Do not instantiate */
+  private LocalityAwareCheckpointAssigner() { }
+
+  /**
+   * Assign the checkpoint files of saved workers to workers. Saved workers
+   * whose blocks aren't local to any free worker keep the worker with the
+   * same id if it is free, or get any free worker otherwise.
+   *
+   * @param fs Checkpoint filesystem
+   * @param checkpointFile Prefix of the checkpoint files of the superstep
+   * @param savedWorkerIds Ids of the workers whose files are assigned
+   * @param workers Map from id to each worker which can restore files
+   * @return Map from saved worker id to the worker restoring its files
+   * @throws IOException
+   */
+  public static Map<Integer, WorkerInfo> assignWorkers(FileSystem fs,
+      String checkpointFile, Collection<Integer> savedWorkerIds,
+      Map<Integer, WorkerInfo> workers) throws IOException {
+    if (savedWorkerIds.size() > workers.size()) {
+      throw new IllegalStateException("assignWorkers: Checkpoint was saved " +
+          "by " + savedWorkerIds.size() + " workers, but only " +
+          workers.size() + " can restore it");
+    }
+    Map<Integer, Map<String, Long>> hostBytes =
+        getHostBytes(fs, checkpointFile, savedWorkerIds);
+
+    // Bytes local to each worker, for every saved worker
+    List<long[]> candidates = new ArrayList<>();
+    for (Map.Entry<Integer, Map<String, Long>> saved : hostBytes.entrySet()) {
+      for (Map.Entry<Integer, WorkerInfo> worker : workers.entrySet()) {
+        long bytes = 0;
+        for (Map.Entry<String, Long> host : saved.getValue().entrySet()) {
+          if (host.getKey().contains(worker.getValue().getHostname())) {
+            bytes += host.getValue();
+          }
+        }
+        if (bytes > 0) {
+          candidates.add(new long[]{bytes, saved.getKey(), worker.getKey()});
+        }
+      }
+    }
+    Collections.sort(candidates, new Comparator<long[]>() {
+      @Override
+      public int compare(long[] c1, long[] c2) {
+        return Long.compare(c2[0], c1[0]);
+      }
+    });
+
+    Map<Integer, WorkerInfo> assignment = new HashMap<>();
+    Map<Integer, WorkerInfo> freeWorkers = new HashMap<>(workers);
+    long localBytes = 0;
+    for (long[] candidate : candidates) {
+      int savedWorkerId = (int) candidate[1];
+      int workerId = (int) candidate[2];
+      if (!assignment.containsKey(savedWorkerId) &&
+          freeWorkers.containsKey(workerId)) {
+        assignment.put(savedWorkerId, freeWorkers.remove(workerId));
+        localBytes += candidate[0];
+      }
+    }
+    for (Integer savedWorkerId : savedWorkerIds) {
+      if (!assignment.containsKey(savedWorkerId) &&
+          freeWorkers.containsKey(savedWorkerId)) {
+        assignment.put(savedWorkerId, freeWorkers.remove(savedWorkerId));
+      }
+    }
+    for (Integer savedWorkerId : savedWorkerIds) {
+      if (!assignment.containsKey(savedWorkerId)) {
+        assignment.put(savedWorkerId,
+            freeWorkers.remove(freeWorkers.keySet().iterator().next()));
+      }
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("assignWorkers: Assigned checkpoint files of " +
+          savedWorkerIds.size() + " workers with " + localBytes +
+          " bytes in local blocks");
+    }
+    return assignment;
+  }
+
+  /**
+   * Get the number of bytes of the checkpoint files of each saved worker
+   * stored on each host.
+   *
+   * @param fs Checkpoint filesystem
+   * @param checkpointFile Prefix of the checkpoint files of the superstep
+   * @param savedWorkerIds Ids of the workers whose files are looked at
+   * @return Map from saved worker id to bytes on each host
+   * @throws IOException
+   */
+  private static Map<Integer, Map<String, Long>> getHostBytes(FileSystem fs,
+      String checkpointFile, Collection<Integer> savedWorkerIds)
+    throws IOException {
+    Map<Integer, Map<String, Long>> hostBytes = new HashMap<>();
+    for (Integer savedWorkerId : savedWorkerIds) {
+      hostBytes.put(savedWorkerId, new HashMap<String, Long>());
+    }
+    Path checkpointPath = new Path(checkpointFile);
+    String superstepPrefix = checkpointPath.getName() + ".";
+    FileStatus[] files = fs.listStatus(checkpointPath.getParent());
+    if (files == null) {
+      return hostBytes;
+    }
+    for (FileStatus file : files) {
+      Map<String, Long> savedHostBytes =
+          hostBytes.get(getSavedWorkerId(file.getPath().getName(),
+              superstepPrefix));
+      if (savedHostBytes == null) {
+        continue;
+      }
+      for (BlockLocation block :
+          fs.getFileBlockLocations(file, 0, file.getLen())) {
+        for (String host : block.getHosts()) {
+          Long bytes = savedHostBytes.get(host);
+          savedHostBytes.put(host,
+              (bytes == null ? 0 : bytes) + block.getLength());
+        }
+      }
+    }
+    return hostBytes;
+  }
+
+  /**
+   * Get the id of the worker which saved a checkpoint file.
+   *
+   * @param name Name of the checkpoint file
+   * @param superstepPrefix Prefix of the file names of the superstep
+   * @return Id of the worker, or -1 if the file isn't a worker file of the
+   *         superstep
+   */
+  private static int getSavedWorkerId(String name, String superstepPrefix) {
+    if (!name.startsWith(superstepPrefix)) {
+      return -1;
+    }
+    int end = superstepPrefix.length();
+    while (end < name.length() && Character.isDigit(name.charAt(end))) {
+      ++end;
+    }
+    if (end == superstepPrefix.length()) {
+      return -1;
+    }
+    return Integer.parseInt(name.substring(superstepPrefix.length(), end));
+  }
+}
@@ -28,5 +28,7 @@ public enum GlobalCommType {
   /** Broadcasted value */
   BROADCAST,
   /** Special count used internally for counting requests */
-  SPECIAL_COUNT;
+  SPECIAL_COUNT,
+  /** Broadcasted value, as the difference from the previous one */
+  BROADCAST_DELTA;
 }
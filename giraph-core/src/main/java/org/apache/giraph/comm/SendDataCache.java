@@ -52,6 +52,8 @@ public abstract class SendDataCache<D> {
   private final int[] dataSizes;
   /** Total number of workers */
   private final int numWorkers;
+  /** Size of data (in bytes) for all workers */
+  private long totalDataSize = 0;
   /** List of partition ids belonging to a worker */
   private final Map<WorkerInfo, List<Integer>> workerPartitions =
       Maps.newHashMap();
@@ -122,6 +124,7 @@ public abstract class SendDataCache<D> {
         dataCache[partitionId] = null;
       }
     }
+    totalDataSize -= dataSizes[workerInfo.getTaskId()];
     dataSizes[workerInfo.getTaskId()] = 0;
     return workerData;
   }
@@ -140,7 +143,6 @@ public abstract class SendDataCache<D> {
       if (!workerData.isEmpty()) {
         allData.add(workerInfo, workerData);
       }
-      dataSizes[workerInfo.getTaskId()] = 0;
     }
     return allData;
   }
@@ -184,9 +186,19 @@ public abstract class SendDataCache<D> {
    */
   public int incrDataSize(int partitionId, int size) {
     dataSizes[partitionId] += size;
+    totalDataSize += size;
     return dataSizes[partitionId];
   }
 
+  /**
+   * Get the size of data (in bytes) cached for all workers
+   *
+   * @return Total data size
+   */
+  public long getTotalDataSize() {
+    return totalDataSize;
+  }
+
   public ImmutableClassesGiraphConfiguration getConf() {
     return conf;
   }
@@ -18,17 +18,29 @@
 
 package org.apache.giraph.comm;
 
+import static org.apache.giraph.conf.GiraphConstants.ADAPTIVE_MSG_CACHE_BUDGET;
+import static org.apache.giraph.conf.GiraphConstants.ADAPTIVE_MSG_REQUEST_SIZE;
 import static org.apache.giraph.conf.GiraphConstants.ADDITIONAL_MSG_REQUEST_SIZE;
+import static org.apache.giraph.conf.GiraphConstants.ASYNC_MESSAGE_STORE_THREADS_COUNT;
+import static org.apache.giraph.conf.GiraphConstants.DIRECT_LOCAL_MESSAGES;
+import static org.apache.giraph.conf.GiraphConstants.MAX_ADAPTIVE_MSG_REQUEST_SIZE;
 import static org.apache.giraph.conf.GiraphConstants.MAX_MSG_REQUEST_SIZE;
+import static org.apache.giraph.conf.GiraphConstants.MIN_ADAPTIVE_MSG_REQUEST_SIZE;
+import static org.apache.giraph.conf.GiraphConstants.USE_OUT_OF_CORE_GRAPH;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Iterator;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.comm.flow_control.CreditBasedFlowControl;
+import org.apache.giraph.comm.flow_control.FlowControl;
 import org.apache.giraph.comm.netty.NettyWorkerClientRequestProcessor;
 import org.apache.giraph.comm.requests.SendWorkerMessagesRequest;
 import org.apache.giraph.comm.requests.WritableRequest;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.edge.Edge;
+import org.apache.giraph.graph.AsyncLocalMessages;
 import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.partition.PartitionOwner;
 import org.apache.giraph.utils.ByteArrayVertexIdMessages;
@@ -60,6 +72,31 @@ public class SendMessageCache<I extends WritableComparable, M extends Writable>
   protected final int maxMessagesSizePerWorker;
   /** NettyWorkerClientRequestProcessor for message sending */
   protected final NettyWorkerClientRequestProcessor<I, ?, ?> clientProcessor;
+  /**
+   * Message size at which to send a request to each worker (indexed by task
+   * id), or null if request sizes are not adaptive
+   */
+  private final int[] requestSizeThresholds;
+  /** Minimum adaptive request size */
+  private final int minRequestSize;
+  /** Maximum adaptive request size */
+  private final int maxRequestSize;
+  /** Maximum size of messages cached for all workers */
+  private final long cacheBudget;
+  /** Flow control reporting backpressure (null if not credit-based) */
+  private final CreditBasedFlowControl creditBasedFlowControl;
+  /**
+   * Server data of this worker, if messages to local vertices are added
+   * straight to its incoming message store, or null otherwise
+   */
+  private final ServerData<I, ?, ?> localServerData;
+  /**
+   * Delivery of messages to local partitions in the current superstep, or
+   * null if messages are only delivered in the next superstep
+   */
+  private final AsyncLocalMessages<I, M> asyncLocalMessages;
+  /** Task id of this worker */
+  private final int localTaskId;
   /**
    * Constructor
    *
@@ -76,6 +113,131 @@ public class SendMessageCache<I extends WritableComparable, M extends Writable>
         ADDITIONAL_MSG_REQUEST_SIZE.get(conf));
     maxMessagesSizePerWorker = maxMsgSize;
     clientProcessor = processor;
+    FlowControl flowControl = serviceWorker.getWorkerClient() == null ? null :
+        serviceWorker.getWorkerClient().getFlowControl();
+    if (ADAPTIVE_MSG_REQUEST_SIZE.get(conf) &&
+        flowControl instanceof CreditBasedFlowControl) {
+      creditBasedFlowControl = (CreditBasedFlowControl) flowControl;
+      minRequestSize = MIN_ADAPTIVE_MSG_REQUEST_SIZE.get(conf);
+      requestSizeThresholds = new int[getNumWorkers()];
+      Arrays.fill(requestSizeThresholds, minRequestSize);
+      maxRequestSize = MAX_ADAPTIVE_MSG_REQUEST_SIZE.get(conf);
+      cacheBudget = ADAPTIVE_MSG_CACHE_BUDGET.get(conf);
+    } else {
+      creditBasedFlowControl = null;
+      requestSizeThresholds = null;
+      minRequestSize = maxMsgSize;
+      maxRequestSize = maxMsgSize;
+      cacheBudget = Long.MAX_VALUE;
+    }
+    // Out-of-core and async stores need messages to go through requests
+    if (DIRECT_LOCAL_MESSAGES.get(conf) && !USE_OUT_OF_CORE_GRAPH.get(conf) &&
+        ASYNC_MESSAGE_STORE_THREADS_COUNT.get(conf) == 0) {
+      localServerData = (ServerData<I, ?, ?>) serviceWorker.getServerData();
+    } else {
+      localServerData = null;
+    }
+    asyncLocalMessages = serviceWorker.getServerData() == null ? null :
+        ((ServerData<I, ?, ?>) serviceWorker.getServerData()).
+            <M>getAsyncLocalMessages();
+    if (localServerData != null || asyncLocalMessages != null) {
+      localTaskId = serviceWorker.getWorkerInfo().getTaskId();
+    } else {
+      localTaskId = -1;
+    }
+  }
+
+  /**
+   * Deliver a message to a local partition in the current superstep, if
+   * that partition wasn't computed yet. Such messages are consumed within
+   * the superstep, so they aren't counted as sent.
+   *
+   * @param workerInfo Destination worker
+   * @param partitionId Destination partition
+   * @param destVertexId Target vertex id
+   * @param message Message to add
+   * @return True if the message was delivered, false if it has to be sent
+   */
+  protected boolean addAsyncLocalMessage(WorkerInfo workerInfo,
+      int partitionId, I destVertexId, M message) {
+    return asyncLocalMessages != null &&
+        workerInfo.getTaskId() == localTaskId &&
+        asyncLocalMessages.addMessage(partitionId, destVertexId, message);
+  }
+
+  /**
+   * Add a message straight to the incoming message store of this worker if
+   * the destination vertex is local, without serializing it. The store
+   * copies or combines what it keeps, so the message can be reused.
+   *
+   * @param workerInfo Destination worker
+   * @param destVertexId Target vertex id
+   * @param message Message to add
+   * @return True if the message was added, false if it has to be sent
+   */
+  protected boolean addLocalMessage(WorkerInfo workerInfo, I destVertexId,
+      M message) {
+    if (localServerData == null || workerInfo.getTaskId() != localTaskId) {
+      return false;
+    }
+    try {
+      localServerData.<M>getIncomingMessageStore().addMessage(
+          destVertexId, message);
+    } catch (IOException e) {
+      throw new IllegalStateException("addLocalMessage: Failed to add " +
+          "message for " + destVertexId, e);
+    }
+    return true;
+  }
+
+  /**
+   * Whether the messages cached for a worker should be sent now. With
+   * adaptive request sizes, requests to a worker grow while sending to it is
+   * backpressured, so fewer and larger requests are sent to congested
+   * workers, and shrink while it is not, so messages to idle workers go out
+   * early. The total size of cached messages is bounded by a memory budget.
+   *
+   * @param workerInfo Destination worker
+   * @param workerMessageSize Size of messages cached for the worker
+   * @return True if a request should be sent to the worker
+   */
+  protected boolean shouldSendRequest(WorkerInfo workerInfo,
+      int workerMessageSize) {
+    if (requestSizeThresholds == null) {
+      return workerMessageSize >= maxMessagesSizePerWorker;
+    }
+    int taskId = workerInfo.getTaskId();
+    if (workerMessageSize < requestSizeThresholds[taskId]) {
+      return getTotalDataSize() >= cacheBudget;
+    }
+    boolean backpressured = creditBasedFlowControl.isBackpressured(taskId);
+    requestSizeThresholds[taskId] = getNextRequestSize(
+        requestSizeThresholds[taskId], backpressured,
+        minRequestSize, maxRequestSize);
+    // A congested worker keeps batching until the grown threshold is reached
+    return !backpressured ||
+        workerMessageSize >= requestSizeThresholds[taskId] ||
+        getTotalDataSize() >= cacheBudget;
+  }
+
+  /**
+   * Get the request size threshold for a worker once the messages cached
+   * for it reach the current threshold: double it if sending to the worker
+   * is backpressured, halve it otherwise.
+   *
+   * @param threshold Current request size threshold
+   * @param backpressured Whether sending to the worker is backpressured
+   * @param minRequestSize Minimum request size
+   * @param maxRequestSize Maximum request size
+   * @return Next request size threshold
+   */
+  static int getNextRequestSize(int threshold, boolean backpressured,
+      int minRequestSize, int maxRequestSize) {
+    if (backpressured) {
+      return (int) Math.min(maxRequestSize, 2L * threshold);
+    } else {
+      return Math.max(minRequestSize, threshold / 2);
+    }
   }
 
   @Override
@@ -153,24 +315,39 @@ public class SendMessageCache<I extends WritableComparable, M extends Writable>
       LOG.trace("sendMessageRequest: Send bytes (" + message.toString() +
         ") to " + destVertexId + " on worker " + workerInfo);
     }
+    if (addAsyncLocalMessage(workerInfo, partitionId, destVertexId, message)) {
+      return;
+    }
     ++totalMsgsSentInSuperstep;
+    if (addLocalMessage(workerInfo, destVertexId, message)) {
+      return;
+    }
     // Add the message to the cache
     int workerMessageSize = addMessage(
       workerInfo, partitionId, destVertexId, message);
     // Send a request if the cache of outgoing message to
     // the remote worker 'workerInfo' is full enough to be flushed
-    if (workerMessageSize >= maxMessagesSizePerWorker) {
-      PairList<Integer, VertexIdMessages<I, M>>
-        workerMessages = removeWorkerMessages(workerInfo);
-      WritableRequest writableRequest =
-        new SendWorkerMessagesRequest<I, M>(workerMessages);
-      totalMsgBytesSentInSuperstep += writableRequest.getSerializedSize();
-      clientProcessor.doRequest(workerInfo, writableRequest);
-      // Notify sending
-      getServiceWorker().getGraphTaskManager().notifySentMessages();
+    if (shouldSendRequest(workerInfo, workerMessageSize)) {
+      sendWorkerRequest(workerInfo);
     }
   }
 
+  /**
+   * Send the messages cached for a worker in a single request.
+   *
+   * @param workerInfo Destination worker
+   */
+  protected void sendWorkerRequest(WorkerInfo workerInfo) {
+    PairList<Integer, VertexIdMessages<I, M>>
+      workerMessages = removeWorkerMessages(workerInfo);
+    WritableRequest writableRequest =
+      new SendWorkerMessagesRequest<I, M>(workerMessages);
+    totalMsgBytesSentInSuperstep += writableRequest.getSerializedSize();
+    clientProcessor.doRequest(workerInfo, writableRequest);
+    // Notify sending
+    getServiceWorker().getGraphTaskManager().notifySentMessages();
+  }
+
   /**
    * An iterator wrapper on edges to return
    * target vertex ids.
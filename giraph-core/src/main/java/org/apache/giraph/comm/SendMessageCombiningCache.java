@@ -0,0 +1,311 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm;
+
+import static org.apache.giraph.conf.GiraphConstants.SEND_SIDE_COMBINING_MAX_VERTICES;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.Iterator;
+import java.util.Map;
+
+import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.combiner.MessageCombiner;
+import org.apache.giraph.comm.netty.NettyWorkerClientRequestProcessor;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.partition.PartitionOwner;
+import org.apache.giraph.types.ops.PrimitiveIdTypeOps;
+import org.apache.giraph.types.ops.TypeOpsUtils;
+import org.apache.giraph.types.ops.collections.Basic2ObjectMap;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.giraph.worker.WorkerInfo;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Message cache which combines outgoing messages per destination vertex
+ * before they are serialized, so at most one message per vertex and per
+ * batch is sent to the destination worker. Combined messages are kept in
+ * primitive maps for int and long vertex ids. Once enough destination
+ * vertices of a worker have a combined message, or when the cache is
+ * flushed, the combined messages are serialized and sent. Not thread-safe.
+ *
+ * @param <I> Vertex id
+ * @param <M> Message data
+ */
+@SuppressWarnings("unchecked")
+public class SendMessageCombiningCache<I extends WritableComparable,
+    M extends Writable> extends SendMessageCache<I, M> {
+  /** Message combiner */
+  private final MessageCombiner<? super I, M> messageCombiner;
+  /** Vertex id TypeOps, or null if ids are not primitive */
+  private final PrimitiveIdTypeOps<I> idTypeOps;
+  /** Number of combined vertices for a worker at which to send them */
+  private final int maxVerticesPerWorker;
+  /** Combined messages per partition id */
+  private final Int2ObjectOpenHashMap<PartitionMessages<I, M>>
+  partitionMessages = new Int2ObjectOpenHashMap<PartitionMessages<I, M>>();
+  /** Partitions with combined messages, indexed by worker task id */
+  private final IntArrayList[] workerPartitionIds;
+  /** Workers with combined messages, indexed by worker task id */
+  private final WorkerInfo[] workerInfos;
+  /** Number of combined vertices, indexed by worker task id */
+  private final int[] workerVertexCounts;
+
+  /**
+   * Constructor
+   *
+   * @param conf Giraph configuration
+   * @param serviceWorker Service worker
+   * @param processor NettyWorkerClientRequestProcessor
+   * @param maxMsgSize Max message size sent to a worker
+   */
+  public SendMessageCombiningCache(ImmutableClassesGiraphConfiguration conf,
+      CentralizedServiceWorker<?, ?, ?> serviceWorker,
+      NettyWorkerClientRequestProcessor<I, ?, ?> processor,
+      int maxMsgSize) {
+    super(conf, serviceWorker, processor, maxMsgSize);
+    messageCombiner = conf.createOutgoingMessageCombiner();
+    idTypeOps = TypeOpsUtils.getPrimitiveIdTypeOpsOrNull(
+        conf.getVertexIdClass());
+    maxVerticesPerWorker = SEND_SIDE_COMBINING_MAX_VERTICES.get(conf);
+    workerPartitionIds = new IntArrayList[getNumWorkers()];
+    for (int i = 0; i < workerPartitionIds.length; ++i) {
+      workerPartitionIds[i] = new IntArrayList();
+    }
+    workerInfos = new WorkerInfo[getNumWorkers()];
+    workerVertexCounts = new int[getNumWorkers()];
+  }
+
+  @Override
+  public void sendMessageRequest(I destVertexId, M message) {
+    PartitionOwner owner =
+        getServiceWorker().getVertexPartitionOwner(destVertexId);
+    WorkerInfo workerInfo = owner.getWorkerInfo();
+    int partitionId = owner.getPartitionId();
+    int taskId = workerInfo.getTaskId();
+    if (addAsyncLocalMessage(workerInfo, partitionId, destVertexId, message)) {
+      return;
+    }
+    ++totalMsgsSentInSuperstep;
+    if (addLocalMessage(workerInfo, destVertexId, message)) {
+      return;
+    }
+    PartitionMessages<I, M> messages = partitionMessages.get(partitionId);
+    if (messages == null) {
+      messages = idTypeOps == null ?
+          new ObjectPartitionMessages<I, M>(getConf()) :
+          new PrimitivePartitionMessages<I, M>(idTypeOps);
+      partitionMessages.put(partitionId, messages);
+    }
+    if (messages.size() == 0) {
+      workerPartitionIds[taskId].add(partitionId);
+      workerInfos[taskId] = workerInfo;
+    }
+    M currentMessage = messages.get(destVertexId);
+    if (currentMessage == null) {
+      currentMessage = messageCombiner.createInitialMessage();
+      messages.put(destVertexId, currentMessage);
+      ++workerVertexCounts[taskId];
+    }
+    messageCombiner.combine(destVertexId, currentMessage, message);
+    if (workerVertexCounts[taskId] >= maxVerticesPerWorker) {
+      serializeWorkerMessages(taskId);
+    }
+  }
+
+  /**
+   * Serialize the combined messages for a worker into the message cache,
+   * sending requests whenever the cache for the worker is full enough.
+   *
+   * @param taskId Task id of the destination worker
+   */
+  private void serializeWorkerMessages(int taskId) {
+    WorkerInfo workerInfo = workerInfos[taskId];
+    IntArrayList partitionIds = workerPartitionIds[taskId];
+    for (int i = 0; i < partitionIds.size(); ++i) {
+      int partitionId = partitionIds.getInt(i);
+      PartitionMessages<I, M> messages = partitionMessages.get(partitionId);
+      Iterator<I> vertexIdIterator = messages.keyIterator();
+      while (vertexIdIterator.hasNext()) {
+        I vertexId = vertexIdIterator.next();
+        int workerMessageSize = addMessage(workerInfo, partitionId, vertexId,
+            messages.get(vertexId));
+        if (shouldSendRequest(workerInfo, workerMessageSize)) {
+          sendWorkerRequest(workerInfo);
+        }
+      }
+      messages.clear();
+    }
+    partitionIds.clear();
+    workerVertexCounts[taskId] = 0;
+  }
+
+  @Override
+  public void flush() {
+    for (int taskId = 0; taskId < workerPartitionIds.length; ++taskId) {
+      if (!workerPartitionIds[taskId].isEmpty()) {
+        serializeWorkerMessages(taskId);
+      }
+    }
+    super.flush();
+  }
+
+  /**
+   * Combined messages for the vertices of a partition.
+   *
+   * @param <I> Vertex id
+   * @param <M> Message data
+   */
+  private abstract static class PartitionMessages<I, M> {
+    /**
+     * Get the combined message for a vertex.
+     *
+     * @param vertexId Vertex id
+     * @return Combined message, or null if there is none
+     */
+    abstract M get(I vertexId);
+
+    /**
+     * Set the combined message for a vertex. The vertex id may be reused by
+     * the caller afterwards.
+     *
+     * @param vertexId Vertex id
+     * @param message Combined message
+     */
+    abstract void put(I vertexId, M message);
+
+    /**
+     * Get the number of vertices with a combined message.
+     *
+     * @return Number of vertices
+     */
+    abstract int size();
+
+    /**
+     * Get an iterator over the vertices with a combined message. Returned
+     * ids may be reused between calls to next().
+     *
+     * @return Vertex id iterator
+     */
+    abstract Iterator<I> keyIterator();
+
+    /** Remove all the combined messages */
+    abstract void clear();
+  }
+
+  /**
+   * Combined messages for primitive vertex ids.
+   *
+   * @param <I> Vertex id
+   * @param <M> Message data
+   */
+  private static class PrimitivePartitionMessages<I, M>
+      extends PartitionMessages<I, M> {
+    /** Map from vertex id to combined message */
+    private final Basic2ObjectMap<I, M> map;
+
+    /**
+     * Constructor
+     *
+     * @param idTypeOps Vertex id TypeOps
+     */
+    PrimitivePartitionMessages(PrimitiveIdTypeOps<I> idTypeOps) {
+      map = idTypeOps.create2ObjectOpenHashMap(null);
+    }
+
+    @Override
+    M get(I vertexId) {
+      return map.get(vertexId);
+    }
+
+    @Override
+    void put(I vertexId, M message) {
+      map.put(vertexId, message);
+    }
+
+    @Override
+    int size() {
+      return map.size();
+    }
+
+    @Override
+    Iterator<I> keyIterator() {
+      return map.fastKeyIterator();
+    }
+
+    @Override
+    void clear() {
+      map.clear();
+    }
+  }
+
+  /**
+   * Combined messages for any vertex ids, keyed by copies of the ids.
+   *
+   * @param <I> Vertex id
+   * @param <M> Message data
+   */
+  private static class ObjectPartitionMessages<I extends Writable, M>
+      extends PartitionMessages<I, M> {
+    /** Map from vertex id to combined message */
+    private final Map<I, M> map = Maps.newHashMap();
+    /** Configuration */
+    private final ImmutableClassesGiraphConfiguration<I, ?, ?> conf;
+
+    /**
+     * Constructor
+     *
+     * @param conf Configuration
+     */
+    ObjectPartitionMessages(ImmutableClassesGiraphConfiguration conf) {
+      this.conf = conf;
+    }
+
+    @Override
+    M get(I vertexId) {
+      return map.get(vertexId);
+    }
+
+    @Override
+    void put(I vertexId, M message) {
+      I vertexIdCopy = conf.createVertexId();
+      WritableUtils.copyInto(vertexId, vertexIdCopy);
+      map.put(vertexIdCopy, message);
+    }
+
+    @Override
+    int size() {
+      return map.size();
+    }
+
+    @Override
+    Iterator<I> keyIterator() {
+      return map.keySet().iterator();
+    }
+
+    @Override
+    void clear() {
+      map.clear();
+    }
+  }
+}
@@ -0,0 +1,262 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.comm.VertexMirrors.MirroredVertex;
+import org.apache.giraph.comm.netty.NettyWorkerClientRequestProcessor;
+import org.apache.giraph.comm.requests.SendMirrorMessagesRequest;
+import org.apache.giraph.comm.requests.SendVertexMirrorRequest;
+import org.apache.giraph.comm.requests.WritableRequest;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.giraph.utils.ExtendedDataOutput;
+import org.apache.giraph.utils.PairList;
+import org.apache.giraph.utils.VertexIdMessages;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.giraph.worker.WorkerInfo;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+/**
+ * One message to many ids cache which sends messages of high-degree
+ * vertices to their mirrors. The first time such a vertex sends a message to
+ * all its neighbors (or after its neighbors changed), the message is sent
+ * with the ids of the neighbors as usual, and a mirror with those ids is
+ * registered on each worker holding some of them. In later supersteps only
+ * the message and the id of the vertex go to each of those workers, which
+ * fan the message out to the neighbors held by the mirror. Whether the
+ * neighbors changed is found by comparing the serialized target ids with
+ * the ones kept at registration, so mirrored vertices take twice the memory
+ * for their target ids on this worker. Not thread-safe.
+ *
+ * @param <I> Vertex id
+ * @param <M> Message data
+ */
+@SuppressWarnings("unchecked")
+public class SendMirroringMessageCache<I extends WritableComparable,
+    M extends Writable> extends SendOneMessageToManyCache<I, M> {
+  /** Mirrors of high-degree vertices of this worker */
+  private final VertexMirrors<I> vertexMirrors;
+  /** Messages to mirrors, indexed by worker task id */
+  private final ByteArrayVertexIdMessages<I, M>[] mirrorMessages;
+  /** Worker info, indexed by worker task id */
+  private final WorkerInfo[] workerInfos;
+  /** Reusable output for the serialized target ids of a vertex */
+  private final ExtendedDataOutput reusableTargetIds;
+
+  /**
+   * Constructor
+   *
+   * @param conf Giraph configuration
+   * @param serviceWorker Service worker
+   * @param processor NettyWorkerClientRequestProcessor
+   * @param maxMsgSize Max message size sent to a worker
+   */
+  public SendMirroringMessageCache(ImmutableClassesGiraphConfiguration conf,
+      CentralizedServiceWorker<?, ?, ?> serviceWorker,
+      NettyWorkerClientRequestProcessor<I, ?, ?> processor,
+      int maxMsgSize) {
+    super(conf, serviceWorker, processor, maxMsgSize);
+    vertexMirrors =
+        (VertexMirrors<I>) serviceWorker.getServerData().getVertexMirrors();
+    mirrorMessages = new ByteArrayVertexIdMessages[getNumWorkers()];
+    workerInfos = new WorkerInfo[getNumWorkers()];
+    for (WorkerInfo workerInfo : serviceWorker.getWorkerInfoList()) {
+      workerInfos[workerInfo.getTaskId()] = workerInfo;
+    }
+    reusableTargetIds = conf.createExtendedDataOutput();
+  }
+
+  @Override
+  public void sendMessageToAllRequest(Vertex<I, ?, ?> vertex, M message) {
+    if (vertex.getNumEdges() < vertexMirrors.getMinDegree()) {
+      vertexMirrors.dropMirroredVertex(vertex.getId());
+      super.sendMessageToAllRequest(vertex, message);
+      return;
+    }
+    writeTargetIds(vertex);
+    long superstep = getServiceWorker().getSuperstep();
+    MirroredVertex mirroredVertex =
+        vertexMirrors.getMirroredVertex(vertex.getId());
+    if (mirroredVertex != null &&
+        mirroredVertex.isUsable(reusableTargetIds.getByteArray(),
+            reusableTargetIds.getPos(), superstep)) {
+      totalMsgsSentInSuperstep += vertex.getNumEdges();
+      for (int taskId : mirroredVertex.getTaskIds()) {
+        addMirrorMessage(taskId, vertex.getId(), message);
+      }
+    } else {
+      super.sendMessageToAllRequest(vertex, message);
+      registerMirrors(vertex, mirroredVertex, superstep);
+    }
+  }
+
+  /**
+   * Serialize the target ids of a vertex into the reusable output, to find
+   * out whether its mirrors are still up to date.
+   *
+   * @param vertex Vertex
+   */
+  private void writeTargetIds(Vertex<I, ?, ?> vertex) {
+    reusableTargetIds.reset();
+    try {
+      for (Edge<I, ?> edge : vertex.getEdges()) {
+        edge.getTargetVertexId().write(reusableTargetIds);
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "writeTargetIds: Failed to serialize the target vertex ids", e);
+    }
+  }
+
+  /**
+   * Register mirrors of a vertex on the workers holding its neighbors, and
+   * remove its previous mirrors from workers holding none of them anymore.
+   *
+   * @param vertex Vertex to mirror
+   * @param previous Previous registration of the vertex, or null
+   * @param superstep Current superstep
+   */
+  private void registerMirrors(Vertex<I, ?, ?> vertex,
+      MirroredVertex previous, long superstep) {
+    ExtendedDataOutput[] workerIds = new ExtendedDataOutput[getNumWorkers()];
+    int[] workerCounts = new int[getNumWorkers()];
+    for (Edge<I, ?> edge : vertex.getEdges()) {
+      I targetId = edge.getTargetVertexId();
+      int taskId = getServiceWorker().getVertexPartitionOwner(targetId)
+          .getWorkerInfo().getTaskId();
+      if (workerIds[taskId] == null) {
+        workerIds[taskId] = getConf().createExtendedDataOutput();
+      }
+      try {
+        targetId.write(workerIds[taskId]);
+      } catch (IOException e) {
+        throw new IllegalStateException(
+            "registerMirrors: Failed to serialize the target vertex id", e);
+      }
+      ++workerCounts[taskId];
+    }
+    if (previous != null) {
+      // Workers without neighbors anymore have to drop their mirror
+      for (int taskId : previous.getTaskIds()) {
+        if (workerIds[taskId] == null) {
+          workerIds[taskId] = getConf().createExtendedDataOutput(0);
+        }
+      }
+    }
+    int[] taskIds = new int[getNumWorkers()];
+    int numTaskIds = 0;
+    for (int taskId = 0; taskId < workerIds.length; ++taskId) {
+      if (workerIds[taskId] == null) {
+        continue;
+      }
+      if (workerCounts[taskId] > 0) {
+        taskIds[numTaskIds++] = taskId;
+      }
+      I vertexId = getConf().createVertexId();
+      WritableUtils.copyInto(vertex.getId(), vertexId);
+      WritableRequest writableRequest = new SendVertexMirrorRequest<I>(
+          vertexId, superstep, workerCounts[taskId],
+          workerIds[taskId].getByteArray(), workerIds[taskId].getPos());
+      clientProcessor.doRequest(workerInfos[taskId], writableRequest);
+    }
+    vertexMirrors.addMirroredVertex(vertex.getId(), new MirroredVertex(
+        reusableTargetIds.toByteArray(), superstep,
+        Arrays.copyOf(taskIds, numTaskIds)));
+  }
+
+  /**
+   * Remove the mirrors of a dropped vertex from the workers holding them.
+   *
+   * @param vertexId Id of the dropped vertex
+   * @param mirroredVertex Last registration of the vertex
+   */
+  private void removeMirrors(I vertexId, MirroredVertex mirroredVertex) {
+    long superstep = getServiceWorker().getSuperstep();
+    for (int taskId : mirroredVertex.getTaskIds()) {
+      WritableRequest writableRequest = new SendVertexMirrorRequest<I>(
+          vertexId, superstep, 0, new byte[0], 0);
+      clientProcessor.doRequest(workerInfos[taskId], writableRequest);
+    }
+  }
+
+  /**
+   * Add a message of a mirrored vertex for a worker holding its mirror,
+   * sending the messages for the worker if there are enough of them.
+   *
+   * @param taskId Task id of the worker holding the mirror
+   * @param vertexId Id of the mirrored vertex
+   * @param message Message
+   */
+  private void addMirrorMessage(int taskId, I vertexId, M message) {
+    ByteArrayVertexIdMessages<I, M> messages = mirrorMessages[taskId];
+    if (messages == null) {
+      messages = new ByteArrayVertexIdMessages<I, M>(
+          getConf().<M>createOutgoingMessageValueFactory());
+      messages.setConf(getConf());
+      messages.initialize();
+      mirrorMessages[taskId] = messages;
+    }
+    messages.add(vertexId, message);
+    if (messages.getSize() >= maxMessagesSizePerWorker) {
+      sendMirrorMessages(taskId);
+    }
+  }
+
+  /**
+   * Send the messages to mirrors cached for a worker.
+   *
+   * @param taskId Task id of the worker
+   */
+  private void sendMirrorMessages(int taskId) {
+    PairList<Integer, VertexIdMessages<I, M>> workerMessages =
+        new PairList<Integer, VertexIdMessages<I, M>>();
+    workerMessages.initialize(1);
+    workerMessages.add(-1, mirrorMessages[taskId]);
+    mirrorMessages[taskId] = null;
+    WritableRequest writableRequest =
+        new SendMirrorMessagesRequest<I, M>(workerMessages);
+    totalMsgBytesSentInSuperstep += writableRequest.getSerializedSize();
+    clientProcessor.doRequest(workerInfos[taskId], writableRequest);
+    // Notify sending
+    getServiceWorker().getGraphTaskManager().notifySentMessages();
+  }
+
+  @Override
+  public void flush() {
+    Map.Entry<I, MirroredVertex> droppedVertex;
+    while ((droppedVertex = vertexMirrors.pollDroppedVertex()) != null) {
+      removeMirrors(droppedVertex.getKey(), droppedVertex.getValue());
+    }
+    super.flush();
+    for (int taskId = 0; taskId < mirrorMessages.length; ++taskId) {
+      if (mirrorMessages[taskId] != null &&
+          !mirrorMessages[taskId].isEmpty()) {
+        sendMirrorMessages(taskId);
+      }
+    }
+  }
+}
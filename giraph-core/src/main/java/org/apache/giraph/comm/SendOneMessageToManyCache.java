@@ -214,6 +214,14 @@ public class SendOneMessageToManyCache<I extends WritableComparable,
       vertexId = vertexIdIterator.next();
       owner = getServiceWorker().getVertexPartitionOwner(vertexId);
       workerInfo = owner.getWorkerInfo();
+      if (addAsyncLocalMessage(workerInfo, owner.getPartitionId(), vertexId,
+          message)) {
+        continue;
+      }
+      if (addLocalMessage(workerInfo, vertexId, message)) {
+        ++totalMsgsSentInSuperstep;
+        continue;
+      }
       currentMachineId = workerInfo.getTaskId();
       // Serialize this target vertex id
       try {
@@ -249,7 +257,7 @@ public class SendOneMessageToManyCache<I extends WritableComparable,
             workerInfoList[i]);
         }
         ++totalMsgsSentInSuperstep;
-        if (workerMessageSize >= maxMessagesSizePerWorker) {
+        if (shouldSendRequest(workerInfoList[i], workerMessageSize)) {
           PairList<Integer, VertexIdMessages<I, M>>
             workerMessages = removeWorkerMessages(workerInfoList[i]);
           writableRequest = new SendWorkerMessagesRequest<>(workerMessages);
@@ -271,7 +279,7 @@ public class SendOneMessageToManyCache<I extends WritableComparable,
             workerInfoList[i]);
         }
         totalMsgsSentInSuperstep += idCounter[i];
-        if (workerMessageSize >= maxMessagesSizePerWorker) {
+        if (shouldSendRequest(workerInfoList[i], workerMessageSize)) {
           ByteArrayOneMessageToManyIds<I, M> workerMsgVids =
             removeWorkerMsgVids(workerInfoList[i]);
           writableRequest =  new SendWorkerOneMessageToManyRequest<>(
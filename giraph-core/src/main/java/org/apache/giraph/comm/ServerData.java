@@ -28,6 +28,7 @@ import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.bsp.checkpoints.IncrementalCheckpointTracker;
 import org.apache.giraph.comm.aggregators.AllAggregatorServerData;
 import org.apache.giraph.comm.aggregators.OwnerAggregatorServerData;
 import org.apache.giraph.comm.messages.MessageStore;
@@ -37,6 +38,8 @@ import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.edge.EdgeStore;
 import org.apache.giraph.edge.EdgeStoreFactory;
+import org.apache.giraph.graph.ActiveVertexTracker;
+import org.apache.giraph.graph.AsyncLocalMessages;
 import org.apache.giraph.graph.Vertex;
 import org.apache.giraph.graph.VertexMutations;
 import org.apache.giraph.graph.VertexResolver;
@@ -126,6 +129,17 @@ public class ServerData<I extends WritableComparable,
   private final Mapper<?, ?, ?, ?>.Context context;
   /** Out-of-core engine */
   private final OutOfCoreEngine oocEngine;
+  /** Tracker of partitions changed since the last checkpoint */
+  private final IncrementalCheckpointTracker checkpointTracker;
+  /** Frontiers of active vertices of the partitions of this worker */
+  private final ActiveVertexTracker<I> activeVertexTracker;
+  /** Mirrors of high-degree vertices */
+  private final VertexMirrors<I> vertexMirrors;
+  /**
+   * Delivery of messages to local partitions in the current superstep, or
+   * null if messages are only delivered in the next superstep
+   */
+  private volatile AsyncLocalMessages<I, ?> asyncLocalMessages;
 
   /**
    * Constructor.
@@ -160,6 +174,21 @@ public class ServerData<I extends WritableComparable,
       edgeStore = inMemoryEdgeStore;
       oocEngine = null;
     }
+    if (GiraphConstants.INCREMENTAL_CHECKPOINTS.get(conf)) {
+      checkpointTracker = new IncrementalCheckpointTracker(conf);
+    } else {
+      checkpointTracker = null;
+    }
+    if (GiraphConstants.ACTIVE_VERTEX_FRONTIER.get(conf)) {
+      activeVertexTracker = new ActiveVertexTracker<I>(conf);
+    } else {
+      activeVertexTracker = null;
+    }
+    if (GiraphConstants.VERTEX_MIRRORING.get(conf)) {
+      vertexMirrors = new VertexMirrors<I>(conf);
+    } else {
+      vertexMirrors = null;
+    }
     ownerAggregatorData = new OwnerAggregatorServerData(context);
     allAggregatorData = new AllAggregatorServerData(context, conf);
     this.context = context;
@@ -192,6 +221,58 @@ public class ServerData<I extends WritableComparable,
     return oocEngine;
   }
 
+  /**
+   * Return the tracker of partitions changed since the last checkpoint.
+   *
+   * @return The checkpoint tracker, or null if checkpoints aren't incremental
+   */
+  public IncrementalCheckpointTracker getCheckpointTracker() {
+    return checkpointTracker;
+  }
+
+  /**
+   * Return the frontiers of active vertices of the partitions.
+   *
+   * @return The active vertex tracker, or null if frontiers aren't kept
+   */
+  public ActiveVertexTracker<I> getActiveVertexTracker() {
+    return activeVertexTracker;
+  }
+
+  /**
+   * Return the mirrors of high-degree vertices.
+   *
+   * @return The vertex mirrors, or null if vertices aren't mirrored
+   */
+  public VertexMirrors<I> getVertexMirrors() {
+    return vertexMirrors;
+  }
+
+  /**
+   * Return the delivery of messages to local partitions in the current
+   * superstep.
+   *
+   * @param <M> Message data
+   * @return Async local messages, or null if messages are only delivered in
+   *         the next superstep
+   */
+  public <M extends Writable>
+  AsyncLocalMessages<I, M> getAsyncLocalMessages() {
+    return (AsyncLocalMessages<I, M>) asyncLocalMessages;
+  }
+
+  /**
+   * Set the delivery of messages to local partitions for the superstep
+   * about to be computed.
+   *
+   * @param asyncLocalMessages Async local messages, or null to only deliver
+   *                           messages in the next superstep
+   */
+  public void setAsyncLocalMessages(
+      AsyncLocalMessages<I, ?> asyncLocalMessages) {
+    this.asyncLocalMessages = asyncLocalMessages;
+  }
+
   /**
    * Return the edge store for this worker.
    *
@@ -394,6 +475,12 @@ public class ServerData<I extends WritableComparable,
 
     // Resolve mutations that are explicitly sent for this partition
     if (prevPartitionMutations != null) {
+      if (checkpointTracker != null && !prevPartitionMutations.isEmpty()) {
+        checkpointTracker.partitionChanged(partitionId);
+      }
+      if (activeVertexTracker != null && !prevPartitionMutations.isEmpty()) {
+        activeVertexTracker.partitionChanged(partitionId);
+      }
       for (Map.Entry<I, VertexMutations<I, V, E>> entry : prevPartitionMutations
           .entrySet()) {
         I vertexId = entry.getKey();
@@ -418,6 +505,10 @@ public class ServerData<I extends WritableComparable,
           partition.removeVertex(vertexId);
           getCurrentMessageStore().clearVertexMessages(vertexId);
         }
+        if (vertexMirrors != null && (vertex == null ||
+            vertex.getNumEdges() < vertexMirrors.getMinDegree())) {
+          vertexMirrors.dropMirroredVertex(vertexId);
+        }
         context.progress();
       }
     }
@@ -442,6 +533,12 @@ public class ServerData<I extends WritableComparable,
 
           if (vertex != null) {
             partition.putVertex(vertex);
+            if (checkpointTracker != null) {
+              checkpointTracker.partitionChanged(partitionId);
+            }
+            if (activeVertexTracker != null) {
+              activeVertexTracker.partitionChanged(partitionId);
+            }
           }
           context.progress();
         }
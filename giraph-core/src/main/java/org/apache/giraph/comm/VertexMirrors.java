@@ -0,0 +1,331 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm;
+
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.partition.PartitionOwner;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Maps;
+
+/**
+ * Mirrors of high-degree vertices. A worker computing a high-degree vertex
+ * registers, on every worker holding some of its neighbors, a mirror with
+ * the ids of the neighbors on that worker. From the next superstep on, a
+ * message the vertex sends to all its neighbors goes once to each of those
+ * workers, which fan it out to the neighbors of the mirror locally.
+ *
+ * This class holds both sides: the vertices of this worker which have
+ * mirrors on other workers, and the mirrors this worker holds for vertices
+ * of other workers. Mirrors hold target ids by worker, so all of them are
+ * dropped when partitions move between workers. Vertices which are removed
+ * or drop below the minimum degree are dropped too, and their mirrors are
+ * removed on the other workers by the next message cache flush.
+ *
+ * @param <I> Vertex id
+ */
+@ThreadSafe
+@SuppressWarnings("rawtypes")
+public class VertexMirrors<I extends WritableComparable> {
+  /** Class logger */
+  private static final Logger LOG = Logger.getLogger(VertexMirrors.class);
+  /** Configuration */
+  private final ImmutableClassesGiraphConfiguration<I, ?, ?> conf;
+  /** Minimum number of edges for a vertex to be mirrored */
+  private final int minDegree;
+  /** Vertices of this worker which registered mirrors on other workers */
+  private final ConcurrentMap<I, MirroredVertex> mirroredVertices =
+      Maps.newConcurrentMap();
+  /** Mirrors this worker holds for vertices of other workers */
+  private final ConcurrentMap<I, Mirror> mirrors = Maps.newConcurrentMap();
+  /** Dropped vertices of this worker whose mirrors still have to go */
+  private final Queue<Map.Entry<I, MirroredVertex>> droppedVertices =
+      new ConcurrentLinkedQueue<Map.Entry<I, MirroredVertex>>();
+  /** Worker task id of each partition id, when mirrors were registered */
+  private Int2IntOpenHashMap partitionOwners;
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public VertexMirrors(ImmutableClassesGiraphConfiguration<I, ?, ?> conf) {
+    this.conf = conf;
+    minDegree = GiraphConstants.VERTEX_MIRRORING_MIN_DEGREE.get(conf);
+  }
+
+  /**
+   * Get the minimum number of edges for a vertex to be mirrored
+   *
+   * @return Minimum degree
+   */
+  public int getMinDegree() {
+    return minDegree;
+  }
+
+  /**
+   * Update the partition owners at the start of a superstep. If any
+   * partition moved to another worker, the target ids held by mirrors are
+   * wrong, so vertices of this worker have to register their mirrors
+   * again and mirrors registered in earlier supersteps are dropped.
+   *
+   * @param owners Partition owners for the current superstep
+   * @param superstep Current superstep
+   */
+  public synchronized void updatePartitionOwners(
+      Iterable<? extends PartitionOwner> owners, long superstep) {
+    Int2IntOpenHashMap newPartitionOwners = new Int2IntOpenHashMap();
+    for (PartitionOwner owner : owners) {
+      newPartitionOwners.put(owner.getPartitionId(),
+          owner.getWorkerInfo().getTaskId());
+    }
+    if (partitionOwners != null &&
+        !partitionOwners.equals(newPartitionOwners)) {
+      if (LOG.isInfoEnabled()) {
+        LOG.info("updatePartitionOwners: Partitions moved, dropping " +
+            mirroredVertices.size() + " mirrored vertices and " +
+            mirrors.size() + " mirrors on superstep " + superstep);
+      }
+      mirroredVertices.clear();
+      droppedVertices.clear();
+      // Mirrors registered in this superstep already use the new owners
+      Iterator<Mirror> iterator = mirrors.values().iterator();
+      while (iterator.hasNext()) {
+        if (iterator.next().getSuperstep() < superstep) {
+          iterator.remove();
+        }
+      }
+    }
+    partitionOwners = newPartitionOwners;
+  }
+
+  /**
+   * Drop all registrations and mirrors, e.g. when restarting from a
+   * checkpoint. Vertices of this worker send messages to all their targets
+   * until they register their mirrors again.
+   */
+  public synchronized void clear() {
+    mirroredVertices.clear();
+    droppedVertices.clear();
+    mirrors.clear();
+    partitionOwners = null;
+  }
+
+  /**
+   * Get the registration of a vertex of this worker.
+   *
+   * @param vertexId Vertex id
+   * @return Registration, or null if the vertex isn't mirrored
+   */
+  public MirroredVertex getMirroredVertex(I vertexId) {
+    return mirroredVertices.get(vertexId);
+  }
+
+  /**
+   * Record that a vertex of this worker registered its mirrors.
+   *
+   * @param vertexId Vertex id (may be reused by the caller afterwards)
+   * @param mirroredVertex Registration
+   */
+  public void addMirroredVertex(I vertexId, MirroredVertex mirroredVertex) {
+    I vertexIdCopy = conf.createVertexId();
+    WritableUtils.copyInto(vertexId, vertexIdCopy);
+    mirroredVertices.put(vertexIdCopy, mirroredVertex);
+  }
+
+  /**
+   * Drop the registration of a vertex of this worker which was removed or
+   * doesn't have enough edges to be mirrored anymore. Its mirrors are
+   * removed from the other workers once it is polled with
+   * {@link #pollDroppedVertex()}.
+   *
+   * @param vertexId Vertex id (may be reused by the caller afterwards)
+   */
+  public void dropMirroredVertex(I vertexId) {
+    MirroredVertex mirroredVertex = mirroredVertices.remove(vertexId);
+    if (mirroredVertex != null) {
+      I vertexIdCopy = conf.createVertexId();
+      WritableUtils.copyInto(vertexId, vertexIdCopy);
+      droppedVertices.add(
+          Maps.immutableEntry(vertexIdCopy, mirroredVertex));
+    }
+  }
+
+  /**
+   * Take a dropped vertex whose mirrors have to be removed.
+   *
+   * @return Id and last registration of the dropped vertex, or null if
+   *         there is none
+   */
+  public Map.Entry<I, MirroredVertex> pollDroppedVertex() {
+    return droppedVertices.poll();
+  }
+
+  /**
+   * Add (or replace) the mirror of a vertex of another worker. A mirror
+   * without target ids removes the mirror registered in an earlier
+   * superstep, a mirror registered in the same superstep is newer.
+   *
+   * @param vertexId Mirrored vertex id (owned by the mirror afterwards)
+   * @param mirror Mirror
+   */
+  public void addMirror(I vertexId, Mirror mirror) {
+    if (mirror.getCount() == 0) {
+      Mirror current = mirrors.get(vertexId);
+      if (current != null && current.getSuperstep() < mirror.getSuperstep()) {
+        mirrors.remove(vertexId, current);
+      }
+    } else {
+      mirrors.put(vertexId, mirror);
+    }
+  }
+
+  /**
+   * Get the mirror of a vertex of another worker.
+   *
+   * @param vertexId Mirrored vertex id
+   * @return Mirror, or null if this worker holds none for the vertex
+   */
+  public Mirror getMirror(I vertexId) {
+    return mirrors.get(vertexId);
+  }
+
+  /**
+   * Registration of the mirrors of a vertex of this worker.
+   */
+  public static class MirroredVertex {
+    /** Serialized target ids of the vertex when registered */
+    private final byte[] targetIds;
+    /** Superstep in which the mirrors were registered */
+    private final long superstep;
+    /** Task ids of the workers holding a mirror */
+    private final int[] taskIds;
+
+    /**
+     * Constructor
+     *
+     * @param targetIds Serialized target ids of the vertex
+     * @param superstep Superstep in which the mirrors are registered
+     * @param taskIds Task ids of the workers holding a mirror
+     */
+    public MirroredVertex(byte[] targetIds, long superstep, int[] taskIds) {
+      this.targetIds = targetIds;
+      this.superstep = superstep;
+      this.taskIds = taskIds;
+    }
+
+    /**
+     * Whether the mirrors can be used to send a message to all targets.
+     * Mirrors registered in the current superstep may not have been added
+     * on the other workers yet.
+     *
+     * @param currentTargetIds Serialized current target ids
+     * @param length Length of the serialized current target ids
+     * @param currentSuperstep Current superstep
+     * @return True if the mirrors hold the current target ids
+     */
+    public boolean isUsable(byte[] currentTargetIds, int length,
+        long currentSuperstep) {
+      if (superstep >= currentSuperstep || targetIds.length != length) {
+        return false;
+      }
+      for (int i = 0; i < length; ++i) {
+        if (targetIds[i] != currentTargetIds[i]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Get the task ids of the workers holding a mirror
+     *
+     * @return Task ids
+     */
+    public int[] getTaskIds() {
+      return taskIds;
+    }
+  }
+
+  /**
+   * Mirror of a vertex of another worker: the serialized ids of its
+   * neighbors on this worker.
+   */
+  public static class Mirror {
+    /** Superstep in which the mirror was registered */
+    private final long superstep;
+    /** Serialized target ids */
+    private final byte[] ids;
+    /** Number of target ids */
+    private final int count;
+
+    /**
+     * Constructor
+     *
+     * @param superstep Superstep in which the mirror was registered
+     * @param ids Serialized target ids
+     * @param count Number of target ids
+     */
+    public Mirror(long superstep, byte[] ids, int count) {
+      this.superstep = superstep;
+      this.ids = ids;
+      this.count = count;
+    }
+
+    /**
+     * Get the superstep in which the mirror was registered
+     *
+     * @return Superstep
+     */
+    public long getSuperstep() {
+      return superstep;
+    }
+
+    /**
+     * Get the serialized target ids
+     *
+     * @return Serialized ids
+     */
+    public byte[] getIds() {
+      return ids;
+    }
+
+    /**
+     * Get the number of target ids
+     *
+     * @return Number of ids
+     */
+    public int getCount() {
+      return count;
+    }
+  }
+}
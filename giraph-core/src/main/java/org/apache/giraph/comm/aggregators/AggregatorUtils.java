@@ -18,6 +18,7 @@
 
 package org.apache.giraph.comm.aggregators;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
@@ -45,6 +46,29 @@ public class AggregatorUtils {
       "giraph.useThreadLocalAggregators";
   /** Default is not to have a copy of aggregators for each thread */
   public static final boolean USE_THREAD_LOCAL_AGGREGATORS_DEFAULT = false;
+  /**
+   * Number of children of each worker in the tree used to reduce and
+   * broadcast aggregators. With a tree, the first worker owns all
+   * aggregators, workers merge the partial values of their children before
+   * sending them to their parent, and forward values from their parent to
+   * their children. This keeps large aggregators from hitting a single
+   * owner from all workers, at the cost of a number of hops logarithmic in
+   * the number of workers. When 0, each aggregator has an owner which
+   * exchanges values with all workers directly.
+   */
+  public static final String AGGREGATOR_TREE_FAN_OUT =
+      "giraph.aggregatorTreeFanOut";
+  /** Default is to exchange aggregators with their owners directly */
+  public static final int AGGREGATOR_TREE_FAN_OUT_DEFAULT = 0;
+  /**
+   * Whether to broadcast values implementing {@link DeltaWritable} as the
+   * difference from the value broadcast with the same name before. Master
+   * and every worker keep a copy of the last such value for each name.
+   */
+  public static final String USE_DELTA_BROADCASTS =
+      "giraph.useDeltaBroadcasts";
+  /** Default is to always broadcast whole values */
+  public static final boolean USE_DELTA_BROADCASTS_DEFAULT = false;
 
   /** Do not instantiate */
   private AggregatorUtils() { }
@@ -62,6 +86,65 @@ public class AggregatorUtils {
     return workers.get(index);
   }
 
+  /**
+   * Get owner of aggregator with selected name from the list of workers,
+   * when aggregators are reduced in a tree with selected fan-out.
+   *
+   * @param aggregatorName Name of the aggregators
+   * @param workers List of workers
+   * @param treeFanOut Fan-out of the aggregator tree (0 if not used)
+   * @return Worker which owns the aggregator
+   */
+  public static WorkerInfo getOwner(String aggregatorName,
+      List<WorkerInfo> workers, int treeFanOut) {
+    return treeFanOut > 0 ? workers.get(0) :
+        getOwner(aggregatorName, workers);
+  }
+
+  /**
+   * Get fan-out of the tree aggregators are reduced in.
+   *
+   * @param conf Giraph configuration
+   * @return Number of children of each worker, 0 if no tree is used
+   */
+  public static int
+  getAggregatorTreeFanOut(ImmutableClassesGiraphConfiguration conf) {
+    return conf.getInt(AGGREGATOR_TREE_FAN_OUT,
+        AGGREGATOR_TREE_FAN_OUT_DEFAULT);
+  }
+
+  /**
+   * Get parent of a worker in the aggregator tree.
+   *
+   * @param worker Worker
+   * @param workers List of workers
+   * @param treeFanOut Fan-out of the aggregator tree
+   * @return Parent of the worker, or null if it's the root
+   */
+  public static WorkerInfo getTreeParent(WorkerInfo worker,
+      List<WorkerInfo> workers, int treeFanOut) {
+    int index = workers.indexOf(worker);
+    return index <= 0 ? null : workers.get((index - 1) / treeFanOut);
+  }
+
+  /**
+   * Get children of a worker in the aggregator tree.
+   *
+   * @param worker Worker
+   * @param workers List of workers
+   * @param treeFanOut Fan-out of the aggregator tree
+   * @return Children of the worker
+   */
+  public static List<WorkerInfo> getTreeChildren(WorkerInfo worker,
+      List<WorkerInfo> workers, int treeFanOut) {
+    int first = workers.indexOf(worker) * treeFanOut + 1;
+    List<WorkerInfo> children = new ArrayList<>(treeFanOut);
+    for (int i = first; i < first + treeFanOut && i < workers.size(); ++i) {
+      children.add(workers.get(i));
+    }
+    return children;
+  }
+
   /**
    * Check if we should use thread local aggregators.
    *
@@ -74,6 +157,18 @@ public class AggregatorUtils {
         USE_THREAD_LOCAL_AGGREGATORS_DEFAULT);
   }
 
+  /**
+   * Check if we should broadcast differences from previous values.
+   *
+   * @param conf Giraph configuration
+   * @return True iff we should use delta broadcasts
+   */
+  public static boolean
+  useDeltaBroadcasts(ImmutableClassesGiraphConfiguration conf) {
+    return conf.getBoolean(USE_DELTA_BROADCASTS,
+        USE_DELTA_BROADCASTS_DEFAULT);
+  }
+
   /**
    * Get the warning message about usage of unregistered aggregator to be
    * printed to user. If user didn't register any aggregators also provide
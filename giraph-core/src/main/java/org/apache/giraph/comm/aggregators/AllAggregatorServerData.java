@@ -31,6 +31,7 @@ import org.apache.giraph.master.MasterInfo;
 import org.apache.giraph.reducers.ReduceOperation;
 import org.apache.giraph.reducers.Reducer;
 import org.apache.giraph.utils.TaskIdsPermitsBarrier;
+import org.apache.giraph.utils.WritableUtils;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.util.Progressable;
 import org.apache.log4j.Logger;
@@ -56,6 +57,14 @@ public class AllAggregatorServerData {
   /** Map of broadcasted values from master */
   private final ConcurrentMap<String, Writable>
   broadcastedMap = Maps.newConcurrentMap();
+  /**
+   * Copies of the last broadcasted values which can be sent as differences,
+   * kept across supersteps
+   */
+  private final ConcurrentMap<String, Writable>
+  previousBroadcastedMap = Maps.newConcurrentMap();
+  /** Whether values can be broadcasted as differences from previous ones */
+  private final boolean deltaBroadcasts;
   /** Map of registered reducers for current superstep */
   private final ConcurrentMap<String, ReduceOperation<Object, Writable>>
   reduceOpMap = Maps.newConcurrentMap();
@@ -79,6 +88,15 @@ public class AllAggregatorServerData {
    * to know how many requests it has to receive.
    */
   private final TaskIdsPermitsBarrier workersBarrier;
+  /**
+   * Aggregator data which this worker received from its parent in the
+   * aggregator tree, and which it is going to forward to its children.
+   * Only kept when aggregators are distributed in a tree. Thread-safe.
+   */
+  private final List<byte[]> parentData =
+      Collections.synchronizedList(Lists.<byte[]>newArrayList());
+  /** Whether aggregators are distributed in a tree */
+  private final boolean aggregatorTree;
   /** Progressable used to report progress */
   private final Progressable progressable;
   /** Configuration */
@@ -96,6 +114,8 @@ public class AllAggregatorServerData {
     this.conf = conf;
     workersBarrier = new TaskIdsPermitsBarrier(progressable);
     masterBarrier = new TaskIdsPermitsBarrier(progressable);
+    aggregatorTree = AggregatorUtils.getAggregatorTreeFanOut(conf) > 0;
+    deltaBroadcasts = AggregatorUtils.useDeltaBroadcasts(conf);
   }
 
   /**
@@ -108,7 +128,12 @@ public class AllAggregatorServerData {
       String name, GlobalCommType type, Writable value) {
     switch (type) {
     case BROADCAST:
-      broadcastedMap.put(name, value);
+      receiveBroadcast(name, value);
+      break;
+
+    case BROADCAST_DELTA:
+      receiveBroadcast(name, ((DeltaBroadcastValue) value).applyTo(
+          previousBroadcastedMap.get(name), conf));
       break;
 
     case REDUCE_OPERATIONS:
@@ -121,6 +146,22 @@ public class AllAggregatorServerData {
     progressable.progress();
   }
 
+  /**
+   * Received broadcasted value. Values which can be broadcasted as
+   * differences are copied, since the values given to computation can be
+   * modified.
+   *
+   * @param name Name
+   * @param value Broadcasted value
+   */
+  private void receiveBroadcast(String name, Writable value) {
+    broadcastedMap.put(name, value);
+    if (deltaBroadcasts && value instanceof DeltaWritable) {
+      previousBroadcastedMap.put(name,
+          WritableUtils.createCopy(value, value.getClass(), conf));
+    }
+  }
+
   /**
    * Notify this object that an aggregator request from master has been
    * received.
@@ -146,8 +187,13 @@ public class AllAggregatorServerData {
   /**
    * Notify this object that an aggregator request from some worker has been
    * received.
+   *
+   * @param data Byte request with data received from the worker
    */
-  public void receivedRequestFromWorker() {
+  public void receivedRequestFromWorker(byte[] data) {
+    if (aggregatorTree) {
+      parentData.add(data);
+    }
     workersBarrier.releaseOnePermit();
   }
 
@@ -179,6 +225,24 @@ public class AllAggregatorServerData {
     return masterData;
   }
 
+  /**
+   * This function will wait until all aggregator requests from the parent
+   * of this worker in the aggregator tree have arrived, and return that data
+   * afterwards.
+   *
+   * @param parentTaskId Task id of the parent in the aggregator tree
+   * @return Iterable through data received from the parent
+   */
+  public Iterable<byte[]> getDataFromParentWhenReady(int parentTaskId) {
+    workersBarrier.waitForRequiredPermits(
+        Collections.singleton(parentTaskId));
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("getDataFromParentWhenReady: " +
+          "Aggregator data for distribution ready");
+    }
+    return parentData;
+  }
+
   /**
    * This function will wait until all aggregator requests from workers have
    * arrived, and fill the maps for next superstep when ready.
@@ -195,7 +259,19 @@ public class AllAggregatorServerData {
     if (LOG.isDebugEnabled()) {
       LOG.debug("fillNextSuperstepMapsWhenReady: Global data ready");
     }
+    fillNextSuperstepMaps(broadcastedMapToFill, reducerMapToFill);
+  }
 
+  /**
+   * Fill the maps for next superstep, once all aggregator requests have
+   * arrived.
+   *
+   * @param broadcastedMapToFill Broadcast map to fill out
+   * @param reducerMapToFill Registered reducer map to fill out.
+   */
+  public void fillNextSuperstepMaps(
+      Map<String, Writable> broadcastedMapToFill,
+      Map<String, Reducer<Object, Writable>> reducerMapToFill) {
     Preconditions.checkArgument(broadcastedMapToFill.isEmpty(),
         "broadcastedMap needs to be empty for filling");
     Preconditions.checkArgument(reducerMapToFill.isEmpty(),
@@ -211,6 +287,7 @@ public class AllAggregatorServerData {
     broadcastedMap.clear();
     reduceOpMap.clear();
     masterData.clear();
+    parentData.clear();
     if (LOG.isDebugEnabled()) {
       LOG.debug("reset: Ready for next superstep");
     }
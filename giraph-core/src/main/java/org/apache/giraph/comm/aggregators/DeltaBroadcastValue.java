@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.comm.aggregators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.utils.UnsafeByteArrayInputStream;
+import org.apache.giraph.utils.UnsafeByteArrayOutputStream;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Broadcast value sent as the difference from the value broadcast with the
+ * same name in an earlier superstep. Every worker keeps the previous value
+ * and applies the difference to it.
+ */
+public class DeltaBroadcastValue implements Writable {
+  /** Class of the broadcast value */
+  private Class<? extends Writable> valueClass;
+  /** Serialized difference from the previous value */
+  private byte[] delta;
+
+  /** Constructor used for reflection only */
+  public DeltaBroadcastValue() {
+  }
+
+  /**
+   * Create the difference of a value from the previous value, if it's
+   * smaller than the whole value.
+   *
+   * @param value Value to broadcast
+   * @param previous Previous value broadcast with the same name
+   * @return Difference from the previous value, or null if the whole value
+   *         should be broadcast
+   * @throws IOException
+   */
+  public static DeltaBroadcastValue create(DeltaWritable<Writable> value,
+      Writable previous) throws IOException {
+    if (previous == null || previous.getClass() != value.getClass()) {
+      return null;
+    }
+    UnsafeByteArrayOutputStream out = new UnsafeByteArrayOutputStream();
+    if (!value.writeDelta(previous, out)) {
+      return null;
+    }
+    DeltaBroadcastValue deltaValue = new DeltaBroadcastValue();
+    deltaValue.valueClass = value.getClass();
+    deltaValue.delta = out.toByteArray();
+    return deltaValue;
+  }
+
+  /**
+   * Apply the difference to the previous value.
+   *
+   * @param previous Previous value broadcast with the same name
+   * @param conf Configuration
+   * @return Broadcast value
+   */
+  public Writable applyTo(Writable previous,
+      ImmutableClassesGiraphConfiguration conf) {
+    if (previous == null || previous.getClass() != valueClass) {
+      throw new IllegalStateException("applyTo: Previous value " + previous +
+          " doesn't match broadcast difference of " + valueClass);
+    }
+    Writable value = WritableUtils.createWritable(valueClass, conf);
+    try {
+      ((DeltaWritable<Writable>) value).readDelta(previous,
+          new UnsafeByteArrayInputStream(delta));
+    } catch (IOException e) {
+      throw new IllegalStateException("applyTo: IOException occurred", e);
+    }
+    return value;
+  }
+
+  @Override
+  public void write(DataOutput out) throws IOException {
+    WritableUtils.writeClass(valueClass, out);
+    out.writeInt(delta.length);
+    out.write(delta);
+  }
+
+  @Override
+  public void readFields(DataInput in) throws IOException {
+    valueClass = WritableUtils.readClass(in);
+    delta = new byte[in.readInt()];
+    in.readFully(delta);
+  }
+}
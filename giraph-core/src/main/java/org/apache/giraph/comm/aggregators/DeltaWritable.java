@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.comm.aggregators;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Writable;
+
+/**
+ * Writable which can be serialized as the difference from a previous value
+ * of the same type. Broadcasting such values sends only the difference from
+ * the value broadcast with the same name before (when
+ * {@link AggregatorUtils#USE_DELTA_BROADCASTS} is set).
+ *
+ * @param <T> Type of the previous value
+ */
+public interface DeltaWritable<T> extends Writable {
+  /**
+   * Write the difference from the previous value. Nothing is written if the
+   * difference wouldn't be smaller than the whole value.
+   *
+   * @param previous Previous value
+   * @param out Output to write to
+   * @return False if nothing was written and the whole value should be
+   *         written instead
+   * @throws IOException
+   */
+  boolean writeDelta(T previous, DataOutput out) throws IOException;
+
+  /**
+   * Set this object to the previous value with the difference written by
+   * {@link #writeDelta(Object, DataOutput)} applied.
+   *
+   * @param previous Previous value (not modified)
+   * @param in Input to read from
+   * @throws IOException
+   */
+  void readDelta(T previous, DataInput in) throws IOException;
+}
@@ -27,13 +27,14 @@ import org.apache.hadoop.io.Writable;
  */
 public interface WorkerAggregatorRequestProcessor {
   /**
-   * Sends worker reduced value to the owner of reducer
+   * Sends worker reduced value to the owner of reducer, or to the parent of
+   * this worker when reducing in an aggregator tree
    *
    * @param name Name of the reducer
    * @param reducedValue Reduced partial value
    * @throws java.io.IOException
    * @return True if reduced value will be sent, false if this worker is
-   * the owner of the reducer
+   * the owner of the reducer (or the root of the aggregator tree)
    */
   boolean sendReducedValue(String name,
       Writable reducedValue) throws IOException;
@@ -55,7 +56,8 @@ public interface WorkerAggregatorRequestProcessor {
   void sendReducedValuesToMaster(byte[] data) throws IOException;
 
   /**
-   * Sends reduced values to all other workers
+   * Sends reduced values to all other workers, or to the children of this
+   * worker when distributing in an aggregator tree
    *
    * @param reducedDataList Serialized reduced values data split into chunks
    */
@@ -448,6 +448,29 @@ public class CreditBasedFlowControl implements FlowControl {
     return aggregateUnsentRequests.get();
   }
 
+  /**
+   * Whether requests to a given worker are held back, i.e. all credit of the
+   * worker is in use or there are requests to the worker waiting to be sent
+   *
+   * @param taskId id of the worker
+   * @return true iff sending to the worker is currently backpressured
+   */
+  public boolean isBackpressured(int taskId) {
+    Pair<AdjustableSemaphore, Integer> pair =
+        perWorkerOpenRequestMap.get(taskId);
+    if (pair == null) {
+      return false;
+    }
+    Deque<WritableRequest> unsentRequests =
+        perWorkerUnsentRequestMap.get(taskId);
+    synchronized (unsentRequests) {
+      if (!unsentRequests.isEmpty()) {
+        return true;
+      }
+    }
+    return pair.getLeft().availablePermits() == 0;
+  }
+
   @Override
   public void messageAckReceived(int taskId, long requestId, int response) {
     boolean ignoreCredit = shouldIgnoreCredit(response);
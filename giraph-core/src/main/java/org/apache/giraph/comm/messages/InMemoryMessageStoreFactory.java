@@ -21,15 +21,44 @@ package org.apache.giraph.comm.messages;
 import org.apache.giraph.combiner.MessageCombiner;
 import org.apache.giraph.comm.messages.primitives.IdByteArrayMessageStore;
 import org.apache.giraph.comm.messages.primitives.IdOneMessagePerVertexStore;
+import org.apache.giraph.comm.messages.primitives.IntDoubleDenseMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntDoubleMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntDoubleMessagesPerVertexStore;
+import org.apache.giraph.comm.messages.primitives.IntFloatDenseMessageStore;
 import org.apache.giraph.comm.messages.primitives.IntFloatMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntFloatMessagesPerVertexStore;
+import org.apache.giraph.comm.messages.primitives.IntIntDenseMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntIntMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntIntMessagesPerVertexStore;
+import org.apache.giraph.comm.messages.primitives.IntLongDenseMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntLongMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntLongMessagesPerVertexStore;
+import org.apache.giraph.comm.messages.primitives.LongDoubleDenseMessageStore;
 import org.apache.giraph.comm.messages.primitives.LongDoubleMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongDoubleMessagesPerVertexStore;
+import org.apache.giraph.comm.messages.primitives.LongFloatDenseMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongFloatMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongFloatMessagesPerVertexStore;
+import org.apache.giraph.comm.messages.primitives.LongIntDenseMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongIntMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongIntMessagesPerVertexStore;
+import org.apache.giraph.comm.messages.primitives.LongLongDenseMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongLongMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongLongMessagesPerVertexStore;
 import org.apache.giraph.comm.messages.primitives.long_id.LongPointerListPerVertexStore;
 import org.apache.giraph.comm.messages.queue.AsyncMessageStoreWrapper;
 import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.conf.MessageClasses;
 import org.apache.giraph.factories.MessageValueFactory;
+import org.apache.giraph.partition.SimpleIntRangePartitionerFactory;
+import org.apache.giraph.partition.SimpleLongRangePartitionerFactory;
+import org.apache.giraph.types.ops.DoubleTypeOps;
+import org.apache.giraph.types.ops.FloatTypeOps;
+import org.apache.giraph.types.ops.IntTypeOps;
+import org.apache.giraph.types.ops.LongTypeOps;
 import org.apache.giraph.types.ops.PrimitiveIdTypeOps;
+import org.apache.giraph.types.ops.PrimitiveTypeOps;
 import org.apache.giraph.types.ops.TypeOpsUtils;
 import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.FloatWritable;
@@ -39,11 +68,15 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.log4j.Logger;
 
+import java.util.ArrayDeque;
+import java.util.Deque;
+
 /**
  * Message store factory which produces message stores which hold all
  * messages in memory. Depending on whether or not combiner is currently used,
  * this factory creates {@link OneMessagePerVertexStore} or
- * {@link ByteArrayMessagesPerVertexStore}
+ * {@link ByteArrayMessagesPerVertexStore}, or one of the generated primitive
+ * message stores when both vertex ids and messages are primitive writables.
  *
  * @param <I> Vertex id
  * @param <M> Message data
@@ -60,6 +93,11 @@ public class InMemoryMessageStoreFactory<I extends WritableComparable,
   protected PartitionSplitInfo<I> partitionInfo;
   /** Hadoop configuration */
   protected ImmutableClassesGiraphConfiguration<I, ?, ?> conf;
+  /**
+   * Last two dense stores created. The older one was the current store of
+   * the previous superstep, and is cleared before the next one is created.
+   */
+  private final Deque<MessageStore> denseStores = new ArrayDeque<>();
 
   /**
    * Default constructor allowing class invocation via Reflection.
@@ -79,29 +117,41 @@ public class InMemoryMessageStoreFactory<I extends WritableComparable,
       Class<M> messageClass,
       MessageValueFactory<M> messageValueFactory,
       MessageCombiner<? super I, M> messageCombiner) {
-    MessageStore messageStore;
     Class<I> vertexIdClass = conf.getVertexIdClass();
-    if (vertexIdClass.equals(IntWritable.class) &&
-        messageClass.equals(FloatWritable.class)) {
-      messageStore = new IntFloatMessageStore(
-          (PartitionSplitInfo<IntWritable>) partitionInfo,
-          (MessageCombiner<IntWritable, FloatWritable>) messageCombiner);
-    } else if (vertexIdClass.equals(LongWritable.class) &&
-        messageClass.equals(DoubleWritable.class)) {
-      messageStore = new LongDoubleMessageStore(
-          (PartitionSplitInfo<LongWritable>) partitionInfo,
-          (MessageCombiner<LongWritable, DoubleWritable>) messageCombiner);
-    } else {
-      PrimitiveIdTypeOps<I> idTypeOps =
-          TypeOpsUtils.getPrimitiveIdTypeOpsOrNull(vertexIdClass);
-      if (idTypeOps != null) {
-        messageStore = new IdOneMessagePerVertexStore<>(
-          messageValueFactory, partitionInfo, messageCombiner, conf);
-      } else {
-        messageStore = new OneMessagePerVertexStore<I, M>(
-          messageValueFactory, partitionInfo, messageCombiner, conf);
+    PrimitiveIdTypeOps<I> idTypeOps =
+        TypeOpsUtils.getPrimitiveIdTypeOpsOrNull(vertexIdClass);
+    PrimitiveTypeOps<M> messageTypeOps =
+        TypeOpsUtils.getPrimitiveTypeOpsOrNull(messageClass);
+    MessageStore messageStore = null;
+    if (GiraphConstants.USE_DENSE_RANGE_MESSAGE_STORE.get(conf)) {
+      messageStore = newDenseStoreWithCombiner(
+          idTypeOps, messageTypeOps, messageCombiner);
+      if (messageStore != null) {
+        denseStores.addLast(messageStore);
+        if (denseStores.size() > 2) {
+          denseStores.removeFirst();
+        }
       }
     }
+    // Int/float and long/double stores are used regardless of the option
+    if (messageStore == null &&
+        (GiraphConstants.USE_PRIMITIVE_TYPE_MESSAGE_STORES.get(conf) ||
+        (idTypeOps == IntTypeOps.INSTANCE &&
+            messageTypeOps == FloatTypeOps.INSTANCE) ||
+        (idTypeOps == LongTypeOps.INSTANCE &&
+            messageTypeOps == DoubleTypeOps.INSTANCE))) {
+      messageStore = newPrimitiveStoreWithCombiner(
+          idTypeOps, messageTypeOps, messageCombiner);
+    }
+    if (messageStore != null) {
+      return messageStore;
+    } else if (idTypeOps != null) {
+      messageStore = new IdOneMessagePerVertexStore<>(
+        messageValueFactory, partitionInfo, messageCombiner, conf);
+    } else {
+      messageStore = new OneMessagePerVertexStore<I, M>(
+        messageValueFactory, partitionInfo, messageCombiner, conf);
+    }
     return messageStore;
   }
 
@@ -131,7 +181,13 @@ public class InMemoryMessageStoreFactory<I extends WritableComparable,
               MessageEncodeAndStoreType.EXTRACT_BYTEARRAY_PER_PARTITION)) {
         PrimitiveIdTypeOps<I> idTypeOps =
             TypeOpsUtils.getPrimitiveIdTypeOpsOrNull(vertexIdClass);
-        if (idTypeOps != null) {
+        if (GiraphConstants.USE_PRIMITIVE_TYPE_MESSAGE_STORES.get(conf)) {
+          messageStore = newPrimitiveStoreWithoutCombiner(idTypeOps,
+              TypeOpsUtils.getPrimitiveTypeOpsOrNull(messageClass));
+        }
+        if (messageStore != null) {
+          return messageStore;
+        } else if (idTypeOps != null) {
           messageStore = new IdByteArrayMessageStore<>(
               messageValueFactory, partitionInfo, conf);
         } else {
@@ -147,6 +203,196 @@ public class InMemoryMessageStoreFactory<I extends WritableComparable,
     return messageStore;
   }
 
+  /**
+   * Generated dense MessageStore to be used when combiner is enabled and
+   * each partition owns a contiguous range of vertex ids
+   *
+   * @param idTypeOps vertex id type ops, or null if ids aren't primitive
+   * @param messageTypeOps message type ops, or null if messages aren't
+   *                       primitive
+   * @param messageCombiner message combiner
+   * @return message store, or null if there is none for these types
+   */
+  private MessageStore newDenseStoreWithCombiner(
+      PrimitiveIdTypeOps<I> idTypeOps, PrimitiveTypeOps<M> messageTypeOps,
+      MessageCombiner<? super I, M> messageCombiner) {
+    if (idTypeOps == IntTypeOps.INSTANCE) {
+      checkRangePartitioner(SimpleIntRangePartitionerFactory.class);
+      PartitionSplitInfo<IntWritable> intPartitionInfo =
+          (PartitionSplitInfo<IntWritable>) partitionInfo;
+      int keySpaceSize =
+          conf.getInt(GiraphConstants.PARTITION_VERTEX_KEY_SPACE_SIZE, -1);
+      if (messageTypeOps == IntTypeOps.INSTANCE) {
+        return new IntIntDenseMessageStore(intPartitionInfo,
+            (MessageCombiner<IntWritable, IntWritable>) messageCombiner,
+            keySpaceSize, getReleasedStore(IntIntDenseMessageStore.class));
+      } else if (messageTypeOps == LongTypeOps.INSTANCE) {
+        return new IntLongDenseMessageStore(intPartitionInfo,
+            (MessageCombiner<IntWritable, LongWritable>) messageCombiner,
+            keySpaceSize, getReleasedStore(IntLongDenseMessageStore.class));
+      } else if (messageTypeOps == FloatTypeOps.INSTANCE) {
+        return new IntFloatDenseMessageStore(intPartitionInfo,
+            (MessageCombiner<IntWritable, FloatWritable>) messageCombiner,
+            keySpaceSize, getReleasedStore(IntFloatDenseMessageStore.class));
+      } else if (messageTypeOps == DoubleTypeOps.INSTANCE) {
+        return new IntDoubleDenseMessageStore(intPartitionInfo,
+            (MessageCombiner<IntWritable, DoubleWritable>) messageCombiner,
+            keySpaceSize, getReleasedStore(IntDoubleDenseMessageStore.class));
+      }
+    } else if (idTypeOps == LongTypeOps.INSTANCE) {
+      checkRangePartitioner(SimpleLongRangePartitionerFactory.class);
+      PartitionSplitInfo<LongWritable> longPartitionInfo =
+          (PartitionSplitInfo<LongWritable>) partitionInfo;
+      long keySpaceSize =
+          conf.getLong(GiraphConstants.PARTITION_VERTEX_KEY_SPACE_SIZE, -1);
+      if (messageTypeOps == IntTypeOps.INSTANCE) {
+        return new LongIntDenseMessageStore(longPartitionInfo,
+            (MessageCombiner<LongWritable, IntWritable>) messageCombiner,
+            keySpaceSize, getReleasedStore(LongIntDenseMessageStore.class));
+      } else if (messageTypeOps == LongTypeOps.INSTANCE) {
+        return new LongLongDenseMessageStore(longPartitionInfo,
+            (MessageCombiner<LongWritable, LongWritable>) messageCombiner,
+            keySpaceSize, getReleasedStore(LongLongDenseMessageStore.class));
+      } else if (messageTypeOps == FloatTypeOps.INSTANCE) {
+        return new LongFloatDenseMessageStore(longPartitionInfo,
+            (MessageCombiner<LongWritable, FloatWritable>) messageCombiner,
+            keySpaceSize, getReleasedStore(LongFloatDenseMessageStore.class));
+      } else if (messageTypeOps == DoubleTypeOps.INSTANCE) {
+        return new LongDoubleDenseMessageStore(longPartitionInfo,
+            (MessageCombiner<LongWritable, DoubleWritable>) messageCombiner,
+            keySpaceSize, getReleasedStore(LongDoubleDenseMessageStore.class));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Get the dense store whose arrays the next dense store can reuse. It was
+   * cleared if the store created after it became the current store.
+   *
+   * @param storeClass Class of the next dense store
+   * @param <S> Type of the next dense store
+   * @return Store to reuse the arrays of, or null if there is none
+   */
+  private <S extends MessageStore> S getReleasedStore(Class<S> storeClass) {
+    MessageStore store =
+        denseStores.size() < 2 ? null : denseStores.peekFirst();
+    return storeClass.isInstance(store) ? storeClass.cast(store) : null;
+  }
+
+  /**
+   * Check that the graph is partitioned into contiguous ranges of vertex
+   * ids, as dense message stores require.
+   *
+   * @param rangePartitionerClass Range partitioner factory for the id type
+   */
+  private void checkRangePartitioner(Class<?> rangePartitionerClass) {
+    if (!rangePartitionerClass.isAssignableFrom(
+        conf.getGraphPartitionerClass())) {
+      throw new IllegalStateException("checkRangePartitioner: " +
+          GiraphConstants.USE_DENSE_RANGE_MESSAGE_STORE.getKey() +
+          " requires " + rangePartitionerClass.getSimpleName() +
+          ", but " + conf.getGraphPartitionerClass().getSimpleName() +
+          " is used");
+    }
+  }
+
+  /**
+   * Generated primitive MessageStore to be used when combiner is enabled
+   *
+   * @param idTypeOps vertex id type ops, or null if ids aren't primitive
+   * @param messageTypeOps message type ops, or null if messages aren't
+   *                       primitive
+   * @param messageCombiner message combiner
+   * @return message store, or null if there is none for these types
+   */
+  private MessageStore newPrimitiveStoreWithCombiner(
+      PrimitiveIdTypeOps<I> idTypeOps, PrimitiveTypeOps<M> messageTypeOps,
+      MessageCombiner<? super I, M> messageCombiner) {
+    boolean preCombine =
+        GiraphConstants.PRE_COMBINE_PARTITION_MESSAGES.get(conf);
+    if (idTypeOps == IntTypeOps.INSTANCE) {
+      PartitionSplitInfo<IntWritable> intPartitionInfo =
+          (PartitionSplitInfo<IntWritable>) partitionInfo;
+      if (messageTypeOps == IntTypeOps.INSTANCE) {
+        return new IntIntMessageStore(intPartitionInfo,
+            (MessageCombiner<IntWritable, IntWritable>) messageCombiner,
+            preCombine);
+      } else if (messageTypeOps == LongTypeOps.INSTANCE) {
+        return new IntLongMessageStore(intPartitionInfo,
+            (MessageCombiner<IntWritable, LongWritable>) messageCombiner,
+            preCombine);
+      } else if (messageTypeOps == FloatTypeOps.INSTANCE) {
+        return new IntFloatMessageStore(intPartitionInfo,
+            (MessageCombiner<IntWritable, FloatWritable>) messageCombiner,
+            preCombine);
+      } else if (messageTypeOps == DoubleTypeOps.INSTANCE) {
+        return new IntDoubleMessageStore(intPartitionInfo,
+            (MessageCombiner<IntWritable, DoubleWritable>) messageCombiner,
+            preCombine);
+      }
+    } else if (idTypeOps == LongTypeOps.INSTANCE) {
+      PartitionSplitInfo<LongWritable> longPartitionInfo =
+          (PartitionSplitInfo<LongWritable>) partitionInfo;
+      if (messageTypeOps == IntTypeOps.INSTANCE) {
+        return new LongIntMessageStore(longPartitionInfo,
+            (MessageCombiner<LongWritable, IntWritable>) messageCombiner,
+            preCombine);
+      } else if (messageTypeOps == LongTypeOps.INSTANCE) {
+        return new LongLongMessageStore(longPartitionInfo,
+            (MessageCombiner<LongWritable, LongWritable>) messageCombiner,
+            preCombine);
+      } else if (messageTypeOps == FloatTypeOps.INSTANCE) {
+        return new LongFloatMessageStore(longPartitionInfo,
+            (MessageCombiner<LongWritable, FloatWritable>) messageCombiner,
+            preCombine);
+      } else if (messageTypeOps == DoubleTypeOps.INSTANCE) {
+        return new LongDoubleMessageStore(longPartitionInfo,
+            (MessageCombiner<LongWritable, DoubleWritable>) messageCombiner,
+            preCombine);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Generated primitive MessageStore to be used when combiner is not enabled
+   *
+   * @param idTypeOps vertex id type ops, or null if ids aren't primitive
+   * @param messageTypeOps message type ops, or null if messages aren't
+   *                       primitive
+   * @return message store, or null if there is none for these types
+   */
+  private MessageStore newPrimitiveStoreWithoutCombiner(
+      PrimitiveIdTypeOps<I> idTypeOps, PrimitiveTypeOps<M> messageTypeOps) {
+    if (idTypeOps == IntTypeOps.INSTANCE) {
+      PartitionSplitInfo<IntWritable> intPartitionInfo =
+          (PartitionSplitInfo<IntWritable>) partitionInfo;
+      if (messageTypeOps == IntTypeOps.INSTANCE) {
+        return new IntIntMessagesPerVertexStore(intPartitionInfo);
+      } else if (messageTypeOps == LongTypeOps.INSTANCE) {
+        return new IntLongMessagesPerVertexStore(intPartitionInfo);
+      } else if (messageTypeOps == FloatTypeOps.INSTANCE) {
+        return new IntFloatMessagesPerVertexStore(intPartitionInfo);
+      } else if (messageTypeOps == DoubleTypeOps.INSTANCE) {
+        return new IntDoubleMessagesPerVertexStore(intPartitionInfo);
+      }
+    } else if (idTypeOps == LongTypeOps.INSTANCE) {
+      PartitionSplitInfo<LongWritable> longPartitionInfo =
+          (PartitionSplitInfo<LongWritable>) partitionInfo;
+      if (messageTypeOps == IntTypeOps.INSTANCE) {
+        return new LongIntMessagesPerVertexStore(longPartitionInfo);
+      } else if (messageTypeOps == LongTypeOps.INSTANCE) {
+        return new LongLongMessagesPerVertexStore(longPartitionInfo);
+      } else if (messageTypeOps == FloatTypeOps.INSTANCE) {
+        return new LongFloatMessagesPerVertexStore(longPartitionInfo);
+      } else if (messageTypeOps == DoubleTypeOps.INSTANCE) {
+        return new LongDoubleMessagesPerVertexStore(longPartitionInfo);
+      }
+    }
+    return null;
+  }
+
   @Override
   public MessageStore<I, M> newStore(
       MessageClasses<I, M> messageClasses) {
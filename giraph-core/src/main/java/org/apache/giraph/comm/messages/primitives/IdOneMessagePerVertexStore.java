@@ -31,6 +31,7 @@ import java.util.List;
 import org.apache.giraph.combiner.MessageCombiner;
 import org.apache.giraph.comm.messages.MessageStore;
 import org.apache.giraph.comm.messages.PartitionSplitInfo;
+import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.factories.MessageValueFactory;
 import org.apache.giraph.types.ops.PrimitiveIdTypeOps;
@@ -68,6 +69,16 @@ public class IdOneMessagePerVertexStore<I extends WritableComparable,
   private final ImmutableClassesGiraphConfiguration<I, ?, ?> config;
   /** Vertex id TypeOps */
   private final PrimitiveIdTypeOps<I> idTypeOps;
+  /** Whether to combine each batch of messages before storing it */
+  private final boolean preCombine;
+  /** Per-thread map to combine a batch of messages in */
+  private final ThreadLocal<Basic2ObjectMap<I, M>> batchMaps =
+      new ThreadLocal<Basic2ObjectMap<I, M>>() {
+        @Override
+        protected Basic2ObjectMap<I, M> initialValue() {
+          return idTypeOps.create2ObjectOpenHashMap(messageWriter);
+        }
+      };
   /** WritableWriter for values in this message store */
   private final WritableWriter<M> messageWriter = new WritableWriter<M>() {
     @Override
@@ -102,6 +113,7 @@ public class IdOneMessagePerVertexStore<I extends WritableComparable,
     this.messageCombiner = messageCombiner;
 
     idTypeOps = TypeOpsUtils.getPrimitiveIdTypeOps(config.getVertexIdClass());
+    preCombine = GiraphConstants.PRE_COMBINE_PARTITION_MESSAGES.get(config);
 
     map = new Int2ObjectOpenHashMap<>();
     for (int partitionId : partitionInfo.getPartitionIds()) {
@@ -128,28 +140,60 @@ public class IdOneMessagePerVertexStore<I extends WritableComparable,
       int partitionId,
       VertexIdMessages<I, M> messages) {
     Basic2ObjectMap<I, M> partitionMap = map.get(partitionId);
+    VertexIdMessageIterator<I, M>
+        iterator = messages.getVertexIdMessageIterator();
+    if (!preCombine) {
+      synchronized (partitionMap) {
+        while (iterator.hasNext()) {
+          iterator.next();
+          combine(partitionMap, iterator.getCurrentVertexId(),
+              iterator.getCurrentMessage());
+        }
+      }
+      return;
+    }
+
+    // Combine the batch outside of the lock, so the partition map is only
+    // hashed into and locked once per target vertex
+    Basic2ObjectMap<I, M> batchMap = batchMaps.get();
+    while (iterator.hasNext()) {
+      iterator.next();
+      combine(batchMap, iterator.getCurrentVertexId(),
+          iterator.getCurrentMessage());
+    }
+    Iterator<I> batchIterator = batchMap.fastKeyIterator();
     synchronized (partitionMap) {
-      VertexIdMessageIterator<I, M>
-          iterator = messages.getVertexIdMessageIterator();
-      // This loop is a little complicated as it is optimized to only create
-      // the minimal amount of vertex id and message objects as possible.
-      while (iterator.hasNext()) {
-        iterator.next();
-        I vertexId = iterator.getCurrentVertexId();
-        M currentMessage =
-            partitionMap.get(iterator.getCurrentVertexId());
+      while (batchIterator.hasNext()) {
+        I vertexId = batchIterator.next();
+        M batchMessage = batchMap.get(vertexId);
+        M currentMessage = partitionMap.get(vertexId);
         if (currentMessage == null) {
-          M newMessage = messageCombiner.createInitialMessage();
-          currentMessage = partitionMap.put(
-              iterator.getCurrentVertexId(), newMessage);
-          if (currentMessage == null) {
-            currentMessage = newMessage;
-          }
+          // Messages combined in the batch are not reused, so they can be
+          // moved to the store
+          partitionMap.put(vertexId, batchMessage);
+        } else {
+          messageCombiner.combine(vertexId, currentMessage, batchMessage);
         }
-        messageCombiner.combine(vertexId, currentMessage,
-          iterator.getCurrentMessage());
       }
     }
+    batchMap.clear();
+  }
+
+  /**
+   * Combine a message into the messages held in a map.
+   *
+   * @param messageMap Map from vertex id to message
+   * @param vertexId Target vertex id
+   * @param message Message to combine
+   */
+  private void combine(Basic2ObjectMap<I, M> messageMap, I vertexId,
+      M message) {
+    M currentMessage = messageMap.get(vertexId);
+    if (currentMessage == null) {
+      currentMessage = messageCombiner.createInitialMessage();
+      messageMap.put(vertexId, currentMessage);
+    }
+    messageCombiner.combine(vertexId, currentMessage, message);
   }
 
   /**
@@ -0,0 +1,315 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages.primitives;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleMap;
+import it.unimi.dsi.fastutil.ints.Int2DoubleOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.giraph.combiner.MessageCombiner;
+import org.apache.giraph.comm.messages.MessageStore;
+import org.apache.giraph.comm.messages.PartitionSplitInfo;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.utils.EmptyIterable;
+import org.apache.giraph.utils.VertexIdMessageIterator;
+import org.apache.giraph.utils.VertexIdMessages;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.DoubleWritable;
+
+import com.google.common.collect.Lists;
+
+// AUTO-GENERATED class via class:
+// org.apache.giraph.generate.GeneratePrimitiveClasses
+
+/**
+ * Special message store to be used when ids are IntWritable and
+ * messages are DoubleWritable and messageCombiner is used.
+ * Uses fastutil primitive maps in order to decrease number of objects and
+ * get better performance.
+ */
+public class IntDoubleMessageStore
+    implements MessageStore<IntWritable, DoubleWritable> {
+  /** Map from partition id to map from vertex id to message */
+  private final
+  Int2ObjectOpenHashMap<Int2DoubleOpenHashMap> map;
+  /** Message messageCombiner */
+  private final MessageCombiner<? super IntWritable,
+      DoubleWritable> messageCombiner;
+  /** Partition split info */
+  private final PartitionSplitInfo<IntWritable> partitionInfo;
+  /** Whether to combine each batch of messages before storing it */
+  private final boolean preCombine;
+  /** Per-thread map to combine a batch of messages in */
+  private final
+  ThreadLocal<Int2DoubleOpenHashMap> batchMaps =
+      new ThreadLocal<Int2DoubleOpenHashMap>() {
+        @Override
+        protected Int2DoubleOpenHashMap initialValue() {
+          return new Int2DoubleOpenHashMap();
+        }
+      };
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   * @param messageCombiner Message messageCombiner
+   */
+  public IntDoubleMessageStore(
+    PartitionSplitInfo<IntWritable> partitionInfo,
+    MessageCombiner<? super IntWritable,
+        DoubleWritable> messageCombiner
+  ) {
+    this(partitionInfo, messageCombiner,
+        GiraphConstants.PRE_COMBINE_PARTITION_MESSAGES.getDefaultValue());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   * @param messageCombiner Message messageCombiner
+   * @param preCombine Whether to combine each batch of messages in a
+   *                   thread-local map before storing it
+   */
+  public IntDoubleMessageStore(
+    PartitionSplitInfo<IntWritable> partitionInfo,
+    MessageCombiner<? super IntWritable,
+        DoubleWritable> messageCombiner,
+    boolean preCombine
+  ) {
+    this.partitionInfo = partitionInfo;
+    this.messageCombiner = messageCombiner;
+    this.preCombine = preCombine;
+
+    map = new Int2ObjectOpenHashMap<Int2DoubleOpenHashMap>();
+    for (int partitionId : partitionInfo.getPartitionIds()) {
+      Int2DoubleOpenHashMap partitionMap =
+          new Int2DoubleOpenHashMap(
+              (int) partitionInfo.getPartitionVertexCount(partitionId));
+      map.put(partitionId, partitionMap);
+    }
+  }
+
+  @Override
+  public boolean isPointerListEncoding() {
+    return false;
+  }
+
+  /**
+   * Get map which holds messages for partition which vertex belongs to.
+   *
+   * @param vertexId Id of the vertex
+   * @return Map which holds messages for partition which vertex belongs to.
+   */
+  private Int2DoubleOpenHashMap getPartitionMap(
+      IntWritable vertexId) {
+    return map.get(partitionInfo.getPartitionId(vertexId));
+  }
+
+  /**
+   * Combine a message into the messages held in a map.
+   *
+   * @param messageMap Map from vertex id to message
+   * @param vertexId Target vertex id
+   * @param message Message to combine
+   * @param reusableVertexId Reusable vertex id object
+   * @param reusableMessage Reusable message object
+   * @param reusableCurrentMessage Reusable message object
+   */
+  private void combine(Int2DoubleOpenHashMap messageMap,
+      int vertexId, double message,
+      IntWritable reusableVertexId,
+      DoubleWritable reusableMessage,
+      DoubleWritable reusableCurrentMessage) {
+    if (messageMap.containsKey(vertexId)) {
+      reusableVertexId.set(vertexId);
+      reusableMessage.set(message);
+      reusableCurrentMessage.set(messageMap.get(vertexId));
+      messageCombiner.combine(reusableVertexId, reusableCurrentMessage,
+          reusableMessage);
+      message = reusableCurrentMessage.get();
+    }
+    // FIXME: messageCombiner should create an initial message instead
+    messageMap.put(vertexId, message);
+  }
+
+  @Override
+  public void addPartitionMessages(int partitionId,
+      VertexIdMessages<IntWritable,
+          DoubleWritable> messages) {
+    IntWritable reusableVertexId = new IntWritable();
+    DoubleWritable reusableMessage = new DoubleWritable();
+    DoubleWritable reusableCurrentMessage =
+        new DoubleWritable();
+
+    Int2DoubleOpenHashMap partitionMap =
+        map.get(partitionId);
+    VertexIdMessageIterator<IntWritable,
+        DoubleWritable> iterator =
+        messages.getVertexIdMessageIterator();
+    if (!preCombine) {
+      synchronized (partitionMap) {
+        while (iterator.hasNext()) {
+          iterator.next();
+          combine(partitionMap, iterator.getCurrentVertexId().get(),
+              iterator.getCurrentMessage().get(), reusableVertexId,
+              reusableMessage, reusableCurrentMessage);
+        }
+      }
+      return;
+    }
+
+    // Combine the batch outside of the lock, so the partition map is only
+    // hashed into and locked once per target vertex
+    Int2DoubleOpenHashMap batchMap = batchMaps.get();
+    while (iterator.hasNext()) {
+      iterator.next();
+      combine(batchMap, iterator.getCurrentVertexId().get(),
+          iterator.getCurrentMessage().get(), reusableVertexId,
+          reusableMessage, reusableCurrentMessage);
+    }
+    ObjectIterator<Int2DoubleMap.Entry> batchIterator =
+        batchMap.int2DoubleEntrySet().fastIterator();
+    synchronized (partitionMap) {
+      while (batchIterator.hasNext()) {
+        Int2DoubleMap.Entry entry = batchIterator.next();
+        combine(partitionMap, entry.getIntKey(),
+            entry.getDoubleValue(), reusableVertexId, reusableMessage,
+            reusableCurrentMessage);
+      }
+    }
+    int batchSize = batchMap.size();
+    batchMap.clear();
+    batchMap.trim(batchSize);
+  }
+
+  @Override
+  public void addMessage(
+    IntWritable vertexId,
+    DoubleWritable message
+  ) throws IOException {
+    Int2DoubleOpenHashMap partitionMap =
+        getPartitionMap(vertexId);
+    synchronized (partitionMap) {
+      double originalValue = partitionMap.get(vertexId.get());
+      DoubleWritable originalMessage =
+          new DoubleWritable(originalValue);
+      messageCombiner.combine(vertexId, originalMessage, message);
+      partitionMap.put(vertexId.get(), originalMessage.get());
+    }
+  }
+
+  @Override
+  public void finalizeStore() {
+  }
+
+  @Override
+  public void clearPartition(int partitionId) {
+    map.get(partitionId).clear();
+  }
+
+  @Override
+  public boolean hasMessagesForVertex(IntWritable vertexId) {
+    return getPartitionMap(vertexId).containsKey(vertexId.get());
+  }
+
+  @Override
+  public boolean hasMessagesForPartition(int partitionId) {
+    Int2DoubleOpenHashMap partitionMessages =
+        map.get(partitionId);
+    return partitionMessages != null && !partitionMessages.isEmpty();
+  }
+
+  @Override
+  public Iterable<DoubleWritable> getVertexMessages(
+      IntWritable vertexId) {
+    Int2DoubleOpenHashMap partitionMap =
+        getPartitionMap(vertexId);
+    if (!partitionMap.containsKey(vertexId.get())) {
+      return EmptyIterable.get();
+    } else {
+      return Collections.singleton(
+          new DoubleWritable(partitionMap.get(vertexId.get())));
+    }
+  }
+
+  @Override
+  public void clearVertexMessages(IntWritable vertexId) {
+    getPartitionMap(vertexId).remove(vertexId.get());
+  }
+
+  @Override
+  public void clearAll() {
+    map.clear();
+  }
+
+  @Override
+  public Iterable<IntWritable> getPartitionDestinationVertices(
+      int partitionId) {
+    Int2DoubleOpenHashMap partitionMap =
+        map.get(partitionId);
+    List<IntWritable> vertices =
+        Lists.newArrayListWithCapacity(partitionMap.size());
+    IntIterator iterator = partitionMap.keySet().iterator();
+    while (iterator.hasNext()) {
+      vertices.add(new IntWritable(iterator.nextInt()));
+    }
+    return vertices;
+  }
+
+  @Override
+  public void writePartition(DataOutput out,
+      int partitionId) throws IOException {
+    Int2DoubleOpenHashMap partitionMap =
+        map.get(partitionId);
+    out.writeInt(partitionMap.size());
+    ObjectIterator<Int2DoubleMap.Entry> iterator =
+        partitionMap.int2DoubleEntrySet().fastIterator();
+    while (iterator.hasNext()) {
+      Int2DoubleMap.Entry entry = iterator.next();
+      out.writeInt(entry.getIntKey());
+      out.writeDouble(entry.getDoubleValue());
+    }
+  }
+
+  @Override
+  public void readFieldsForPartition(DataInput in,
+      int partitionId) throws IOException {
+    int size = in.readInt();
+    Int2DoubleOpenHashMap partitionMap =
+        new Int2DoubleOpenHashMap(size);
+    while (size-- > 0) {
+      int vertexId = in.readInt();
+      double message = in.readDouble();
+      partitionMap.put(vertexId, message);
+    }
+    synchronized (map) {
+      map.put(partitionId, partitionMap);
+    }
+  }
+}
@@ -0,0 +1,401 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages.primitives;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.giraph.combiner.MessageCombiner;
+import org.apache.giraph.comm.messages.MessageStore;
+import org.apache.giraph.comm.messages.PartitionSplitInfo;
+import org.apache.giraph.utils.EmptyIterable;
+import org.apache.giraph.utils.VertexIdMessageIterator;
+import org.apache.giraph.utils.VertexIdMessages;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.FloatWritable;
+
+import com.google.common.collect.Lists;
+
+// AUTO-GENERATED class via class:
+// org.apache.giraph.generate.GeneratePrimitiveClasses
+
+/**
+ * Special message store to be used when ids are IntWritable and
+ * messages are FloatWritable, messageCombiner is used and each
+ * partition owns a contiguous range of vertex ids, as with range
+ * partitioners.
+ * Messages are kept in a flat array per partition indexed by the offset of
+ * the vertex id in the partition range, so combining a message is a single
+ * array update with no hashing.
+ * The arrays take memory for every vertex id in the range of each
+ * partition, whether the vertex gets messages or not. They are reused by
+ * the store created after this one is cleared with {@link #clearAll()}, so
+ * they aren't allocated again every superstep.
+ */
+public class IntFloatDenseMessageStore
+    implements MessageStore<IntWritable, FloatWritable> {
+  /** Map from partition id to messages of the partition */
+  private final Int2ObjectOpenHashMap<PartitionMessages> map;
+  /** Message messageCombiner */
+  private final MessageCombiner<? super IntWritable,
+      FloatWritable> messageCombiner;
+  /** Partition split info */
+  private final PartitionSplitInfo<IntWritable> partitionInfo;
+  /** All vertex ids are within [0, keySpaceSize) */
+  private final int keySpaceSize;
+  /** Messages of the partitions released by clearAll, to be reused */
+  private Int2ObjectOpenHashMap<PartitionMessages> releasedMap;
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   * @param messageCombiner Message messageCombiner
+   * @param keySpaceSize Vertex id key space size
+   */
+  public IntFloatDenseMessageStore(
+    PartitionSplitInfo<IntWritable> partitionInfo,
+    MessageCombiner<? super IntWritable,
+        FloatWritable> messageCombiner,
+    int keySpaceSize
+  ) {
+    this(partitionInfo, messageCombiner, keySpaceSize, null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   * @param messageCombiner Message messageCombiner
+   * @param keySpaceSize Vertex id key space size
+   * @param releasedStore Store whose arrays are reused if it was cleared
+   *                      with {@link #clearAll()}, or null
+   */
+  public IntFloatDenseMessageStore(
+    PartitionSplitInfo<IntWritable> partitionInfo,
+    MessageCombiner<? super IntWritable,
+        FloatWritable> messageCombiner,
+    int keySpaceSize,
+    IntFloatDenseMessageStore releasedStore
+  ) {
+    this.partitionInfo = partitionInfo;
+    this.messageCombiner = messageCombiner;
+    this.keySpaceSize = keySpaceSize;
+
+    Int2ObjectOpenHashMap<PartitionMessages> released =
+        releasedStore == null ? null : releasedStore.takeReleasedMap();
+    map = new Int2ObjectOpenHashMap<PartitionMessages>();
+    for (int partitionId : partitionInfo.getPartitionIds()) {
+      map.put(partitionId, createPartitionMessages(partitionId,
+          released == null ? null : released.get(partitionId)));
+    }
+  }
+
+  /**
+   * Take the messages of the partitions released by {@link #clearAll()}.
+   *
+   * @return Map from partition id to released messages, or null if the
+   *         store wasn't cleared or they were already taken
+   */
+  private Int2ObjectOpenHashMap<PartitionMessages> takeReleasedMap() {
+    synchronized (map) {
+      Int2ObjectOpenHashMap<PartitionMessages> released = releasedMap;
+      releasedMap = null;
+      return released;
+    }
+  }
+
+  /**
+   * Find the first vertex id in [0, keySpaceSize) which belongs to the
+   * partition or to any partition after it. Range partitioners assign
+   * increasing vertex ids to increasing partition ids, so this is a binary
+   * search over the key space.
+   *
+   * @param partitionId Partition id
+   * @return First vertex id of the partition range
+   */
+  private int findRangeStart(int partitionId) {
+    IntWritable reusableVertexId = new IntWritable();
+    int low = 0;
+    int high = keySpaceSize;
+    while (low < high) {
+      int mid = low + (high - low) / 2;
+      reusableVertexId.set(mid);
+      if (partitionInfo.getPartitionId(reusableVertexId) < partitionId) {
+        low = mid + 1;
+      } else {
+        high = mid;
+      }
+    }
+    return low;
+  }
+
+  /**
+   * Create empty messages for a partition, sized to its vertex id range.
+   *
+   * @param partitionId Partition id
+   * @param reusable Messages to reuse if they cover the same range, or null
+   * @return Partition messages
+   */
+  private PartitionMessages createPartitionMessages(int partitionId,
+      PartitionMessages reusable) {
+    int rangeStart = findRangeStart(partitionId);
+    int rangeSize = findRangeStart(partitionId + 1) - rangeStart;
+    if (rangeSize > Integer.MAX_VALUE) {
+      throw new IllegalStateException("createPartitionMessages: Partition " +
+          partitionId + " has " + rangeSize + " vertex ids, which is more " +
+          "than an array can hold");
+    }
+    if (reusable != null && reusable.rangeStart == rangeStart &&
+        reusable.messages.length == rangeSize) {
+      // Messages are only read where the bit is set
+      reusable.hasMessage.clear();
+      return reusable;
+    }
+    return new PartitionMessages(rangeStart, (int) rangeSize);
+  }
+
+  @Override
+  public boolean isPointerListEncoding() {
+    return false;
+  }
+
+  /**
+   * Get messages of partition which vertex belongs to.
+   *
+   * @param vertexId Id of the vertex
+   * @return Messages of partition which vertex belongs to.
+   */
+  private PartitionMessages getPartitionMessages(
+      IntWritable vertexId) {
+    return map.get(partitionInfo.getPartitionId(vertexId));
+  }
+
+  /**
+   * Get the index of a vertex in the message array of its partition.
+   *
+   * @param partitionMessages Messages of the partition of the vertex
+   * @param vertexId Id of the vertex
+   * @return Index of the vertex
+   */
+  private int getIndex(PartitionMessages partitionMessages,
+      int vertexId) {
+    int index = vertexId - partitionMessages.rangeStart;
+    if (index < 0 || index >= partitionMessages.messages.length) {
+      throw new IllegalStateException("getIndex: Vertex id " + vertexId +
+          " is outside of the id range of its partition, all vertex ids " +
+          "need to be within [0, " + keySpaceSize + ")");
+    }
+    return (int) index;
+  }
+
+  /**
+   * Combine a message into the messages of a partition.
+   *
+   * @param partitionMessages Messages of the partition
+   * @param vertexId Target vertex id
+   * @param message Message to combine
+   * @param reusableVertexId Reusable vertex id object
+   * @param reusableMessage Reusable message object
+   * @param reusableCurrentMessage Reusable message object
+   */
+  private void combine(PartitionMessages partitionMessages,
+      int vertexId, float message,
+      IntWritable reusableVertexId,
+      FloatWritable reusableMessage,
+      FloatWritable reusableCurrentMessage) {
+    int index = getIndex(partitionMessages, vertexId);
+    if (partitionMessages.hasMessage.get(index)) {
+      reusableVertexId.set(vertexId);
+      reusableMessage.set(message);
+      reusableCurrentMessage.set(partitionMessages.messages[index]);
+      messageCombiner.combine(reusableVertexId, reusableCurrentMessage,
+          reusableMessage);
+      partitionMessages.messages[index] = reusableCurrentMessage.get();
+    } else {
+      // FIXME: messageCombiner should create an initial message instead
+      partitionMessages.messages[index] = message;
+      partitionMessages.hasMessage.set(index);
+    }
+  }
+
+  @Override
+  public void addPartitionMessages(int partitionId,
+      VertexIdMessages<IntWritable,
+          FloatWritable> messages) {
+    IntWritable reusableVertexId = new IntWritable();
+    FloatWritable reusableMessage = new FloatWritable();
+    FloatWritable reusableCurrentMessage =
+        new FloatWritable();
+
+    PartitionMessages partitionMessages = map.get(partitionId);
+    VertexIdMessageIterator<IntWritable,
+        FloatWritable> iterator =
+        messages.getVertexIdMessageIterator();
+    synchronized (partitionMessages) {
+      while (iterator.hasNext()) {
+        iterator.next();
+        combine(partitionMessages, iterator.getCurrentVertexId().get(),
+            iterator.getCurrentMessage().get(), reusableVertexId,
+            reusableMessage, reusableCurrentMessage);
+      }
+    }
+  }
+
+  @Override
+  public void addMessage(
+    IntWritable vertexId,
+    FloatWritable message
+  ) throws IOException {
+    PartitionMessages partitionMessages = getPartitionMessages(vertexId);
+    synchronized (partitionMessages) {
+      combine(partitionMessages, vertexId.get(), message.get(),
+          new IntWritable(), new FloatWritable(),
+          new FloatWritable());
+    }
+  }
+
+  @Override
+  public void finalizeStore() {
+  }
+
+  @Override
+  public void clearPartition(int partitionId) {
+    map.get(partitionId).hasMessage.clear();
+  }
+
+  @Override
+  public boolean hasMessagesForVertex(IntWritable vertexId) {
+    PartitionMessages partitionMessages = getPartitionMessages(vertexId);
+    return partitionMessages.hasMessage.get(
+        getIndex(partitionMessages, vertexId.get()));
+  }
+
+  @Override
+  public boolean hasMessagesForPartition(int partitionId) {
+    PartitionMessages partitionMessages = map.get(partitionId);
+    return partitionMessages != null &&
+        !partitionMessages.hasMessage.isEmpty();
+  }
+
+  @Override
+  public Iterable<FloatWritable> getVertexMessages(
+      IntWritable vertexId) {
+    PartitionMessages partitionMessages = getPartitionMessages(vertexId);
+    int index = getIndex(partitionMessages, vertexId.get());
+    if (!partitionMessages.hasMessage.get(index)) {
+      return EmptyIterable.get();
+    } else {
+      return Collections.singleton(
+          new FloatWritable(partitionMessages.messages[index]));
+    }
+  }
+
+  @Override
+  public void clearVertexMessages(IntWritable vertexId) {
+    PartitionMessages partitionMessages = getPartitionMessages(vertexId);
+    partitionMessages.hasMessage.clear(
+        getIndex(partitionMessages, vertexId.get()));
+  }
+
+  @Override
+  public void clearAll() {
+    synchronized (map) {
+      releasedMap = new Int2ObjectOpenHashMap<PartitionMessages>(map);
+      map.clear();
+    }
+  }
+
+  @Override
+  public Iterable<IntWritable> getPartitionDestinationVertices(
+      int partitionId) {
+    PartitionMessages partitionMessages = map.get(partitionId);
+    List<IntWritable> vertices = Lists.newArrayListWithCapacity(
+        partitionMessages.hasMessage.cardinality());
+    for (int index = partitionMessages.hasMessage.nextSetBit(0); index >= 0;
+         index = partitionMessages.hasMessage.nextSetBit(index + 1)) {
+      vertices.add(new IntWritable(
+          partitionMessages.rangeStart + index));
+    }
+    return vertices;
+  }
+
+  @Override
+  public void writePartition(DataOutput out,
+      int partitionId) throws IOException {
+    PartitionMessages partitionMessages = map.get(partitionId);
+    out.writeInt(partitionMessages.hasMessage.cardinality());
+    for (int index = partitionMessages.hasMessage.nextSetBit(0); index >= 0;
+         index = partitionMessages.hasMessage.nextSetBit(index + 1)) {
+      out.writeInt(partitionMessages.rangeStart + index);
+      out.writeFloat(partitionMessages.messages[index]);
+    }
+  }
+
+  @Override
+  public void readFieldsForPartition(DataInput in,
+      int partitionId) throws IOException {
+    int size = in.readInt();
+    PartitionMessages partitionMessages;
+    synchronized (map) {
+      partitionMessages =
+          createPartitionMessages(partitionId, map.get(partitionId));
+    }
+    while (size-- > 0) {
+      int vertexId = in.readInt();
+      int index = getIndex(partitionMessages, vertexId);
+      partitionMessages.messages[index] = in.readFloat();
+      partitionMessages.hasMessage.set(index);
+    }
+    synchronized (map) {
+      map.put(partitionId, partitionMessages);
+    }
+  }
+
+  /**
+   * Messages of a partition, indexed by the offset of the vertex id from
+   * the start of the partition range.
+   */
+  private static class PartitionMessages {
+    /** First vertex id of the partition range */
+    private final int rangeStart;
+    /** Message of each vertex in the range */
+    private final float[] messages;
+    /** Which vertices in the range have a message */
+    private final BitSet hasMessage;
+
+    /**
+     * Constructor
+     *
+     * @param rangeStart First vertex id of the partition range
+     * @param rangeSize Number of vertex ids in the partition range
+     */
+    PartitionMessages(int rangeStart, int rangeSize) {
+      this.rangeStart = rangeStart;
+      messages = new float[rangeSize];
+      hasMessage = new BitSet(rangeSize);
+    }
+  }
+}
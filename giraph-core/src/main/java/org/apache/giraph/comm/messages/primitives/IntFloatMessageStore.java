@@ -18,11 +18,9 @@
 
 package org.apache.giraph.comm.messages.primitives;
 
-import com.google.common.collect.Lists;
-
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.Int2FloatMap;
 import it.unimi.dsi.fastutil.ints.Int2FloatOpenHashMap;
-import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
 import it.unimi.dsi.fastutil.ints.IntIterator;
 import it.unimi.dsi.fastutil.objects.ObjectIterator;
 
@@ -35,45 +33,84 @@ import java.util.List;
 import org.apache.giraph.combiner.MessageCombiner;
 import org.apache.giraph.comm.messages.MessageStore;
 import org.apache.giraph.comm.messages.PartitionSplitInfo;
+import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.utils.EmptyIterable;
 import org.apache.giraph.utils.VertexIdMessageIterator;
 import org.apache.giraph.utils.VertexIdMessages;
-import org.apache.hadoop.io.FloatWritable;
 import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.FloatWritable;
+
+import com.google.common.collect.Lists;
+
+// AUTO-GENERATED class via class:
+// org.apache.giraph.generate.GeneratePrimitiveClasses
 
 /**
- * Special message store to be used when ids are IntWritable and messages
- * are FloatWritable and messageCombiner is used.
+ * Special message store to be used when ids are IntWritable and
+ * messages are FloatWritable and messageCombiner is used.
  * Uses fastutil primitive maps in order to decrease number of objects and
  * get better performance.
  */
 public class IntFloatMessageStore
     implements MessageStore<IntWritable, FloatWritable> {
   /** Map from partition id to map from vertex id to message */
-  private final Int2ObjectOpenHashMap<Int2FloatOpenHashMap> map;
-  /** Message messageCombiner */
   private final
-  MessageCombiner<? super IntWritable, FloatWritable> messageCombiner;
+  Int2ObjectOpenHashMap<Int2FloatOpenHashMap> map;
+  /** Message messageCombiner */
+  private final MessageCombiner<? super IntWritable,
+      FloatWritable> messageCombiner;
   /** Partition split info */
   private final PartitionSplitInfo<IntWritable> partitionInfo;
+  /** Whether to combine each batch of messages before storing it */
+  private final boolean preCombine;
+  /** Per-thread map to combine a batch of messages in */
+  private final
+  ThreadLocal<Int2FloatOpenHashMap> batchMaps =
+      new ThreadLocal<Int2FloatOpenHashMap>() {
+        @Override
+        protected Int2FloatOpenHashMap initialValue() {
+          return new Int2FloatOpenHashMap();
+        }
+      };
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   * @param messageCombiner Message messageCombiner
+   */
+  public IntFloatMessageStore(
+    PartitionSplitInfo<IntWritable> partitionInfo,
+    MessageCombiner<? super IntWritable,
+        FloatWritable> messageCombiner
+  ) {
+    this(partitionInfo, messageCombiner,
+        GiraphConstants.PRE_COMBINE_PARTITION_MESSAGES.getDefaultValue());
+  }
 
   /**
    * Constructor
    *
    * @param partitionInfo Partition split info
    * @param messageCombiner Message messageCombiner
+   * @param preCombine Whether to combine each batch of messages in a
+   *                   thread-local map before storing it
    */
   public IntFloatMessageStore(
     PartitionSplitInfo<IntWritable> partitionInfo,
-    MessageCombiner<? super IntWritable, FloatWritable> messageCombiner
+    MessageCombiner<? super IntWritable,
+        FloatWritable> messageCombiner,
+    boolean preCombine
   ) {
     this.partitionInfo = partitionInfo;
     this.messageCombiner = messageCombiner;
+    this.preCombine = preCombine;
 
     map = new Int2ObjectOpenHashMap<Int2FloatOpenHashMap>();
     for (int partitionId : partitionInfo.getPartitionIds()) {
-      Int2FloatOpenHashMap partitionMap = new Int2FloatOpenHashMap(
-          (int) partitionInfo.getPartitionVertexCount(partitionId));
+      Int2FloatOpenHashMap partitionMap =
+          new Int2FloatOpenHashMap(
+              (int) partitionInfo.getPartitionVertexCount(partitionId));
       map.put(partitionId, partitionMap);
     }
   }
@@ -89,37 +126,86 @@ public class IntFloatMessageStore
    * @param vertexId Id of the vertex
    * @return Map which holds messages for partition which vertex belongs to.
    */
-  private Int2FloatOpenHashMap getPartitionMap(IntWritable vertexId) {
+  private Int2FloatOpenHashMap getPartitionMap(
+      IntWritable vertexId) {
     return map.get(partitionInfo.getPartitionId(vertexId));
   }
 
+  /**
+   * Combine a message into the messages held in a map.
+   *
+   * @param messageMap Map from vertex id to message
+   * @param vertexId Target vertex id
+   * @param message Message to combine
+   * @param reusableVertexId Reusable vertex id object
+   * @param reusableMessage Reusable message object
+   * @param reusableCurrentMessage Reusable message object
+   */
+  private void combine(Int2FloatOpenHashMap messageMap,
+      int vertexId, float message,
+      IntWritable reusableVertexId,
+      FloatWritable reusableMessage,
+      FloatWritable reusableCurrentMessage) {
+    if (messageMap.containsKey(vertexId)) {
+      reusableVertexId.set(vertexId);
+      reusableMessage.set(message);
+      reusableCurrentMessage.set(messageMap.get(vertexId));
+      messageCombiner.combine(reusableVertexId, reusableCurrentMessage,
+          reusableMessage);
+      message = reusableCurrentMessage.get();
+    }
+    // FIXME: messageCombiner should create an initial message instead
+    messageMap.put(vertexId, message);
+  }
+
   @Override
   public void addPartitionMessages(int partitionId,
-      VertexIdMessages<IntWritable, FloatWritable> messages) {
+      VertexIdMessages<IntWritable,
+          FloatWritable> messages) {
     IntWritable reusableVertexId = new IntWritable();
     FloatWritable reusableMessage = new FloatWritable();
-    FloatWritable reusableCurrentMessage = new FloatWritable();
+    FloatWritable reusableCurrentMessage =
+        new FloatWritable();
 
-    Int2FloatOpenHashMap partitionMap = map.get(partitionId);
-    synchronized (partitionMap) {
-      VertexIdMessageIterator<IntWritable, FloatWritable>
-          iterator = messages.getVertexIdMessageIterator();
-      while (iterator.hasNext()) {
-        iterator.next();
-        int vertexId = iterator.getCurrentVertexId().get();
-        float message = iterator.getCurrentMessage().get();
-        if (partitionMap.containsKey(vertexId)) {
-          reusableVertexId.set(vertexId);
-          reusableMessage.set(message);
-          reusableCurrentMessage.set(partitionMap.get(vertexId));
-          messageCombiner.combine(reusableVertexId, reusableCurrentMessage,
-              reusableMessage);
-          message = reusableCurrentMessage.get();
+    Int2FloatOpenHashMap partitionMap =
+        map.get(partitionId);
+    VertexIdMessageIterator<IntWritable,
+        FloatWritable> iterator =
+        messages.getVertexIdMessageIterator();
+    if (!preCombine) {
+      synchronized (partitionMap) {
+        while (iterator.hasNext()) {
+          iterator.next();
+          combine(partitionMap, iterator.getCurrentVertexId().get(),
+              iterator.getCurrentMessage().get(), reusableVertexId,
+              reusableMessage, reusableCurrentMessage);
         }
-        // FIXME: messageCombiner should create an initial message instead
-        partitionMap.put(vertexId, message);
+      }
+      return;
+    }
+
+    // Combine the batch outside of the lock, so the partition map is only
+    // hashed into and locked once per target vertex
+    Int2FloatOpenHashMap batchMap = batchMaps.get();
+    while (iterator.hasNext()) {
+      iterator.next();
+      combine(batchMap, iterator.getCurrentVertexId().get(),
+          iterator.getCurrentMessage().get(), reusableVertexId,
+          reusableMessage, reusableCurrentMessage);
+    }
+    ObjectIterator<Int2FloatMap.Entry> batchIterator =
+        batchMap.int2FloatEntrySet().fastIterator();
+    synchronized (partitionMap) {
+      while (batchIterator.hasNext()) {
+        Int2FloatMap.Entry entry = batchIterator.next();
+        combine(partitionMap, entry.getIntKey(),
+            entry.getFloatValue(), reusableVertexId, reusableMessage,
+            reusableCurrentMessage);
       }
     }
+    int batchSize = batchMap.size();
+    batchMap.clear();
+    batchMap.trim(batchSize);
   }
 
   @Override
@@ -127,10 +213,12 @@ public class IntFloatMessageStore
     IntWritable vertexId,
     FloatWritable message
   ) throws IOException {
-    Int2FloatOpenHashMap partitionMap = getPartitionMap(vertexId);
+    Int2FloatOpenHashMap partitionMap =
+        getPartitionMap(vertexId);
     synchronized (partitionMap) {
       float originalValue = partitionMap.get(vertexId.get());
-      FloatWritable originalMessage = new FloatWritable(originalValue);
+      FloatWritable originalMessage =
+          new FloatWritable(originalValue);
       messageCombiner.combine(vertexId, originalMessage, message);
       partitionMap.put(vertexId.get(), originalMessage.get());
     }
@@ -152,14 +240,16 @@ public class IntFloatMessageStore
 
   @Override
   public boolean hasMessagesForPartition(int partitionId) {
-    Int2FloatOpenHashMap partitionMessages = map.get(partitionId);
+    Int2FloatOpenHashMap partitionMessages =
+        map.get(partitionId);
     return partitionMessages != null && !partitionMessages.isEmpty();
   }
 
   @Override
   public Iterable<FloatWritable> getVertexMessages(
       IntWritable vertexId) {
-    Int2FloatOpenHashMap partitionMap = getPartitionMap(vertexId);
+    Int2FloatOpenHashMap partitionMap =
+        getPartitionMap(vertexId);
     if (!partitionMap.containsKey(vertexId.get())) {
       return EmptyIterable.get();
     } else {
@@ -181,7 +271,8 @@ public class IntFloatMessageStore
   @Override
   public Iterable<IntWritable> getPartitionDestinationVertices(
       int partitionId) {
-    Int2FloatOpenHashMap partitionMap = map.get(partitionId);
+    Int2FloatOpenHashMap partitionMap =
+        map.get(partitionId);
     List<IntWritable> vertices =
         Lists.newArrayListWithCapacity(partitionMap.size());
     IntIterator iterator = partitionMap.keySet().iterator();
@@ -194,7 +285,8 @@ public class IntFloatMessageStore
   @Override
   public void writePartition(DataOutput out,
       int partitionId) throws IOException {
-    Int2FloatOpenHashMap partitionMap = map.get(partitionId);
+    Int2FloatOpenHashMap partitionMap =
+        map.get(partitionId);
     out.writeInt(partitionMap.size());
     ObjectIterator<Int2FloatMap.Entry> iterator =
         partitionMap.int2FloatEntrySet().fastIterator();
@@ -209,7 +301,8 @@ public class IntFloatMessageStore
   public void readFieldsForPartition(DataInput in,
       int partitionId) throws IOException {
     int size = in.readInt();
-    Int2FloatOpenHashMap partitionMap = new Int2FloatOpenHashMap(size);
+    Int2FloatOpenHashMap partitionMap =
+        new Int2FloatOpenHashMap(size);
     while (size-- > 0) {
       int vertexId = in.readInt();
       float message = in.readFloat();
@@ -0,0 +1,236 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages.primitives;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.giraph.comm.messages.MessageStore;
+import org.apache.giraph.comm.messages.PartitionSplitInfo;
+import org.apache.giraph.types.ops.collections.array.WIntArrayList;
+import org.apache.giraph.utils.EmptyIterable;
+import org.apache.giraph.utils.VertexIdMessageIterator;
+import org.apache.giraph.utils.VertexIdMessages;
+import org.apache.hadoop.io.IntWritable;
+
+import com.google.common.collect.Lists;
+
+// AUTO-GENERATED class via class:
+// org.apache.giraph.generate.GeneratePrimitiveClasses
+
+/**
+ * Special message store to be used when ids are IntWritable and
+ * messages are IntWritable and no messageCombiner is used.
+ * Messages of each vertex are kept in a primitive array list, so storing
+ * and iterating over them needs neither message objects nor serialization.
+ */
+public class IntIntMessagesPerVertexStore
+    implements MessageStore<IntWritable, IntWritable> {
+  /** Map from partition id to map from vertex id to messages */
+  private final Int2ObjectOpenHashMap<
+      Int2ObjectOpenHashMap<WIntArrayList>> map;
+  /** Partition split info */
+  private final PartitionSplitInfo<IntWritable> partitionInfo;
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   */
+  public IntIntMessagesPerVertexStore(
+    PartitionSplitInfo<IntWritable> partitionInfo
+  ) {
+    this.partitionInfo = partitionInfo;
+
+    map = new Int2ObjectOpenHashMap<>();
+    for (int partitionId : partitionInfo.getPartitionIds()) {
+      Int2ObjectOpenHashMap<WIntArrayList> partitionMap =
+          new Int2ObjectOpenHashMap<>(
+              (int) partitionInfo.getPartitionVertexCount(partitionId));
+      map.put(partitionId, partitionMap);
+    }
+  }
+
+  @Override
+  public boolean isPointerListEncoding() {
+    return false;
+  }
+
+  /**
+   * Get map which holds messages for partition which vertex belongs to.
+   *
+   * @param vertexId Id of the vertex
+   * @return Map which holds messages for partition which vertex belongs to.
+   */
+  private Int2ObjectOpenHashMap<WIntArrayList>
+  getPartitionMap(IntWritable vertexId) {
+    return map.get(partitionInfo.getPartitionId(vertexId));
+  }
+
+  /**
+   * Add a message to the messages of a vertex.
+   *
+   * @param partitionMap Map from vertex id to messages
+   * @param vertexId Target vertex id
+   * @param message Message to add
+   */
+  private static void addMessage(
+      Int2ObjectOpenHashMap<WIntArrayList> partitionMap,
+      int vertexId, int message) {
+    WIntArrayList messages = partitionMap.get(vertexId);
+    if (messages == null) {
+      messages = new WIntArrayList(2);
+      partitionMap.put(vertexId, messages);
+    }
+    messages.add(message);
+  }
+
+  @Override
+  public void addPartitionMessages(int partitionId,
+      VertexIdMessages<IntWritable,
+          IntWritable> messages) {
+    Int2ObjectOpenHashMap<WIntArrayList> partitionMap =
+        map.get(partitionId);
+    VertexIdMessageIterator<IntWritable,
+        IntWritable> iterator =
+        messages.getVertexIdMessageIterator();
+    synchronized (partitionMap) {
+      while (iterator.hasNext()) {
+        iterator.next();
+        addMessage(partitionMap, iterator.getCurrentVertexId().get(),
+            iterator.getCurrentMessage().get());
+      }
+    }
+  }
+
+  @Override
+  public void addMessage(
+    IntWritable vertexId,
+    IntWritable message
+  ) throws IOException {
+    Int2ObjectOpenHashMap<WIntArrayList> partitionMap =
+        getPartitionMap(vertexId);
+    synchronized (partitionMap) {
+      addMessage(partitionMap, vertexId.get(), message.get());
+    }
+  }
+
+  @Override
+  public void finalizeStore() {
+  }
+
+  @Override
+  public void clearPartition(int partitionId) {
+    map.get(partitionId).clear();
+  }
+
+  @Override
+  public boolean hasMessagesForVertex(IntWritable vertexId) {
+    return getPartitionMap(vertexId).containsKey(vertexId.get());
+  }
+
+  @Override
+  public boolean hasMessagesForPartition(int partitionId) {
+    Int2ObjectOpenHashMap<WIntArrayList>
+        partitionMessages = map.get(partitionId);
+    return partitionMessages != null && !partitionMessages.isEmpty();
+  }
+
+  @Override
+  public Iterable<IntWritable> getVertexMessages(
+      IntWritable vertexId) {
+    final WIntArrayList messages =
+        getPartitionMap(vertexId).get(vertexId.get());
+    if (messages == null) {
+      return EmptyIterable.get();
+    }
+    return new Iterable<IntWritable>() {
+      @Override
+      public Iterator<IntWritable> iterator() {
+        return messages.fastIteratorW();
+      }
+    };
+  }
+
+  @Override
+  public void clearVertexMessages(IntWritable vertexId) {
+    getPartitionMap(vertexId).remove(vertexId.get());
+  }
+
+  @Override
+  public void clearAll() {
+    map.clear();
+  }
+
+  @Override
+  public Iterable<IntWritable> getPartitionDestinationVertices(
+      int partitionId) {
+    Int2ObjectOpenHashMap<WIntArrayList> partitionMap =
+        map.get(partitionId);
+    List<IntWritable> vertices =
+        Lists.newArrayListWithCapacity(partitionMap.size());
+    IntIterator iterator = partitionMap.keySet().iterator();
+    while (iterator.hasNext()) {
+      vertices.add(new IntWritable(iterator.nextInt()));
+    }
+    return vertices;
+  }
+
+  @Override
+  public void writePartition(DataOutput out,
+      int partitionId) throws IOException {
+    Int2ObjectOpenHashMap<WIntArrayList> partitionMap =
+        map.get(partitionId);
+    out.writeInt(partitionMap.size());
+    ObjectIterator<Int2ObjectMap.Entry<WIntArrayList>>
+        iterator = partitionMap.int2ObjectEntrySet().fastIterator();
+    while (iterator.hasNext()) {
+      Int2ObjectMap.Entry<WIntArrayList> entry =
+          iterator.next();
+      out.writeInt(entry.getIntKey());
+      entry.getValue().write(out);
+    }
+  }
+
+  @Override
+  public void readFieldsForPartition(DataInput in,
+      int partitionId) throws IOException {
+    int size = in.readInt();
+    Int2ObjectOpenHashMap<WIntArrayList> partitionMap =
+        new Int2ObjectOpenHashMap<>(size);
+    while (size-- > 0) {
+      int vertexId = in.readInt();
+      WIntArrayList messages = new WIntArrayList();
+      messages.readFields(in);
+      partitionMap.put(vertexId, messages);
+    }
+    synchronized (map) {
+      map.put(partitionId, partitionMap);
+    }
+  }
+}
@@ -33,47 +33,84 @@ import java.util.List;
 import org.apache.giraph.combiner.MessageCombiner;
 import org.apache.giraph.comm.messages.MessageStore;
 import org.apache.giraph.comm.messages.PartitionSplitInfo;
+import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.utils.EmptyIterable;
 import org.apache.giraph.utils.VertexIdMessageIterator;
 import org.apache.giraph.utils.VertexIdMessages;
-import org.apache.hadoop.io.DoubleWritable;
 import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.DoubleWritable;
 
 import com.google.common.collect.Lists;
 
+// AUTO-GENERATED class via class:
+// org.apache.giraph.generate.GeneratePrimitiveClasses
+
 /**
- * Special message store to be used when ids are LongWritable and messages
- * are DoubleWritable and messageCombiner is used.
+ * Special message store to be used when ids are LongWritable and
+ * messages are DoubleWritable and messageCombiner is used.
  * Uses fastutil primitive maps in order to decrease number of objects and
  * get better performance.
  */
 public class LongDoubleMessageStore
     implements MessageStore<LongWritable, DoubleWritable> {
   /** Map from partition id to map from vertex id to message */
-  private final Int2ObjectOpenHashMap<Long2DoubleOpenHashMap> map;
-  /** Message messageCombiner */
   private final
-  MessageCombiner<? super LongWritable, DoubleWritable> messageCombiner;
-  /** Service worker */
+  Int2ObjectOpenHashMap<Long2DoubleOpenHashMap> map;
+  /** Message messageCombiner */
+  private final MessageCombiner<? super LongWritable,
+      DoubleWritable> messageCombiner;
+  /** Partition split info */
   private final PartitionSplitInfo<LongWritable> partitionInfo;
+  /** Whether to combine each batch of messages before storing it */
+  private final boolean preCombine;
+  /** Per-thread map to combine a batch of messages in */
+  private final
+  ThreadLocal<Long2DoubleOpenHashMap> batchMaps =
+      new ThreadLocal<Long2DoubleOpenHashMap>() {
+        @Override
+        protected Long2DoubleOpenHashMap initialValue() {
+          return new Long2DoubleOpenHashMap();
+        }
+      };
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   * @param messageCombiner Message messageCombiner
+   */
+  public LongDoubleMessageStore(
+    PartitionSplitInfo<LongWritable> partitionInfo,
+    MessageCombiner<? super LongWritable,
+        DoubleWritable> messageCombiner
+  ) {
+    this(partitionInfo, messageCombiner,
+        GiraphConstants.PRE_COMBINE_PARTITION_MESSAGES.getDefaultValue());
+  }
 
   /**
    * Constructor
    *
    * @param partitionInfo Partition split info
    * @param messageCombiner Message messageCombiner
+   * @param preCombine Whether to combine each batch of messages in a
+   *                   thread-local map before storing it
    */
   public LongDoubleMessageStore(
     PartitionSplitInfo<LongWritable> partitionInfo,
-    MessageCombiner<? super LongWritable, DoubleWritable> messageCombiner
+    MessageCombiner<? super LongWritable,
+        DoubleWritable> messageCombiner,
+    boolean preCombine
   ) {
     this.partitionInfo = partitionInfo;
     this.messageCombiner = messageCombiner;
+    this.preCombine = preCombine;
 
     map = new Int2ObjectOpenHashMap<Long2DoubleOpenHashMap>();
     for (int partitionId : partitionInfo.getPartitionIds()) {
-      Long2DoubleOpenHashMap partitionMap = new Long2DoubleOpenHashMap(
-          (int) partitionInfo.getPartitionVertexCount(partitionId));
+      Long2DoubleOpenHashMap partitionMap =
+          new Long2DoubleOpenHashMap(
+              (int) partitionInfo.getPartitionVertexCount(partitionId));
       map.put(partitionId, partitionMap);
     }
   }
@@ -89,37 +126,86 @@ public class LongDoubleMessageStore
    * @param vertexId Id of the vertex
    * @return Map which holds messages for partition which vertex belongs to.
    */
-  private Long2DoubleOpenHashMap getPartitionMap(LongWritable vertexId) {
+  private Long2DoubleOpenHashMap getPartitionMap(
+      LongWritable vertexId) {
     return map.get(partitionInfo.getPartitionId(vertexId));
   }
 
+  /**
+   * Combine a message into the messages held in a map.
+   *
+   * @param messageMap Map from vertex id to message
+   * @param vertexId Target vertex id
+   * @param message Message to combine
+   * @param reusableVertexId Reusable vertex id object
+   * @param reusableMessage Reusable message object
+   * @param reusableCurrentMessage Reusable message object
+   */
+  private void combine(Long2DoubleOpenHashMap messageMap,
+      long vertexId, double message,
+      LongWritable reusableVertexId,
+      DoubleWritable reusableMessage,
+      DoubleWritable reusableCurrentMessage) {
+    if (messageMap.containsKey(vertexId)) {
+      reusableVertexId.set(vertexId);
+      reusableMessage.set(message);
+      reusableCurrentMessage.set(messageMap.get(vertexId));
+      messageCombiner.combine(reusableVertexId, reusableCurrentMessage,
+          reusableMessage);
+      message = reusableCurrentMessage.get();
+    }
+    // FIXME: messageCombiner should create an initial message instead
+    messageMap.put(vertexId, message);
+  }
+
   @Override
   public void addPartitionMessages(int partitionId,
-      VertexIdMessages<LongWritable, DoubleWritable> messages) {
+      VertexIdMessages<LongWritable,
+          DoubleWritable> messages) {
     LongWritable reusableVertexId = new LongWritable();
     DoubleWritable reusableMessage = new DoubleWritable();
-    DoubleWritable reusableCurrentMessage = new DoubleWritable();
+    DoubleWritable reusableCurrentMessage =
+        new DoubleWritable();
 
-    Long2DoubleOpenHashMap partitionMap = map.get(partitionId);
-    synchronized (partitionMap) {
-      VertexIdMessageIterator<LongWritable, DoubleWritable> iterator =
+    Long2DoubleOpenHashMap partitionMap =
+        map.get(partitionId);
+    VertexIdMessageIterator<LongWritable,
+        DoubleWritable> iterator =
         messages.getVertexIdMessageIterator();
-      while (iterator.hasNext()) {
-        iterator.next();
-        long vertexId = iterator.getCurrentVertexId().get();
-        double message = iterator.getCurrentMessage().get();
-        if (partitionMap.containsKey(vertexId)) {
-          reusableVertexId.set(vertexId);
-          reusableMessage.set(message);
-          reusableCurrentMessage.set(partitionMap.get(vertexId));
-          messageCombiner.combine(reusableVertexId, reusableCurrentMessage,
-              reusableMessage);
-          message = reusableCurrentMessage.get();
+    if (!preCombine) {
+      synchronized (partitionMap) {
+        while (iterator.hasNext()) {
+          iterator.next();
+          combine(partitionMap, iterator.getCurrentVertexId().get(),
+              iterator.getCurrentMessage().get(), reusableVertexId,
+              reusableMessage, reusableCurrentMessage);
         }
-        // FIXME: messageCombiner should create an initial message instead
-        partitionMap.put(vertexId, message);
+      }
+      return;
+    }
+
+    // Combine the batch outside of the lock, so the partition map is only
+    // hashed into and locked once per target vertex
+    Long2DoubleOpenHashMap batchMap = batchMaps.get();
+    while (iterator.hasNext()) {
+      iterator.next();
+      combine(batchMap, iterator.getCurrentVertexId().get(),
+          iterator.getCurrentMessage().get(), reusableVertexId,
+          reusableMessage, reusableCurrentMessage);
+    }
+    ObjectIterator<Long2DoubleMap.Entry> batchIterator =
+        batchMap.long2DoubleEntrySet().fastIterator();
+    synchronized (partitionMap) {
+      while (batchIterator.hasNext()) {
+        Long2DoubleMap.Entry entry = batchIterator.next();
+        combine(partitionMap, entry.getLongKey(),
+            entry.getDoubleValue(), reusableVertexId, reusableMessage,
+            reusableCurrentMessage);
       }
     }
+    int batchSize = batchMap.size();
+    batchMap.clear();
+    batchMap.trim(batchSize);
   }
 
   @Override
@@ -127,10 +213,12 @@ public class LongDoubleMessageStore
     LongWritable vertexId,
     DoubleWritable message
   ) throws IOException {
-    Long2DoubleOpenHashMap partitionMap = getPartitionMap(vertexId);
+    Long2DoubleOpenHashMap partitionMap =
+        getPartitionMap(vertexId);
     synchronized (partitionMap) {
       double originalValue = partitionMap.get(vertexId.get());
-      DoubleWritable originalMessage = new DoubleWritable(originalValue);
+      DoubleWritable originalMessage =
+          new DoubleWritable(originalValue);
       messageCombiner.combine(vertexId, originalMessage, message);
       partitionMap.put(vertexId.get(), originalMessage.get());
     }
@@ -152,14 +240,16 @@ public class LongDoubleMessageStore
 
   @Override
   public boolean hasMessagesForPartition(int partitionId) {
-    Long2DoubleOpenHashMap partitionMessages = map.get(partitionId);
+    Long2DoubleOpenHashMap partitionMessages =
+        map.get(partitionId);
     return partitionMessages != null && !partitionMessages.isEmpty();
   }
 
   @Override
   public Iterable<DoubleWritable> getVertexMessages(
       LongWritable vertexId) {
-    Long2DoubleOpenHashMap partitionMap = getPartitionMap(vertexId);
+    Long2DoubleOpenHashMap partitionMap =
+        getPartitionMap(vertexId);
     if (!partitionMap.containsKey(vertexId.get())) {
       return EmptyIterable.get();
     } else {
@@ -181,7 +271,8 @@ public class LongDoubleMessageStore
   @Override
   public Iterable<LongWritable> getPartitionDestinationVertices(
       int partitionId) {
-    Long2DoubleOpenHashMap partitionMap = map.get(partitionId);
+    Long2DoubleOpenHashMap partitionMap =
+        map.get(partitionId);
     List<LongWritable> vertices =
         Lists.newArrayListWithCapacity(partitionMap.size());
     LongIterator iterator = partitionMap.keySet().iterator();
@@ -194,7 +285,8 @@ public class LongDoubleMessageStore
   @Override
   public void writePartition(DataOutput out,
       int partitionId) throws IOException {
-    Long2DoubleOpenHashMap partitionMap = map.get(partitionId);
+    Long2DoubleOpenHashMap partitionMap =
+        map.get(partitionId);
     out.writeInt(partitionMap.size());
     ObjectIterator<Long2DoubleMap.Entry> iterator =
         partitionMap.long2DoubleEntrySet().fastIterator();
@@ -209,7 +301,8 @@ public class LongDoubleMessageStore
   public void readFieldsForPartition(DataInput in,
       int partitionId) throws IOException {
     int size = in.readInt();
-    Long2DoubleOpenHashMap partitionMap = new Long2DoubleOpenHashMap(size);
+    Long2DoubleOpenHashMap partitionMap =
+        new Long2DoubleOpenHashMap(size);
     while (size-- > 0) {
       long vertexId = in.readLong();
       double message = in.readDouble();
@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages.primitives;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.longs.LongIterator;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.giraph.comm.messages.MessageStore;
+import org.apache.giraph.comm.messages.PartitionSplitInfo;
+import org.apache.giraph.types.ops.collections.array.WDoubleArrayList;
+import org.apache.giraph.utils.EmptyIterable;
+import org.apache.giraph.utils.VertexIdMessageIterator;
+import org.apache.giraph.utils.VertexIdMessages;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.DoubleWritable;
+
+import com.google.common.collect.Lists;
+
+// AUTO-GENERATED class via class:
+// org.apache.giraph.generate.GeneratePrimitiveClasses
+
+/**
+ * Special message store to be used when ids are LongWritable and
+ * messages are DoubleWritable and no messageCombiner is used.
+ * Messages of each vertex are kept in a primitive array list, so storing
+ * and iterating over them needs neither message objects nor serialization.
+ */
+public class LongDoubleMessagesPerVertexStore
+    implements MessageStore<LongWritable, DoubleWritable> {
+  /** Map from partition id to map from vertex id to messages */
+  private final Int2ObjectOpenHashMap<
+      Long2ObjectOpenHashMap<WDoubleArrayList>> map;
+  /** Partition split info */
+  private final PartitionSplitInfo<LongWritable> partitionInfo;
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   */
+  public LongDoubleMessagesPerVertexStore(
+    PartitionSplitInfo<LongWritable> partitionInfo
+  ) {
+    this.partitionInfo = partitionInfo;
+
+    map = new Int2ObjectOpenHashMap<>();
+    for (int partitionId : partitionInfo.getPartitionIds()) {
+      Long2ObjectOpenHashMap<WDoubleArrayList> partitionMap =
+          new Long2ObjectOpenHashMap<>(
+              (int) partitionInfo.getPartitionVertexCount(partitionId));
+      map.put(partitionId, partitionMap);
+    }
+  }
+
+  @Override
+  public boolean isPointerListEncoding() {
+    return false;
+  }
+
+  /**
+   * Get map which holds messages for partition which vertex belongs to.
+   *
+   * @param vertexId Id of the vertex
+   * @return Map which holds messages for partition which vertex belongs to.
+   */
+  private Long2ObjectOpenHashMap<WDoubleArrayList>
+  getPartitionMap(LongWritable vertexId) {
+    return map.get(partitionInfo.getPartitionId(vertexId));
+  }
+
+  /**
+   * Add a message to the messages of a vertex.
+   *
+   * @param partitionMap Map from vertex id to messages
+   * @param vertexId Target vertex id
+   * @param message Message to add
+   */
+  private static void addMessage(
+      Long2ObjectOpenHashMap<WDoubleArrayList> partitionMap,
+      long vertexId, double message) {
+    WDoubleArrayList messages = partitionMap.get(vertexId);
+    if (messages == null) {
+      messages = new WDoubleArrayList(2);
+      partitionMap.put(vertexId, messages);
+    }
+    messages.add(message);
+  }
+
+  @Override
+  public void addPartitionMessages(int partitionId,
+      VertexIdMessages<LongWritable,
+          DoubleWritable> messages) {
+    Long2ObjectOpenHashMap<WDoubleArrayList> partitionMap =
+        map.get(partitionId);
+    VertexIdMessageIterator<LongWritable,
+        DoubleWritable> iterator =
+        messages.getVertexIdMessageIterator();
+    synchronized (partitionMap) {
+      while (iterator.hasNext()) {
+        iterator.next();
+        addMessage(partitionMap, iterator.getCurrentVertexId().get(),
+            iterator.getCurrentMessage().get());
+      }
+    }
+  }
+
+  @Override
+  public void addMessage(
+    LongWritable vertexId,
+    DoubleWritable message
+  ) throws IOException {
+    Long2ObjectOpenHashMap<WDoubleArrayList> partitionMap =
+        getPartitionMap(vertexId);
+    synchronized (partitionMap) {
+      addMessage(partitionMap, vertexId.get(), message.get());
+    }
+  }
+
+  @Override
+  public void finalizeStore() {
+  }
+
+  @Override
+  public void clearPartition(int partitionId) {
+    map.get(partitionId).clear();
+  }
+
+  @Override
+  public boolean hasMessagesForVertex(LongWritable vertexId) {
+    return getPartitionMap(vertexId).containsKey(vertexId.get());
+  }
+
+  @Override
+  public boolean hasMessagesForPartition(int partitionId) {
+    Long2ObjectOpenHashMap<WDoubleArrayList>
+        partitionMessages = map.get(partitionId);
+    return partitionMessages != null && !partitionMessages.isEmpty();
+  }
+
+  @Override
+  public Iterable<DoubleWritable> getVertexMessages(
+      LongWritable vertexId) {
+    final WDoubleArrayList messages =
+        getPartitionMap(vertexId).get(vertexId.get());
+    if (messages == null) {
+      return EmptyIterable.get();
+    }
+    return new Iterable<DoubleWritable>() {
+      @Override
+      public Iterator<DoubleWritable> iterator() {
+        return messages.fastIteratorW();
+      }
+    };
+  }
+
+  @Override
+  public void clearVertexMessages(LongWritable vertexId) {
+    getPartitionMap(vertexId).remove(vertexId.get());
+  }
+
+  @Override
+  public void clearAll() {
+    map.clear();
+  }
+
+  @Override
+  public Iterable<LongWritable> getPartitionDestinationVertices(
+      int partitionId) {
+    Long2ObjectOpenHashMap<WDoubleArrayList> partitionMap =
+        map.get(partitionId);
+    List<LongWritable> vertices =
+        Lists.newArrayListWithCapacity(partitionMap.size());
+    LongIterator iterator = partitionMap.keySet().iterator();
+    while (iterator.hasNext()) {
+      vertices.add(new LongWritable(iterator.nextLong()));
+    }
+    return vertices;
+  }
+
+  @Override
+  public void writePartition(DataOutput out,
+      int partitionId) throws IOException {
+    Long2ObjectOpenHashMap<WDoubleArrayList> partitionMap =
+        map.get(partitionId);
+    out.writeInt(partitionMap.size());
+    ObjectIterator<Long2ObjectMap.Entry<WDoubleArrayList>>
+        iterator = partitionMap.long2ObjectEntrySet().fastIterator();
+    while (iterator.hasNext()) {
+      Long2ObjectMap.Entry<WDoubleArrayList> entry =
+          iterator.next();
+      out.writeLong(entry.getLongKey());
+      entry.getValue().write(out);
+    }
+  }
+
+  @Override
+  public void readFieldsForPartition(DataInput in,
+      int partitionId) throws IOException {
+    int size = in.readInt();
+    Long2ObjectOpenHashMap<WDoubleArrayList> partitionMap =
+        new Long2ObjectOpenHashMap<>(size);
+    while (size-- > 0) {
+      long vertexId = in.readLong();
+      WDoubleArrayList messages = new WDoubleArrayList();
+      messages.readFields(in);
+      partitionMap.put(vertexId, messages);
+    }
+    synchronized (map) {
+      map.put(partitionId, partitionMap);
+    }
+  }
+}
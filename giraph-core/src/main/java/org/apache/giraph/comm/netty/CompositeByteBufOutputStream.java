@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.netty;
+
+import org.apache.giraph.utils.ZeroCopyDataOutput;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Output stream building a {@link CompositeByteBuf}. Regular writes go to a
+ * buffer allocated from the channel allocator, while large byte array regions
+ * written with {@link #writeNoCopy(byte[], int, int)} are wrapped as their
+ * own components instead of being copied.
+ */
+public class CompositeByteBufOutputStream extends OutputStream
+    implements ZeroCopyDataOutput {
+  /** Regions smaller than this are copied rather than wrapped */
+  public static final int MIN_WRAP_SIZE = 4096;
+
+  /** Allocator for the buffers regular writes go to */
+  private final ByteBufAllocator allocator;
+  /** Initial size of the buffers regular writes go to */
+  private final int bufferSize;
+  /** Buffer being built */
+  private final CompositeByteBuf composite;
+  /** Buffer regular writes currently go to */
+  private ByteBuf current;
+  /** Output stream over the current buffer */
+  private ByteBufOutputStream output;
+
+  /**
+   * Constructor
+   *
+   * @param allocator Allocator for the buffers regular writes go to
+   * @param bufferSize Initial size of the buffers regular writes go to
+   */
+  public CompositeByteBufOutputStream(ByteBufAllocator allocator,
+      int bufferSize) {
+    this.allocator = allocator;
+    this.bufferSize = bufferSize;
+    composite = allocator.compositeBuffer(Integer.MAX_VALUE);
+    newCurrent();
+  }
+
+  /**
+   * Start a new buffer for regular writes
+   */
+  private void newCurrent() {
+    current = allocator.buffer(bufferSize);
+    output = new ByteBufOutputStream(current);
+  }
+
+  /**
+   * Append a component to the composite buffer
+   *
+   * @param component Component to append
+   */
+  private void addComponent(ByteBuf component) {
+    composite.addComponent(component);
+    composite.writerIndex(composite.writerIndex() + component.readableBytes());
+  }
+
+  /**
+   * Finish writing and get the composite buffer. The stream can't be used
+   * afterwards.
+   *
+   * @return Buffer with everything written
+   */
+  public CompositeByteBuf getBuffer() {
+    if (current.isReadable()) {
+      addComponent(current);
+    } else {
+      current.release();
+    }
+    current = null;
+    output = null;
+    return composite;
+  }
+
+  @Override
+  public void writeNoCopy(byte[] b, int off, int len) throws IOException {
+    if (len < MIN_WRAP_SIZE) {
+      output.write(b, off, len);
+      return;
+    }
+    if (current.isReadable()) {
+      addComponent(current);
+      newCurrent();
+    }
+    addComponent(Unpooled.wrappedBuffer(b, off, len));
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    output.write(b);
+  }
+
+  @Override
+  public void write(byte[] b) throws IOException {
+    output.write(b);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    output.write(b, off, len);
+  }
+
+  @Override
+  public void writeBoolean(boolean v) throws IOException {
+    output.writeBoolean(v);
+  }
+
+  @Override
+  public void writeByte(int v) throws IOException {
+    output.writeByte(v);
+  }
+
+  @Override
+  public void writeShort(int v) throws IOException {
+    output.writeShort(v);
+  }
+
+  @Override
+  public void writeChar(int v) throws IOException {
+    output.writeChar(v);
+  }
+
+  @Override
+  public void writeInt(int v) throws IOException {
+    output.writeInt(v);
+  }
+
+  @Override
+  public void writeLong(long v) throws IOException {
+    output.writeLong(v);
+  }
+
+  @Override
+  public void writeFloat(float v) throws IOException {
+    output.writeFloat(v);
+  }
+
+  @Override
+  public void writeDouble(double v) throws IOException {
+    output.writeDouble(v);
+  }
+
+  @Override
+  public void writeBytes(String s) throws IOException {
+    output.writeBytes(s);
+  }
+
+  @Override
+  public void writeChars(String s) throws IOException {
+    output.writeChars(s);
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    output.writeUTF(s);
+  }
+}
@@ -73,9 +73,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioSocketChannel;
 import io.netty.handler.codec.FixedLengthFrameDecoder;
 /*if_not[HADOOP_NON_SECURE]*/
 import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
@@ -271,16 +269,18 @@ public class NettyClient {
       executionGroup = null;
     }
 
-    workerGroup = new NioEventLoopGroup(maxPoolSize,
+    NettyTransport transport = new NettyTransport(conf);
+    workerGroup = transport.createEventLoopGroup(maxPoolSize,
         ThreadUtils.createThreadFactory(
             "netty-client-worker-%d", exceptionHandler));
 
     bootstrap = new Bootstrap();
     bootstrap.group(workerGroup)
-        .channel(NioSocketChannel.class)
+        .channel(transport.getSocketChannelClass())
         .option(ChannelOption.CONNECT_TIMEOUT_MILLIS,
             MAX_CONNECTION_MILLISECONDS_DEFAULT)
-        .option(ChannelOption.TCP_NODELAY, true)
+        .option(ChannelOption.TCP_NODELAY,
+            GiraphConstants.NETTY_TCP_NODELAY.get(conf))
         .option(ChannelOption.SO_KEEPALIVE, true)
         .option(ChannelOption.SO_SNDBUF, sendBufferSize)
         .option(ChannelOption.SO_RCVBUF, receiveBufferSize)
@@ -385,6 +385,9 @@ public class NettyClient {
             checkRequestsAfterChannelFailure(ctx.channel());
           }
         });
+    if (transport.getBusyPollOption() != null) {
+      bootstrap.option(transport.getBusyPollOption(), transport.getBusyPoll());
+    }
 
     // Start a thread which will observe if there are any problems with open
     // requests
@@ -47,6 +47,8 @@ public class NettyMasterClient implements MasterClient {
       new SendGlobalCommCache(true);
   /** How big a single aggregator request can be */
   private final int maxBytesPerAggregatorRequest;
+  /** Fan-out of the aggregator tree (0 if not used) */
+  private final int aggregatorTreeFanOut;
   /** Progressable used to report progress */
   private final Progressable progressable;
 
@@ -71,6 +73,8 @@ public class NettyMasterClient implements MasterClient {
     maxBytesPerAggregatorRequest = configuration.getInt(
         AggregatorUtils.MAX_BYTES_PER_AGGREGATOR_REQUEST,
         AggregatorUtils.MAX_BYTES_PER_AGGREGATOR_REQUEST_DEFAULT);
+    aggregatorTreeFanOut =
+        AggregatorUtils.getAggregatorTreeFanOut(configuration);
   }
 
   @Override
@@ -82,7 +86,8 @@ public class NettyMasterClient implements MasterClient {
   public void sendToOwner(String name, GlobalCommType sendType, Writable object)
     throws IOException {
     WorkerInfo owner =
-        AggregatorUtils.getOwner(name, service.getWorkerInfoList());
+        AggregatorUtils.getOwner(name, service.getWorkerInfoList(),
+            aggregatorTreeFanOut);
     int currentSize = sendGlobalCommCache.addValue(owner.getTaskId(),
         name, sendType, object);
     if (currentSize >= maxBytesPerAggregatorRequest) {
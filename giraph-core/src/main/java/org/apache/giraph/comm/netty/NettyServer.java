@@ -23,6 +23,7 @@ import org.apache.giraph.comm.flow_control.FlowControl;
 import org.apache.giraph.comm.netty.handler.AuthorizeServerHandler;
 /*end[HADOOP_NON_SECURE]*/
 import org.apache.giraph.comm.netty.handler.RequestDecoder;
+import org.apache.giraph.comm.netty.handler.RequestFrameDecoder;
 import org.apache.giraph.comm.netty.handler.RequestServerHandler;
 /*if_not[HADOOP_NON_SECURE]*/
 import org.apache.giraph.comm.netty.handler.ResponseEncoder;
@@ -40,7 +41,6 @@ import org.apache.log4j.Logger;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.group.ChannelGroup;
 import io.netty.channel.group.DefaultChannelGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.EventLoopGroup;
@@ -48,8 +48,6 @@ import io.netty.channel.ChannelOption;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.channel.ChannelFuture;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
 /*if_not[HADOOP_NON_SECURE]*/
 import io.netty.util.AttributeKey;
 /*end[HADOOP_NON_SECURE]*/
@@ -104,6 +102,8 @@ public class NettyServer {
 /*end[HADOOP_NON_SECURE]*/
   /** Server bootstrap */
   private ServerBootstrap bootstrap;
+  /** Transport (NIO or native epoll) */
+  private final NettyTransport transport;
   /** Inbound byte counter for this client */
   private final InboundByteCounter inByteCounter = new InboundByteCounter();
   /** Outbound byte counter for this client */
@@ -120,6 +120,11 @@ public class NettyServer {
   private final WorkerRequestReservedMap workerRequestReservedMap;
   /** Use execution group? */
   private final boolean useExecutionGroup;
+  /**
+   * Decode requests from slices of received data? Only if the frame decoder
+   * and the request decoder run in the same executor.
+   */
+  private final boolean sliceRequestFrames;
   /** Execution handler (if used) */
   private final EventExecutorGroup executionGroup;
   /** Name of the handler before the execution handler (if used) */
@@ -156,11 +161,12 @@ public class NettyServer {
 
     maxPoolSize = GiraphConstants.NETTY_SERVER_THREADS.get(conf);
 
-    bossGroup = new NioEventLoopGroup(4,
+    transport = new NettyTransport(conf);
+    bossGroup = transport.createEventLoopGroup(4,
         ThreadUtils.createThreadFactory(
             "netty-server-boss-%d", exceptionHandler));
 
-    workerGroup = new NioEventLoopGroup(maxPoolSize,
+    workerGroup = transport.createEventLoopGroup(maxPoolSize,
         ThreadUtils.createThreadFactory(
             "netty-server-worker-%d", exceptionHandler));
 
@@ -191,6 +197,10 @@ public class NettyServer {
     } else {
       executionGroup = null;
     }
+    sliceRequestFrames = GiraphConstants.NETTY_ZERO_COPY.get(conf) &&
+        (!useExecutionGroup ||
+            (!"requestFrameDecoder".equals(handlerToUseExecutionGroup) &&
+                !"requestDecoder".equals(handlerToUseExecutionGroup)));
   }
 
 /*if_not[HADOOP_NON_SECURE]*/
@@ -230,17 +240,22 @@ public class NettyServer {
   public void start() {
     bootstrap = new ServerBootstrap();
     bootstrap.group(bossGroup, workerGroup)
-        .channel(NioServerSocketChannel.class)
+        .channel(transport.getServerSocketChannelClass())
         .option(ChannelOption.SO_BACKLOG, tcpBacklog)
         .option(ChannelOption.ALLOCATOR, conf.getNettyAllocator())
         .childOption(ChannelOption.SO_KEEPALIVE, true)
-        .childOption(ChannelOption.TCP_NODELAY, true)
+        .childOption(ChannelOption.TCP_NODELAY,
+            GiraphConstants.NETTY_TCP_NODELAY.get(conf))
         .childOption(ChannelOption.SO_SNDBUF, sendBufferSize)
         .childOption(ChannelOption.SO_RCVBUF, receiveBufferSize)
         .childOption(ChannelOption.ALLOCATOR, conf.getNettyAllocator())
         .childOption(ChannelOption.RCVBUF_ALLOCATOR,
             new AdaptiveRecvByteBufAllocator(receiveBufferSize / 4,
                 receiveBufferSize, receiveBufferSize));
+    if (transport.getBusyPollOption() != null) {
+      bootstrap.childOption(transport.getBusyPollOption(),
+          transport.getBusyPoll());
+    }
 
     /**
      * Pipeline setup: depends on whether configured to use authentication
@@ -272,7 +287,7 @@ public class NettyServer {
                 handlerToUseExecutionGroup, executionGroup, ch);
           }
           PipelineUtils.addLastWithExecutorCheck("requestFrameDecoder",
-              new LengthFieldBasedFrameDecoder(1024 * 1024 * 1024, 0, 4, 0, 4),
+              new RequestFrameDecoder(1024 * 1024 * 1024, sliceRequestFrames),
               handlerToUseExecutionGroup, executionGroup, ch);
           PipelineUtils.addLastWithExecutorCheck("requestDecoder",
               new RequestDecoder(conf, inByteCounter),
@@ -322,7 +337,7 @@ public class NettyServer {
                 handlerToUseExecutionGroup, executionGroup, ch);
           }
           PipelineUtils.addLastWithExecutorCheck("requestFrameDecoder",
-              new LengthFieldBasedFrameDecoder(1024 * 1024 * 1024, 0, 4, 0, 4),
+              new RequestFrameDecoder(1024 * 1024 * 1024, sliceRequestFrames),
               handlerToUseExecutionGroup, executionGroup, ch);
           PipelineUtils.addLastWithExecutorCheck("requestDecoder",
               new RequestDecoder(conf, inByteCounter),
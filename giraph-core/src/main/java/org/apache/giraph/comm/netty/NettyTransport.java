@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.netty;
+
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.log4j.Logger;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Transport (event loops and channels) used by {@link NettyClient} and
+ * {@link NettyServer}. Uses the native epoll transport when it is requested
+ * and available (Linux, with the native library on the classpath), and NIO
+ * otherwise. The native transport classes are loaded by name, so NIO keeps
+ * working with Netty versions and platforms which don't provide them.
+ */
+public class NettyTransport {
+  /** Class logger */
+  private static final Logger LOG = Logger.getLogger(NettyTransport.class);
+  /** Package of the native epoll transport */
+  private static final String EPOLL_PACKAGE = "io.netty.channel.epoll.";
+
+  /** Whether the native epoll transport is used */
+  private final boolean useEpoll;
+  /** SO_BUSY_POLL value (microseconds, 0 for no busy polling) */
+  private final int busyPoll;
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public NettyTransport(ImmutableClassesGiraphConfiguration conf) {
+    useEpoll = GiraphConstants.NETTY_USE_NATIVE_EPOLL.get(conf) &&
+        isEpollAvailable();
+    busyPoll = GiraphConstants.NETTY_SO_BUSY_POLL.get(conf);
+    if (LOG.isInfoEnabled()) {
+      LOG.info("NettyTransport: Using " + (useEpoll ? "native epoll" : "NIO") +
+          " transport");
+    }
+  }
+
+  /**
+   * Whether the native epoll transport can be used
+   *
+   * @return True iff the native epoll transport is available
+   */
+  private static boolean isEpollAvailable() {
+    try {
+      return (Boolean) Class.forName(EPOLL_PACKAGE + "Epoll")
+          .getMethod("isAvailable").invoke(null);
+    } catch (ClassNotFoundException | NoSuchMethodException |
+        IllegalAccessException | InvocationTargetException |
+        LinkageError e) {
+      LOG.warn("isEpollAvailable: Native epoll transport is not available, " +
+          "falling back to NIO", e);
+      return false;
+    }
+  }
+
+  /**
+   * Load a class of the native epoll transport
+   *
+   * @param name Simple name of the class
+   * @return Class
+   */
+  private static Class<?> loadEpollClass(String name) {
+    try {
+      return Class.forName(EPOLL_PACKAGE + name);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("loadEpollClass: Native epoll " +
+          "transport is available but " + name + " is missing", e);
+    }
+  }
+
+  /**
+   * Whether the native epoll transport is used
+   *
+   * @return True iff channels use the native epoll transport
+   */
+  public boolean isEpoll() {
+    return useEpoll;
+  }
+
+  /**
+   * Create an event loop group
+   *
+   * @param numThreads Number of threads
+   * @param threadFactory Factory for the threads
+   * @return Event loop group
+   */
+  public EventLoopGroup createEventLoopGroup(int numThreads,
+      ThreadFactory threadFactory) {
+    if (!useEpoll) {
+      return new NioEventLoopGroup(numThreads, threadFactory);
+    }
+    try {
+      return (EventLoopGroup) loadEpollClass("EpollEventLoopGroup")
+          .getConstructor(int.class, ThreadFactory.class)
+          .newInstance(numThreads, threadFactory);
+    } catch (NoSuchMethodException | InstantiationException |
+        IllegalAccessException | InvocationTargetException e) {
+      throw new IllegalStateException("createEventLoopGroup: Failed to " +
+          "create native epoll event loop group", e);
+    }
+  }
+
+  /**
+   * Get the class of client channels
+   *
+   * @return Socket channel class
+   */
+  public Class<? extends SocketChannel> getSocketChannelClass() {
+    if (!useEpoll) {
+      return NioSocketChannel.class;
+    }
+    return loadEpollClass("EpollSocketChannel")
+        .asSubclass(SocketChannel.class);
+  }
+
+  /**
+   * Get the class of server channels
+   *
+   * @return Server socket channel class
+   */
+  public Class<? extends ServerChannel> getServerSocketChannelClass() {
+    if (!useEpoll) {
+      return NioServerSocketChannel.class;
+    }
+    return loadEpollClass("EpollServerSocketChannel")
+        .asSubclass(ServerChannel.class);
+  }
+
+  /**
+   * Get the SO_BUSY_POLL channel option, if busy polling is configured and
+   * supported by the transport
+   *
+   * @return SO_BUSY_POLL option, or null if it shouldn't be set
+   */
+  @SuppressWarnings("unchecked")
+  public ChannelOption<Integer> getBusyPollOption() {
+    if (!useEpoll || busyPoll <= 0) {
+      return null;
+    }
+    try {
+      return (ChannelOption<Integer>) loadEpollClass("EpollChannelOption")
+          .getField("SO_BUSY_POLL").get(null);
+    } catch (NoSuchFieldException | IllegalAccessException e) {
+      LOG.warn("getBusyPollOption: SO_BUSY_POLL is not supported by this " +
+          "Netty version, ignoring it", e);
+      return null;
+    }
+  }
+
+  /**
+   * Get the SO_BUSY_POLL value
+   *
+   * @return Microseconds to busy poll, 0 for no busy polling
+   */
+  public int getBusyPoll() {
+    return busyPoll;
+  }
+}
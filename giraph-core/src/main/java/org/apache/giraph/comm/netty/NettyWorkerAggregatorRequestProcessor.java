@@ -19,6 +19,8 @@
 package org.apache.giraph.comm.netty;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.comm.GlobalCommType;
@@ -50,6 +52,8 @@ public class NettyWorkerAggregatorRequestProcessor
       new SendGlobalCommCache(false);
   /** How big a single aggregator request can be */
   private final int maxBytesPerAggregatorRequest;
+  /** Fan-out of the aggregator tree (0 if not used) */
+  private final int aggregatorTreeFanOut;
 
   /**
    * Constructor.
@@ -68,16 +72,20 @@ public class NettyWorkerAggregatorRequestProcessor
     maxBytesPerAggregatorRequest = configuration.getInt(
         AggregatorUtils.MAX_BYTES_PER_AGGREGATOR_REQUEST,
         AggregatorUtils.MAX_BYTES_PER_AGGREGATOR_REQUEST_DEFAULT);
-
+    aggregatorTreeFanOut =
+        AggregatorUtils.getAggregatorTreeFanOut(configuration);
   }
 
   @Override
   public boolean sendReducedValue(String name,
       Writable reducedValue) throws IOException {
-    WorkerInfo owner =
+    // With an aggregator tree, values are sent to the parent in the tree
+    WorkerInfo owner = aggregatorTreeFanOut > 0 ?
+        AggregatorUtils.getTreeParent(serviceWorker.getWorkerInfo(),
+            serviceWorker.getWorkerInfoList(), aggregatorTreeFanOut) :
         AggregatorUtils.getOwner(name,
             serviceWorker.getWorkerInfoList());
-    if (isThisWorker(owner)) {
+    if (owner == null || isThisWorker(owner)) {
       return false;
     } else {
       int currentSize = sendReducedValuesCache.addValue(owner.getTaskId(),
@@ -91,7 +99,7 @@ public class NettyWorkerAggregatorRequestProcessor
 
   @Override
   public void flush() throws IOException {
-    for (WorkerInfo workerInfo : serviceWorker.getWorkerInfoList()) {
+    for (WorkerInfo workerInfo : getReceivingWorkers(true)) {
       if (!isThisWorker(workerInfo)) {
         sendReducedValuesCache.addSpecialCount(workerInfo.getTaskId());
         flushAggregatorsToWorker(workerInfo);
@@ -124,7 +132,7 @@ public class NettyWorkerAggregatorRequestProcessor
   public void distributeReducedValues(
       Iterable<byte[]> aggregatorDataList) throws IOException {
     for (byte[] aggregatorData : aggregatorDataList) {
-      for (WorkerInfo worker : serviceWorker.getWorkerInfoList()) {
+      for (WorkerInfo worker : getReceivingWorkers(false)) {
         if (!isThisWorker(worker)) {
           SendAggregatorsToWorkerRequest request =
               new SendAggregatorsToWorkerRequest(aggregatorData,
@@ -136,6 +144,29 @@ public class NettyWorkerAggregatorRequestProcessor
     }
   }
 
+  /**
+   * Get the workers this worker sends aggregator requests to. Without an
+   * aggregator tree that's all workers.
+   *
+   * @param reduce True for reduced values (sent up the tree), false for
+   *               distributed values (sent down the tree)
+   * @return Workers to send requests to (might include this worker)
+   */
+  private List<WorkerInfo> getReceivingWorkers(boolean reduce) {
+    if (aggregatorTreeFanOut <= 0) {
+      return serviceWorker.getWorkerInfoList();
+    } else if (reduce) {
+      WorkerInfo parent = AggregatorUtils.getTreeParent(
+          serviceWorker.getWorkerInfo(), serviceWorker.getWorkerInfoList(),
+          aggregatorTreeFanOut);
+      return parent == null ? Collections.<WorkerInfo>emptyList() :
+          Collections.singletonList(parent);
+    } else {
+      return AggregatorUtils.getTreeChildren(serviceWorker.getWorkerInfo(),
+          serviceWorker.getWorkerInfoList(), aggregatorTreeFanOut);
+    }
+  }
+
   /**
    * Check if workerInfo describes current worker.
    *
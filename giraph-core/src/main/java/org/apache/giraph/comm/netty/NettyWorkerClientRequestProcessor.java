@@ -26,6 +26,8 @@ import org.apache.giraph.bsp.BspService;
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.comm.SendEdgeCache;
 import org.apache.giraph.comm.SendMessageCache;
+import org.apache.giraph.comm.SendMessageCombiningCache;
+import org.apache.giraph.comm.SendMirroringMessageCache;
 import org.apache.giraph.comm.SendMutationsCache;
 import org.apache.giraph.comm.SendOneMessageToManyCache;
 import org.apache.giraph.comm.SendPartitionCache;
@@ -136,10 +138,20 @@ public class NettyWorkerClientRequestProcessor<I extends WritableComparable,
         GiraphConfiguration.MAX_MSG_REQUEST_SIZE.get(conf);
     maxVerticesSizePerWorker =
         GiraphConfiguration.MAX_VERTEX_REQUEST_SIZE.get(conf);
-    if (useOneMessageToManyIdsEncoding) {
+    if (useOneMessageToManyIdsEncoding &&
+        serviceWorker.getServerData().getVertexMirrors() != null) {
+      sendMessageCache =
+        new SendMirroringMessageCache<I, Writable>(conf, serviceWorker,
+          this, maxMessagesSizePerWorker);
+    } else if (useOneMessageToManyIdsEncoding) {
       sendMessageCache =
         new SendOneMessageToManyCache<I, Writable>(conf, serviceWorker,
           this, maxMessagesSizePerWorker);
+    } else if (GiraphConfiguration.SEND_SIDE_COMBINING.get(conf) &&
+        conf.useOutgoingMessageCombiner()) {
+      sendMessageCache =
+        new SendMessageCombiningCache<I, Writable>(conf, serviceWorker,
+          this, maxMessagesSizePerWorker);
     } else {
       sendMessageCache =
         new SendMessageCache<I, Writable>(conf, serviceWorker,
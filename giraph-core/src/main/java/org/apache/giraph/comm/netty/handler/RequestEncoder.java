@@ -19,6 +19,7 @@
 package org.apache.giraph.comm.netty.handler;
 
 import io.netty.buffer.ByteBufOutputStream;
+import org.apache.giraph.comm.netty.CompositeByteBufOutputStream;
 import org.apache.giraph.comm.requests.WritableRequest;
 import org.apache.giraph.conf.GiraphConfiguration;
 import org.apache.giraph.conf.GiraphConstants;
@@ -32,6 +33,7 @@ import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelOutboundHandlerAdapter;
 import io.netty.channel.ChannelPromise;
 
+import static org.apache.giraph.conf.GiraphConstants.ONE_KB;
 import static org.apache.giraph.utils.ByteUtils.SIZE_OF_BYTE;
 import static org.apache.giraph.utils.ByteUtils.SIZE_OF_INT;
 
@@ -45,6 +47,8 @@ public class RequestEncoder extends ChannelOutboundHandlerAdapter {
   private static final Time TIME = SystemTime.get();
   /** Buffer starting size */
   private final int bufferStartingSize;
+  /** Whether to wrap large payloads instead of copying them */
+  private final boolean zeroCopy;
   /** Start nanoseconds for the encoding time */
   private long startEncodingNanoseconds = -1;
 
@@ -56,6 +60,7 @@ public class RequestEncoder extends ChannelOutboundHandlerAdapter {
   public RequestEncoder(GiraphConfiguration conf) {
     bufferStartingSize =
         GiraphConstants.NETTY_REQUEST_ENCODER_BUFFER_SIZE.get(conf);
+    zeroCopy = GiraphConstants.NETTY_ZERO_COPY.get(conf);
   }
 
   @Override
@@ -74,6 +79,12 @@ public class RequestEncoder extends ChannelOutboundHandlerAdapter {
     ByteBuf buf;
     WritableRequest request = (WritableRequest) msg;
     int requestSize = request.getSerializedSize();
+    if (zeroCopy && (requestSize == WritableRequest.UNKNOWN_SIZE ||
+        requestSize >= CompositeByteBufOutputStream.MIN_WRAP_SIZE)) {
+      buf = encodeComposite(ctx, request);
+      ctx.write(buf, promise);
+      return;
+    }
     if (requestSize == WritableRequest.UNKNOWN_SIZE) {
       buf = ctx.alloc().buffer(bufferStartingSize);
     } else {
@@ -107,4 +118,34 @@ public class RequestEncoder extends ChannelOutboundHandlerAdapter {
     }
     ctx.write(buf, promise);
   }
+
+  /**
+   * Encode a request into a composite buffer, wrapping large byte array
+   * payloads of the request instead of copying them.
+   *
+   * @param ctx Channel handler context
+   * @param request Request to encode
+   * @return Buffer with the encoded request
+   * @throws Exception
+   */
+  private ByteBuf encodeComposite(ChannelHandlerContext ctx,
+      WritableRequest request) throws Exception {
+    CompositeByteBufOutputStream output =
+        new CompositeByteBufOutputStream(ctx.alloc(),
+            Math.min(bufferStartingSize, ONE_KB));
+    // This will later be filled with the correct size of serialized request
+    output.writeInt(0);
+    output.writeByte(request.getType().ordinal());
+    request.write(output);
+    ByteBuf buf = output.getBuffer();
+    buf.setInt(0, buf.writerIndex() - SIZE_OF_INT);
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("encodeComposite: Client " + request.getClientId() + ", " +
+          "requestId " + request.getRequestId() +
+          ", size = " + buf.readableBytes() + ", " +
+          request.getType() + " took " +
+          Times.getNanosSince(TIME, startEncodingNanoseconds) + " ns");
+    }
+    return buf;
+  }
 }
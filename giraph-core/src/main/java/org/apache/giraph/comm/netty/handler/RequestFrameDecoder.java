@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.netty.handler;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.LengthFieldBasedFrameDecoder;
+
+/**
+ * Decoder splitting received data into requests (each prefixed by its
+ * length). Frames can be returned as slices of the received data instead of
+ * copies, which is only safe if the frames are decoded by the same thread
+ * before this decoder is called again, i.e. if {@link RequestDecoder} runs
+ * in the same executor as this decoder.
+ */
+public class RequestFrameDecoder extends LengthFieldBasedFrameDecoder {
+  /** Whether to return slices of the received data */
+  private final boolean sliceFrames;
+
+  /**
+   * Constructor
+   *
+   * @param maxFrameLength Maximum length of a frame
+   * @param sliceFrames Whether to return slices of the received data instead
+   *                    of copies
+   */
+  public RequestFrameDecoder(int maxFrameLength, boolean sliceFrames) {
+    super(maxFrameLength, 0, 4, 0, 4);
+    this.sliceFrames = sliceFrames;
+  }
+
+  @Override
+  protected ByteBuf extractFrame(ChannelHandlerContext ctx, ByteBuf buffer,
+      int index, int length) {
+    if (sliceFrames) {
+      return buffer.slice(index, length).retain();
+    }
+    return super.extractFrame(ctx, buffer, index, length);
+  }
+}
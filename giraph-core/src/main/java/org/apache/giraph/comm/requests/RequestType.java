@@ -70,7 +70,11 @@ else[HADOOP_NON_SECURE]*/
   /** Send addresses and partitions assignments from master to workers */
   ADDRESSES_AND_PARTITIONS_REQUEST(AddressesAndPartitionsRequest.class),
   /** Send partition stats from worker to master */
-  PARTITION_STATS_REQUEST(PartitionStatsRequest.class);
+  PARTITION_STATS_REQUEST(PartitionStatsRequest.class),
+  /** Register the mirror of a high-degree vertex on a worker */
+  SEND_VERTEX_MIRROR_REQUEST(SendVertexMirrorRequest.class),
+  /** Send messages of high-degree vertices to their mirrors */
+  SEND_MIRROR_MESSAGES_REQUEST(SendMirrorMessagesRequest.class);
 
   /** Class of request which this type corresponds to */
   private final Class<? extends WritableRequest> requestClass;
@@ -73,7 +73,7 @@ public class SendAggregatorsToWorkerRequest extends
       throw new IllegalStateException("doRequest: " +
           "IOException occurred while processing request", e);
     }
-    aggregatorData.receivedRequestFromWorker();
+    aggregatorData.receivedRequestFromWorker(getData());
   }
 
   @Override
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.requests;
+
+import org.apache.giraph.comm.ServerData;
+import org.apache.giraph.comm.VertexMirrors;
+import org.apache.giraph.utils.ByteArrayOneMessageToManyIds;
+import org.apache.giraph.utils.PairList;
+import org.apache.giraph.utils.VertexIdMessageIterator;
+import org.apache.giraph.utils.VertexIdMessages;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+/**
+ * Send messages of high-degree vertices to their mirrors on a worker. Each
+ * message is paired with the id of the vertex which sent it, and is
+ * delivered to all the neighbors of the vertex held by its mirror, the same
+ * way as {@link SendWorkerOneMessageToManyRequest} messages. Senders only
+ * use mirrors registered in earlier supersteps and drop their registrations
+ * whenever mirrors are removed, so a missing mirror means the registrations
+ * got out of sync. Its messages can't be delivered, so the request fails
+ * rather than losing them.
+ *
+ * @param <I> Vertex id
+ * @param <M> Message data
+ */
+@SuppressWarnings("unchecked")
+public class SendMirrorMessagesRequest<I extends WritableComparable,
+    M extends Writable> extends SendWorkerMessagesRequest<I, M> {
+  /** Default constructor */
+  public SendMirrorMessagesRequest() {
+  }
+
+  /**
+   * Constructor used to send request.
+   *
+   * @param mirrorMessages Pairs of (ignored) partition id and messages,
+   *                       keyed by the id of the mirrored vertex
+   */
+  public SendMirrorMessagesRequest(
+      PairList<Integer, VertexIdMessages<I, M>> mirrorMessages) {
+    super(mirrorMessages);
+  }
+
+  @Override
+  public RequestType getType() {
+    return RequestType.SEND_MIRROR_MESSAGES_REQUEST;
+  }
+
+  @Override
+  public void doRequest(ServerData serverData) {
+    VertexMirrors<I> vertexMirrors = serverData.getVertexMirrors();
+    ByteArrayOneMessageToManyIds<I, M> oneMessageToManyIds =
+        new ByteArrayOneMessageToManyIds<I, M>(
+            getConf().<M>createOutgoingMessageValueFactory());
+    oneMessageToManyIds.setConf(getConf());
+    oneMessageToManyIds.initialize();
+    PairList<Integer, VertexIdMessages<I, M>>.Iterator
+        iterator = partitionVertexData.getIterator();
+    while (iterator.hasNext()) {
+      iterator.next();
+      VertexIdMessageIterator<I, M> messageIterator =
+          iterator.getCurrentSecond().getVertexIdMessageIterator();
+      while (messageIterator.hasNext()) {
+        messageIterator.next();
+        VertexMirrors.Mirror mirror =
+            vertexMirrors.getMirror(messageIterator.getCurrentVertexId());
+        if (mirror == null) {
+          throw new IllegalStateException("doRequest: No mirror of vertex " +
+              messageIterator.getCurrentVertexId() + " on this worker");
+        }
+        oneMessageToManyIds.add(mirror.getIds(), mirror.getIds().length,
+            mirror.getCount(), messageIterator.getCurrentMessage());
+      }
+    }
+    new SendWorkerOneMessageToManyRequest<I, M>(oneMessageToManyIds,
+        getConf()).doRequest(serverData);
+  }
+}
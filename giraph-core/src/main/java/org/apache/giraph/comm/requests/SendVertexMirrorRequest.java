@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.requests;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.giraph.comm.ServerData;
+import org.apache.giraph.comm.VertexMirrors;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+/**
+ * Register the mirror of a high-degree vertex on a worker, with the ids of
+ * the neighbors of the vertex owned by that worker. A mirror without ids
+ * removes the previous mirror of the vertex.
+ *
+ * @param <I> Vertex id
+ */
+@SuppressWarnings("unchecked")
+public class SendVertexMirrorRequest<I extends WritableComparable>
+    extends WritableRequest<I, Writable, Writable>
+    implements WorkerRequest<I, Writable, Writable> {
+  /** Id of the mirrored vertex */
+  private I vertexId;
+  /** Superstep in which the mirror is registered */
+  private long superstep;
+  /** Number of target ids */
+  private int count;
+  /** Serialized target ids */
+  private byte[] ids;
+  /** Length of the serialized target ids */
+  private int idsLength;
+
+  /**
+   * Constructor used for reflection only
+   */
+  public SendVertexMirrorRequest() { }
+
+  /**
+   * Constructor used to send request.
+   *
+   * @param vertexId Id of the mirrored vertex
+   * @param superstep Superstep in which the mirror is registered
+   * @param count Number of target ids
+   * @param ids Serialized target ids
+   * @param idsLength Length of the serialized target ids
+   */
+  public SendVertexMirrorRequest(I vertexId, long superstep, int count,
+      byte[] ids, int idsLength) {
+    this.vertexId = vertexId;
+    this.superstep = superstep;
+    this.count = count;
+    this.ids = ids;
+    this.idsLength = idsLength;
+  }
+
+  @Override
+  public RequestType getType() {
+    return RequestType.SEND_VERTEX_MIRROR_REQUEST;
+  }
+
+  @Override
+  public void readFieldsRequest(DataInput input) throws IOException {
+    vertexId = getConf().createVertexId();
+    vertexId.readFields(input);
+    superstep = input.readLong();
+    count = input.readInt();
+    idsLength = input.readInt();
+    ids = new byte[idsLength];
+    input.readFully(ids);
+  }
+
+  @Override
+  public void writeRequest(DataOutput output) throws IOException {
+    vertexId.write(output);
+    output.writeLong(superstep);
+    output.writeInt(count);
+    output.writeInt(idsLength);
+    output.write(ids, 0, idsLength);
+  }
+
+  @Override
+  public int getSerializedSize() {
+    return WritableRequest.UNKNOWN_SIZE;
+  }
+
+  @Override
+  public void doRequest(ServerData<I, Writable, Writable> serverData) {
+    VertexMirrors<I> vertexMirrors = serverData.getVertexMirrors();
+    if (vertexMirrors == null) {
+      throw new IllegalStateException("doRequest: Vertex mirroring is not " +
+          "enabled on this worker");
+    }
+    byte[] mirrorIds = ids;
+    if (mirrorIds.length != idsLength) {
+      // Requests executed locally share the buffer of the sender
+      mirrorIds = new byte[idsLength];
+      System.arraycopy(ids, 0, mirrorIds, 0, idsLength);
+    }
+    vertexMirrors.addMirror(vertexId,
+        new VertexMirrors.Mirror(superstep, mirrorIds, count));
+  }
+}
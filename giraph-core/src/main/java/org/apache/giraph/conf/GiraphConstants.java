@@ -119,6 +119,11 @@ public interface GiraphConstants {
   IntConfOption LB_MAPPINGSTORE_LOWER =
       new IntConfOption("giraph.lbMappingStoreLower", -1,
           "'lower' value used by lbMappingstore");
+  /** Whether to restore original ids rewritten by mapping on output */
+  BooleanConfOption RESTORE_MAPPED_IDS_ON_OUTPUT =
+      new BooleanConfOption("giraph.mapping.restoreIdsOnOutput", false,
+          "Whether to write vertices and edges with their original ids, " +
+              "when MappingStoreOps rewrote the ids during input");
   /** Class used to conduct expensive edge translation during vertex input */
   ClassConfOption EDGE_TRANSLATION_CLASS =
       ClassConfOption.create("giraph.edgeTranslationClass", null,
@@ -576,6 +581,37 @@ public interface GiraphConstants {
       new IntConfOption("giraph.nettyRequestEncoderBufferSize", 32 * ONE_KB,
           "How big to make the encoder buffer?");
 
+  /**
+   * Whether to send large request payloads by reference and to decode
+   * requests from received buffers without copying frames
+   */
+  BooleanConfOption NETTY_ZERO_COPY =
+      new BooleanConfOption("giraph.nettyZeroCopy", false,
+          "Send large request payloads (e.g. message batches) as wrapped " +
+              "byte arrays in composite buffers instead of copying them, and " +
+              "decode received requests without copying their frames (only " +
+              "when giraph.nettyServerExecutionAfterHandler is not set to " +
+              "requestFrameDecoder or requestDecoder)");
+
+  /** Use the native epoll transport in netty when available */
+  BooleanConfOption NETTY_USE_NATIVE_EPOLL =
+      new BooleanConfOption("giraph.nettyUseNativeEpoll", false,
+          "Use netty's native epoll transport (Linux only) when it is " +
+              "available, falling back to NIO otherwise. Needs a netty " +
+              "version shipping netty-transport-native-epoll (4.0.17 or " +
+              "later) on the classpath");
+
+  /** TCP_NODELAY for netty channels */
+  BooleanConfOption NETTY_TCP_NODELAY =
+      new BooleanConfOption("giraph.nettyTcpNoDelay", true,
+          "Set TCP_NODELAY on netty channels");
+
+  /** SO_BUSY_POLL for netty channels with the native epoll transport */
+  IntConfOption NETTY_SO_BUSY_POLL =
+      new IntConfOption("giraph.nettySoBusyPoll", 0,
+          "Microseconds to busy poll on netty channels using the native " +
+              "epoll transport (SO_BUSY_POLL, 0 to disable)");
+
   /** Netty client threads */
   IntConfOption NETTY_CLIENT_THREADS =
       new IntConfOption("giraph.nettyClientThreads", 4, "Netty client threads");
@@ -724,6 +760,74 @@ public interface GiraphConstants {
       new IntConfOption("giraph.msgRequestSize", 512 * ONE_KB,
           "Maximum size of messages (in bytes) per peer before flush");
 
+  /** Adapt the message request size to the congestion of each worker */
+  BooleanConfOption ADAPTIVE_MSG_REQUEST_SIZE =
+      new BooleanConfOption("giraph.adaptiveMsgRequestSize", false,
+          "Adapt the size of message requests per destination worker: " +
+              "grow requests while the worker is backpressured by " +
+              "credit-based flow control and shrink them while it is idle, " +
+              "starting from giraph.minAdaptiveMsgRequestSize");
+
+  /** Minimum message request size with adaptive request sizes */
+  IntConfOption MIN_ADAPTIVE_MSG_REQUEST_SIZE =
+      new IntConfOption("giraph.minAdaptiveMsgRequestSize", 16 * ONE_KB,
+          "Minimum size of messages (in bytes) per peer before flush, with " +
+              "adaptive message request sizes");
+
+  /** Maximum message request size with adaptive request sizes */
+  IntConfOption MAX_ADAPTIVE_MSG_REQUEST_SIZE =
+      new IntConfOption("giraph.maxAdaptiveMsgRequestSize", 4 * ONE_MB,
+          "Maximum size of messages (in bytes) per peer before flush, with " +
+              "adaptive message request sizes");
+
+  /**
+   * Memory budget for messages cached by each compute thread with adaptive
+   * request sizes
+   */
+  IntConfOption ADAPTIVE_MSG_CACHE_BUDGET =
+      new IntConfOption("giraph.adaptiveMsgCacheBudget", 32 * ONE_MB,
+          "Maximum size of messages (in bytes) cached for all peers by a " +
+              "compute thread, with adaptive message request sizes. Once " +
+              "reached, requests are sent regardless of backpressure");
+
+  /** Combine outgoing messages per destination vertex before sending */
+  BooleanConfOption SEND_SIDE_COMBINING =
+      new BooleanConfOption("giraph.sendSideCombining", false,
+          "Whether compute threads combine outgoing messages per " +
+              "destination vertex before serializing them, when a message " +
+              "combiner is set and messages are not encoded as one message " +
+              "to many ids");
+
+  /** Add messages to local vertices straight to the incoming store */
+  BooleanConfOption DIRECT_LOCAL_MESSAGES =
+      new BooleanConfOption("giraph.directLocalMessages", false,
+          "Whether messages to vertices owned by the sending worker are " +
+              "added straight to the incoming message store (and its " +
+              "combiner), instead of being serialized into a local " +
+              "request. Ignored with out-of-core graph and async message " +
+              "stores");
+
+  /** Mirror high-degree vertices on the workers of their neighbors */
+  BooleanConfOption VERTEX_MIRRORING =
+      new BooleanConfOption("giraph.vertexMirroring", false,
+          "Whether vertices with many edges register mirrors holding the " +
+              "ids of their neighbors on each worker, so messages they send " +
+              "to all neighbors go once per worker and are fanned out " +
+              "there. Requires one message to many ids encoding");
+
+  /** Minimum number of edges for a vertex to be mirrored */
+  IntConfOption VERTEX_MIRRORING_MIN_DEGREE =
+      new IntConfOption("giraph.vertexMirroringMinDegree", 10000,
+          "Minimum number of edges for a vertex to be mirrored, with " +
+              "vertex mirroring");
+
+  /** Maximum number of combined messages cached per destination worker */
+  IntConfOption SEND_SIDE_COMBINING_MAX_VERTICES =
+      new IntConfOption("giraph.sendSideCombiningMaxVertices", 64 * 1024,
+          "Maximum number of destination vertices with combined messages " +
+              "cached for a worker by a compute thread before they are " +
+              "serialized and sent, with send-side combining");
+
   /**
    * How much bigger than the average per partition size to make initial per
    * partition buffers.
@@ -800,6 +904,63 @@ public interface GiraphConstants {
       new IntConfOption("giraph.numComputeThreads", 1,
           "Number of threads for vertex computation");
 
+  /**
+   * Whether large partitions are split into vertex chunks during compute, so
+   * idle compute threads can steal the remaining vertices of a partition
+   * another thread is still working on. Only partitions that keep references
+   * to their vertex objects (i.e. not {@link
+   * org.apache.giraph.partition.ReusesObjectsPartition}) are split.
+   */
+  BooleanConfOption SPLIT_LARGE_PARTITIONS_IN_COMPUTE =
+      new BooleanConfOption("giraph.splitLargePartitionsInCompute", false,
+          "Let idle compute threads steal vertex chunks of large partitions");
+
+  /** Minimum number of vertices for a partition to be split in compute */
+  LongConfOption MIN_VERTICES_TO_SPLIT_PARTITION =
+      new LongConfOption("giraph.minVerticesToSplitPartition", 100000,
+          "Minimum number of vertices for a partition to be split in compute");
+
+  /** Number of vertices a compute thread takes from a split partition */
+  IntConfOption SPLIT_PARTITION_CHUNK_SIZE =
+      new IntConfOption("giraph.splitPartitionChunkSize", 1000,
+          "Number of vertices a compute thread takes from a split partition " +
+          "at a time");
+
+  /** Compute only vertices which are active or have messages */
+  BooleanConfOption ACTIVE_VERTEX_FRONTIER =
+      new BooleanConfOption("giraph.activeVertexFrontier", false,
+          "Whether workers keep the ids of the vertices of each partition " +
+              "which are still active after compute, so in the next " +
+              "superstep only those and the vertices with messages are " +
+              "visited instead of all vertices of the partition");
+
+  /** Maximum fraction of active vertices for the frontier to be kept */
+  FloatConfOption ACTIVE_VERTEX_FRONTIER_MAX_RATIO =
+      new FloatConfOption("giraph.activeVertexFrontierMaxRatio", 0.1f,
+          "Maximum fraction of the vertices of a partition which can be " +
+              "active for its frontier to be kept. Partitions with more " +
+              "active vertices are computed by visiting all vertices");
+
+  /** Make messages to local partitions visible in the same superstep */
+  BooleanConfOption ASYNC_LOCAL_MESSAGES =
+      new BooleanConfOption("giraph.asyncLocalMessages", false,
+          "Whether messages to partitions of the sending worker which " +
+              "weren't computed yet in the current superstep are delivered " +
+              "in that superstep, and partitions recompute the vertices " +
+              "they sent messages to. Only used when the computation " +
+              "implements MonotonicComputation, and ignored with " +
+              "out-of-core graph and async message stores. Vertices may be " +
+              "computed several times per superstep, which repeats their " +
+              "aggregator contributions");
+
+  /** Maximum number of times a partition recomputes its own messages */
+  IntConfOption ASYNC_MAX_LOCAL_ITERATIONS =
+      new IntConfOption("giraph.asyncMaxLocalIterations", 10,
+          "Maximum number of times a partition computes the vertices which " +
+              "received messages from the partition itself in a superstep, " +
+              "with async local messages. Messages left are delivered in " +
+              "the next superstep");
+
   /** Number of threads for input split loading */
   IntConfOption NUM_INPUT_THREADS =
       new IntConfOption("giraph.numInputThreads", 1,
@@ -944,6 +1105,17 @@ public interface GiraphConstants {
       new StrConfOption("giraph.checkpointDirectory", "_bsp/_checkpoints/",
           "This directory has/stores the available checkpoint files in HDFS.");
 
+  /**
+   * Local directory workers write checkpoints to before uploading them to
+   * the checkpoint directory in the background (empty to write to HDFS).
+   */
+  StrConfOption LOCAL_CHECKPOINT_DIRECTORY =
+      new StrConfOption("giraph.checkpoint.localDirectory", "",
+          "Directory in the local filesystem workers write checkpoints to, " +
+              "before they're uploaded to the checkpoint directory in the " +
+              "background. Workers restarted on the same host restore from " +
+              "the local copy. Empty to write checkpoints directly to HDFS.");
+
   /**
    * Comma-separated list of directories in the local filesystem for
    * out-of-core partitions.
@@ -1206,6 +1378,41 @@ public interface GiraphConstants {
               "storing checkpoint. Available options include but " +
               "not restricted to: .deflate, .gz, .bz2, .lzo");
 
+  /** Whether to write checkpoints while the next superstep computes */
+  BooleanConfOption ASYNC_CHECKPOINTS =
+      new BooleanConfOption("giraph.checkpoint.async", false,
+          "Whether workers should snapshot checkpoints in memory and write " +
+              "them in the background while the next superstep computes. " +
+              "Requires enough memory to hold a serialized copy of the " +
+              "partitions being checkpointed");
+
+  /** Whether to only checkpoint the partitions changed since the last one */
+  BooleanConfOption INCREMENTAL_CHECKPOINTS =
+      new BooleanConfOption("giraph.checkpoint.incremental", false,
+          "Whether checkpoints should only write the vertices of partitions " +
+              "which were computed or mutated since the previous " +
+              "checkpoint, referring to earlier checkpoints for the rest");
+
+  /** Number of incremental checkpoints between full checkpoints */
+  IntConfOption MAX_INCREMENTAL_CHECKPOINTS =
+      new IntConfOption("giraph.checkpoint.maxIncremental", 10,
+          "Maximum number of incremental checkpoints after a full " +
+              "checkpoint, before all partitions are written again");
+
+  /** Whether to restore checkpoints on workers holding their replicas */
+  BooleanConfOption CHECKPOINT_RESTORE_LOCALITY =
+      new BooleanConfOption("giraph.checkpoint.restore.locality", false,
+          "Whether the master should assign the checkpoint files of each " +
+              "worker to the restarted worker whose host holds most of " +
+              "their blocks, instead of the worker with the same id");
+
+  /** Whether to read checkpoint files ahead while restoring partitions */
+  BooleanConfOption CHECKPOINT_RESTORE_PREFETCH =
+      new BooleanConfOption("giraph.checkpoint.restore.prefetch", false,
+          "Whether each checkpoint loading thread should read the file of " +
+              "its next partition into memory while deserializing the " +
+              "current one");
+
   /**
    * Defines if and when checkpointing is supported by this job.
    * By default checkpointing is always supported unless output during the
@@ -1225,6 +1432,36 @@ public interface GiraphConstants {
       new IntConfOption("giraph.async.message.store.threads", 0,
           "Number of threads to be used in async message store.");
 
+  /** Use the generated message stores for all primitive id/message types */
+  BooleanConfOption USE_PRIMITIVE_TYPE_MESSAGE_STORES =
+      new BooleanConfOption("giraph.usePrimitiveTypeMessageStores", false,
+          "Whether to use the generated message stores for int or long " +
+              "vertex ids and int, long, float or double messages. Without " +
+              "a combiner, messages of each vertex are kept in a primitive " +
+              "array list instead of serialized per partition. Otherwise " +
+              "only int/float and long/double combined messages get a " +
+              "primitive store");
+
+  /** Combine messages within each incoming batch before storing them */
+  BooleanConfOption PRE_COMBINE_PARTITION_MESSAGES =
+      new BooleanConfOption("giraph.preCombinePartitionMessages", false,
+          "Whether message stores with primitive vertex ids and a message " +
+              "combiner first combine the messages of an incoming batch " +
+              "per destination vertex in a thread-local map, and then merge " +
+              "them into the store once per vertex under the partition lock");
+
+  /** Keep combined messages in arrays indexed by vertex id within range */
+  BooleanConfOption USE_DENSE_RANGE_MESSAGE_STORE =
+      new BooleanConfOption("giraph.useDenseRangeMessageStore", false,
+          "Whether to keep combined messages with primitive vertex ids in " +
+              "flat arrays indexed by the offset of the vertex id in the id " +
+              "range of its partition. Requires SimpleIntRangePartitioner" +
+              "Factory or SimpleLongRangePartitionerFactory, and all vertex " +
+              "ids within [0, " + PARTITION_VERTEX_KEY_SPACE_SIZE + "). " +
+              "Each store takes a message and a bit for every vertex id in " +
+              "the ranges of the worker's partitions, even without " +
+              "messages, and the arrays are reused across supersteps");
+
   /** Output format class for hadoop to use (for committing) */
   ClassConfOption<OutputFormat> HADOOP_OUTPUT_FORMAT_CLASS =
       ClassConfOption.create("giraph.hadoopOutputFormatClass",
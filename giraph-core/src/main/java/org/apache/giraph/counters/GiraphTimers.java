@@ -18,6 +18,7 @@
 
 package org.apache.giraph.counters;
 
+import org.apache.hadoop.mapreduce.Counters;
 import org.apache.hadoop.mapreduce.Mapper.Context;
 
 import com.google.common.collect.Iterators;
@@ -41,6 +42,12 @@ public class GiraphTimers extends HadoopCountersBase {
   public static final String SHUTDOWN_MS_NAME = "Shutdown (ms)";
   /** Counter name for initialize msec */
   public static final String INITIALIZE_MS_NAME = "Initialize (ms)";
+  /** Counter name for checkpoint restore msec */
+  public static final String CHECKPOINT_RESTORE_MS_NAME =
+      "Checkpoint restore (ms)";
+  /** Counter name for checkpoint restore bytes */
+  public static final String CHECKPOINT_RESTORE_BYTES_NAME =
+      "Checkpoint restore (bytes)";
 
   /** Singleton instance for everyone to use */
   private static GiraphTimers INSTANCE;
@@ -157,6 +164,51 @@ public class GiraphTimers extends HadoopCountersBase {
     return jobCounters[INITIALIZE_MS];
   }
 
+  /**
+   * Add a checkpoint restore of a worker to the counters. Workers restore
+   * checkpoints, so this uses the worker's Context instead of the singleton.
+   * Counters of all workers are summed: time is the total time workers spent
+   * restoring, and bytes the total size of the restored checkpoint.
+   *
+   * @param context Hadoop Context of the worker
+   * @param bytes Number of bytes read
+   * @param millis Time it took in msec
+   */
+  public static void addCheckpointRestore(Context context, long bytes,
+      long millis) {
+    context.getCounter(GROUP_NAME, CHECKPOINT_RESTORE_MS_NAME)
+        .increment(millis);
+    context.getCounter(GROUP_NAME, CHECKPOINT_RESTORE_BYTES_NAME)
+        .increment(bytes);
+  }
+
+  /**
+   * Get the checkpoint restore throughput of a worker, in MB/s.
+   *
+   * @param bytes Number of bytes read
+   * @param millis Time it took in msec
+   * @return Throughput in MB/s
+   */
+  public static double getCheckpointRestoreThroughput(long bytes,
+      long millis) {
+    return bytes * 1000.0 / (1024 * 1024) / Math.max(millis, 1);
+  }
+
+  /**
+   * Get the average checkpoint restore throughput of the workers of a job,
+   * in MB/s, from the total bytes and time in the job counters.
+   *
+   * @param counters Counters of the job
+   * @return Throughput in MB/s, or 0 if no checkpoint was restored
+   */
+  public static double getCheckpointRestoreThroughput(Counters counters) {
+    long millis =
+        counters.findCounter(GROUP_NAME, CHECKPOINT_RESTORE_MS_NAME).getValue();
+    long bytes = counters.findCounter(GROUP_NAME,
+        CHECKPOINT_RESTORE_BYTES_NAME).getValue();
+    return bytes == 0 ? 0 : getCheckpointRestoreThroughput(bytes, millis);
+  }
+
   /**
    * Get map of superstep to msec counter.
    *
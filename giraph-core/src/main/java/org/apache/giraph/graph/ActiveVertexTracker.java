@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.graph;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.util.Iterator;
+import java.util.List;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.partition.Partition;
+import org.apache.giraph.types.ops.PrimitiveIdTypeOps;
+import org.apache.giraph.types.ops.TypeOpsUtils;
+import org.apache.giraph.types.ops.collections.array.WArrayList;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.hadoop.io.WritableComparable;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Keeps the frontier of each partition of a worker: the ids of the vertices
+ * which were still active after the partition was computed. In the next
+ * superstep only the frontier and the vertices with messages need to be
+ * computed, since all other vertices are halted. Frontiers are dropped when
+ * a partition is mutated, and are only kept while they are small compared
+ * to the partition, so dense supersteps visit all vertices as before.
+ *
+ * @param <I> Vertex id
+ */
+@ThreadSafe
+@SuppressWarnings("rawtypes")
+public class ActiveVertexTracker<I extends WritableComparable> {
+  /** Configuration */
+  private final ImmutableClassesGiraphConfiguration<I, ?, ?> conf;
+  /** Vertex id TypeOps, or null if ids are not primitive */
+  private final PrimitiveIdTypeOps<I> idTypeOps;
+  /** Maximum fraction of active vertices for a frontier to be kept */
+  private final float maxActiveRatio;
+  /** Map from partition id to the frontier recorded for it */
+  private final Int2ObjectOpenHashMap<Frontier<I>> frontiers =
+      new Int2ObjectOpenHashMap<Frontier<I>>();
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public ActiveVertexTracker(
+      ImmutableClassesGiraphConfiguration<I, ?, ?> conf) {
+    this.conf = conf;
+    idTypeOps = TypeOpsUtils.getPrimitiveIdTypeOpsOrNull(
+        conf.getVertexIdClass());
+    maxActiveRatio =
+        GiraphConstants.ACTIVE_VERTEX_FRONTIER_MAX_RATIO.get(conf);
+  }
+
+  /**
+   * Create an empty frontier to collect the active vertices of a partition
+   * (or of a chunk of it) into while computing it.
+   *
+   * @param partition Partition being computed
+   * @param superstep Current superstep
+   * @return Empty frontier
+   */
+  public Frontier<I> newFrontier(Partition<I, ?, ?> partition,
+      long superstep) {
+    return new Frontier<I>(superstep,
+        (long) (maxActiveRatio * partition.getVertexCount()), idTypeOps, conf);
+  }
+
+  /**
+   * Record the frontier of a partition after computing it. Frontiers of
+   * chunks of the same partition computed in the same superstep are merged.
+   *
+   * @param partitionId Partition id
+   * @param frontier Active vertices of the partition (or of a chunk of it)
+   */
+  public synchronized void addFrontier(int partitionId,
+      Frontier<I> frontier) {
+    Frontier<I> current = frontiers.get(partitionId);
+    if (current != null && current.getSuperstep() == frontier.getSuperstep()) {
+      current.merge(frontier);
+    } else {
+      frontiers.put(partitionId, frontier);
+    }
+  }
+
+  /**
+   * Take the frontier recorded for a partition in the previous superstep.
+   * The recorded frontier is removed, whether it can be used or not.
+   *
+   * @param partitionId Partition id
+   * @param superstep Current superstep
+   * @return Frontier of the previous superstep, or null if all vertices of
+   *         the partition have to be visited
+   */
+  public synchronized Frontier<I> takePreviousFrontier(int partitionId,
+      long superstep) {
+    Frontier<I> frontier = frontiers.remove(partitionId);
+    if (frontier == null || frontier.getSuperstep() != superstep - 1 ||
+        frontier.isOverflowed()) {
+      return null;
+    }
+    return frontier;
+  }
+
+  /**
+   * Drop the frontier of a partition whose vertices were mutated, so all of
+   * its vertices are visited the next time it's computed.
+   *
+   * @param partitionId Partition id
+   */
+  public synchronized void partitionChanged(int partitionId) {
+    frontiers.remove(partitionId);
+  }
+
+  /**
+   * Ids of the active vertices of a partition after a superstep, along with
+   * the number of edges of the partition. Not thread-safe.
+   *
+   * @param <I> Vertex id
+   */
+  public static class Frontier<I extends WritableComparable> {
+    /** Superstep in which the frontier was collected */
+    private final long superstep;
+    /** Maximum number of ids before the frontier overflows */
+    private final long maxSize;
+    /** Configuration */
+    private final ImmutableClassesGiraphConfiguration<I, ?, ?> conf;
+    /** Primitive vertex ids, if ids are primitive and not overflowed */
+    private WArrayList<I> primitiveIds;
+    /** Copies of vertex ids, if ids are not primitive and not overflowed */
+    private List<I> ids;
+    /** Whether there were too many active vertices to keep their ids */
+    private boolean overflowed = false;
+    /** Number of edges of the vertices the frontier was collected from */
+    private long edgeCount = 0;
+
+    /**
+     * Constructor
+     *
+     * @param superstep Superstep in which the frontier is collected
+     * @param maxSize Maximum number of ids before the frontier overflows
+     * @param idTypeOps Vertex id TypeOps, or null if ids are not primitive
+     * @param conf Configuration
+     */
+    Frontier(long superstep, long maxSize, PrimitiveIdTypeOps<I> idTypeOps,
+        ImmutableClassesGiraphConfiguration<I, ?, ?> conf) {
+      this.superstep = superstep;
+      this.maxSize = maxSize;
+      this.conf = conf;
+      if (idTypeOps != null) {
+        primitiveIds = idTypeOps.createArrayList();
+      } else {
+        ids = Lists.newArrayList();
+      }
+    }
+
+    /**
+     * Get the superstep in which the frontier was collected
+     *
+     * @return Superstep
+     */
+    public long getSuperstep() {
+      return superstep;
+    }
+
+    /**
+     * Whether there were too many active vertices to keep their ids
+     *
+     * @return True if the frontier can't be used
+     */
+    public boolean isOverflowed() {
+      return overflowed;
+    }
+
+    /**
+     * Get the number of active vertices
+     *
+     * @return Number of ids in the frontier
+     */
+    public long size() {
+      if (overflowed) {
+        return maxSize + 1;
+      }
+      return primitiveIds != null ? primitiveIds.size() : ids.size();
+    }
+
+    /**
+     * Add an active vertex. The id may be reused by the caller afterwards.
+     *
+     * @param vertexId Id of the active vertex
+     */
+    public void add(I vertexId) {
+      if (overflowed) {
+        return;
+      }
+      if (size() >= maxSize) {
+        overflowed = true;
+        primitiveIds = null;
+        ids = null;
+      } else if (primitiveIds != null) {
+        primitiveIds.addW(vertexId);
+      } else {
+        I vertexIdCopy = conf.createVertexId();
+        WritableUtils.copyInto(vertexId, vertexIdCopy);
+        ids.add(vertexIdCopy);
+      }
+    }
+
+    /**
+     * Get an iterator over the ids of the active vertices. Returned ids may
+     * be reused between calls to next().
+     *
+     * @return Vertex id iterator
+     */
+    public Iterator<I> iterator() {
+      if (overflowed) {
+        throw new IllegalStateException(
+            "iterator: Frontier overflowed, ids of vertices are not kept");
+      }
+      return primitiveIds != null ? primitiveIds.fastIteratorW() :
+          ids.iterator();
+    }
+
+    /**
+     * Get the number of edges of the vertices the frontier was collected
+     * from, i.e. of the whole partition once all chunks are merged.
+     *
+     * @return Edge count
+     */
+    public long getEdgeCount() {
+      return edgeCount;
+    }
+
+    /**
+     * Add edges to the edge count
+     *
+     * @param edgeCount Number of edges to add
+     */
+    public void addEdgeCount(long edgeCount) {
+      this.edgeCount += edgeCount;
+    }
+
+    /**
+     * Add the active vertices and edges of another frontier collected in
+     * the same superstep.
+     *
+     * @param other Frontier to merge into this one
+     */
+    void merge(Frontier<I> other) {
+      edgeCount += other.edgeCount;
+      if (other.overflowed) {
+        overflowed = true;
+        primitiveIds = null;
+        ids = null;
+        return;
+      }
+      Iterator<I> iterator = other.iterator();
+      while (iterator.hasNext()) {
+        add(iterator.next());
+      }
+    }
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.graph;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+
+import java.io.IOException;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.giraph.comm.messages.MessageStore;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.giraph.utils.VertexIdMessages;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+/**
+ * Delivers messages between partitions of a worker within the superstep
+ * they are sent in. A message to a partition which no compute thread has
+ * started yet is added to the current message store, so the partition sees
+ * it when it is computed later in the superstep. Messages a partition sends
+ * to itself are kept aside, and the partition computes their destinations
+ * again once it is done, up to a maximum number of local iterations.
+ * Messages to partitions which were already started go through the regular
+ * path and are received in the next superstep.
+ *
+ * Created for a single superstep, and only used with computations
+ * implementing {@link MonotonicComputation}.
+ *
+ * @param <I> Vertex id
+ * @param <M> Message data
+ */
+@ThreadSafe
+@SuppressWarnings("rawtypes")
+public class AsyncLocalMessages<I extends WritableComparable,
+    M extends Writable> {
+  /** Configuration */
+  private final ImmutableClassesGiraphConfiguration<I, ?, ?> conf;
+  /** Message store of the current superstep */
+  private final MessageStore<I, M> currentMessageStore;
+  /** Maximum number of local iterations of a partition */
+  private final int maxLocalIterations;
+  /** Map from partition id to its state (not modified after creation) */
+  private final Int2ObjectOpenHashMap<PartitionState<I, M>> partitionStates =
+      new Int2ObjectOpenHashMap<PartitionState<I, M>>();
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   * @param partitionIds Ids of the partitions of this worker
+   * @param currentMessageStore Message store of the current superstep
+   */
+  public AsyncLocalMessages(ImmutableClassesGiraphConfiguration<I, ?, ?> conf,
+      Iterable<Integer> partitionIds,
+      MessageStore<I, M> currentMessageStore) {
+    this.conf = conf;
+    this.currentMessageStore = currentMessageStore;
+    maxLocalIterations = GiraphConstants.ASYNC_MAX_LOCAL_ITERATIONS.get(conf);
+    for (Integer partitionId : partitionIds) {
+      partitionStates.put(partitionId, new PartitionState<I, M>());
+    }
+  }
+
+  /**
+   * Whether messages to local partitions can be delivered in the same
+   * superstep. The computation has to be monotonic, and it has to receive
+   * the same type of messages it sends.
+   *
+   * @param conf Configuration (with the classes of the current superstep)
+   * @return True if async local messages should be used
+   */
+  public static boolean isEnabled(
+      ImmutableClassesGiraphConfiguration<?, ?, ?> conf) {
+    return GiraphConstants.ASYNC_LOCAL_MESSAGES.get(conf) &&
+        !GiraphConstants.USE_OUT_OF_CORE_GRAPH.get(conf) &&
+        GiraphConstants.ASYNC_MESSAGE_STORE_THREADS_COUNT.get(conf) == 0 &&
+        MonotonicComputation.class.isAssignableFrom(
+            conf.getComputationClass()) &&
+        conf.getIncomingMessageValueClass().equals(
+            conf.getOutgoingMessageValueClass());
+  }
+
+  /**
+   * Get the maximum number of times a partition computes the vertices which
+   * received messages from the partition itself.
+   *
+   * @return Maximum number of local iterations
+   */
+  public int getMaxLocalIterations() {
+    return maxLocalIterations;
+  }
+
+  /**
+   * Deliver a message to a local partition in the current superstep, if
+   * the partition wasn't started yet or is being computed by the calling
+   * thread alone.
+   *
+   * @param partitionId Partition of the destination vertex
+   * @param vertexId Destination vertex id
+   * @param message Message (copied or combined, so it can be reused)
+   * @return True if the message was delivered, false if it has to be sent
+   *         for the next superstep
+   */
+  public boolean addMessage(int partitionId, I vertexId, M message) {
+    PartitionState<I, M> state = partitionStates.get(partitionId);
+    if (state == null) {
+      return false;
+    }
+    if (state.owner == Thread.currentThread()) {
+      if (state.localMessages == null) {
+        state.localMessages = new ByteArrayVertexIdMessages<I, M>(
+            conf.<M>createOutgoingMessageValueFactory());
+        state.localMessages.setConf(conf);
+        state.localMessages.initialize();
+      }
+      state.localMessages.add(vertexId, message);
+      return true;
+    }
+    state.lock.readLock().lock();
+    try {
+      if (state.started) {
+        return false;
+      }
+      currentMessageStore.addMessage(vertexId, message);
+      return true;
+    } catch (IOException e) {
+      throw new IllegalStateException("addMessage: Failed to add message " +
+          "for " + vertexId, e);
+    } finally {
+      state.lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Mark a partition as started by the calling thread, so messages from
+   * other threads are no longer delivered to it in this superstep, and
+   * messages the calling thread sends to it are kept for local iterations
+   * until {@link #finishPartition(int)}. Must be called before the mutations
+   * of the partition are resolved.
+   *
+   * @param partitionId Partition id
+   */
+  public void startPartition(int partitionId) {
+    PartitionState<I, M> state = getPartitionState(partitionId);
+    state.lock.writeLock().lock();
+    try {
+      state.started = true;
+    } finally {
+      state.lock.writeLock().unlock();
+    }
+    state.owner = Thread.currentThread();
+  }
+
+  /**
+   * Take the messages the calling thread sent to a partition it computes.
+   *
+   * @param partitionId Partition id
+   * @return Messages kept for the partition, or null if there are none
+   */
+  public VertexIdMessages<I, M> removeLocalMessages(int partitionId) {
+    PartitionState<I, M> state = getPartitionState(partitionId);
+    VertexIdMessages<I, M> localMessages = state.localMessages;
+    state.localMessages = null;
+    return localMessages;
+  }
+
+  /**
+   * Stop keeping messages the calling thread sends to a partition.
+   *
+   * @param partitionId Partition id
+   * @return Messages kept for the partition which weren't taken yet, to be
+   *         delivered in the next superstep, or null if there are none
+   */
+  public VertexIdMessages<I, M> finishPartition(int partitionId) {
+    VertexIdMessages<I, M> localMessages = removeLocalMessages(partitionId);
+    getPartitionState(partitionId).owner = null;
+    return localMessages;
+  }
+
+  /**
+   * Get the state of a partition of this worker.
+   *
+   * @param partitionId Partition id
+   * @return Partition state
+   */
+  private PartitionState<I, M> getPartitionState(int partitionId) {
+    PartitionState<I, M> state = partitionStates.get(partitionId);
+    if (state == null) {
+      throw new IllegalStateException("getPartitionState: Partition " +
+          partitionId + " is not on this worker");
+    }
+    return state;
+  }
+
+  /**
+   * Delivery state of a partition in the current superstep.
+   *
+   * @param <I> Vertex id
+   * @param <M> Message data
+   */
+  private static class PartitionState<I extends WritableComparable,
+      M extends Writable> {
+    /** Guards started against messages being added concurrently */
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Whether a compute thread started the partition */
+    private boolean started = false;
+    /** Thread computing the whole partition, if it keeps its messages */
+    private volatile Thread owner;
+    /** Messages the owner sent to the partition (only used by the owner) */
+    private VertexIdMessages<I, M> localMessages;
+  }
+}
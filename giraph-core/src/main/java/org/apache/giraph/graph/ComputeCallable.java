@@ -19,14 +19,19 @@ package org.apache.giraph.graph;
 
 import java.io.IOException;
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.concurrent.Callable;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
+import org.apache.giraph.bsp.checkpoints.IncrementalCheckpointTracker;
 import org.apache.giraph.comm.WorkerClientRequestProcessor;
 import org.apache.giraph.comm.messages.MessageStore;
 import org.apache.giraph.comm.netty.NettyWorkerClientRequestProcessor;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.graph.ActiveVertexTracker.Frontier;
+import org.apache.giraph.graph.SplitPartitionQueue.SplitPartition;
 import org.apache.giraph.io.SimpleVertexWriter;
 import org.apache.giraph.metrics.GiraphMetrics;
 import org.apache.giraph.metrics.MetricNames;
@@ -41,6 +46,8 @@ import org.apache.giraph.time.Times;
 import org.apache.giraph.utils.MemoryUtils;
 import org.apache.giraph.utils.TimedLogger;
 import org.apache.giraph.utils.Trimmable;
+import org.apache.giraph.utils.VertexIdMessageIterator;
+import org.apache.giraph.utils.VertexIdMessages;
 import org.apache.giraph.worker.WorkerProgress;
 import org.apache.giraph.worker.WorkerThreadGlobalCommUsage;
 import org.apache.hadoop.io.Writable;
@@ -61,6 +68,14 @@ import com.yammer.metrics.core.Histogram;
  * when using the out-of-core graph partition store.  We should only load on
  * demand.
  *
+ * When a {@link SplitPartitionQueue} is given, large partitions are shared
+ * with the other compute threads, which take chunks of their vertices once
+ * they run out of partitions of their own.
+ *
+ * When an {@link ActiveVertexTracker} is kept, partitions with a small
+ * frontier of active vertices from the previous superstep only visit those
+ * and the vertices with messages.
+ *
  * @param <I>  Vertex index value
  * @param <V>  Vertex value
  * @param <E>  Edge value
@@ -90,6 +105,15 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
   private final TimedLogger timedLogger = new TimedLogger(30 * 1000, LOG);
   /** VertexWriter for this ComputeCallable */
   private SimpleVertexWriter<I, V, E> vertexWriter;
+  /** Partitions shared among compute threads (null if not splitting) */
+  private final SplitPartitionQueue<I, V, E> splitPartitionQueue;
+  /** Frontiers of active vertices (null to visit all vertices) */
+  private final ActiveVertexTracker<I> activeVertexTracker;
+  /**
+   * Delivery of messages to local partitions in the current superstep (null
+   * if messages are only delivered in the next superstep)
+   */
+  private final AsyncLocalMessages<I, M1> asyncLocalMessages;
   /** Get the start time in nanos */
   private final long startNanos = TIME.getNanoseconds();
 
@@ -104,6 +128,8 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
   private final Histogram histogramGCTimePerThread;
   /** Wait time per compute thread */
   private final Histogram histogramWaitTimePerThread;
+  /** Time per compute thread waiting on out-of-core partitions to load */
+  private final Histogram histogramOocWaitTimePerThread;
   /** Processing time per compute thread */
   private final Histogram histogramProcessingTimePerThread;
 
@@ -120,11 +146,36 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
       GraphState graphState, MessageStore<I, M1> messageStore,
       ImmutableClassesGiraphConfiguration<I, V, E> configuration,
       CentralizedServiceWorker<I, V, E> serviceWorker) {
+    this(context, graphState, messageStore, configuration, serviceWorker,
+        null);
+  }
+
+  /**
+   * Constructor
+   *
+   * @param context Context
+   * @param graphState Current graph state (use to create own graph state)
+   * @param messageStore Message store
+   * @param configuration Configuration
+   * @param serviceWorker Service worker
+   * @param splitPartitionQueue Partitions shared among compute threads
+   *                            (null to compute each partition in one thread)
+   */
+  public ComputeCallable(Mapper<?, ?, ?, ?>.Context context,
+      GraphState graphState, MessageStore<I, M1> messageStore,
+      ImmutableClassesGiraphConfiguration<I, V, E> configuration,
+      CentralizedServiceWorker<I, V, E> serviceWorker,
+      SplitPartitionQueue<I, V, E> splitPartitionQueue) {
     this.context = context;
+    this.splitPartitionQueue = splitPartitionQueue;
     this.configuration = configuration;
     this.messageStore = messageStore;
     this.serviceWorker = serviceWorker;
     this.graphState = graphState;
+    activeVertexTracker =
+        serviceWorker.getServerData().getActiveVertexTracker();
+    asyncLocalMessages =
+        serviceWorker.getServerData().<M1>getAsyncLocalMessages();
 
     SuperstepMetricsRegistry metrics = GiraphMetrics.get().perSuperstep();
     messagesSentCounter = metrics.getCounter(MetricNames.MESSAGES_SENT);
@@ -135,6 +186,8 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
     histogramGCTimePerThread = metrics.getUniformHistogram("gc-per-thread-ms");
     histogramWaitTimePerThread =
         metrics.getUniformHistogram("wait-per-thread-ms");
+    histogramOocWaitTimePerThread =
+        metrics.getUniformHistogram("ooc-wait-per-thread-ms");
     histogramProcessingTimePerThread =
         metrics.getUniformHistogram("processing-per-thread-ms");
   }
@@ -164,6 +217,7 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
     GraphTaskManager<I, V, E> taskManager = serviceWorker.getGraphTaskManager();
     if (oocEngine != null) {
       oocEngine.processingThreadStart();
+      oocEngine.getAndResetPartitionWaitTime();
     }
     long timeWaiting = 0;
     long timeProcessing = 0;
@@ -172,28 +226,54 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
       long startTime = System.currentTimeMillis();
       long startGCTime = taskManager.getSuperstepGCTime();
       Partition<I, V, E> partition = partitionStore.getNextPartition();
+      SplitPartition<I, V, E> splitPartition = null;
+      Frontier<I> frontier = null;
+      if (partition == null && splitPartitionQueue != null) {
+        // No partitions left, help with the ones other threads are computing
+        splitPartition = splitPartitionQueue.steal();
+      }
       long timeDoingGCWhileWaiting =
           taskManager.getSuperstepGCTime() - startGCTime;
       timeDoingGC += timeDoingGCWhileWaiting;
       timeWaiting += System.currentTimeMillis() - startTime -
           timeDoingGCWhileWaiting;
-      if (partition == null) {
+      if (partition == null && splitPartition == null) {
         break;
       }
       long startProcessingTime = System.currentTimeMillis();
       startGCTime = taskManager.getSuperstepGCTime();
       try {
-        serviceWorker.getServerData().resolvePartitionMutation(partition);
-        PartitionStats partitionStats =
-            computePartition(computation, partition, oocEngine);
-        partitionStatsList.add(partitionStats);
-        long partitionMsgs = workerClientRequestProcessor.resetMessageCount();
-        partitionStats.addMessagesSentCount(partitionMsgs);
-        messagesSentCounter.inc(partitionMsgs);
-        long partitionMsgBytes =
-          workerClientRequestProcessor.resetMessageBytesCount();
-        partitionStats.addMessageBytesSentCount(partitionMsgBytes);
-        messageBytesSentCounter.inc(partitionMsgBytes);
+        if (partition != null) {
+          if (asyncLocalMessages != null) {
+            // Messages for vertices created by mutations must not be added
+            // after the mutations are resolved
+            asyncLocalMessages.startPartition(partition.getId());
+          }
+          serviceWorker.getServerData().resolvePartitionMutation(partition);
+          if (activeVertexTracker != null) {
+            frontier = activeVertexTracker.takePreviousFrontier(
+                partition.getId(), graphState.getSuperstep());
+          }
+          // Partitions with a frontier are computed by visiting few vertices
+          if (frontier == null && splitPartitionQueue != null &&
+              splitPartitionQueue.shouldSplit(partition)) {
+            splitPartition = splitPartitionQueue.share(partition);
+            if (asyncLocalMessages != null) {
+              // Chunks are computed by several threads, no local iterations
+              asyncLocalMessages.finishPartition(partition.getId());
+            }
+          }
+        }
+        if (splitPartition != null) {
+          computeSplitPartition(computation, splitPartition,
+              workerClientRequestProcessor, partitionStore, oocEngine,
+              partitionStatsList);
+        } else {
+          PartitionStats partitionStats =
+              computePartition(computation, partition, frontier, oocEngine);
+          partitionStatsList.add(partitionStats);
+          addMessagesSent(workerClientRequestProcessor, partitionStats);
+        }
         timedLogger.info("call: Completed " +
             partitionStatsList.size() + " partitions, " +
             partitionStore.getNumPartitions() + " remaining " +
@@ -205,7 +285,10 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
         throw new IllegalStateException("call: Caught unexpected " +
             "InterruptedException, failing.", e);
       } finally {
-        partitionStore.putPartition(partition);
+        // Split partitions are put back by the last thread computing them
+        if (splitPartition == null) {
+          partitionStore.putPartition(partition);
+        }
       }
       long timeDoingGCWhileProcessing =
           taskManager.getSuperstepGCTime() - startGCTime;
@@ -217,6 +300,10 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
     }
     histogramGCTimePerThread.update(timeDoingGC);
     histogramWaitTimePerThread.update(timeWaiting);
+    if (oocEngine != null) {
+      histogramOocWaitTimePerThread.update(
+          oocEngine.getAndResetPartitionWaitTime());
+    }
     histogramProcessingTimePerThread.update(timeProcessing);
     computation.postSuperstep();
 
@@ -256,25 +343,117 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
     return partitionStatsList;
   }
 
+  /**
+   * Add the messages sent since the last reset to the stats and counters
+   *
+   * @param workerClientRequestProcessor Request processor of this thread
+   * @param partitionStats Stats of the vertices which sent the messages
+   */
+  private void addMessagesSent(
+      WorkerClientRequestProcessor<I, V, E> workerClientRequestProcessor,
+      PartitionStats partitionStats) {
+    long partitionMsgs = workerClientRequestProcessor.resetMessageCount();
+    partitionStats.addMessagesSentCount(partitionMsgs);
+    messagesSentCounter.inc(partitionMsgs);
+    long partitionMsgBytes =
+      workerClientRequestProcessor.resetMessageBytesCount();
+    partitionStats.addMessageBytesSentCount(partitionMsgBytes);
+    messageBytesSentCounter.inc(partitionMsgBytes);
+  }
+
+  /**
+   * Compute chunks of a partition shared with other compute threads until
+   * there are no vertices left to hand out. If this is the last thread
+   * working on the partition, finish the partition: clear its messages, put
+   * it back to the partition store and add its stats to the list.
+   *
+   * @param computation Computation to use
+   * @param splitPartition Shared partition this thread joined
+   * @param workerClientRequestProcessor Request processor of this thread
+   * @param partitionStore Partition store
+   * @param oocEngine out-of-core engine
+   * @param partitionStatsList Stats of the partitions finished by this thread
+   */
+  private void computeSplitPartition(
+      Computation<I, V, E, M1, M2> computation,
+      SplitPartition<I, V, E> splitPartition,
+      WorkerClientRequestProcessor<I, V, E> workerClientRequestProcessor,
+      PartitionStore<I, V, E> partitionStore, OutOfCoreEngine oocEngine,
+      List<PartitionStats> partitionStatsList)
+      throws IOException, InterruptedException {
+    Partition<I, V, E> partition = splitPartition.getPartition();
+    PartitionStats chunkStats =
+        new PartitionStats(partition.getId(), 0, 0, 0, 0, 0);
+    long startMillis = System.currentTimeMillis();
+    List<Vertex<I, V, E>> chunk =
+        Lists.newArrayListWithCapacity(splitPartitionQueue.getChunkSize());
+    Frontier<I> nextFrontier = newFrontier(partition);
+    long verticesComputedProgress = 0;
+    int count = 0;
+    boolean changed = false;
+    while (splitPartition.nextChunk(chunk,
+        splitPartitionQueue.getChunkSize())) {
+      for (Vertex<I, V, E> vertex : chunk) {
+        if (oocEngine != null &&
+            (++count & OutOfCoreEngine.CHECK_IN_INTERVAL) == 0) {
+          oocEngine.activeThreadCheckIn();
+        }
+        // Other threads read messages of the same partition concurrently, so
+        // messages are only cleared once the whole partition is done
+        changed |= computeVertex(computation, partition, vertex, chunkStats,
+            false, nextFrontier);
+        verticesComputedProgress++;
+        if (verticesComputedProgress == VERTICES_TO_UPDATE_PROGRESS) {
+          WorkerProgress.get().addVerticesComputed(verticesComputedProgress);
+          verticesComputedProgress = 0;
+        }
+      }
+    }
+    WorkerProgress.get().addVerticesComputed(verticesComputedProgress);
+    if (changed) {
+      partitionChanged(partition);
+    }
+    addMessagesSent(workerClientRequestProcessor, chunkStats);
+    addFrontier(partition, nextFrontier, chunkStats);
+    chunkStats.addComputeMs(System.currentTimeMillis() - startMillis);
+    if (splitPartition.leave(chunkStats)) {
+      messageStore.clearPartition(partition.getId());
+      partitionStore.putPartition(partition);
+      partitionStatsList.add(splitPartition.getPartitionStats());
+      WorkerProgress.get().incrementPartitionsComputed();
+    }
+  }
+
   /**
    * Compute a single partition
    *
    * @param computation Computation to use
    * @param partition Partition to compute
+   * @param frontier Active vertices of the partition after the previous
+   *                 superstep, or null to visit all vertices
    * @param oocEngine out-of-core engine
    * @return Partition stats for this computed partition
    */
   private PartitionStats computePartition(
       Computation<I, V, E, M1, M2> computation,
-      Partition<I, V, E> partition, OutOfCoreEngine oocEngine)
+      Partition<I, V, E> partition, Frontier<I> frontier,
+      OutOfCoreEngine oocEngine)
       throws IOException, InterruptedException {
     PartitionStats partitionStats =
         new PartitionStats(partition.getId(), 0, 0, 0, 0, 0);
+    long startMillis = System.currentTimeMillis();
+    Frontier<I> nextFrontier = newFrontier(partition);
     long verticesComputedProgress = 0;
+    boolean changed = false;
     // Make sure this is thread-safe across runs
     synchronized (partition) {
       int count = 0;
-      for (Vertex<I, V, E> vertex : partition) {
+      ActiveVertexIterator activeVertices = frontier == null ? null :
+          new ActiveVertexIterator(partition, frontier);
+      Iterator<Vertex<I, V, E>> vertexIterator = frontier == null ?
+          partition.iterator() : activeVertices;
+      while (vertexIterator.hasNext()) {
+        Vertex<I, V, E> vertex = vertexIterator.next();
         // If out-of-core mechanism is used, check whether this thread
         // can stay active or it should temporarily suspend and stop
         // processing and generating more data for the moment.
@@ -282,33 +461,8 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
             (++count & OutOfCoreEngine.CHECK_IN_INTERVAL) == 0) {
           oocEngine.activeThreadCheckIn();
         }
-        Iterable<M1> messages = messageStore.getVertexMessages(vertex.getId());
-        if (vertex.isHalted() && !Iterables.isEmpty(messages)) {
-          vertex.wakeUp();
-        }
-        if (!vertex.isHalted()) {
-          context.progress();
-          computation.compute(vertex, messages);
-          // Need to unwrap the mutated edges (possibly)
-          vertex.unwrapMutableEdges();
-          //Compact edges representation if possible
-          if (vertex instanceof Trimmable) {
-            ((Trimmable) vertex).trim();
-          }
-          // Write vertex to superstep output (no-op if it is not used)
-          vertexWriter.writeVertex(vertex);
-          // Need to save the vertex changes (possibly)
-          partition.saveVertex(vertex);
-        }
-        if (vertex.isHalted()) {
-          partitionStats.incrFinishedVertexCount();
-        }
-        // Remove the messages now that the vertex has finished computation
-        messageStore.clearVertexMessages(vertex.getId());
-
-        // Add statistics for this vertex
-        partitionStats.incrVertexCount();
-        partitionStats.addEdgeCount(vertex.getNumEdges());
+        changed |= computeVertex(computation, partition, vertex,
+            partitionStats, frontier == null, nextFrontier);
 
         verticesComputedProgress++;
         if (verticesComputedProgress == VERTICES_TO_UPDATE_PROGRESS) {
@@ -317,11 +471,274 @@ public class ComputeCallable<I extends WritableComparable, V extends Writable,
         }
       }
 
+      if (activeVertices != null) {
+        // Vertices which weren't visited are halted, with unchanged edges
+        long unvisitedVertices =
+            partition.getVertexCount() - partitionStats.getVertexCount();
+        partitionStats.addVertexCount(unvisitedVertices);
+        partitionStats.addFinishedVertexCount(unvisitedVertices);
+        partitionStats.addEdgeCount(frontier.getEdgeCount() -
+            activeVertices.getVisitedEdgeCount());
+      }
+
       messageStore.clearPartition(partition.getId());
+
+      if (asyncLocalMessages != null &&
+          computeLocalIterations(computation, partition, partitionStats)) {
+        changed = true;
+        // Vertices woken up locally may be missing from the frontier
+        nextFrontier = null;
+      }
     }
+    addFrontier(partition, nextFrontier, partitionStats);
+    partitionStats.addComputeMs(System.currentTimeMillis() - startMillis);
     WorkerProgress.get().addVerticesComputed(verticesComputedProgress);
     WorkerProgress.get().incrementPartitionsComputed();
+    if (changed) {
+      partitionChanged(partition);
+    }
     return partitionStats;
   }
-}
 
+  /**
+   * Compute the vertices which received messages from their own partition
+   * during this superstep, until no more such messages are sent or the
+   * maximum number of local iterations is reached. Messages left (and
+   * messages for vertices which don't exist yet) are delivered in the next
+   * superstep and counted as sent.
+   *
+   * @param computation Computation to use
+   * @param partition Partition computed by this thread
+   * @param partitionStats Stats of the partition, corrected for the vertices
+   *                       computed again
+   * @return True if any vertex was computed
+   */
+  private boolean computeLocalIterations(
+      Computation<I, V, E, M1, M2> computation, Partition<I, V, E> partition,
+      PartitionStats partitionStats)
+      throws IOException, InterruptedException {
+    int partitionId = partition.getId();
+    MessageStore<I, M1> incomingMessageStore =
+        serviceWorker.getServerData().<M1>getIncomingMessageStore();
+    // Vertices were already counted, only changes to their state are added
+    PartitionStats iterationStats =
+        new PartitionStats(partitionId, 0, 0, 0, 0, 0);
+    boolean computed = false;
+    long messagesLeft = 0;
+    for (int i = 0; i < asyncLocalMessages.getMaxLocalIterations(); ++i) {
+      VertexIdMessages<I, M1> localMessages =
+          asyncLocalMessages.removeLocalMessages(partitionId);
+      if (localMessages == null) {
+        break;
+      }
+      messageStore.addPartitionMessages(partitionId, localMessages);
+      // Messages sent while iterating are kept aside, not added to the store
+      for (I vertexId :
+          messageStore.getPartitionDestinationVertices(partitionId)) {
+        Vertex<I, V, E> vertex = partition.getVertex(vertexId);
+        if (vertex == null) {
+          // Created by the vertex resolver in the next superstep
+          for (M1 message : messageStore.getVertexMessages(vertexId)) {
+            incomingMessageStore.addMessage(vertexId, message);
+            ++messagesLeft;
+          }
+          continue;
+        }
+        boolean wasHalted = vertex.isHalted();
+        int numEdges = vertex.getNumEdges();
+        computed |= computeVertex(computation, partition, vertex,
+            iterationStats, false, null);
+        if (wasHalted != vertex.isHalted()) {
+          partitionStats.addFinishedVertexCount(vertex.isHalted() ? 1 : -1);
+        }
+        partitionStats.addEdgeCount(vertex.getNumEdges() - numEdges);
+      }
+      messageStore.clearPartition(partitionId);
+    }
+    VertexIdMessages<I, M1> localMessages =
+        asyncLocalMessages.finishPartition(partitionId);
+    if (localMessages != null) {
+      VertexIdMessageIterator<I, M1> iterator =
+          localMessages.getVertexIdMessageIterator();
+      while (iterator.hasNext()) {
+        iterator.next();
+        ++messagesLeft;
+      }
+      incomingMessageStore.addPartitionMessages(partitionId, localMessages);
+    }
+    partitionStats.addMessagesSentCount(messagesLeft);
+    messagesSentCounter.inc(messagesLeft);
+    return computed;
+  }
+
+  /**
+   * Record that vertices of a partition were computed, so the partition is
+   * written in the next incremental checkpoint.
+   *
+   * @param partition Partition with computed vertices
+   */
+  private void partitionChanged(Partition<I, V, E> partition) {
+    IncrementalCheckpointTracker checkpointTracker =
+        serviceWorker.getServerData().getCheckpointTracker();
+    if (checkpointTracker != null) {
+      checkpointTracker.partitionChanged(partition.getId());
+    }
+  }
+
+  /**
+   * Create a frontier to collect the active vertices of a partition into.
+   *
+   * @param partition Partition being computed
+   * @return Empty frontier, or null if frontiers aren't kept
+   */
+  private Frontier<I> newFrontier(Partition<I, V, E> partition) {
+    if (activeVertexTracker == null) {
+      return null;
+    }
+    return activeVertexTracker.newFrontier(partition,
+        graphState.getSuperstep());
+  }
+
+  /**
+   * Record the active vertices collected while computing a partition (or a
+   * chunk of it).
+   *
+   * @param partition Computed partition
+   * @param nextFrontier Collected frontier (null if frontiers aren't kept)
+   * @param partitionStats Stats of the vertices the frontier was collected
+   *                       from
+   */
+  private void addFrontier(Partition<I, V, E> partition,
+      Frontier<I> nextFrontier, PartitionStats partitionStats) {
+    if (nextFrontier != null) {
+      nextFrontier.addEdgeCount(partitionStats.getEdgeCount());
+      activeVertexTracker.addFrontier(partition.getId(), nextFrontier);
+    }
+  }
+
+  /**
+   * Compute a single vertex
+   *
+   * @param computation Computation to use
+   * @param partition Partition the vertex belongs to
+   * @param vertex Vertex to compute
+   * @param partitionStats Stats to add the vertex to
+   * @param clearVertexMessages Whether to remove the messages of the vertex
+   *                            after computing it
+   * @param nextFrontier Frontier to add the vertex to if it's still active
+   *                     (null if frontiers aren't kept)
+   * @return True if the vertex was computed
+   */
+  private boolean computeVertex(Computation<I, V, E, M1, M2> computation,
+      Partition<I, V, E> partition, Vertex<I, V, E> vertex,
+      PartitionStats partitionStats, boolean clearVertexMessages,
+      Frontier<I> nextFrontier)
+      throws IOException, InterruptedException {
+    Iterable<M1> messages = messageStore.getVertexMessages(vertex.getId());
+    if (vertex.isHalted() && !Iterables.isEmpty(messages)) {
+      vertex.wakeUp();
+    }
+    boolean computed = !vertex.isHalted();
+    if (computed) {
+      context.progress();
+      computation.compute(vertex, messages);
+      // Need to unwrap the mutated edges (possibly)
+      vertex.unwrapMutableEdges();
+      //Compact edges representation if possible
+      if (vertex instanceof Trimmable) {
+        ((Trimmable) vertex).trim();
+      }
+      // Write vertex to superstep output (no-op if it is not used)
+      vertexWriter.writeVertex(vertex);
+      // Need to save the vertex changes (possibly)
+      partition.saveVertex(vertex);
+    }
+    if (vertex.isHalted()) {
+      partitionStats.incrFinishedVertexCount();
+    } else if (nextFrontier != null) {
+      nextFrontier.add(vertex.getId());
+    }
+    if (clearVertexMessages) {
+      // Remove the messages now that the vertex has finished computation
+      messageStore.clearVertexMessages(vertex.getId());
+    }
+
+    // Add statistics for this vertex
+    partitionStats.incrVertexCount();
+    partitionStats.addEdgeCount(vertex.getNumEdges());
+    return computed;
+  }
+
+  /**
+   * Iterator over the vertices of a partition which have messages or are in
+   * its frontier from the previous superstep. Vertices with messages are
+   * visited first, then the vertices of the frontier which have none, so
+   * messages of the partition must only be cleared after the iteration.
+   */
+  private class ActiveVertexIterator implements Iterator<Vertex<I, V, E>> {
+    /** Partition being computed */
+    private final Partition<I, V, E> partition;
+    /** Ids of the vertices with messages */
+    private final Iterator<I> destinationIterator;
+    /** Ids of the vertices active after the previous superstep */
+    private final Iterator<I> frontierIterator;
+    /** Next vertex to visit, or null if not looked up yet */
+    private Vertex<I, V, E> nextVertex;
+    /** Number of edges of the visited vertices before computing them */
+    private long visitedEdgeCount = 0;
+
+    /**
+     * Constructor
+     *
+     * @param partition Partition being computed
+     * @param frontier Active vertices after the previous superstep
+     */
+    ActiveVertexIterator(Partition<I, V, E> partition, Frontier<I> frontier) {
+      this.partition = partition;
+      destinationIterator = messageStore.getPartitionDestinationVertices(
+          partition.getId()).iterator();
+      frontierIterator = frontier.iterator();
+    }
+
+    /**
+     * Get the number of edges the visited vertices had before they were
+     * computed.
+     *
+     * @return Edge count
+     */
+    long getVisitedEdgeCount() {
+      return visitedEdgeCount;
+    }
+
+    @Override
+    public boolean hasNext() {
+      while (nextVertex == null && destinationIterator.hasNext()) {
+        nextVertex = partition.getVertex(destinationIterator.next());
+      }
+      while (nextVertex == null && frontierIterator.hasNext()) {
+        I vertexId = frontierIterator.next();
+        // Vertices with messages were already visited
+        if (!messageStore.hasMessagesForVertex(vertexId)) {
+          nextVertex = partition.getVertex(vertexId);
+        }
+      }
+      return nextVertex != null;
+    }
+
+    @Override
+    public Vertex<I, V, E> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Vertex<I, V, E> vertex = nextVertex;
+      nextVertex = null;
+      visitedEdgeCount += vertex.getNumEdges();
+      return vertex;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
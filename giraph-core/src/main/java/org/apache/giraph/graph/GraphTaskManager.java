@@ -351,7 +351,11 @@ end[PURE_YARN]*/
       MessageStore<I, Writable> messageStore =
           serviceWorker.getServerData().getCurrentMessageStore();
       int numPartitions = serviceWorker.getPartitionStore().getNumPartitions();
-      int numThreads = Math.min(numComputeThreads, numPartitions);
+      // Threads beyond the number of partitions are only useful when they
+      // can steal chunks of partitions other threads are computing
+      int numThreads =
+          GiraphConstants.SPLIT_LARGE_PARTITIONS_IN_COMPUTE.get(conf) ?
+              numComputeThreads : Math.min(numComputeThreads, numPartitions);
       if (LOG.isInfoEnabled()) {
         LOG.info("execute: " + numPartitions + " partitions to process with " +
           numThreads + " compute thread(s), originally " +
@@ -799,6 +803,14 @@ end[PURE_YARN]*/
     GiraphTimerContext computeAllTimerContext = computeAll.time();
     timeToFirstMessageTimerContext = timeToFirstMessage.time();
 
+    final SplitPartitionQueue<I, V, E> splitPartitionQueue =
+        GiraphConstants.SPLIT_LARGE_PARTITIONS_IN_COMPUTE.get(conf) ?
+            new SplitPartitionQueue<I, V, E>(conf) : null;
+    serviceWorker.getServerData().setAsyncLocalMessages(
+        AsyncLocalMessages.isEnabled(conf) ?
+            new AsyncLocalMessages<I, Writable>(conf,
+                partitionStore.getPartitionIds(), messageStore) : null);
+
     CallableFactory<Collection<PartitionStats>> callableFactory =
       new CallableFactory<Collection<PartitionStats>>() {
         @Override
@@ -809,7 +821,8 @@ end[PURE_YARN]*/
               graphState,
               messageStore,
               conf,
-              serviceWorker);
+              serviceWorker,
+              splitPartitionQueue);
         }
       };
     List<Collection<PartitionStats>> results =
@@ -819,6 +832,7 @@ end[PURE_YARN]*/
     for (Collection<PartitionStats> result : results) {
       partitionStatsList.addAll(result);
     }
+    serviceWorker.getServerData().setAsyncLocalMessages(null);
 
     computeAllTimerContext.stop();
   }
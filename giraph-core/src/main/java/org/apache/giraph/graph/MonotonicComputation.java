@@ -0,0 +1,37 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.graph;
+
+/**
+ * Marker for computations whose result doesn't depend on when messages are
+ * delivered: vertex values only move in one direction (like distances which
+ * only decrease), and a message delivered earlier than in BSP leads to the
+ * same final values. Such computations may run with
+ * {@link org.apache.giraph.conf.GiraphConstants#ASYNC_LOCAL_MESSAGES}, where
+ * messages to partitions of the same worker can be received in the
+ * superstep they were sent in.
+ *
+ * With async local messages, a vertex can be computed several times in one
+ * superstep: once per local iteration of its partition which delivers it
+ * messages. Everything done per compute call is repeated, so aggregator
+ * contributions are multiplied (a sum counting vertices counts some of them
+ * more than once), and only aggregators like min and max, which don't
+ * change when a value is aggregated again, keep their BSP results.
+ */
+public interface MonotonicComputation {
+}
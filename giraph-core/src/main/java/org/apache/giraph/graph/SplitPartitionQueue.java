@@ -0,0 +1,225 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.graph;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.partition.Partition;
+import org.apache.giraph.partition.PartitionStats;
+import org.apache.giraph.partition.ReusesObjectsPartition;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+/**
+ * Partitions which are being computed by more than one compute thread in the
+ * current superstep. The compute thread which takes a large partition from
+ * the partition store shares it here, and every compute thread (including the
+ * one that shared it) takes chunks of vertices from it until there are no
+ * vertices left. Compute threads which run out of partitions steal chunks of
+ * the shared partitions, so a single large partition doesn't keep the rest of
+ * the threads idle at the end of a superstep.
+ *
+ * @param <I> Vertex id
+ * @param <V> Vertex value
+ * @param <E> Edge value
+ */
+@ThreadSafe
+@SuppressWarnings("rawtypes")
+public class SplitPartitionQueue<I extends WritableComparable,
+    V extends Writable, E extends Writable> {
+  /** Minimum number of vertices for a partition to be split */
+  private final long minVerticesToSplit;
+  /** Maximum number of vertices in a chunk */
+  private final int chunkSize;
+  /** Partitions which still have vertices to be computed */
+  private final ConcurrentLinkedQueue<SplitPartition<I, V, E>> partitions =
+      new ConcurrentLinkedQueue<SplitPartition<I, V, E>>();
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public SplitPartitionQueue(
+      ImmutableClassesGiraphConfiguration<I, V, E> conf) {
+    minVerticesToSplit =
+        GiraphConstants.MIN_VERTICES_TO_SPLIT_PARTITION.get(conf);
+    chunkSize = GiraphConstants.SPLIT_PARTITION_CHUNK_SIZE.get(conf);
+  }
+
+  /**
+   * Get the maximum number of vertices a compute thread takes at a time
+   *
+   * @return Chunk size
+   */
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * Whether the partition should be shared among compute threads. Partitions
+   * reusing vertex objects while iterating can't be split, since chunks of
+   * their vertices can't be held at the same time.
+   *
+   * @param partition Partition
+   * @return True if the partition should be split in chunks
+   */
+  public boolean shouldSplit(Partition<I, V, E> partition) {
+    return !(partition instanceof ReusesObjectsPartition) &&
+        partition.getVertexCount() >= minVerticesToSplit;
+  }
+
+  /**
+   * Share a partition with other compute threads. The calling thread is
+   * registered as working on the partition.
+   *
+   * @param partition Partition to share
+   * @return Shared partition
+   */
+  public SplitPartition<I, V, E> share(Partition<I, V, E> partition) {
+    SplitPartition<I, V, E> splitPartition =
+        new SplitPartition<I, V, E>(partition);
+    splitPartition.join();
+    partitions.add(splitPartition);
+    return splitPartition;
+  }
+
+  /**
+   * Steal a shared partition which still has vertices left to compute. The
+   * calling thread is registered as working on the returned partition.
+   *
+   * @return Shared partition, or null if no partition has vertices left
+   */
+  public SplitPartition<I, V, E> steal() {
+    while (true) {
+      SplitPartition<I, V, E> splitPartition = partitions.peek();
+      if (splitPartition == null) {
+        return null;
+      }
+      if (splitPartition.join()) {
+        return splitPartition;
+      }
+      // All vertices of this partition were already handed out
+      partitions.remove(splitPartition);
+    }
+  }
+
+  /**
+   * Partition computed by multiple compute threads. Vertices are handed out
+   * in chunks, and stats of each chunk are merged into the partition stats.
+   * The last thread to leave a partition with no vertices left finishes it.
+   *
+   * @param <I> Vertex id
+   * @param <V> Vertex value
+   * @param <E> Edge value
+   */
+  public static class SplitPartition<I extends WritableComparable,
+      V extends Writable, E extends Writable> {
+    /** Partition being computed */
+    private final Partition<I, V, E> partition;
+    /** Iterator over the vertices not handed out yet */
+    private final Iterator<Vertex<I, V, E>> vertexIterator;
+    /** Stats of all the chunks computed so far */
+    private final PartitionStats partitionStats;
+    /** Number of threads working on this partition */
+    private int activeThreads = 0;
+    /** Whether all vertices were handed out */
+    private boolean exhausted = false;
+
+    /**
+     * Constructor
+     *
+     * @param partition Partition to split
+     */
+    SplitPartition(Partition<I, V, E> partition) {
+      this.partition = partition;
+      vertexIterator = partition.iterator();
+      partitionStats = new PartitionStats(partition.getId(), 0, 0, 0, 0, 0);
+    }
+
+    /**
+     * Get the partition
+     *
+     * @return Partition
+     */
+    public Partition<I, V, E> getPartition() {
+      return partition;
+    }
+
+    /**
+     * Get the stats of all the chunks computed so far
+     *
+     * @return Partition stats
+     */
+    public PartitionStats getPartitionStats() {
+      return partitionStats;
+    }
+
+    /**
+     * Register the calling thread as working on this partition.
+     *
+     * @return False if there are no vertices left to hand out
+     */
+    synchronized boolean join() {
+      if (exhausted) {
+        return false;
+      }
+      ++activeThreads;
+      return true;
+    }
+
+    /**
+     * Take the next chunk of vertices.
+     *
+     * @param chunk List to fill with vertices (cleared first)
+     * @param chunkSize Maximum number of vertices to take
+     * @return False if there were no vertices left
+     */
+    public synchronized boolean nextChunk(List<Vertex<I, V, E>> chunk,
+        int chunkSize) {
+      chunk.clear();
+      while (chunk.size() < chunkSize && vertexIterator.hasNext()) {
+        chunk.add(vertexIterator.next());
+      }
+      if (!vertexIterator.hasNext()) {
+        exhausted = true;
+      }
+      return !chunk.isEmpty();
+    }
+
+    /**
+     * Unregister the calling thread from this partition, adding the stats of
+     * the chunks it computed.
+     *
+     * @param chunkStats Stats of the chunks the thread computed
+     * @return True if the calling thread is the last one and has to finish
+     *         the partition
+     */
+    public synchronized boolean leave(PartitionStats chunkStats) {
+      partitionStats.addPartitionStats(chunkStats);
+      --activeThreads;
+      return exhausted && activeThreads == 0;
+    }
+  }
+}
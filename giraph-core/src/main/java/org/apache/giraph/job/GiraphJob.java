@@ -23,6 +23,7 @@ import org.apache.giraph.bsp.BspInputFormat;
 import org.apache.giraph.conf.GiraphConfiguration;
 import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.counters.GiraphTimers;
 import org.apache.giraph.graph.GraphMapper;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.ipc.Client;
@@ -283,6 +284,12 @@ public class GiraphJob {
       }
 
       jobObserver.jobFinished(submittedJob, passed);
+      double restoreThroughput = GiraphTimers.getCheckpointRestoreThroughput(
+          submittedJob.getCounters());
+      if (restoreThroughput > 0 && LOG.isInfoEnabled()) {
+        LOG.info(String.format("run: Workers restored the checkpoint at " +
+            "%.1f MB/s on average", restoreThroughput));
+      }
 
       if (!passed) {
         String restartFrom = retryChecker.shouldRestartCheckpoint(submittedJob);
@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.mapping;
+
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongArrays;
+
+import java.util.List;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import org.apache.giraph.conf.DefaultImmutableClassesGiraphConfigurable;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.log4j.Logger;
+
+import com.google.common.collect.Lists;
+
+/**
+ * An implementation of MappingStore&lt;LongWritable, IntWritable&gt; which
+ * renumbers arbitrary long vertex ids into dense ids in [0, number of ids).
+ *
+ * Mapping input has to list every vertex id, mapping targets are ignored.
+ * Since every worker reads all the mapping input, and dense ids are assigned
+ * in increasing order of the original ids, all workers agree on the
+ * numbering without communicating. Only the sorted array of original ids
+ * is kept: the dense id of an original id is its index, found with a binary
+ * search, which takes much less memory than a hash map from original to
+ * dense id.
+ */
+@ThreadSafe
+public class LongIntRenumberingMappingStore
+  extends DefaultImmutableClassesGiraphConfigurable<LongWritable, Writable,
+  Writable> implements MappingStore<LongWritable, IntWritable> {
+  /** Logger instance */
+  private static final Logger LOG = Logger.getLogger(
+    LongIntRenumberingMappingStore.class);
+
+  /** Ids added by each loading thread */
+  private List<LongArrayList> threadIds;
+  /** Ids added by the current loading thread */
+  private ThreadLocal<LongArrayList> currentThreadIds;
+  /** Original ids in increasing order, indexed by dense id */
+  private long[] originalIds;
+
+  @Override
+  public void initialize() {
+    threadIds = Lists.newArrayList();
+    currentThreadIds = new ThreadLocal<LongArrayList>() {
+      @Override
+      protected LongArrayList initialValue() {
+        LongArrayList ids = new LongArrayList();
+        synchronized (threadIds) {
+          threadIds.add(ids);
+        }
+        return ids;
+      }
+    };
+  }
+
+  @Override
+  public void addEntry(LongWritable vertexId, IntWritable target) {
+    currentThreadIds.get().add(vertexId.get());
+  }
+
+  /**
+   * Get the dense id of an original vertex id
+   *
+   * @param originalId original vertex id
+   * @return dense id, or -1 if the id wasn't in the mapping input
+   */
+  public int getDenseId(long originalId) {
+    int index = LongArrays.binarySearch(originalIds, originalId);
+    return index < 0 ? -1 : index;
+  }
+
+  /**
+   * Get the original vertex id of a dense id
+   *
+   * @param denseId dense id
+   * @return original vertex id
+   */
+  public long getOriginalId(int denseId) {
+    return originalIds[denseId];
+  }
+
+  /**
+   * Get the number of distinct vertex ids, all dense ids are smaller
+   *
+   * @return number of ids
+   */
+  public int getNumIds() {
+    return originalIds.length;
+  }
+
+  @Override
+  public IntWritable getTarget(LongWritable vertexId, IntWritable target) {
+    int denseId = getDenseId(vertexId.get());
+    if (denseId == -1) { // id not in mapping input
+      return null;
+    }
+    target.set(denseId);
+    return target;
+  }
+
+  @Override
+  public void postFilling() {
+    // not thread-safe
+    long size = 0;
+    for (LongArrayList ids : threadIds) {
+      size += ids.size();
+    }
+    if (size > Integer.MAX_VALUE) {
+      throw new IllegalStateException("postFilling: " + size +
+          " vertex ids can't be renumbered into int ids");
+    }
+    long[] ids = new long[(int) size];
+    int pos = 0;
+    for (LongArrayList threadList : threadIds) {
+      threadList.getElements(0, ids, pos, threadList.size());
+      pos += threadList.size();
+    }
+    threadIds = null;
+    currentThreadIds = null;
+
+    LongArrays.radixSort(ids);
+    int numIds = 0;
+    for (int i = 0; i < ids.length; i++) {
+      if (i == 0 || ids[i] != ids[i - 1]) {
+        ids[numIds++] = ids[i];
+      }
+    }
+    originalIds = LongArrays.trim(ids, numIds);
+
+    long keySpaceSize = getConf().getLong(
+        GiraphConstants.PARTITION_VERTEX_KEY_SPACE_SIZE, -1);
+    if (keySpaceSize != -1 && numIds > keySpaceSize) {
+      throw new IllegalStateException("postFilling: Renumbered " + numIds +
+          " vertex ids, but " +
+          GiraphConstants.PARTITION_VERTEX_KEY_SPACE_SIZE + " is only " +
+          keySpaceSize);
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("postFilling: Renumbered " + numIds + " vertex ids");
+    }
+  }
+
+  @Override
+  public long getStats() {
+    return originalIds == null ? 0 : originalIds.length;
+  }
+}
@@ -0,0 +1,75 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.mapping;
+
+import org.apache.giraph.partition.GraphPartitionerFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+
+/**
+ * MappingStoreOps implementation which replaces vertex ids with the dense
+ * ids assigned by {@link LongIntRenumberingMappingStore}, both on vertex
+ * and edge input. Edges of vertex input are rewritten with
+ * {@link org.apache.giraph.mapping.translate.LongByteTranslateEdge}.
+ *
+ * Dense ids are contiguous, so they can be partitioned by
+ * {@link org.apache.giraph.partition.SimpleLongRangePartitionerFactory}
+ * (with giraph.vertexKeySpaceSize at least the number of ids) or by
+ * {@link org.apache.giraph.partition.LongMappingStorePartitionerFactory}.
+ * Set giraph.mapping.restoreIdsOnOutput to write original ids on output.
+ */
+@SuppressWarnings("unchecked, rawtypes")
+public class LongIntRenumberingOps
+  implements MappingStoreOps<LongWritable, IntWritable> {
+  /** Mapping store instance to operate on */
+  private LongIntRenumberingMappingStore mappingStore;
+
+  @Override
+  public void initialize(MappingStore<LongWritable,
+      IntWritable> mappingStore) {
+    this.mappingStore = (LongIntRenumberingMappingStore) mappingStore;
+  }
+
+  @Override
+  public boolean hasEmbedding() {
+    return true;
+  }
+
+  @Override
+  public void embedTargetInfo(LongWritable id) {
+    int denseId = mappingStore.getDenseId(id.get());
+    if (denseId == -1) {
+      throw new IllegalStateException("embedTargetInfo: Vertex id " + id +
+          " is missing from mapping input, which needs to list all ids");
+    }
+    id.set(denseId);
+  }
+
+  @Override
+  public void removeTargetInfo(LongWritable id) {
+    id.set(mappingStore.getOriginalId((int) id.get()));
+  }
+
+  @Override
+  public int getPartition(LongWritable id, int partitionCount,
+    int workerCount) {
+    return GraphPartitionerFactory.getPartitionInRange(id.get(),
+        Math.max(1L, mappingStore.getNumIds()), partitionCount);
+  }
+}
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.mapping;
+
+import java.io.IOException;
+
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.edge.EdgeFactory;
+import org.apache.giraph.edge.OutEdges;
+import org.apache.giraph.edge.ReusableEdge;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.utils.UnsafeByteArrayOutputStream;
+import org.apache.giraph.utils.UnsafeReusableByteArrayInput;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+
+/**
+ * Restores the vertex ids which were rewritten with
+ * {@link MappingStoreOps#embedTargetInfo} during input, so that vertices
+ * and edges are written out with their original ids. Stored vertices are
+ * left untouched, restored ids go into copies. The vertex, its id, the edge
+ * source id and the edge handed out are reused between calls, so every
+ * output thread needs its own instance. Edges of restored vertices are
+ * copied into new out-edges on every call, since out-edges may keep the
+ * edge objects added to them.
+ *
+ * @param <I> vertexId type
+ * @param <V> vertex value type
+ * @param <E> edge value type
+ */
+public class OriginalIdsRestorer<I extends WritableComparable,
+    V extends Writable, E extends Writable> {
+  /** Configuration */
+  private final ImmutableClassesGiraphConfiguration<I, V, E> conf;
+  /** Mapping store ops which rewrote the ids */
+  private final MappingStoreOps<I, ?> mappingStoreOps;
+  /** Reusable vertex handed to the vertex writer */
+  private final Vertex<I, V, E> restoredVertex;
+  /** Reusable id of the vertex handed to the vertex writer */
+  private final I restoredVertexId;
+  /** Reusable source id handed to the edge writer */
+  private final I restoredSourceId;
+  /** Reusable edge handed to the edge writer */
+  private final ReusableEdge<I, E> restoredEdge;
+  /** Reusable stream to serialize writables into */
+  private final UnsafeByteArrayOutputStream reusableOut =
+      new UnsafeByteArrayOutputStream();
+  /** Reusable stream to deserialize writables from */
+  private final UnsafeReusableByteArrayInput reusableIn =
+      new UnsafeReusableByteArrayInput();
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   * @param mappingStoreOps Mapping store ops which rewrote the ids
+   */
+  public OriginalIdsRestorer(ImmutableClassesGiraphConfiguration<I, V, E> conf,
+      MappingStoreOps<I, ?> mappingStoreOps) {
+    this.conf = conf;
+    this.mappingStoreOps = mappingStoreOps;
+    restoredVertex = conf.createVertex();
+    restoredVertexId = conf.createVertexId();
+    restoredSourceId = conf.createVertexId();
+    restoredEdge = conf.createReusableEdge();
+  }
+
+  /**
+   * Copy a writable into another one of the same class
+   *
+   * @param from Writable to copy from
+   * @param to Writable to copy into
+   * @param <T> Writable type
+   * @return Writable copied into
+   */
+  private <T extends Writable> T copy(T from, T to) {
+    try {
+      reusableOut.reset();
+      from.write(reusableOut);
+      reusableIn.initialize(
+          reusableOut.getByteArray(), 0, reusableOut.getPos());
+      to.readFields(reusableIn);
+    } catch (IOException e) {
+      throw new IllegalStateException("copy: IOException occurred", e);
+    }
+    return to;
+  }
+
+  /**
+   * Get a copy of a vertex id with its original id restored
+   *
+   * @param id Vertex id
+   * @param restoredId Vertex id to copy into
+   * @return Restored vertex id
+   */
+  private I restoreId(I id, I restoredId) {
+    copy(id, restoredId);
+    mappingStoreOps.removeTargetInfo(restoredId);
+    return restoredId;
+  }
+
+  /**
+   * Get a vertex with the original ids of the vertex and all its edges. The
+   * returned vertex shares the value with the stored vertex, and is only
+   * valid until the next call. Its edges are new copies.
+   *
+   * @param vertex Stored vertex
+   * @return Vertex with original ids
+   */
+  public Vertex<I, V, E> restoreVertex(Vertex<I, V, E> vertex) {
+    OutEdges<I, E> edges =
+        conf.createAndInitializeOutEdges(vertex.getNumEdges());
+    for (Edge<I, E> edge : vertex.getEdges()) {
+      edges.add(EdgeFactory.create(
+          restoreId(edge.getTargetVertexId(), conf.createVertexId()),
+          copy(edge.getValue(), conf.createEdgeValue())));
+    }
+    restoredVertex.initialize(restoreId(vertex.getId(), restoredVertexId),
+        vertex.getValue(), edges);
+    return restoredVertex;
+  }
+
+  /**
+   * Get the original id of an edge source vertex, only valid until the next
+   * call.
+   *
+   * @param sourceId Stored source vertex id
+   * @return Original source vertex id
+   */
+  public I restoreSourceId(I sourceId) {
+    return restoreId(sourceId, restoredSourceId);
+  }
+
+  /**
+   * Get an edge with the original target vertex id, sharing the value with
+   * the stored edge. Only valid until the next call.
+   *
+   * @param edge Stored edge
+   * @return Edge with original target vertex id
+   */
+  public Edge<I, E> restoreEdge(Edge<I, E> edge) {
+    restoreId(edge.getTargetVertexId(), restoredEdge.getTargetVertexId());
+    restoredEdge.setValue(edge.getValue());
+    return restoredEdge;
+  }
+}
@@ -22,19 +22,21 @@ import java.io.DataOutput;
 import java.io.IOException;
 
 import org.apache.giraph.aggregators.Aggregator;
+import org.apache.giraph.comm.aggregators.DeltaWritable;
 import org.apache.giraph.conf.DefaultImmutableClassesGiraphConfigurable;
 import org.apache.giraph.utils.ReflectionUtils;
 import org.apache.giraph.utils.WritableUtils;
 import org.apache.hadoop.io.Writable;
 
 /**
- * Writable representation of aggregated value
+ * Writable representation of aggregated value. Can be broadcasted as the
+ * difference from the previous value when the aggregated value supports it.
  *
  * @param <A> Aggregation object type
  */
 public class AggregatorBroadcast<A extends Writable>
   extends DefaultImmutableClassesGiraphConfigurable
-  implements Writable {
+  implements DeltaWritable<AggregatorBroadcast<A>> {
   /** Aggregator class */
   private Class<? extends Aggregator<A>> aggregatorClass;
   /** Aggregated value */
@@ -72,4 +74,24 @@ public class AggregatorBroadcast<A extends Writable>
         .createInitialValue();
     value.readFields(in);
   }
+
+  @Override
+  public boolean writeDelta(AggregatorBroadcast<A> previous, DataOutput out)
+    throws IOException {
+    if (!(value instanceof DeltaWritable) ||
+        previous.aggregatorClass != aggregatorClass ||
+        previous.value.getClass() != value.getClass()) {
+      return false;
+    }
+    return ((DeltaWritable<A>) value).writeDelta(previous.value, out);
+  }
+
+  @Override
+  public void readDelta(AggregatorBroadcast<A> previous, DataInput in)
+    throws IOException {
+    aggregatorClass = previous.aggregatorClass;
+    value = ReflectionUtils.newInstance(aggregatorClass, getConf())
+        .createInitialValue();
+    ((DeltaWritable<A>) value).readDelta(previous.value, in);
+  }
 }
@@ -22,7 +22,9 @@ import static org.apache.giraph.conf.GiraphConstants.INPUT_SPLIT_SAMPLE_PERCENT;
 import static org.apache.giraph.conf.GiraphConstants.KEEP_ZOOKEEPER_DATA;
 import static org.apache.giraph.conf.GiraphConstants.PARTITION_LONG_TAIL_MIN_PRINT;
 
+import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.nio.charset.Charset;
@@ -30,8 +32,11 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.TimeUnit;
@@ -46,6 +51,7 @@ import org.apache.giraph.bsp.CentralizedServiceMaster;
 import org.apache.giraph.bsp.SuperstepState;
 import org.apache.giraph.bsp.checkpoints.CheckpointStatus;
 import org.apache.giraph.bsp.checkpoints.CheckpointSupportedChecker;
+import org.apache.giraph.bsp.checkpoints.LocalityAwareCheckpointAssigner;
 import org.apache.giraph.comm.MasterClient;
 import org.apache.giraph.comm.MasterServer;
 import org.apache.giraph.comm.netty.NettyMasterClient;
@@ -189,6 +195,14 @@ public class BspServiceMaster<I extends WritableComparable,
   private CheckpointStatus checkpointStatus;
   /** Checks if checkpointing supported */
   private final CheckpointSupportedChecker checkpointSupportedChecker;
+  /** Whether workers write checkpoints in the background */
+  private final boolean asyncCheckpoints;
+  /** Superstep of the checkpoint workers are writing in the background */
+  private long pendingCheckpointSuperstep = UNSET_SUPERSTEP;
+  /** Workers writing the pending checkpoint */
+  private List<WorkerInfo> pendingCheckpointWorkers;
+  /** Contents of the finalized file of the pending checkpoint */
+  private byte[] pendingCheckpointFinalized;
 
   /**
    * Constructor for setting up the master.
@@ -230,6 +244,10 @@ public class BspServiceMaster<I extends WritableComparable,
     this.checkpointSupportedChecker =
         ReflectionUtils.newInstance(
             GiraphConstants.CHECKPOINT_SUPPORTED_CHECKER.get(conf));
+    // Checkpoints written to local disk first are uploaded in the background
+    asyncCheckpoints = GiraphConstants.ASYNC_CHECKPOINTS.get(conf) ||
+        CheckpointingUtils.getLocalCheckpointBasePath(
+            conf, getJobId()) != null;
 
     GiraphMetrics.get().addSuperstepResetObserver(this);
     GiraphStats.init(context);
@@ -732,22 +750,32 @@ public class BspServiceMaster<I extends WritableComparable,
 
     String checkpointFile =
         finalizedStream.readUTF();
+    Map<Integer, List<Integer>> savedPartitions = new LinkedHashMap<>();
     for (int i = 0; i < prefixFileCount; ++i) {
       int mrTaskId = finalizedStream.readInt();
 
       DataInputStream metadataStream = fs.open(new Path(checkpointFile +
           "." + mrTaskId + CheckpointingUtils.CHECKPOINT_METADATA_POSTFIX));
       long partitions = metadataStream.readInt();
-      WorkerInfo worker = getWorkerInfoById(mrTaskId);
+      List<Integer> partitionIds = new ArrayList<>();
       for (long p = 0; p < partitions; ++p) {
-        int partitionId = metadataStream.readInt();
+        partitionIds.add(metadataStream.readInt());
+      }
+      savedPartitions.put(mrTaskId, partitionIds);
+      metadataStream.close();
+    }
+    Map<Integer, WorkerInfo> restoringWorkers =
+        assignCheckpointRestore(checkpointFile, savedPartitions);
+    for (Map.Entry<Integer, List<Integer>> saved :
+        savedPartitions.entrySet()) {
+      WorkerInfo worker = restoringWorkers.get(saved.getKey());
+      for (int partitionId : saved.getValue()) {
         PartitionOwner partitionOwner = new BasicPartitionOwner(partitionId,
-            worker);
+            worker, null, checkpointFile + "." + saved.getKey());
         partitionOwners.add(partitionOwner);
         LOG.info("prepareCheckpointRestart partitionId=" + partitionId +
             " assigned to " + partitionOwner);
       }
-      metadataStream.close();
     }
     //Ordering appears to be important as of right now we rely on this ordering
     //in WorkerGraphPartitioner
@@ -767,6 +795,47 @@ public class BspServiceMaster<I extends WritableComparable,
     return partitionOwners;
   }
 
+  /**
+   * Choose the worker restoring the checkpoint files saved by each worker.
+   * Unless locality aware restore is enabled, files are restored by the
+   * worker with the same id. Workers which saved no partitions always keep
+   * their files, since only partition owners tell workers which files to
+   * restore.
+   *
+   * @param checkpointFile Prefix of the checkpoint files of the superstep
+   * @param savedPartitions Map from id of each saved worker to its partitions
+   * @return Map from id of each saved worker to the worker restoring it
+   * @throws IOException
+   */
+  private Map<Integer, WorkerInfo> assignCheckpointRestore(
+      String checkpointFile, Map<Integer, List<Integer>> savedPartitions)
+    throws IOException {
+    Map<Integer, WorkerInfo> restoringWorkers = new HashMap<>();
+    if (!GiraphConstants.CHECKPOINT_RESTORE_LOCALITY.get(getConfiguration())) {
+      for (Integer savedWorkerId : savedPartitions.keySet()) {
+        restoringWorkers.put(savedWorkerId, getWorkerInfoById(savedWorkerId));
+      }
+      return restoringWorkers;
+    }
+    Map<Integer, WorkerInfo> freeWorkers = new HashMap<>();
+    for (int i = 0; i < getWorkerInfoList().size(); ++i) {
+      freeWorkers.put(i, getWorkerInfoById(i));
+    }
+    List<Integer> savedWorkerIds = new ArrayList<>();
+    for (Map.Entry<Integer, List<Integer>> saved :
+        savedPartitions.entrySet()) {
+      if (saved.getValue().isEmpty()) {
+        restoringWorkers.put(saved.getKey(),
+            freeWorkers.remove(saved.getKey()));
+      } else {
+        savedWorkerIds.add(saved.getKey());
+      }
+    }
+    restoringWorkers.putAll(LocalityAwareCheckpointAssigner.assignWorkers(
+        getFs(), checkpointFile, savedWorkerIds, freeWorkers));
+    return restoringWorkers;
+  }
+
   @Override
   public void setup() {
     // Might have to manually load a checkpoint.
@@ -1029,16 +1098,25 @@ public class BspServiceMaster<I extends WritableComparable,
   private void finalizeCheckpoint(long superstep,
     List<WorkerInfo> chosenWorkerInfoList)
     throws IOException, KeeperException, InterruptedException {
-    Path finalizedCheckpointPath =
-        new Path(getCheckpointBasePath(superstep) +
-            CheckpointingUtils.CHECKPOINT_FINALIZED_POSTFIX);
-    try {
-      getFs().delete(finalizedCheckpointPath, false);
-    } catch (IOException e) {
-      LOG.warn("finalizedValidCheckpointPrefixes: Removed old file " +
-          finalizedCheckpointPath);
-    }
+    writeFinalizedCheckpoint(superstep,
+        createFinalizedCheckpoint(superstep, chosenWorkerInfoList));
+  }
 
+  /**
+   * Create the contents of the finalized file of a checkpoint: the chosen
+   * workers and the master aggregated aggregator array from the previous
+   * superstep.
+   *
+   * @param superstep superstep to finalize
+   * @param chosenWorkerInfoList list of chosen workers that will be finalized
+   * @return Contents of the finalized file
+   * @throws IOException
+   * @throws InterruptedException
+   * @throws KeeperException
+   */
+  private byte[] createFinalizedCheckpoint(long superstep,
+    List<WorkerInfo> chosenWorkerInfoList)
+    throws IOException, KeeperException, InterruptedException {
     // Format:
     // <global statistics>
     // <superstep classes>
@@ -1046,8 +1124,9 @@ public class BspServiceMaster<I extends WritableComparable,
     // <used file prefix 0><used file prefix 1>...
     // <aggregator data>
     // <masterCompute data>
-    FSDataOutputStream finalizedOutputStream =
-        getFs().create(finalizedCheckpointPath);
+    ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
+    DataOutputStream finalizedOutputStream =
+        new DataOutputStream(byteArrayOutputStream);
 
     String superstepFinishedNode =
         getSuperstepFinishedPath(getApplicationAttempt(), superstep - 1);
@@ -1063,11 +1142,72 @@ public class BspServiceMaster<I extends WritableComparable,
     aggregatorTranslation.write(finalizedOutputStream);
     masterCompute.write(finalizedOutputStream);
     finalizedOutputStream.close();
+    return byteArrayOutputStream.toByteArray();
+  }
+
+  /**
+   * Write the finalized file of a checkpoint, which makes it valid.
+   *
+   * @param superstep superstep to finalize
+   * @param finalized Contents of the finalized file
+   * @throws IOException
+   */
+  private void writeFinalizedCheckpoint(long superstep, byte[] finalized)
+    throws IOException {
+    Path finalizedCheckpointPath =
+        new Path(getCheckpointBasePath(superstep) +
+            CheckpointingUtils.CHECKPOINT_FINALIZED_POSTFIX);
+    try {
+      getFs().delete(finalizedCheckpointPath, false);
+    } catch (IOException e) {
+      LOG.warn("finalizedValidCheckpointPrefixes: Removed old file " +
+          finalizedCheckpointPath);
+    }
+
+    FSDataOutputStream finalizedOutputStream =
+        getFs().create(finalizedCheckpointPath);
+    finalizedOutputStream.write(finalized);
+    finalizedOutputStream.close();
     lastCheckpointedSuperstep = superstep;
     GiraphStats.getInstance().
         getLastCheckpointedSuperstep().setValue(superstep);
   }
 
+  /**
+   * Wait for the workers to finish writing the checkpoint they write in the
+   * background (if any), and finalize it.
+   *
+   * @return False if there was a worker failure
+   */
+  private boolean finalizePendingCheckpoint() {
+    if (pendingCheckpointSuperstep == UNSET_SUPERSTEP) {
+      return true;
+    }
+    long superstep = pendingCheckpointSuperstep;
+    pendingCheckpointSuperstep = UNSET_SUPERSTEP;
+    if (!barrierOnWorkerList(
+        getWorkerWroteCheckpointPath(getApplicationAttempt(), superstep),
+        pendingCheckpointWorkers,
+        getWorkerWroteCheckpointEvent(),
+        false)) {
+      return false;
+    }
+    try {
+      writeFinalizedCheckpoint(superstep, pendingCheckpointFinalized);
+    } catch (IOException e) {
+      throw new IllegalStateException(
+          "finalizePendingCheckpoint: IOException on finalizing checkpoint",
+          e);
+    }
+    pendingCheckpointWorkers = null;
+    pendingCheckpointFinalized = null;
+    if (LOG.isInfoEnabled()) {
+      LOG.info("finalizePendingCheckpoint: Finalized checkpoint of " +
+          "superstep " + superstep);
+    }
+    return true;
+  }
+
   /**
    * Assign the partitions for this superstep.  If there are changes,
    * the workers will know how to do the exchange.  If this was a restarted
@@ -1196,6 +1336,7 @@ public class BspServiceMaster<I extends WritableComparable,
     // Process:
     // 1. Increase the application attempt and set to the correct checkpoint
     // 2. Send command to all workers to restart their tasks
+    pendingCheckpointSuperstep = UNSET_SUPERSTEP;
     setApplicationAttempt(getApplicationAttempt() + 1);
     setCachedSuperstep(checkpoint);
     setRestartedSuperstep(checkpoint);
@@ -1582,7 +1723,24 @@ public class BspServiceMaster<I extends WritableComparable,
 
     // Finalize the valid checkpoint file prefixes and possibly
     // the aggregators.
-    if (checkpointStatus != CheckpointStatus.NONE) {
+    if (checkpointStatus != CheckpointStatus.NONE &&
+        !finalizePendingCheckpoint()) {
+      return SuperstepState.WORKER_FAILURE;
+    }
+    if (checkpointStatus == CheckpointStatus.CHECKPOINT && asyncCheckpoints) {
+      // Workers write the checkpoint while this superstep computes, so only
+      // keep what is needed to finalize it once they're done
+      try {
+        pendingCheckpointFinalized =
+            createFinalizedCheckpoint(getSuperstep(), chosenWorkerInfoList);
+      } catch (IOException e) {
+        throw new IllegalStateException(
+            "coordinateSuperstep: IOException on finalizing checkpoint",
+            e);
+      }
+      pendingCheckpointSuperstep = getSuperstep();
+      pendingCheckpointWorkers = new ArrayList<>(chosenWorkerInfoList);
+    } else if (checkpointStatus != CheckpointStatus.NONE) {
       String workerWroteCheckpointPath =
           getWorkerWroteCheckpointPath(getApplicationAttempt(),
               getSuperstep());
@@ -1616,6 +1774,14 @@ public class BspServiceMaster<I extends WritableComparable,
       coordinateInputSplits();
     }
 
+    // Finalize the checkpoint of the previous superstep once the workers
+    // wrote it, while they compute this superstep
+    if (pendingCheckpointSuperstep != UNSET_SUPERSTEP &&
+        pendingCheckpointSuperstep < getSuperstep() &&
+        !finalizePendingCheckpoint()) {
+      return SuperstepState.WORKER_FAILURE;
+    }
+
     String finishedWorkerPath =
         getWorkerFinishedPath(getApplicationAttempt(), getSuperstep());
     if (!barrierOnWorkerList(finishedWorkerPath,
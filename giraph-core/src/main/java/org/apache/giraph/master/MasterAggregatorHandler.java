@@ -29,6 +29,8 @@ import org.apache.giraph.bsp.SuperstepState;
 import org.apache.giraph.comm.GlobalCommType;
 import org.apache.giraph.comm.MasterClient;
 import org.apache.giraph.comm.aggregators.AggregatorUtils;
+import org.apache.giraph.comm.aggregators.DeltaBroadcastValue;
+import org.apache.giraph.comm.aggregators.DeltaWritable;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
 import org.apache.giraph.reducers.ReduceOperation;
 import org.apache.giraph.reducers.Reducer;
@@ -56,6 +58,14 @@ public class MasterAggregatorHandler
   /** Values reduced from previous computation */
   private final Map<String, Writable> reducedMap =
       Maps.newHashMap();
+  /**
+   * Copies of the last broadcasted values which can be sent as differences,
+   * kept across supersteps
+   */
+  private final Map<String, Writable> previousBroadcastMap =
+      Maps.newHashMap();
+  /** Whether values can be broadcasted as differences from previous ones */
+  private final boolean deltaBroadcasts;
 
   /** Aggregator writer - for writing reduced values */
   private final AggregatorWriter aggregatorWriter;
@@ -77,6 +87,7 @@ public class MasterAggregatorHandler
     this.progressable = progressable;
     this.conf = conf;
     aggregatorWriter = conf.createAggregatorWriter();
+    deltaBroadcasts = AggregatorUtils.useDeltaBroadcasts(conf);
   }
 
   @Override
@@ -190,12 +201,25 @@ public class MasterAggregatorHandler
         progressable.progress();
       }
 
+      long numDeltas = 0;
       for (Entry<String, Writable> entry : broadcastMap.entrySet()) {
-        masterClient.sendToOwner(entry.getKey(),
-            GlobalCommType.BROADCAST,
+        DeltaBroadcastValue delta = createBroadcastDelta(entry.getKey(),
             entry.getValue());
+        if (delta != null) {
+          masterClient.sendToOwner(entry.getKey(),
+              GlobalCommType.BROADCAST_DELTA, delta);
+          ++numDeltas;
+        } else {
+          masterClient.sendToOwner(entry.getKey(),
+              GlobalCommType.BROADCAST,
+              entry.getValue());
+        }
         progressable.progress();
       }
+      if (LOG.isDebugEnabled() && numDeltas > 0) {
+        LOG.debug("sendDataToOwners: Broadcasted " + numDeltas +
+            " out of " + broadcastMap.size() + " values as differences");
+      }
       masterClient.finishSendingValues();
 
       broadcastMap.clear();
@@ -205,6 +229,30 @@ public class MasterAggregatorHandler
     }
   }
 
+  /**
+   * Create the difference of a broadcasted value from the value broadcasted
+   * with the same name before, and remember a copy of the value for the next
+   * broadcast.
+   *
+   * @param name Name
+   * @param value Broadcasted value
+   * @return Difference from the previous value, or null if the whole value
+   *         needs to be broadcasted
+   * @throws IOException
+   */
+  private DeltaBroadcastValue createBroadcastDelta(String name,
+      Writable value) throws IOException {
+    if (!deltaBroadcasts || !(value instanceof DeltaWritable)) {
+      return null;
+    }
+    DeltaBroadcastValue delta = DeltaBroadcastValue.create(
+        (DeltaWritable<Writable>) value, previousBroadcastMap.get(name));
+    // Workers copy every value they receive, whole or not
+    previousBroadcastMap.put(name,
+        WritableUtils.createCopy(value, value.getClass(), conf));
+    return delta;
+  }
+
   /**
    * Accept reduced values sent by worker. Every value will be sent
    * only once, by its owner.
@@ -324,6 +372,9 @@ public class MasterAggregatorHandler
     reducedMap.clear();
     broadcastMap.clear();
     reducerMap.clear();
+    // Workers restarted from a checkpoint don't have the previous values, so
+    // the first broadcast after a restart has to send whole values
+    previousBroadcastMap.clear();
 
     int numReducers = in.readInt();
     for (int i = 0; i < numReducers; i++) {
@@ -20,6 +20,7 @@ package org.apache.giraph.ooc;
 
 import com.sun.management.GarbageCollectionNotificationInfo;
 import com.yammer.metrics.core.Gauge;
+import org.apache.commons.lang3.mutable.MutableLong;
 import org.apache.giraph.bsp.BspService;
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.comm.NetworkMetrics;
@@ -34,6 +35,7 @@ import org.apache.giraph.metrics.SuperstepMetricsRegistry;
 import org.apache.giraph.ooc.data.MetaPartitionManager;
 import org.apache.giraph.ooc.command.IOCommand;
 import org.apache.giraph.ooc.command.LoadPartitionIOCommand;
+import org.apache.giraph.ooc.persistence.CompressedDataAccessor;
 import org.apache.giraph.ooc.persistence.OutOfCoreDataAccessor;
 import org.apache.giraph.ooc.policy.FixedPartitionsOracle;
 import org.apache.giraph.ooc.policy.OutOfCoreOracle;
@@ -81,6 +83,16 @@ public class OutOfCoreEngine implements ResetSuperstepMetricsObserver {
   private final OutOfCoreOracle oracle;
   /** IO statistics collector */
   private final OutOfCoreIOStatistics statistics;
+  /** Prefetcher of partitions in compute order */
+  private final OutOfCorePrefetcher prefetcher;
+  /** Time (in milliseconds) each thread spent waiting for a partition */
+  private final ThreadLocal<MutableLong> partitionWaitTime =
+      new ThreadLocal<MutableLong>() {
+        @Override
+        protected MutableLong initialValue() {
+          return new MutableLong();
+        }
+      };
   /**
    * Global lock for entire superstep. This lock helps to avoid overlapping of
    * out-of-core decisions (what to do next to help the out-of-core mechanism)
@@ -183,6 +195,10 @@ public class OutOfCoreEngine implements ResetSuperstepMetricsObserver {
     this.ioScheduler = new OutOfCoreIOScheduler(conf, this, numIOThreads);
     this.metaPartitionManager = new MetaPartitionManager(numIOThreads, this);
     this.statistics = new OutOfCoreIOStatistics(conf, numIOThreads);
+    if (dataAccessor instanceof CompressedDataAccessor) {
+      ((CompressedDataAccessor) dataAccessor).setIOStatistics(statistics);
+    }
+    this.prefetcher = new OutOfCorePrefetcher(conf, this);
     int maxPartitionsInMemory =
         GiraphConstants.MAX_PARTITIONS_IN_MEMORY.get(conf);
     Class<? extends OutOfCoreOracle> oracleClass =
@@ -315,7 +331,9 @@ public class OutOfCoreEngine implements ResetSuperstepMetricsObserver {
             LOG.info("getNextPartition: waiting until a partition becomes " +
                 "available!");
           }
+          long startTime = System.currentTimeMillis();
           partitionAvailable.wait(MSEC_TO_WAIT);
+          partitionWaitTime.get().add(System.currentTimeMillis() - startTime);
         } catch (InterruptedException e) {
           throw new IllegalStateException("getNextPartition: caught " +
               "InterruptedException while waiting to retrieve a partition to " +
@@ -327,9 +345,26 @@ public class OutOfCoreEngine implements ResetSuperstepMetricsObserver {
         partitionId = null;
       }
     }
+    if (partitionId != null) {
+      prefetcher.partitionHandedOut(partitionId);
+    }
     return partitionId;
   }
 
+  /**
+   * Get the time the calling thread spent blocked in
+   * {@link #getNextPartition()} waiting for a partition to be loaded, and
+   * reset it.
+   *
+   * @return wait time in milliseconds since the last call
+   */
+  public long getAndResetPartitionWaitTime() {
+    MutableLong waitTime = partitionWaitTime.get();
+    long result = waitTime.longValue();
+    waitTime.setValue(0);
+    return result;
+  }
+
   /**
    * Notify out-of-core engine that processing of a particular partition is done
    *
@@ -374,6 +409,7 @@ public class OutOfCoreEngine implements ResetSuperstepMetricsObserver {
           activeThreadsPermit.availablePermits() + " active threads");
     }
     resetDone = false;
+    prefetcher.startIteration();
   }
 
   /**
@@ -31,6 +31,7 @@ import org.apache.log4j.Logger;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -121,7 +122,13 @@ public class OutOfCoreIOScheduler {
         if (canLoad) {
           command = threadLoadCommandQueue.get(threadId).poll();
           checkNotNull(command);
-          if (oocEngine.getOracle().approve(command)) {
+          if (isStaleLoadCommand(command)) {
+            // The command may have been put back in the queue after the
+            // stale commands were removed at the beginning of the superstep
+            if (LOG.isInfoEnabled()) {
+              LOG.info("getNextIOCommand: dropping stale command " + command);
+            }
+          } else if (oocEngine.getOracle().approve(command)) {
             return command;
           } else {
             // Loading is not viable at this moment. We should put the command
@@ -250,6 +257,39 @@ public class OutOfCoreIOScheduler {
     }
   }
 
+  /**
+   * Remove the load commands queued for a superstep before the current one.
+   * Loads issued ahead of compute threads may not be executed by the end of
+   * their superstep, and should not be executed in a later superstep.
+   *
+   * @return number of commands removed
+   */
+  public int removeStaleLoadCommands() {
+    int numRemoved = 0;
+    for (Queue<IOCommand> queue : threadLoadCommandQueue) {
+      Iterator<IOCommand> it = queue.iterator();
+      while (it.hasNext()) {
+        if (isStaleLoadCommand(it.next())) {
+          it.remove();
+          ++numRemoved;
+        }
+      }
+    }
+    return numRemoved;
+  }
+
+  /**
+   * Whether a command is a load for a superstep before the current one
+   *
+   * @param command IO command
+   * @return true if the command is a stale load command
+   */
+  private boolean isStaleLoadCommand(IOCommand command) {
+    return command instanceof LoadPartitionIOCommand &&
+        ((LoadPartitionIOCommand) command).getSuperstep() <
+            oocEngine.getSuperstep();
+  }
+
   /**
    * Shutdown/Terminate the IO scheduler, and notify all IO threads to halt
    */
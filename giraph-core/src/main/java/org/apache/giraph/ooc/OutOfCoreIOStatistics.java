@@ -79,6 +79,12 @@ public class OutOfCoreIOStatistics {
   private final Map<IOCommandType, StatisticsEntry> aggregateStats;
   /** How many IO command completed? */
   private int numUpdates = 0;
+  /** Number of bytes given to the compression codec of spilled data */
+  private final AtomicLong uncompressedBytes = new AtomicLong(0);
+  /** Number of bytes actually stored after compressing spilled data */
+  private final AtomicLong compressedBytes = new AtomicLong(0);
+  /** Time spent compressing and decompressing spilled data (nanoseconds) */
+  private final AtomicLong codecTime = new AtomicLong(0);
 
   /**
    * Constructor
@@ -152,6 +158,46 @@ public class OutOfCoreIOStatistics {
     }
   }
 
+  /**
+   * Update statistics with a block of spilled data that is compressed.
+   *
+   * @param rawBytes number of bytes before compression
+   * @param storedBytes number of bytes stored after compression
+   * @param duration time it took to compress the block (nanoseconds)
+   */
+  public void updateCompression(long rawBytes, long storedBytes,
+                                long duration) {
+    uncompressedBytes.addAndGet(rawBytes);
+    compressedBytes.addAndGet(storedBytes);
+    codecTime.addAndGet(duration);
+  }
+
+  /**
+   * Update statistics with a block of spilled data that is decompressed.
+   *
+   * @param duration time it took to decompress the block (nanoseconds)
+   */
+  public void updateDecompression(long duration) {
+    codecTime.addAndGet(duration);
+  }
+
+  /**
+   * @return ratio of the stored size of spilled data to its uncompressed size
+   *         (1 if spilled data is not compressed)
+   */
+  public double getCompressionRatio() {
+    long rawBytes = uncompressedBytes.get();
+    return rawBytes == 0 ? 1 : (double) compressedBytes.get() / rawBytes;
+  }
+
+  /**
+   * @return total time spent compressing and decompressing spilled data
+   *         (milliseconds)
+   */
+  public long getCodecTime() {
+    return codecTime.get() / 1000000;
+  }
+
   @Override
   public String toString() {
     StringBuffer sb = new StringBuffer();
@@ -182,6 +228,10 @@ public class OutOfCoreIOStatistics {
             (waitTime + loadTime + storeTime) * 1000 / 1024 / 1024));
     sb.append(String.format("DISK_BANDWIDTH: %.2f MB/s",
         (double) diskBandwidthEstimate.get() / 1024 / 1024));
+    if (uncompressedBytes.get() > 0) {
+      sb.append(String.format(", COMPRESSION_RATIO: %.2f, CODEC_TIME: %.2f " +
+          "sec", getCompressionRatio(), getCodecTime() / 1000.0));
+    }
 
     return sb.toString();
   }
@@ -0,0 +1,179 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.ooc;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+import org.apache.giraph.bsp.BspService;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.conf.IntConfOption;
+import org.apache.giraph.ooc.command.IOCommand;
+import org.apache.giraph.ooc.command.LoadPartitionIOCommand;
+import org.apache.giraph.ooc.data.MetaPartitionManager;
+import org.apache.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+
+import static org.apache.giraph.conf.GiraphConstants.ONE_MB;
+
+/**
+ * Prefetches out-of-core partitions in the order compute threads will get
+ * them. Compute threads are handed partitions in memory first, so partitions
+ * on disk are handed out in the order they are brought to memory. At the
+ * beginning of each superstep the partitions on disk are put in a fixed
+ * order, and loads (of each partition along with its current messages) are
+ * issued for the next partitions in that order, keeping up to a number of
+ * partitions, and an estimated amount of memory, loaded or being loaded
+ * ahead of compute threads. Loads still go through the IO scheduler, so the
+ * out-of-core oracle has the final say on whether they execute.
+ */
+public class OutOfCorePrefetcher {
+  /** Number of partitions to prefetch ahead of compute threads */
+  public static final IntConfOption OOC_PREFETCH_PARTITIONS =
+      new IntConfOption("giraph.oocPrefetchPartitions", 0,
+          "Number of out-of-core partitions to load ahead of compute " +
+              "threads, in the order they will be computed (0 to disable)");
+  /** Memory budget for prefetched partitions */
+  public static final IntConfOption OOC_PREFETCH_MEMORY_BUDGET_MB =
+      new IntConfOption("giraph.oocPrefetchMemoryBudgetMB", 1024,
+          "Maximum estimated size (in MB) of the partitions prefetched ahead " +
+              "of compute threads");
+
+  /** Class logger */
+  private static final Logger LOG =
+      Logger.getLogger(OutOfCorePrefetcher.class);
+  /** Out-of-core engine */
+  private final OutOfCoreEngine oocEngine;
+  /** Cached value for OOC_PREFETCH_PARTITIONS */
+  private final int prefetchPartitions;
+  /** Cached value for OOC_PREFETCH_MEMORY_BUDGET_MB (in bytes) */
+  private final long memoryBudget;
+  /** Partitions on disk not prefetched yet, in compute order */
+  private final Queue<Integer> pendingPartitions = new ArrayDeque<>();
+  /** Partitions prefetched but not handed to compute threads yet */
+  private final Set<Integer> prefetchedPartitions = Sets.newHashSet();
+
+  /**
+   * Constructor
+   *
+   * @param conf configuration
+   * @param oocEngine out-of-core engine
+   */
+  public OutOfCorePrefetcher(ImmutableClassesGiraphConfiguration<?, ?, ?> conf,
+                             OutOfCoreEngine oocEngine) {
+    this.oocEngine = oocEngine;
+    this.prefetchPartitions = OOC_PREFETCH_PARTITIONS.get(conf);
+    this.memoryBudget =
+        OOC_PREFETCH_MEMORY_BUDGET_MB.get(conf) * (long) ONE_MB;
+  }
+
+  /**
+   * Notify the prefetcher that an iteration cycle over all partitions is about
+   * to begin. Drop the prefetches of the previous superstep that are not
+   * executed yet, determine the order of the partitions on disk and start
+   * prefetching them.
+   */
+  public synchronized void startIteration() {
+    pendingPartitions.clear();
+    prefetchedPartitions.clear();
+    if (prefetchPartitions == 0) {
+      return;
+    }
+    // Prefetches of the previous superstep may still be queued
+    int numRemoved = oocEngine.getIOScheduler().removeStaleLoadCommands();
+    if (numRemoved > 0 && LOG.isInfoEnabled()) {
+      LOG.info("startIteration: dropped " + numRemoved + " prefetches of " +
+          "the previous superstep");
+    }
+    if (oocEngine.getSuperstep() == BspService.INPUT_SUPERSTEP) {
+      return;
+    }
+    MetaPartitionManager metaPartitionManager =
+        oocEngine.getMetaPartitionManager();
+    List<Integer> onDisk = Lists.newArrayList();
+    for (Integer partitionId : metaPartitionManager.getPartitionIds()) {
+      if (metaPartitionManager.isPartitionOnDisk(partitionId)) {
+        onDisk.add(partitionId);
+      }
+    }
+    Collections.sort(onDisk);
+    pendingPartitions.addAll(onDisk);
+    if (LOG.isInfoEnabled()) {
+      LOG.info("startIteration: " + onDisk.size() + " partitions on disk to " +
+          "prefetch, up to " + prefetchPartitions + " at a time");
+    }
+    fill();
+  }
+
+  /**
+   * Notify the prefetcher that a partition is handed to a compute thread, so
+   * the next partition in order can be prefetched.
+   *
+   * @param partitionId id of the partition handed out
+   */
+  public synchronized void partitionHandedOut(int partitionId) {
+    if (prefetchPartitions == 0) {
+      return;
+    }
+    if (!prefetchedPartitions.remove(partitionId)) {
+      // Partition is brought to memory by the oracle before its turn
+      pendingPartitions.remove(partitionId);
+    }
+    fill();
+  }
+
+  /**
+   * @return estimated memory footprint of a loaded partition (0 if unknown)
+   */
+  private long getPartitionSizeEstimate() {
+    OutOfCoreIOStatistics.BytesDuration loadStats =
+        oocEngine.getIOStatistics().getCommandTypeStats(
+            IOCommand.IOCommandType.LOAD_PARTITION);
+    if (loadStats.getOccurrence() == 0) {
+      return 0;
+    }
+    return loadStats.getBytes() / loadStats.getOccurrence();
+  }
+
+  /**
+   * Issue loads for the next partitions in order, as long as the number and
+   * estimated size of prefetched partitions are within bounds.
+   */
+  private void fill() {
+    MetaPartitionManager metaPartitionManager =
+        oocEngine.getMetaPartitionManager();
+    long partitionSize = getPartitionSizeEstimate();
+    while (!pendingPartitions.isEmpty() &&
+        prefetchedPartitions.size() < prefetchPartitions &&
+        (prefetchedPartitions.size() + 1) * partitionSize <= memoryBudget) {
+      int partitionId = pendingPartitions.poll();
+      if (metaPartitionManager.isPartitionProcessed(partitionId) ||
+          !metaPartitionManager.isPartitionOnDisk(partitionId)) {
+        continue;
+      }
+      oocEngine.getIOScheduler().addIOCommand(new LoadPartitionIOCommand(
+          oocEngine, partitionId, oocEngine.getSuperstep()));
+      prefetchedPartitions.add(partitionId);
+    }
+  }
+}
@@ -53,6 +53,15 @@ public class LoadPartitionIOCommand extends IOCommand {
     this.superstep = superstep;
   }
 
+  /**
+   * Get the superstep the partition is loaded for
+   *
+   * @return superstep the partition is loaded for
+   */
+  public long getSuperstep() {
+    return superstep;
+  }
+
   @Override
   public boolean execute() throws IOException {
     boolean executed = false;
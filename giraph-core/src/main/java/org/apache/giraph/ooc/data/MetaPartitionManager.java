@@ -167,6 +167,29 @@ public class MetaPartitionManager {
     return numPartiallyInMemoryPartitions.get();
   }
 
+  /**
+   * @return number of partitions processed in the current iteration cycle
+   *         over all partitions
+   */
+  public int getNumPartitionsProcessed() {
+    return numPartitionsProcessed.get();
+  }
+
+  /**
+   * Get the number of unprocessed partitions in memory (partition and current
+   * messages in memory), i.e. partitions ready to be handed to compute threads
+   *
+   * @return number of unprocessed partitions in memory
+   */
+  public int getNumInMemoryUnprocessedPartitions() {
+    int count = 0;
+    for (MetaPartitionDictionary dictionary : perThreadPartitionDictionary) {
+      count += dictionary.count(ProcessingState.UNPROCESSED,
+          StorageState.IN_MEM, StorageState.IN_MEM);
+    }
+    return count;
+  }
+
   /**
    * Get total number of partitions
    *
@@ -1132,6 +1155,32 @@ public class MetaPartitionManager {
       return null;
     }
 
+    /**
+     * Number of partitions with given processing state, partition storage
+     * state and current messages storage state.
+     *
+     * @param processingState processing state property
+     * @param partitionStorageState partition storage property
+     * @param currentMessagesState current messages storage property
+     * @return number of partitions in the dictionary with the given
+     *         combination of properties
+     */
+    public int count(ProcessingState processingState,
+                     StorageState partitionStorageState,
+                     StorageState currentMessagesState) {
+      int count = 0;
+      for (int t = 0; t < 3; ++t) {
+        Set<MetaPartition> partitionSet =
+            partitions[processingState.ordinal()]
+                [partitionStorageState.ordinal()]
+                [currentMessagesState.ordinal()][t];
+        synchronized (partitionSet) {
+          count += partitionSet.size();
+        }
+      }
+      return count;
+    }
+
     /**
      * Whether there is an in-memory partition that is processed already,
      * excluding those partitions that are prefetched
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.ooc.persistence;
+
+import org.apache.giraph.utils.UnsafeByteArrayOutputStream;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * <code>DataOutput</code> serializing into a buffer with Unsafe writes, and
+ * handing the buffer out as a block whenever it fills up. Values are never
+ * split across blocks; only byte arrays at least as large as the buffer are
+ * handed out as blocks of their own, without being copied into the buffer.
+ */
+public abstract class BlockDataOutput implements DataOutput {
+  /** Buffer data is serialized into */
+  private final UnsafeByteArrayOutputStream buffer;
+  /** Size of the buffer after which it's handed out as a block */
+  private final int blockSize;
+  /** Number of bytes handed out in blocks */
+  private long bytesInBlocks = 0;
+
+  /**
+   * Constructor
+   *
+   * @param buffer reusable buffer to serialize into, its size is the size of
+   *               the blocks
+   */
+  public BlockDataOutput(byte[] buffer) {
+    this.buffer = new UnsafeByteArrayOutputStream(buffer);
+    this.blockSize = buffer.length;
+  }
+
+  /**
+   * Handle a full block of data.
+   *
+   * @param block array holding the block
+   * @param offset offset of the block in the array
+   * @param length length of the block
+   * @throws IOException
+   */
+  protected abstract void writeBlock(byte[] block, int offset, int length)
+      throws IOException;
+
+  /**
+   * Hand out the buffered data as a block, if there is any.
+   *
+   * @throws IOException
+   */
+  public void flush() throws IOException {
+    if (buffer.getPos() > 0) {
+      bytesInBlocks += buffer.getPos();
+      writeBlock(buffer.getByteArray(), 0, buffer.getPos());
+      buffer.reset();
+    }
+  }
+
+  /**
+   * @return number of bytes written so far
+   */
+  public long getBytesWritten() {
+    return bytesInBlocks + buffer.getPos();
+  }
+
+  /**
+   * Hand out the buffer as a block if it's full.
+   *
+   * @throws IOException
+   */
+  private void flushIfFull() throws IOException {
+    if (buffer.getPos() >= blockSize) {
+      flush();
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    buffer.write(b);
+    flushIfFull();
+  }
+
+  @Override
+  public void write(byte[] b) throws IOException {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    if (len >= blockSize) {
+      // Don't copy large arrays through the buffer
+      flush();
+      bytesInBlocks += len;
+      writeBlock(b, off, len);
+    } else {
+      buffer.write(b, off, len);
+      flushIfFull();
+    }
+  }
+
+  @Override
+  public void writeBoolean(boolean v) throws IOException {
+    buffer.writeBoolean(v);
+    flushIfFull();
+  }
+
+  @Override
+  public void writeByte(int v) throws IOException {
+    buffer.writeByte(v);
+    flushIfFull();
+  }
+
+  @Override
+  public void writeShort(int v) throws IOException {
+    buffer.writeShort(v);
+    flushIfFull();
+  }
+
+  @Override
+  public void writeChar(int v) throws IOException {
+    buffer.writeChar(v);
+    flushIfFull();
+  }
+
+  @Override
+  public void writeInt(int v) throws IOException {
+    buffer.writeInt(v);
+    flushIfFull();
+  }
+
+  @Override
+  public void writeLong(long v) throws IOException {
+    buffer.writeLong(v);
+    flushIfFull();
+  }
+
+  @Override
+  public void writeFloat(float v) throws IOException {
+    buffer.writeFloat(v);
+    flushIfFull();
+  }
+
+  @Override
+  public void writeDouble(double v) throws IOException {
+    buffer.writeDouble(v);
+    flushIfFull();
+  }
+
+  @Override
+  public void writeBytes(String s) throws IOException {
+    buffer.writeBytes(s);
+    flushIfFull();
+  }
+
+  @Override
+  public void writeChars(String s) throws IOException {
+    buffer.writeChars(s);
+    flushIfFull();
+  }
+
+  @Override
+  public void writeUTF(String s) throws IOException {
+    buffer.writeUTF(s);
+    flushIfFull();
+  }
+}
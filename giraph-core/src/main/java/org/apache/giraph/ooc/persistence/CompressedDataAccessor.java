@@ -0,0 +1,547 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.ooc.persistence;
+
+import org.apache.giraph.conf.ClassConfOption;
+import org.apache.giraph.conf.FloatConfOption;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.conf.IntConfOption;
+import org.apache.giraph.conf.StrConfOption;
+import org.apache.giraph.ooc.OutOfCoreIOStatistics;
+import org.apache.giraph.utils.UnsafeByteArrayOutputStream;
+import org.apache.giraph.utils.UnsafeReusableByteArrayInput;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.apache.log4j.Logger;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+import static org.apache.giraph.conf.GiraphConstants.ONE_MB;
+
+/**
+ * Data accessor object compressing the data of another data accessor. Data
+ * is compressed in blocks with a Hadoop compression codec (e.g.
+ * <code>Lz4Codec</code> or <code>SnappyCodec</code> when native Hadoop
+ * libraries are available). Every block records whether it is compressed, so
+ * blocks which don't compress well are stored as they are and don't cost any
+ * decompression time. Compression ratio and codec time are reported to
+ * {@link OutOfCoreIOStatistics}.
+ *
+ * The number of bytes reported as read/written is the uncompressed size, so
+ * bandwidth estimates reflect how fast in-memory data is moved.
+ * Note: Same assumptions as the underlying data accessor apply.
+ */
+public class CompressedDataAccessor implements OutOfCoreDataAccessor {
+  /** Data accessor compressed data is stored with */
+  public static final ClassConfOption<OutOfCoreDataAccessor>
+  OOC_COMPRESSED_DATA_ACCESSOR =
+      ClassConfOption.create("giraph.oocCompressedDataAccessor",
+          LocalDiskDataAccessor.class, OutOfCoreDataAccessor.class,
+          "Data accessor used to store compressed out-of-core data");
+  /** Compression codec class */
+  public static final StrConfOption OOC_COMPRESSION_CODEC =
+      new StrConfOption("giraph.oocCompressionCodec",
+          "org.apache.hadoop.io.compress.Lz4Codec",
+          "Hadoop compression codec class used to compress out-of-core data " +
+              "(e.g. org.apache.hadoop.io.compress.SnappyCodec). The default " +
+              "LZ4 codec needs the native Hadoop library, DefaultCodec is " +
+              "used when it isn't available");
+  /** Size of uncompressed blocks */
+  public static final IntConfOption OOC_COMPRESSION_BLOCK_SIZE =
+      new IntConfOption("giraph.oocCompressionBlockSize", ONE_MB,
+          "Size of blocks out-of-core data is compressed in");
+  /**
+   * Blocks compressing to more than this fraction of their size are stored
+   * uncompressed.
+   */
+  public static final FloatConfOption OOC_MAX_COMPRESSION_RATIO =
+      new FloatConfOption("giraph.oocMaxCompressionRatio", 0.9f,
+          "Blocks compressing to more than this fraction of their size are " +
+              "stored uncompressed");
+
+  /** Class logger */
+  private static final Logger LOG =
+      Logger.getLogger(CompressedDataAccessor.class);
+  /** Codec used when the default codec isn't available */
+  private static final String FALLBACK_CODEC =
+      "org.apache.hadoop.io.compress.DefaultCodec";
+
+  /** Block header marking an uncompressed block */
+  private static final byte BLOCK_STORED = 0;
+  /** Block header marking a compressed block */
+  private static final byte BLOCK_COMPRESSED = 1;
+
+  /** Underlying data accessor */
+  private final OutOfCoreDataAccessor dataAccessor;
+  /** Compression codec */
+  private final CompressionCodec codec;
+  /** Maximum compression ratio to store a block compressed */
+  private final float maxCompressionRatio;
+  /** Per-thread buffers for uncompressed blocks being written */
+  private final byte[][] perThreadBlockBuffers;
+  /** Per-thread buffers for compressed blocks */
+  private final UnsafeByteArrayOutputStream[] perThreadCompressedBuffers;
+  /** Per-thread buffers for uncompressed blocks being read */
+  private final byte[][] perThreadReadBuffers;
+  /** Per-thread buffers for compressed blocks being read */
+  private final byte[][] perThreadCompressedReadBuffers;
+  /** Per-thread compressors */
+  private final Compressor[] compressors;
+  /** Per-thread decompressors */
+  private final Decompressor[] decompressors;
+  /** IO statistics collector (null if not set) */
+  private volatile OutOfCoreIOStatistics statistics;
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public CompressedDataAccessor(
+      ImmutableClassesGiraphConfiguration<?, ?, ?> conf) {
+    Class<? extends OutOfCoreDataAccessor> accessorClass =
+        OOC_COMPRESSED_DATA_ACCESSOR.get(conf);
+    try {
+      Constructor<?> constructor = accessorClass.getConstructor(
+          ImmutableClassesGiraphConfiguration.class);
+      dataAccessor = (OutOfCoreDataAccessor) constructor.newInstance(conf);
+    } catch (NoSuchMethodException | InstantiationException |
+        InvocationTargetException | IllegalAccessException e) {
+      throw new IllegalStateException("CompressedDataAccessor: caught " +
+          "exception while creating the underlying data accessor!", e);
+    }
+    codec = createCodec(conf);
+    maxCompressionRatio = OOC_MAX_COMPRESSION_RATIO.get(conf);
+    int numThreads = dataAccessor.getNumAccessorThreads();
+    int blockSize = OOC_COMPRESSION_BLOCK_SIZE.get(conf);
+    perThreadBlockBuffers = new byte[numThreads][blockSize];
+    perThreadCompressedBuffers = new UnsafeByteArrayOutputStream[numThreads];
+    perThreadReadBuffers = new byte[numThreads][blockSize];
+    perThreadCompressedReadBuffers = new byte[numThreads][blockSize];
+    compressors = new Compressor[numThreads];
+    decompressors = new Decompressor[numThreads];
+    for (int i = 0; i < numThreads; ++i) {
+      perThreadCompressedBuffers[i] =
+          new UnsafeByteArrayOutputStream(blockSize);
+      compressors[i] = CodecPool.getCompressor(codec);
+      decompressors[i] = CodecPool.getDecompressor(codec);
+    }
+  }
+
+  /**
+   * Create the configured compression codec. If the default codec can't be
+   * used (e.g. the native Hadoop library isn't loaded), fall back to
+   * DefaultCodec; a codec set explicitly has to be available.
+   *
+   * @param conf Configuration
+   * @return Compression codec
+   */
+  private static CompressionCodec createCodec(
+      ImmutableClassesGiraphConfiguration<?, ?, ?> conf) {
+    String codecClassName = OOC_COMPRESSION_CODEC.get(conf);
+    try {
+      CompressionCodec codec = (CompressionCodec) ReflectionUtils.newInstance(
+          conf.getClassByName(codecClassName), conf);
+      // Native codecs only fail once a compressor is requested
+      CodecPool.returnCompressor(CodecPool.getCompressor(codec));
+      CodecPool.returnDecompressor(CodecPool.getDecompressor(codec));
+      return codec;
+      // CHECKSTYLE: stop IllegalCatch
+    } catch (ClassNotFoundException | RuntimeException | LinkageError e) {
+      // CHECKSTYLE: resume IllegalCatch
+      if (!OOC_COMPRESSION_CODEC.isDefaultValue(conf)) {
+        throw new IllegalArgumentException("createCodec: compression " +
+            "codec " + codecClassName + " is not available", e);
+      }
+      LOG.warn("createCodec: " + codecClassName + " is not available (" +
+          e + "), using " + FALLBACK_CODEC);
+    }
+    try {
+      return (CompressionCodec) ReflectionUtils.newInstance(
+          conf.getClassByName(FALLBACK_CODEC), conf);
+    } catch (ClassNotFoundException e) {
+      throw new IllegalStateException("createCodec: " + FALLBACK_CODEC +
+          " not found", e);
+    }
+  }
+
+  /**
+   * Set the statistics collector compression is reported to.
+   *
+   * @param statistics IO statistics collector
+   */
+  public void setIOStatistics(OutOfCoreIOStatistics statistics) {
+    this.statistics = statistics;
+  }
+
+  @Override
+  public void initialize() {
+    dataAccessor.initialize();
+  }
+
+  @Override
+  public void shutdown() {
+    for (int i = 0; i < compressors.length; ++i) {
+      CodecPool.returnCompressor(compressors[i]);
+      CodecPool.returnDecompressor(decompressors[i]);
+    }
+    dataAccessor.shutdown();
+  }
+
+  @Override
+  public int getNumAccessorThreads() {
+    return dataAccessor.getNumAccessorThreads();
+  }
+
+  @Override
+  public DataInputWrapper prepareInput(int threadId, DataIndex index)
+      throws IOException {
+    return new CompressedDataInputWrapper(threadId,
+        dataAccessor.prepareInput(threadId, index));
+  }
+
+  @Override
+  public DataOutputWrapper prepareOutput(
+      int threadId, DataIndex index, boolean shouldAppend) throws IOException {
+    return new CompressedDataOutputWrapper(threadId,
+        dataAccessor.prepareOutput(threadId, index, shouldAppend));
+  }
+
+  @Override
+  public boolean dataExist(int threadId, DataIndex index) {
+    return dataAccessor.dataExist(threadId, index);
+  }
+
+  /**
+   * <code>DataOutput</code> compressing its blocks and writing them to the
+   * output of the underlying data accessor, each preceded by a header with
+   * its type, uncompressed and stored length.
+   */
+  private class CompressingDataOutput extends BlockDataOutput {
+    /** Id of the thread using this output */
+    private final int threadId;
+    /** Output of the underlying data accessor */
+    private final DataOutput output;
+
+    /**
+     * Constructor
+     *
+     * @param threadId id of the thread using this output
+     * @param output output of the underlying data accessor
+     */
+    CompressingDataOutput(int threadId, DataOutput output) {
+      super(perThreadBlockBuffers[threadId]);
+      this.threadId = threadId;
+      this.output = output;
+    }
+
+    @Override
+    protected void writeBlock(byte[] block, int offset, int length)
+        throws IOException {
+      long startTime = System.nanoTime();
+      UnsafeByteArrayOutputStream compressed =
+          perThreadCompressedBuffers[threadId];
+      compressed.reset();
+      Compressor compressor = compressors[threadId];
+      compressor.reset();
+      CompressionOutputStream compressionStream =
+          codec.createOutputStream(compressed, compressor);
+      compressionStream.write(block, offset, length);
+      compressionStream.finish();
+      boolean useCompressed =
+          compressed.getPos() <= length * maxCompressionRatio;
+      if (statistics != null) {
+        statistics.updateCompression(length,
+            useCompressed ? compressed.getPos() : length,
+            System.nanoTime() - startTime);
+      }
+      if (useCompressed) {
+        output.writeByte(BLOCK_COMPRESSED);
+        output.writeInt(length);
+        output.writeInt(compressed.getPos());
+        output.write(compressed.getByteArray(), 0, compressed.getPos());
+      } else {
+        output.writeByte(BLOCK_STORED);
+        output.writeInt(length);
+        output.writeInt(length);
+        output.write(block, offset, length);
+      }
+    }
+  }
+
+  /**
+   * <code>DataInput</code> reading blocks from the input of the underlying
+   * data accessor and decompressing them as needed.
+   */
+  private class DecompressingDataInput implements DataInput {
+    /** Id of the thread using this input */
+    private final int threadId;
+    /** Input of the underlying data accessor */
+    private final DataInput input;
+    /** Reader of the current uncompressed block */
+    private final UnsafeReusableByteArrayInput block =
+        new UnsafeReusableByteArrayInput();
+    /** Number of uncompressed bytes of the blocks loaded so far */
+    private long bytesLoaded = 0;
+
+    /**
+     * Constructor
+     *
+     * @param threadId id of the thread using this input
+     * @param input input of the underlying data accessor
+     */
+    DecompressingDataInput(int threadId, DataInput input) {
+      this.threadId = threadId;
+      this.input = input;
+    }
+
+    /**
+     * @return number of uncompressed bytes read so far
+     */
+    long getBytesRead() {
+      return bytesLoaded - block.available();
+    }
+
+    /**
+     * Make sure the current block has bytes left, loading the next blocks
+     * if needed.
+     *
+     * @throws IOException
+     */
+    private void ensureBlock() throws IOException {
+      while (block.available() == 0) {
+        loadBlock();
+      }
+    }
+
+    /**
+     * Read and decompress the next block.
+     *
+     * @throws IOException
+     */
+    private void loadBlock() throws IOException {
+      byte type = input.readByte();
+      int length = input.readInt();
+      int storedLength = input.readInt();
+      byte[] buffer = perThreadReadBuffers[threadId];
+      if (buffer.length < length) {
+        buffer = new byte[length];
+        perThreadReadBuffers[threadId] = buffer;
+      }
+      if (type == BLOCK_STORED) {
+        input.readFully(buffer, 0, length);
+      } else {
+        byte[] compressed = perThreadCompressedReadBuffers[threadId];
+        if (compressed.length < storedLength) {
+          compressed = new byte[storedLength];
+          perThreadCompressedReadBuffers[threadId] = compressed;
+        }
+        input.readFully(compressed, 0, storedLength);
+        long startTime = System.nanoTime();
+        Decompressor decompressor = decompressors[threadId];
+        decompressor.reset();
+        CompressionInputStream decompressionStream = codec.createInputStream(
+            new ByteArrayInputStream(compressed, 0, storedLength),
+            decompressor);
+        IOUtils.readFully(decompressionStream, buffer, 0, length);
+        if (statistics != null) {
+          statistics.updateDecompression(System.nanoTime() - startTime);
+        }
+      }
+      block.initialize(buffer, 0, length);
+      bytesLoaded += length;
+    }
+
+    @Override
+    public void readFully(byte[] b) throws IOException {
+      readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(byte[] b, int off, int len) throws IOException {
+      while (len > 0) {
+        ensureBlock();
+        int toRead = Math.min(len, block.available());
+        block.readFully(b, off, toRead);
+        off += toRead;
+        len -= toRead;
+      }
+    }
+
+    @Override
+    public int skipBytes(int n) throws IOException {
+      int skipped = 0;
+      while (skipped < n) {
+        ensureBlock();
+        skipped += block.skipBytes(Math.min(n - skipped, block.available()));
+      }
+      return skipped;
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+      ensureBlock();
+      return block.readBoolean();
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+      ensureBlock();
+      return block.readByte();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+      ensureBlock();
+      return block.readUnsignedByte();
+    }
+
+    @Override
+    public short readShort() throws IOException {
+      ensureBlock();
+      return block.readShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+      ensureBlock();
+      return block.readUnsignedShort();
+    }
+
+    @Override
+    public char readChar() throws IOException {
+      ensureBlock();
+      return block.readChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+      ensureBlock();
+      return block.readInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+      ensureBlock();
+      return block.readLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+      ensureBlock();
+      return block.readFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+      ensureBlock();
+      return block.readDouble();
+    }
+
+    @Override
+    public String readLine() throws IOException {
+      ensureBlock();
+      return block.readLine();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+      ensureBlock();
+      return block.readUTF();
+    }
+  }
+
+  /** Implementation of <code>DataInput</code> wrapper for compressed data */
+  private class CompressedDataInputWrapper implements DataInputWrapper {
+    /** Input wrapper of the underlying data accessor */
+    private final DataInputWrapper wrapper;
+    /** Decompressing input */
+    private final DecompressingDataInput input;
+
+    /**
+     * Constructor
+     *
+     * @param threadId id of the thread involved in persistence
+     * @param wrapper input wrapper of the underlying data accessor
+     */
+    CompressedDataInputWrapper(int threadId, DataInputWrapper wrapper) {
+      this.wrapper = wrapper;
+      this.input = new DecompressingDataInput(threadId, wrapper.getDataInput());
+    }
+
+    @Override
+    public DataInput getDataInput() {
+      return input;
+    }
+
+    @Override
+    public long finalizeInput(boolean deleteOnClose) {
+      wrapper.finalizeInput(deleteOnClose);
+      return input.getBytesRead();
+    }
+  }
+
+  /** Implementation of <code>DataOutput</code> wrapper for compressed data */
+  private class CompressedDataOutputWrapper implements DataOutputWrapper {
+    /** Output wrapper of the underlying data accessor */
+    private final DataOutputWrapper wrapper;
+    /** Compressing output */
+    private final CompressingDataOutput output;
+
+    /**
+     * Constructor
+     *
+     * @param threadId id of the thread involved in persistence
+     * @param wrapper output wrapper of the underlying data accessor
+     */
+    CompressedDataOutputWrapper(int threadId, DataOutputWrapper wrapper) {
+      this.wrapper = wrapper;
+      this.output =
+          new CompressingDataOutput(threadId, wrapper.getDataOutput());
+    }
+
+    @Override
+    public DataOutput getDataOutput() {
+      return output;
+    }
+
+    @Override
+    public long finalizeOutput() {
+      try {
+        output.flush();
+      } catch (IOException e) {
+        throw new IllegalStateException("finalizeOutput: failed to write " +
+            "the last block", e);
+      }
+      wrapper.finalizeOutput();
+      return output.getBytesWritten();
+    }
+  }
+}
@@ -127,10 +127,31 @@ public class LocalDiskDataAccessor implements OutOfCoreDataAccessor {
     return numDisks;
   }
 
+  /**
+   * Get the path of the file holding the data of a given index chain
+   *
+   * @param threadId id of the thread involved in persistence
+   * @param index index chain of the data
+   * @return path of the file
+   */
+  protected String getFilePath(int threadId, DataIndex index) {
+    return basePaths[threadId] + index.toString();
+  }
+
+  /**
+   * Get the reusable buffer of a thread involved in persistence
+   *
+   * @param threadId id of the thread involved in persistence
+   * @return buffer of the thread
+   */
+  protected byte[] getThreadBuffer(int threadId) {
+    return perThreadBuffers[threadId];
+  }
+
   @Override
   public DataInputWrapper prepareInput(int threadId, DataIndex index)
       throws IOException {
-    return new LocalDiskDataInputWrapper(basePaths[threadId] + index.toString(),
+    return new LocalDiskDataInputWrapper(getFilePath(threadId, index),
         perThreadBuffers[threadId]);
   }
 
@@ -138,13 +159,13 @@ public class LocalDiskDataAccessor implements OutOfCoreDataAccessor {
   public DataOutputWrapper prepareOutput(
       int threadId, DataIndex index, boolean shouldAppend) throws IOException {
     return new LocalDiskDataOutputWrapper(
-        basePaths[threadId] + index.toString(), shouldAppend,
+        getFilePath(threadId, index), shouldAppend,
         perThreadBuffers[threadId]);
   }
 
   @Override
   public boolean dataExist(int threadId, DataIndex index) {
-    return new File(basePaths[threadId] + index.toString()).exists();
+    return new File(getFilePath(threadId, index)).exists();
   }
 
   /** Implementation of <code>DataInput</code> wrapper for local disk reader */
@@ -0,0 +1,275 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.ooc.persistence;
+
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.conf.IntConfOption;
+import org.apache.giraph.utils.ByteBufferReads;
+import org.apache.log4j.Logger;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static com.google.common.base.Preconditions.checkState;
+import static org.apache.giraph.conf.GiraphConstants.ONE_MB;
+
+/**
+ * Data accessor object to read/write data in local disk, reading the data
+ * back through memory-mapped files. Data is serialized with Unsafe writes into
+ * the per-thread buffer and written to the file channel one buffer at a time.
+ * Reads deserialize directly from the mapped file, which avoids the copies of
+ * buffered streams. Files larger than the mapped region size are mapped one
+ * region at a time, and a single read larger than a region maps a region
+ * large enough for it.
+ * Note: Same assumptions as {@link LocalDiskDataAccessor} apply.
+ */
+public class MappedFileDataAccessor extends LocalDiskDataAccessor {
+  /** Maximum size of a region of a file mapped at once */
+  public static final IntConfOption OOC_MAPPED_REGION_SIZE =
+      new IntConfOption("giraph.oocMappedRegionSize", 1024 * ONE_MB,
+          "maximum size of a region of an out-of-core file mapped to memory " +
+              "at once");
+
+  /** Class logger */
+  private static final Logger LOG =
+      Logger.getLogger(MappedFileDataAccessor.class);
+  /** Maximum size of a region of a file mapped at once */
+  private final int mappedRegionSize;
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public MappedFileDataAccessor(
+      ImmutableClassesGiraphConfiguration<?, ?, ?> conf) {
+    super(conf);
+    mappedRegionSize = OOC_MAPPED_REGION_SIZE.get(conf);
+  }
+
+  @Override
+  public DataInputWrapper prepareInput(int threadId, DataIndex index)
+      throws IOException {
+    return new MappedFileDataInputWrapper(getFilePath(threadId, index),
+        mappedRegionSize);
+  }
+
+  @Override
+  public DataOutputWrapper prepareOutput(
+      int threadId, DataIndex index, boolean shouldAppend) throws IOException {
+    return new ChannelDataOutputWrapper(getFilePath(threadId, index),
+        shouldAppend, getThreadBuffer(threadId));
+  }
+
+  /**
+   * Reader over a memory-mapped file. When the current region doesn't have
+   * enough bytes left, the next region is mapped starting at the current
+   * read position, with at least the number of bytes to read.
+   */
+  private static class MappedFileInput extends ByteBufferReads {
+    /** Channel of the file being read */
+    private final FileChannel channel;
+    /** Size of the file */
+    private final long fileSize;
+    /** Maximum size of a mapped region */
+    private final int regionSize;
+    /** Position of the current region in the file */
+    private long regionStart;
+
+    /**
+     * Constructor
+     *
+     * @param channel channel of the file to read
+     * @param regionSize maximum size of a mapped region
+     * @throws IOException
+     */
+    MappedFileInput(FileChannel channel, int regionSize) throws IOException {
+      super(map(channel, 0, regionSize));
+      this.channel = channel;
+      this.fileSize = channel.size();
+      this.regionSize = regionSize;
+      this.regionStart = 0;
+    }
+
+    /**
+     * Map a region of a file.
+     *
+     * @param channel channel of the file
+     * @param start position of the region in the file
+     * @param regionSize maximum size of the region
+     * @return mapped region
+     * @throws IOException
+     */
+    private static ByteBuffer map(FileChannel channel, long start,
+        int regionSize) throws IOException {
+      long size = Math.min(regionSize, channel.size() - start);
+      if (size == 0) {
+        return ByteBuffer.allocate(0);
+      }
+      return channel.map(FileChannel.MapMode.READ_ONLY, start, size);
+    }
+
+    /**
+     * @return number of bytes read from the file so far
+     */
+    long getTotalPos() {
+      return regionStart + pos;
+    }
+
+    @Override
+    protected void ensureRemaining(int requiredBytes) throws IOException {
+      if (available() < requiredBytes &&
+          regionStart + bufLength < fileSize) {
+        regionStart += pos;
+        setBuffer(map(channel, regionStart,
+            Math.max(regionSize, requiredBytes)));
+      }
+      super.ensureRemaining(requiredBytes);
+    }
+  }
+
+  /** Implementation of <code>DataInput</code> wrapper for mapped files */
+  private static class MappedFileDataInputWrapper implements DataInputWrapper {
+    /** File used to read the data from */
+    private final File file;
+    /** File being read */
+    private final RandomAccessFile randomAccessFile;
+    /** Reader over the mapped file */
+    private final MappedFileInput input;
+
+    /**
+     * Constructor
+     *
+     * @param fileName file name
+     * @param regionSize maximum size of a mapped region
+     * @throws IOException
+     */
+    MappedFileDataInputWrapper(String fileName, int regionSize)
+        throws IOException {
+      file = new File(fileName);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("MappedFileDataInputWrapper: mapping local file " +
+            file.getAbsolutePath());
+      }
+      randomAccessFile = new RandomAccessFile(file, "r");
+      input = new MappedFileInput(randomAccessFile.getChannel(), regionSize);
+    }
+
+    @Override
+    public DataInput getDataInput() {
+      return input;
+    }
+
+    @Override
+    public long finalizeInput(boolean deleteOnClose) {
+      try {
+        // The mapping stays valid after closing the file, until the mapped
+        // buffer is garbage collected
+        randomAccessFile.close();
+      } catch (IOException e) {
+        throw new IllegalStateException("finalizeInput: failed to close " +
+            file.getAbsolutePath(), e);
+      }
+      checkState(!deleteOnClose || file.delete(),
+          "finalizeInput: failed to delete %s.", file.getAbsoluteFile());
+      return input.getTotalPos();
+    }
+  }
+
+  /**
+   * <code>DataOutput</code> writing its blocks to a file channel.
+   */
+  private static class ChannelDataOutput extends BlockDataOutput {
+    /** Channel to write to */
+    private final FileChannel channel;
+
+    /**
+     * Constructor
+     *
+     * @param channel channel to write to
+     * @param buffer reusable buffer to serialize into
+     */
+    ChannelDataOutput(FileChannel channel, byte[] buffer) {
+      super(buffer);
+      this.channel = channel;
+    }
+
+    @Override
+    protected void writeBlock(byte[] block, int offset, int length)
+        throws IOException {
+      ByteBuffer byteBuffer = ByteBuffer.wrap(block, offset, length);
+      while (byteBuffer.hasRemaining()) {
+        channel.write(byteBuffer);
+      }
+    }
+  }
+
+  /** Implementation of <code>DataOutput</code> wrapper for file channels */
+  private static class ChannelDataOutputWrapper implements DataOutputWrapper {
+    /** File used to write the data to */
+    private final File file;
+    /** Stream of the file being written */
+    private final FileOutputStream fileOutputStream;
+    /** Output writing to the file */
+    private final ChannelDataOutput output;
+
+    /**
+     * Constructor
+     *
+     * @param fileName file name
+     * @param shouldAppend whether the <code>DataOutput</code> should be used
+     *                     for appending to already existing files
+     * @param buffer reusable buffer to serialize into
+     * @throws IOException
+     */
+    ChannelDataOutputWrapper(String fileName, boolean shouldAppend,
+        byte[] buffer) throws IOException {
+      file = new File(fileName);
+      if (LOG.isDebugEnabled()) {
+        LOG.debug("ChannelDataOutputWrapper: obtaining a data output to " +
+            "local file " + file.getAbsolutePath());
+      }
+      fileOutputStream = new FileOutputStream(file, shouldAppend);
+      output = new ChannelDataOutput(fileOutputStream.getChannel(), buffer);
+    }
+
+    @Override
+    public DataOutput getDataOutput() {
+      return output;
+    }
+
+    @Override
+    public long finalizeOutput() {
+      try {
+        output.flush();
+        fileOutputStream.close();
+      } catch (IOException e) {
+        throw new IllegalStateException("finalizeOutput: failed to write " +
+            file.getAbsolutePath(), e);
+      }
+      return output.getBytesWritten();
+    }
+  }
+}
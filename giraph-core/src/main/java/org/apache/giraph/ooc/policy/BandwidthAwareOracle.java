@@ -0,0 +1,320 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.ooc.policy;
+
+import com.google.common.collect.Sets;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.apache.giraph.bsp.BspService;
+import org.apache.giraph.conf.FloatConfOption;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.conf.IntConfOption;
+import org.apache.giraph.ooc.OutOfCoreEngine;
+import org.apache.giraph.ooc.OutOfCoreIOStatistics;
+import org.apache.giraph.ooc.command.IOCommand;
+import org.apache.giraph.ooc.command.LoadPartitionIOCommand;
+import org.apache.giraph.ooc.command.StorePartitionIOCommand;
+import org.apache.giraph.ooc.data.MetaPartitionManager;
+import org.apache.giraph.utils.MemoryUtils;
+import org.apache.log4j.Logger;
+
+import java.util.Set;
+
+/**
+ * Out-of-core oracle overlapping IO with computation. In addition to memory
+ * pressure, this oracle models how fast IO threads can bring partitions to
+ * memory (from the load statistics in {@link OutOfCoreIOStatistics}) and how
+ * fast compute threads go through partitions (measured in the current and
+ * past supersteps). Partitions are prefetched far enough ahead of compute
+ * threads so that a partition is in memory by the time a compute thread asks
+ * for it:
+ *
+ *   prefetch depth = slack * computeThreads * loadTime / computeTime
+ *
+ * where loadTime is the average time to load a partition and computeTime is
+ * the average time a compute thread spends on a partition.
+ *
+ * Eviction follows the expected reuse distance of partitions in the current
+ * superstep: processed partitions are not needed until the next superstep, so
+ * they are stored first, while unprocessed partitions in memory are about to
+ * be handed to compute threads and are only stored under high memory
+ * pressure. Similarly, loading partitions for the next superstep is only
+ * approved once the prefetch depth for the current superstep is reached.
+ */
+public class BandwidthAwareOracle implements OutOfCoreOracle {
+  /** The memory pressure at which partitions are stored at any cost */
+  public static final FloatConfOption HIGH_MEMORY_PRESSURE =
+      new FloatConfOption("giraph.bandwidthAware.highPressure", 0.9f,
+          "The memory pressure (fraction of used memory) at which partitions " +
+              "are stored to disk regardless of their processing state.");
+  /**
+   * The memory pressure above which only processed partitions are stored to
+   * make room for prefetching.
+   */
+  public static final FloatConfOption OPTIMAL_MEMORY_PRESSURE =
+      new FloatConfOption("giraph.bandwidthAware.optimalPressure", 0.8f,
+          "The memory pressure (fraction of used memory) above which " +
+              "processed partitions are stored to disk to make room for " +
+              "prefetching unprocessed partitions.");
+  /**
+   * The memory pressure below which partitions are prefetched for the next
+   * superstep.
+   */
+  public static final FloatConfOption LOW_MEMORY_PRESSURE =
+      new FloatConfOption("giraph.bandwidthAware.lowPressure", 0.7f,
+          "The memory pressure (fraction of used memory) below which " +
+              "partitions are prefetched for the next superstep.");
+  /** Multiplier applied to the estimated prefetch depth */
+  public static final FloatConfOption PREFETCH_SLACK =
+      new FloatConfOption("giraph.bandwidthAware.prefetchSlack", 1.5f,
+          "Multiplier applied to the number of partitions that should be " +
+              "in memory ahead of compute threads, to absorb variance in IO " +
+              "and compute times.");
+  /** Minimum number of partitions to keep in memory ahead of computation */
+  public static final IntConfOption MIN_PREFETCH_PARTITIONS =
+      new IntConfOption("giraph.bandwidthAware.minPrefetchPartitions", 1,
+          "Minimum number of unprocessed partitions to keep in memory ahead " +
+              "of compute threads.");
+
+  /** Class logger */
+  private static final Logger LOG =
+      Logger.getLogger(BandwidthAwareOracle.class);
+  /** Cached value for HIGH_MEMORY_PRESSURE */
+  private final float highMemoryPressure;
+  /** Cached value for OPTIMAL_MEMORY_PRESSURE */
+  private final float optimalMemoryPressure;
+  /** Cached value for LOW_MEMORY_PRESSURE */
+  private final float lowMemoryPressure;
+  /** Cached value for PREFETCH_SLACK */
+  private final float prefetchSlack;
+  /** Cached value for MIN_PREFETCH_PARTITIONS */
+  private final int minPrefetchPartitions;
+  /** Number of compute threads */
+  private final int numComputeThreads;
+  /** Out-of-core engine */
+  private final OutOfCoreEngine oocEngine;
+  /**
+   * Approved loads of partitions which didn't complete yet. Loads approved
+   * for the next superstep may still be in flight once it starts.
+   */
+  private final Set<LoadPartitionIOCommand> loadsInFlight =
+      Sets.newConcurrentHashSet();
+  /** Time the current iteration cycle over partitions started (ms) */
+  private volatile long iterationStartTime;
+  /**
+   * Estimate of the time a compute thread spends on a partition (ms). The
+   * estimate of the previous superstep is used until partitions are
+   * processed in the current superstep. Zero if there is no estimate yet.
+   */
+  private volatile double computeTimeEstimate = 0;
+
+  /**
+   * Constructor
+   *
+   * @param conf configuration
+   * @param oocEngine out-of-core engine
+   */
+  public BandwidthAwareOracle(ImmutableClassesGiraphConfiguration conf,
+                              OutOfCoreEngine oocEngine) {
+    this.highMemoryPressure = HIGH_MEMORY_PRESSURE.get(conf);
+    this.optimalMemoryPressure = OPTIMAL_MEMORY_PRESSURE.get(conf);
+    this.lowMemoryPressure = LOW_MEMORY_PRESSURE.get(conf);
+    this.prefetchSlack = PREFETCH_SLACK.get(conf);
+    this.minPrefetchPartitions = MIN_PREFETCH_PARTITIONS.get(conf);
+    this.numComputeThreads = conf.getNumComputeThreads();
+    this.oocEngine = oocEngine;
+    this.iterationStartTime = System.currentTimeMillis();
+  }
+
+  /**
+   * Update and get the estimate of the time a compute thread spends on a
+   * partition.
+   *
+   * @return time per partition per compute thread (ms), or zero if unknown
+   */
+  private double getComputeTimeEstimate() {
+    int numProcessed =
+        oocEngine.getMetaPartitionManager().getNumPartitionsProcessed();
+    if (numProcessed > 0) {
+      long elapsed = System.currentTimeMillis() - iterationStartTime;
+      computeTimeEstimate =
+          (double) elapsed * numComputeThreads / numProcessed;
+    }
+    return computeTimeEstimate;
+  }
+
+  /**
+   * Get the average time it takes to load a partition, based on the most
+   * recent loads.
+   *
+   * @return time to load a partition (ms), or zero if unknown
+   */
+  private double getLoadTimeEstimate() {
+    OutOfCoreIOStatistics.BytesDuration loadStats =
+        oocEngine.getIOStatistics().getCommandTypeStats(
+            IOCommand.IOCommandType.LOAD_PARTITION);
+    if (loadStats.getOccurrence() == 0) {
+      return 0;
+    }
+    return (double) loadStats.getDuration() / loadStats.getOccurrence();
+  }
+
+  /**
+   * Number of unprocessed partitions that should be in memory (or being
+   * loaded) ahead of compute threads to hide the latency of loading them.
+   *
+   * @return prefetch depth
+   */
+  private int getPrefetchDepth() {
+    double computeTime = getComputeTimeEstimate();
+    double loadTime = getLoadTimeEstimate();
+    int depth = minPrefetchPartitions;
+    if (computeTime > 0 && loadTime > 0) {
+      depth = Math.max(depth, (int) Math.ceil(
+          prefetchSlack * numComputeThreads * loadTime / computeTime));
+    } else if (loadTime > 0) {
+      // No compute time yet, keep every compute thread busy
+      depth = Math.max(depth, numComputeThreads);
+    }
+    return Math.min(depth,
+        oocEngine.getMetaPartitionManager().getNumPartitions());
+  }
+
+  /**
+   * @return number of loads in flight of partitions for the current
+   *         superstep
+   */
+  private int getNumLoadsInFlight() {
+    long superstep = oocEngine.getSuperstep();
+    int numLoads = 0;
+    for (LoadPartitionIOCommand loadCommand : loadsInFlight) {
+      if (loadCommand.getSuperstep() == superstep) {
+        ++numLoads;
+      }
+    }
+    return numLoads;
+  }
+
+  /**
+   * @return number of unprocessed partitions in memory or being loaded
+   */
+  private int getNumPrefetched() {
+    return oocEngine.getMetaPartitionManager()
+        .getNumInMemoryUnprocessedPartitions() + getNumLoadsInFlight();
+  }
+
+  @Override
+  public IOAction[] getNextIOActions() {
+    double usedMemoryFraction = 1 - MemoryUtils.freeMemoryFraction();
+    if (usedMemoryFraction > highMemoryPressure) {
+      return new IOAction[]{
+        IOAction.STORE_MESSAGES_AND_BUFFERS,
+        IOAction.STORE_PARTITION};
+    }
+    if (oocEngine.getSuperstep() == BspService.INPUT_SUPERSTEP) {
+      if (usedMemoryFraction > optimalMemoryPressure) {
+        return new IOAction[]{
+          IOAction.STORE_MESSAGES_AND_BUFFERS,
+          IOAction.STORE_PROCESSED_PARTITION};
+      } else {
+        return new IOAction[]{IOAction.LOAD_PARTITION};
+      }
+    }
+    int prefetchDepth = getPrefetchDepth();
+    int numPrefetched = getNumPrefetched();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(String.format("getNextIOActions: usedMemoryFraction = %.2f, " +
+          "prefetched %d of %d partitions", usedMemoryFraction, numPrefetched,
+          prefetchDepth));
+    }
+    if (numPrefetched < prefetchDepth) {
+      if (usedMemoryFraction > optimalMemoryPressure) {
+        // Make room by evicting partitions with the farthest reuse first
+        return new IOAction[]{
+          IOAction.STORE_PROCESSED_PARTITION,
+          IOAction.LOAD_TO_SWAP_PARTITION,
+          IOAction.STORE_MESSAGES_AND_BUFFERS};
+      } else {
+        return new IOAction[]{
+          IOAction.LOAD_UNPROCESSED_PARTITION,
+          IOAction.STORE_MESSAGES_AND_BUFFERS};
+      }
+    } else if (usedMemoryFraction > optimalMemoryPressure) {
+      return new IOAction[]{
+        IOAction.STORE_MESSAGES_AND_BUFFERS,
+        IOAction.STORE_PROCESSED_PARTITION};
+    } else if (usedMemoryFraction < lowMemoryPressure) {
+      return new IOAction[]{
+        IOAction.LOAD_UNPROCESSED_PARTITION,
+        IOAction.LOAD_PARTITION};
+    } else {
+      return new IOAction[]{IOAction.STORE_MESSAGES_AND_BUFFERS};
+    }
+  }
+
+  @Override
+  public boolean approve(IOCommand command) {
+    if (oocEngine.getSuperstep() == BspService.INPUT_SUPERSTEP) {
+      return true;
+    }
+    MetaPartitionManager metaPartitionManager =
+        oocEngine.getMetaPartitionManager();
+    if (command instanceof LoadPartitionIOCommand) {
+      LoadPartitionIOCommand loadCommand = (LoadPartitionIOCommand) command;
+      if (loadCommand.getSuperstep() != oocEngine.getSuperstep() &&
+          getNumPrefetched() < getPrefetchDepth()) {
+        // Prefetching for the next superstep should not take IO bandwidth
+        // away from partitions needed in the current superstep
+        return false;
+      }
+      loadsInFlight.add(loadCommand);
+    } else if (command instanceof StorePartitionIOCommand) {
+      // Unprocessed partitions are about to be reused in this superstep, so
+      // they are only stored under high memory pressure
+      if (!metaPartitionManager.isPartitionProcessed(
+          command.getPartitionId())) {
+        return 1 - MemoryUtils.freeMemoryFraction() > highMemoryPressure;
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public void commandCompleted(IOCommand command) {
+    if (command instanceof LoadPartitionIOCommand) {
+      // Only approved loads were counted
+      loadsInFlight.remove(command);
+    }
+  }
+
+  @Override
+  public void gcCompleted(GarbageCollectionNotificationInfo gcInfo) { }
+
+  @Override
+  public void startIteration() {
+    // Keep the estimate of the previous superstep until partitions are
+    // processed in this one
+    getComputeTimeEstimate();
+    iterationStartTime = System.currentTimeMillis();
+    if (LOG.isInfoEnabled()) {
+      LOG.info(String.format("startIteration: compute time per partition " +
+          "%.1f ms, load time per partition %.1f ms", computeTimeEstimate,
+          getLoadTimeEstimate()));
+    }
+  }
+}
@@ -102,6 +102,16 @@ public class BasicPartitionOwner implements PartitionOwner,
     this.previousWorkerInfo = workerInfo;
   }
 
+  /**
+   * Get the prefix of the checkpoint files to restore the partition from.
+   *
+   * @return Prefix of the checkpoint files or null if not restoring a
+   *         checkpoint.
+   */
+  public String getCheckpointFilesPrefix() {
+    return checkpointFilesPrefix;
+  }
+
   @Override
   public void writeWithWorkerIds(DataOutput output) throws IOException {
     output.writeInt(partitionId);
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.partition;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.giraph.worker.WorkerInfo;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.log4j.Logger;
+
+/**
+ * Balances partitions across workers by their measured compute time. The
+ * cost of a partition is its average compute time over the last supersteps,
+ * which captures uneven per-vertex compute cost and message volume that
+ * vertex and edge counts miss.
+ *
+ * Starting from the current assignment, the partition which best evens out
+ * the most and the least loaded worker is moved between them, as long as
+ * the predicted compute time saved over the history window is larger than
+ * the estimated time to transfer the partition. Keeping the current
+ * assignment as the starting point keeps partition exchanges small.
+ */
+public class ComputeTimePartitionBalancer {
+  /** Number of supersteps of compute time to average and amortize over */
+  public static final String COMPUTE_BALANCE_HISTORY =
+    "hash.computeBalanceHistory";
+  /** Default number of supersteps of compute time history */
+  public static final int COMPUTE_BALANCE_HISTORY_DEFAULT = 3;
+  /** Estimated nanoseconds to transfer one vertex or edge to a worker */
+  public static final String COMPUTE_BALANCE_TRANSFER_NS_PER_ELEMENT =
+    "hash.computeBalanceTransferNsPerElement";
+  /** Default nanoseconds to transfer one vertex or edge */
+  public static final long COMPUTE_BALANCE_TRANSFER_NS_PER_ELEMENT_DEFAULT =
+    1000;
+  /** Class logger */
+  private static final Logger LOG =
+      Logger.getLogger(ComputeTimePartitionBalancer.class);
+
+  /** Number of supersteps of history */
+  private final int historySize;
+  /** Estimated transfer nanoseconds per vertex or edge */
+  private final long transferNsPerElement;
+  /** Compute times of the last supersteps, per partition id */
+  private final Map<Integer, Deque<Long>> computeMsHistory =
+      new HashMap<Integer, Deque<Long>>();
+
+  /**
+   * Constructor
+   *
+   * @param conf Configuration
+   */
+  public ComputeTimePartitionBalancer(Configuration conf) {
+    historySize = Math.max(1, conf.getInt(COMPUTE_BALANCE_HISTORY,
+        COMPUTE_BALANCE_HISTORY_DEFAULT));
+    transferNsPerElement = conf.getLong(
+        COMPUTE_BALANCE_TRANSFER_NS_PER_ELEMENT,
+        COMPUTE_BALANCE_TRANSFER_NS_PER_ELEMENT_DEFAULT);
+  }
+
+  /**
+   * Add the compute times of the last superstep to the history and get the
+   * predicted compute time of a partition.
+   *
+   * @param partitionStats Stats of the partition from the last superstep
+   * @return Average compute time over the history
+   */
+  private long updateComputeMs(PartitionStats partitionStats) {
+    Deque<Long> history = computeMsHistory.get(partitionStats.getPartitionId());
+    if (history == null) {
+      history = new ArrayDeque<Long>(historySize);
+      computeMsHistory.put(partitionStats.getPartitionId(), history);
+    }
+    if (history.size() == historySize) {
+      history.removeFirst();
+    }
+    history.addLast(partitionStats.getComputeMs());
+    long sum = 0;
+    for (long computeMs : history) {
+      sum += computeMs;
+    }
+    return sum / history.size();
+  }
+
+  /**
+   * Estimated milliseconds to move a partition to another worker
+   *
+   * @param partitionStats Stats of the partition
+   * @return Transfer cost in milliseconds
+   */
+  private long getTransferMs(PartitionStats partitionStats) {
+    return (partitionStats.getVertexCount() + partitionStats.getEdgeCount()) *
+        transferNsPerElement / 1000000;
+  }
+
+  /**
+   * Get the most loaded worker
+   *
+   * @param workerLoads Compute time per worker
+   * @return Worker with the highest load
+   */
+  private static WorkerInfo getMaxWorker(Map<WorkerInfo, Long> workerLoads) {
+    WorkerInfo maxWorker = null;
+    for (Map.Entry<WorkerInfo, Long> entry : workerLoads.entrySet()) {
+      if (maxWorker == null ||
+          entry.getValue() > workerLoads.get(maxWorker)) {
+        maxWorker = entry.getKey();
+      }
+    }
+    return maxWorker;
+  }
+
+  /**
+   * Get the least loaded worker
+   *
+   * @param workerLoads Compute time per worker
+   * @return Worker with the lowest load
+   */
+  private static WorkerInfo getMinWorker(Map<WorkerInfo, Long> workerLoads) {
+    WorkerInfo minWorker = null;
+    for (Map.Entry<WorkerInfo, Long> entry : workerLoads.entrySet()) {
+      if (minWorker == null ||
+          entry.getValue() < workerLoads.get(minWorker)) {
+        minWorker = entry.getKey();
+      }
+    }
+    return minWorker;
+  }
+
+  /**
+   * Assign a partition to a worker, updating the worker loads.
+   *
+   * @param partitionOwner Partition owner to move
+   * @param workerInfo Worker to assign the partition to
+   * @param computeMs Predicted compute time of the partition
+   * @param workerLoads Compute time per worker
+   */
+  private static void assign(PartitionOwner partitionOwner,
+      WorkerInfo workerInfo, long computeMs,
+      Map<WorkerInfo, Long> workerLoads) {
+    Long currentLoad = workerLoads.get(partitionOwner.getWorkerInfo());
+    if (currentLoad != null) {
+      workerLoads.put(partitionOwner.getWorkerInfo(), currentLoad - computeMs);
+    }
+    workerLoads.put(workerInfo, workerLoads.get(workerInfo) + computeMs);
+    partitionOwner.setWorkerInfo(workerInfo);
+  }
+
+  /**
+   * Balance the partitions by their compute time.
+   *
+   * @param partitionOwners All the owners of all partitions
+   * @param allPartitionStats All the partition stats of the last superstep
+   * @param availableWorkerInfos All the available workers
+   * @return Balanced partition owners
+   */
+  public Collection<PartitionOwner> balancePartitionsAcrossWorkers(
+      Collection<PartitionOwner> partitionOwners,
+      Collection<PartitionStats> allPartitionStats,
+      Collection<WorkerInfo> availableWorkerInfos) {
+    Map<Integer, PartitionStats> idStatMap =
+        new HashMap<Integer, PartitionStats>();
+    Map<Integer, Long> idComputeMsMap = new HashMap<Integer, Long>();
+    for (PartitionStats partitionStats : allPartitionStats) {
+      idStatMap.put(partitionStats.getPartitionId(), partitionStats);
+      idComputeMsMap.put(partitionStats.getPartitionId(),
+          updateComputeMs(partitionStats));
+    }
+
+    Map<WorkerInfo, Long> workerLoads = new HashMap<WorkerInfo, Long>();
+    for (WorkerInfo workerInfo : availableWorkerInfos) {
+      workerLoads.put(workerInfo, 0L);
+    }
+    Map<PartitionOwner, WorkerInfo> originalWorkers =
+        new HashMap<PartitionOwner, WorkerInfo>();
+    for (PartitionOwner partitionOwner : partitionOwners) {
+      if (!idStatMap.containsKey(partitionOwner.getPartitionId())) {
+        throw new IllegalStateException(
+            "balancePartitionsAcrossWorkers: Missing partition " +
+                "stats for " + partitionOwner);
+      }
+      originalWorkers.put(partitionOwner, partitionOwner.getWorkerInfo());
+      Long load = workerLoads.get(partitionOwner.getWorkerInfo());
+      if (load != null) {
+        workerLoads.put(partitionOwner.getWorkerInfo(),
+            load + idComputeMsMap.get(partitionOwner.getPartitionId()));
+      }
+    }
+
+    // Partitions of workers which are gone have to move regardless of cost
+    for (PartitionOwner partitionOwner : partitionOwners) {
+      if (!workerLoads.containsKey(partitionOwner.getWorkerInfo())) {
+        assign(partitionOwner, getMinWorker(workerLoads),
+            idComputeMsMap.get(partitionOwner.getPartitionId()), workerLoads);
+      }
+    }
+
+    long totalGainMs = 0;
+    long totalTransferMs = 0;
+    int movedPartitions = 0;
+    for (int i = 0; i < partitionOwners.size(); ++i) {
+      WorkerInfo maxWorker = getMaxWorker(workerLoads);
+      WorkerInfo minWorker = getMinWorker(workerLoads);
+      long maxLoad = workerLoads.get(maxWorker);
+      long minLoad = workerLoads.get(minWorker);
+      // Pick the partition which best evens out the two workers
+      PartitionOwner bestOwner = null;
+      long bestMaxLoad = maxLoad;
+      for (PartitionOwner partitionOwner : partitionOwners) {
+        if (!partitionOwner.getWorkerInfo().equals(maxWorker)) {
+          continue;
+        }
+        long computeMs = idComputeMsMap.get(partitionOwner.getPartitionId());
+        long newMaxLoad = Math.max(maxLoad - computeMs, minLoad + computeMs);
+        if (newMaxLoad < bestMaxLoad) {
+          bestOwner = partitionOwner;
+          bestMaxLoad = newMaxLoad;
+        }
+      }
+      if (bestOwner == null) {
+        break;
+      }
+      // Superstep time is bounded by the next most loaded worker too
+      long computeMs = idComputeMsMap.get(bestOwner.getPartitionId());
+      workerLoads.put(maxWorker, maxLoad - computeMs);
+      long restMaxLoad = workerLoads.get(getMaxWorker(workerLoads));
+      workerLoads.put(maxWorker, maxLoad);
+      long gainMs = (maxLoad - Math.max(restMaxLoad, minLoad + computeMs)) *
+          historySize;
+      long transferMs =
+          getTransferMs(idStatMap.get(bestOwner.getPartitionId()));
+      if (gainMs <= transferMs) {
+        break;
+      }
+      assign(bestOwner, minWorker, computeMs, workerLoads);
+      totalGainMs += gainMs;
+      totalTransferMs += transferMs;
+      ++movedPartitions;
+    }
+
+    for (PartitionOwner partitionOwner : partitionOwners) {
+      WorkerInfo originalWorker = originalWorkers.get(partitionOwner);
+      if (partitionOwner.getWorkerInfo().equals(originalWorker)) {
+        partitionOwner.setPreviousWorkerInfo(null);
+      } else {
+        partitionOwner.setPreviousWorkerInfo(originalWorker);
+      }
+    }
+    if (LOG.isInfoEnabled()) {
+      LOG.info("balancePartitionsAcrossWorkers: Moved " + movedPartitions +
+          " partitions, predicted gain " + totalGainMs + " ms over " +
+          historySize + " supersteps for an estimated transfer cost of " +
+          totalTransferMs + " ms");
+    }
+    return partitionOwners;
+  }
+}
@@ -0,0 +1,597 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.partition;
+
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.longs.Long2IntOpenHashMap;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.edge.EdgeFactory;
+import org.apache.giraph.edge.OutEdges;
+import org.apache.giraph.edge.ReusableEdge;
+import org.apache.giraph.edge.ReuseObjectsOutEdges;
+import org.apache.giraph.graph.Vertex;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.util.Progressable;
+
+/**
+ * Partition for graphs with long ids, double vertex values and float edge
+ * values (e.g. PageRank), keeping all vertex data in direct (off-heap)
+ * buffers. Every vertex occupies a fixed-size slot holding its id, value,
+ * halted flag and the location of its out-edges, which are stored
+ * contiguously (CSR-style) as (target id, value) records in a separate edge
+ * buffer. Only the id to slot index is kept on the heap, as a primitive map.
+ *
+ * Like {@link ByteArrayPartition}, vertices are handed out through a single
+ * representative vertex object, so only one thread at a time may call
+ * getVertex or iterate the partition.
+ *
+ * Edges of a vertex which grow beyond their space are moved to the end of the
+ * edge buffer, and the edge buffer is compacted once more than half of it is
+ * unused. A single partition holds at most about 178M edges.
+ */
+@NotThreadSafe
+public class LongDoubleFloatOffHeapPartition
+    extends BasicPartition<LongWritable, DoubleWritable, FloatWritable>
+    implements ReusesObjectsPartition<LongWritable, DoubleWritable,
+    FloatWritable> {
+  /** Bytes per vertex slot */
+  private static final int SLOT_SIZE = 32;
+  /** Offset of the vertex id in a slot */
+  private static final int ID_OFFSET = 0;
+  /** Offset of the vertex value in a slot */
+  private static final int VALUE_OFFSET = 8;
+  /** Offset of the index of the first edge in a slot */
+  private static final int EDGE_START_OFFSET = 16;
+  /** Offset of the number of edges in a slot */
+  private static final int EDGE_COUNT_OFFSET = 20;
+  /** Offset of the number of edges which fit in place in a slot */
+  private static final int EDGE_CAPACITY_OFFSET = 24;
+  /** Offset of the flags in a slot */
+  private static final int FLAGS_OFFSET = 28;
+  /** Flag of a slot holding a vertex */
+  private static final byte FLAG_PRESENT = 1;
+  /** Flag of a slot holding a halted vertex */
+  private static final byte FLAG_HALTED = 2;
+  /** Bytes per edge (target id and value) */
+  private static final int EDGE_SIZE = 12;
+  /** Maximum number of edges in the edge buffer */
+  private static final int MAX_EDGES = Integer.MAX_VALUE / EDGE_SIZE;
+  /** Initial number of vertex slots */
+  private static final int INITIAL_SLOTS = 1024;
+  /** Initial number of edges */
+  private static final int INITIAL_EDGES = 4096;
+
+  /** Vertex slot index by vertex id */
+  private Long2IntOpenHashMap slotById;
+  /** Slots of removed vertices which can be reused */
+  private IntArrayList freeSlots;
+  /** Vertex slots */
+  private ByteBuffer slots;
+  /** Number of slots in use (including freed ones) */
+  private int numSlots;
+  /** Edges of all the vertices */
+  private ByteBuffer edges;
+  /** Number of edges in the edge buffer (including unused ones) */
+  private int numEdgeRecords;
+  /** Number of unused edges in the edge buffer */
+  private int numUnusedEdgeRecords;
+  /** Number of edges of all the vertices */
+  private long edgeCount;
+  /** Representative vertex */
+  private Vertex<LongWritable, DoubleWritable, FloatWritable>
+  representativeVertex;
+  /** Representative vertex returned for removed or replaced vertices */
+  private Vertex<LongWritable, DoubleWritable, FloatWritable> oldVertex;
+  /** Edge reused when filling edges which copy the added edges */
+  private ReusableEdge<LongWritable, FloatWritable> reusableEdge;
+
+  /**
+   * Constructor for reflection.
+   */
+  public LongDoubleFloatOffHeapPartition() { }
+
+  @Override
+  public void initialize(int partitionId, Progressable progressable) {
+    super.initialize(partitionId, progressable);
+    initializeStorage(INITIAL_SLOTS);
+  }
+
+  /**
+   * Create empty storage and the representative objects. Buffers allocated
+   * before are reused when they are large enough, since direct buffers are
+   * only freed by the garbage collector.
+   *
+   * @param expectedVertices Number of vertices expected
+   */
+  private void initializeStorage(int expectedVertices) {
+    if (slotById == null) {
+      slotById = new Long2IntOpenHashMap(expectedVertices);
+      slotById.defaultReturnValue(-1);
+      freeSlots = new IntArrayList();
+      representativeVertex = createVertex();
+      oldVertex = createVertex();
+      reusableEdge =
+          EdgeFactory.createReusable(new LongWritable(), new FloatWritable());
+    } else {
+      slotById.clear();
+      freeSlots.clear();
+    }
+    long slotBytes = (long) Math.max(expectedVertices, 1) * SLOT_SIZE;
+    if (slots == null || slots.capacity() < slotBytes) {
+      slots = allocate(slotBytes);
+    }
+    numSlots = 0;
+    if (edges == null) {
+      edges = allocate((long) INITIAL_EDGES * EDGE_SIZE);
+    }
+    numEdgeRecords = 0;
+    numUnusedEdgeRecords = 0;
+    edgeCount = 0;
+  }
+
+  /**
+   * Create a vertex to be reinitialized from slots.
+   *
+   * @return Empty vertex
+   */
+  private Vertex<LongWritable, DoubleWritable, FloatWritable> createVertex() {
+    Vertex<LongWritable, DoubleWritable, FloatWritable> vertex =
+        getConf().createVertex();
+    vertex.initialize(new LongWritable(), new DoubleWritable(),
+        getConf().createOutEdges());
+    return vertex;
+  }
+
+  /**
+   * Allocate a direct buffer in native byte order.
+   *
+   * @param bytes Size of the buffer
+   * @return Buffer
+   */
+  private static ByteBuffer allocate(long bytes) {
+    if (bytes > Integer.MAX_VALUE) {
+      throw new IllegalStateException("allocate: Can't allocate " + bytes +
+          " bytes in a single off-heap buffer");
+    }
+    return ByteBuffer.allocateDirect((int) bytes).order(
+        ByteOrder.nativeOrder());
+  }
+
+  /**
+   * Copy a buffer into a new buffer with at least the requested size.
+   *
+   * @param buffer Buffer to grow
+   * @param usedBytes Bytes used in the buffer
+   * @param requiredBytes Minimum size of the new buffer
+   * @return New buffer
+   */
+  private static ByteBuffer grow(ByteBuffer buffer, long usedBytes,
+      long requiredBytes) {
+    long newSize = Math.max(requiredBytes,
+        Math.min(Integer.MAX_VALUE, (long) buffer.capacity() * 2));
+    ByteBuffer newBuffer = allocate(newSize);
+    ByteBuffer source = buffer.duplicate();
+    source.position(0);
+    source.limit((int) usedBytes);
+    newBuffer.put(source);
+    return newBuffer;
+  }
+
+  /**
+   * Get the position of a slot in the slot buffer.
+   *
+   * @param slot Slot index
+   * @return Byte position
+   */
+  private static int slotPosition(int slot) {
+    return slot * SLOT_SIZE;
+  }
+
+  /**
+   * Get a slot for a new vertex, reusing a freed one if possible.
+   *
+   * @param vertexId Id of the new vertex
+   * @return Slot index
+   */
+  private int newSlot(long vertexId) {
+    int slot;
+    if (!freeSlots.isEmpty()) {
+      slot = freeSlots.removeInt(freeSlots.size() - 1);
+    } else {
+      if ((long) (numSlots + 1) * SLOT_SIZE > slots.capacity()) {
+        slots = grow(slots, (long) numSlots * SLOT_SIZE,
+            (long) (numSlots + 1) * SLOT_SIZE);
+      }
+      slot = numSlots++;
+    }
+    int position = slotPosition(slot);
+    slots.putLong(position + ID_OFFSET, vertexId);
+    slots.putInt(position + EDGE_START_OFFSET, 0);
+    slots.putInt(position + EDGE_COUNT_OFFSET, 0);
+    slots.putInt(position + EDGE_CAPACITY_OFFSET, 0);
+    slots.put(position + FLAGS_OFFSET, FLAG_PRESENT);
+    slotById.put(vertexId, slot);
+    return slot;
+  }
+
+  /**
+   * Free the slot of a removed vertex.
+   *
+   * @param slot Slot index
+   */
+  private void freeSlot(int slot) {
+    int position = slotPosition(slot);
+    edgeCount -= slots.getInt(position + EDGE_COUNT_OFFSET);
+    numUnusedEdgeRecords += slots.getInt(position + EDGE_CAPACITY_OFFSET);
+    slots.putInt(position + EDGE_COUNT_OFFSET, 0);
+    slots.putInt(position + EDGE_CAPACITY_OFFSET, 0);
+    slots.put(position + FLAGS_OFFSET, (byte) 0);
+    slotById.remove(slots.getLong(position + ID_OFFSET));
+    freeSlots.add(slot);
+  }
+
+  /**
+   * Store a vertex into a slot.
+   *
+   * @param slot Slot index
+   * @param vertex Vertex to store
+   */
+  private void writeSlot(int slot,
+      Vertex<LongWritable, DoubleWritable, FloatWritable> vertex) {
+    int position = slotPosition(slot);
+    DoubleWritable value = vertex.getValue();
+    slots.putDouble(position + VALUE_OFFSET,
+        value == null ? 0 : value.get());
+    slots.put(position + FLAGS_OFFSET, vertex.isHalted() ?
+        (byte) (FLAG_PRESENT | FLAG_HALTED) : FLAG_PRESENT);
+
+    int numEdges = vertex.getNumEdges();
+    int edgeStart = slots.getInt(position + EDGE_START_OFFSET);
+    int edgeCapacity = slots.getInt(position + EDGE_CAPACITY_OFFSET);
+    if (numEdges > edgeCapacity) {
+      // Doesn't fit in place anymore, move the edges to the end. The old
+      // space is released first so compacting while reserving drops it.
+      numUnusedEdgeRecords += edgeCapacity;
+      slots.putInt(position + EDGE_CAPACITY_OFFSET, 0);
+      edgeStart = reserveEdges(numEdges);
+      edgeCapacity = numEdges;
+      slots.putInt(position + EDGE_START_OFFSET, edgeStart);
+      slots.putInt(position + EDGE_CAPACITY_OFFSET, edgeCapacity);
+    }
+    edgeCount += numEdges - slots.getInt(position + EDGE_COUNT_OFFSET);
+    slots.putInt(position + EDGE_COUNT_OFFSET, numEdges);
+    int edgePosition = edgeStart * EDGE_SIZE;
+    for (Edge<LongWritable, FloatWritable> edge : vertex.getEdges()) {
+      edges.putLong(edgePosition, edge.getTargetVertexId().get());
+      edges.putFloat(edgePosition + 8, edge.getValue().get());
+      edgePosition += EDGE_SIZE;
+    }
+  }
+
+  /**
+   * Reserve space for edges at the end of the edge buffer, compacting or
+   * growing the buffer if needed.
+   *
+   * @param numEdges Number of edges to reserve
+   * @return Index of the first reserved edge
+   */
+  private int reserveEdges(int numEdges) {
+    if (numUnusedEdgeRecords > numEdgeRecords / 2 &&
+        numUnusedEdgeRecords > INITIAL_EDGES) {
+      compactEdges();
+    }
+    long required = (long) numEdgeRecords + numEdges;
+    if (required > MAX_EDGES) {
+      throw new IllegalStateException("reserveEdges: Partition " + getId() +
+          " can't hold more than " + MAX_EDGES + " edges");
+    }
+    if (required * EDGE_SIZE > edges.capacity()) {
+      edges = grow(edges, (long) numEdgeRecords * EDGE_SIZE,
+          required * EDGE_SIZE);
+    }
+    int start = numEdgeRecords;
+    numEdgeRecords += numEdges;
+    return start;
+  }
+
+  /**
+   * Copy the edges of all vertices into a new buffer without unused space.
+   */
+  private void compactEdges() {
+    long copiedEdgeRecords = 0;
+    for (int slot = 0; slot < numSlots; ++slot) {
+      copiedEdgeRecords +=
+          slots.getInt(slotPosition(slot) + EDGE_CAPACITY_OFFSET);
+    }
+    // Freed and moved edges have no capacity anymore, so they aren't copied
+    ByteBuffer newEdges = allocate(Math.min(MAX_EDGES,
+        Math.max(2L * copiedEdgeRecords, INITIAL_EDGES)) * EDGE_SIZE);
+    ByteBuffer source = edges.duplicate();
+    int newEdgeRecords = 0;
+    for (int slot = 0; slot < numSlots; ++slot) {
+      int position = slotPosition(slot);
+      int capacity = slots.getInt(position + EDGE_CAPACITY_OFFSET);
+      if (capacity == 0) {
+        continue;
+      }
+      int start = slots.getInt(position + EDGE_START_OFFSET);
+      source.limit((start + capacity) * EDGE_SIZE);
+      source.position(start * EDGE_SIZE);
+      newEdges.position(newEdgeRecords * EDGE_SIZE);
+      newEdges.put(source);
+      source.limit(source.capacity());
+      slots.putInt(position + EDGE_START_OFFSET, newEdgeRecords);
+      newEdgeRecords += capacity;
+    }
+    edges = newEdges;
+    numEdgeRecords = newEdgeRecords;
+    numUnusedEdgeRecords = 0;
+  }
+
+  /**
+   * Reinitialize a vertex object from a slot.
+   *
+   * @param slot Slot index
+   * @param vertex Vertex to reinitialize
+   */
+  private void readSlot(int slot,
+      Vertex<LongWritable, DoubleWritable, FloatWritable> vertex) {
+    int position = slotPosition(slot);
+    vertex.getId().set(slots.getLong(position + ID_OFFSET));
+    vertex.getValue().set(slots.getDouble(position + VALUE_OFFSET));
+    if ((slots.get(position + FLAGS_OFFSET) & FLAG_HALTED) != 0) {
+      vertex.voteToHalt();
+    } else {
+      vertex.wakeUp();
+    }
+    int numEdges = slots.getInt(position + EDGE_COUNT_OFFSET);
+    int edgePosition = slots.getInt(position + EDGE_START_OFFSET) * EDGE_SIZE;
+    OutEdges<LongWritable, FloatWritable> outEdges =
+        (OutEdges<LongWritable, FloatWritable>) vertex.getEdges();
+    outEdges.initialize(numEdges);
+    boolean copiesEdges = outEdges instanceof ReuseObjectsOutEdges;
+    for (int i = 0; i < numEdges; ++i) {
+      long targetId = edges.getLong(edgePosition);
+      float edgeValue = edges.getFloat(edgePosition + 8);
+      if (copiesEdges) {
+        reusableEdge.getTargetVertexId().set(targetId);
+        reusableEdge.getValue().set(edgeValue);
+        outEdges.add(reusableEdge);
+      } else {
+        outEdges.add(EdgeFactory.create(new LongWritable(targetId),
+            new FloatWritable(edgeValue)));
+      }
+      edgePosition += EDGE_SIZE;
+    }
+  }
+
+  @Override
+  public Vertex<LongWritable, DoubleWritable, FloatWritable>
+  getVertex(LongWritable vertexIndex) {
+    int slot = slotById.get(vertexIndex.get());
+    if (slot < 0) {
+      return null;
+    }
+    readSlot(slot, representativeVertex);
+    return representativeVertex;
+  }
+
+  @Override
+  public Vertex<LongWritable, DoubleWritable, FloatWritable>
+  putVertex(Vertex<LongWritable, DoubleWritable, FloatWritable> vertex) {
+    long vertexId = vertex.getId().get();
+    int slot = slotById.get(vertexId);
+    Vertex<LongWritable, DoubleWritable, FloatWritable> replaced = null;
+    if (slot < 0) {
+      slot = newSlot(vertexId);
+    } else {
+      readSlot(slot, oldVertex);
+      replaced = oldVertex;
+    }
+    writeSlot(slot, vertex);
+    return replaced;
+  }
+
+  @Override
+  public Vertex<LongWritable, DoubleWritable, FloatWritable>
+  removeVertex(LongWritable vertexIndex) {
+    int slot = slotById.get(vertexIndex.get());
+    if (slot < 0) {
+      return null;
+    }
+    readSlot(slot, oldVertex);
+    freeSlot(slot);
+    return oldVertex;
+  }
+
+  @Override
+  public void addPartition(
+      Partition<LongWritable, DoubleWritable, FloatWritable> partition) {
+    for (Vertex<LongWritable, DoubleWritable, FloatWritable> vertex :
+        partition) {
+      putOrCombine(vertex);
+    }
+  }
+
+  @Override
+  public boolean putOrCombine(
+      Vertex<LongWritable, DoubleWritable, FloatWritable> vertex) {
+    long vertexId = vertex.getId().get();
+    int slot = slotById.get(vertexId);
+    if (slot < 0) {
+      writeSlot(newSlot(vertexId), vertex);
+      return true;
+    }
+
+    readSlot(slot, oldVertex);
+    getVertexValueCombiner().combine(oldVertex.getValue(), vertex.getValue());
+    for (Edge<LongWritable, FloatWritable> edge : vertex.getEdges()) {
+      oldVertex.addEdge(edge);
+    }
+    writeSlot(slot, oldVertex);
+    return false;
+  }
+
+  @Override
+  public long getVertexCount() {
+    return slotById.size();
+  }
+
+  @Override
+  public long getEdgeCount() {
+    return edgeCount;
+  }
+
+  @Override
+  public void saveVertex(
+      Vertex<LongWritable, DoubleWritable, FloatWritable> vertex) {
+    long vertexId = vertex.getId().get();
+    int slot = slotById.get(vertexId);
+    if (slot < 0) {
+      slot = newSlot(vertexId);
+    }
+    writeSlot(slot, vertex);
+  }
+
+  @Override
+  public void write(DataOutput output) throws IOException {
+    super.write(output);
+    output.writeInt(slotById.size());
+    for (int slot = 0; slot < numSlots; ++slot) {
+      int position = slotPosition(slot);
+      byte flags = slots.get(position + FLAGS_OFFSET);
+      if ((flags & FLAG_PRESENT) == 0) {
+        continue;
+      }
+      progress();
+      output.writeLong(slots.getLong(position + ID_OFFSET));
+      output.writeDouble(slots.getDouble(position + VALUE_OFFSET));
+      output.writeBoolean((flags & FLAG_HALTED) != 0);
+      int numEdges = slots.getInt(position + EDGE_COUNT_OFFSET);
+      output.writeInt(numEdges);
+      int edgePosition =
+          slots.getInt(position + EDGE_START_OFFSET) * EDGE_SIZE;
+      for (int i = 0; i < numEdges; ++i) {
+        output.writeLong(edges.getLong(edgePosition));
+        output.writeFloat(edges.getFloat(edgePosition + 8));
+        edgePosition += EDGE_SIZE;
+      }
+    }
+  }
+
+  @Override
+  public void readFields(DataInput input) throws IOException {
+    super.readFields(input);
+    int numVertices = input.readInt();
+    initializeStorage(numVertices);
+    for (int i = 0; i < numVertices; ++i) {
+      progress();
+      long vertexId = input.readLong();
+      if (slotById.containsKey(vertexId)) {
+        throw new IllegalStateException("readFields: " + this +
+            " already has same id " + vertexId);
+      }
+      int slot = newSlot(vertexId);
+      int position = slotPosition(slot);
+      slots.putDouble(position + VALUE_OFFSET, input.readDouble());
+      if (input.readBoolean()) {
+        slots.put(position + FLAGS_OFFSET,
+            (byte) (FLAG_PRESENT | FLAG_HALTED));
+      }
+      int numEdges = input.readInt();
+      int edgeStart = reserveEdges(numEdges);
+      slots.putInt(position + EDGE_START_OFFSET, edgeStart);
+      slots.putInt(position + EDGE_COUNT_OFFSET, numEdges);
+      slots.putInt(position + EDGE_CAPACITY_OFFSET, numEdges);
+      edgeCount += numEdges;
+      int edgePosition = edgeStart * EDGE_SIZE;
+      for (int j = 0; j < numEdges; ++j) {
+        edges.putLong(edgePosition, input.readLong());
+        edges.putFloat(edgePosition + 8, input.readFloat());
+        edgePosition += EDGE_SIZE;
+      }
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "(id=" + getId() + ",V=" + slotById.size() + ",E=" + edgeCount +
+        ")";
+  }
+
+  @Override
+  public Iterator<Vertex<LongWritable, DoubleWritable, FloatWritable>>
+  iterator() {
+    return new RepresentativeVertexIterator();
+  }
+
+  /**
+   * Iterator over the slots in use, reinitializing the same representative
+   * vertex object for each of them.
+   */
+  private class RepresentativeVertexIterator implements
+      Iterator<Vertex<LongWritable, DoubleWritable, FloatWritable>> {
+    /** Next slot to check */
+    private int nextSlot = 0;
+
+    /**
+     * Skip slots which don't hold a vertex.
+     */
+    private void skipFreeSlots() {
+      while (nextSlot < numSlots &&
+          (slots.get(slotPosition(nextSlot) + FLAGS_OFFSET) &
+              FLAG_PRESENT) == 0) {
+        ++nextSlot;
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      skipFreeSlots();
+      return nextSlot < numSlots;
+    }
+
+    @Override
+    public Vertex<LongWritable, DoubleWritable, FloatWritable> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException("next: No vertices left");
+      }
+      readSlot(nextSlot++, representativeVertex);
+      return representativeVertex;
+    }
+
+    @Override
+    public void remove() {
+      throw new IllegalAccessError("remove: This method is not supported.");
+    }
+  }
+}
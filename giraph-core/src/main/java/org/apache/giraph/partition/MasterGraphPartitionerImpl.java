@@ -44,6 +44,8 @@ public abstract class MasterGraphPartitionerImpl<I extends WritableComparable,
   private final ImmutableClassesGiraphConfiguration<I, V, E> conf;
   /** Save the last generated partition owner list */
   private List<PartitionOwner> partitionOwnerList;
+  /** Balancer keeping the compute time history, if balancing by it */
+  private ComputeTimePartitionBalancer computeTimeBalancer;
 
   /**
    * Constructor.
@@ -84,6 +86,14 @@ public abstract class MasterGraphPartitionerImpl<I extends WritableComparable,
       Collection<WorkerInfo> availableWorkers,
       int maxWorkers,
       long superstep) {
+    if (PartitionBalancer.COMPUTE_BALANCE_ALGORITHM.equals(
+        conf.get(PartitionBalancer.PARTITION_BALANCE_ALGORITHM))) {
+      if (computeTimeBalancer == null) {
+        computeTimeBalancer = new ComputeTimePartitionBalancer(conf);
+      }
+      return computeTimeBalancer.balancePartitionsAcrossWorkers(
+          partitionOwnerList, allPartitionStatsList, availableWorkers);
+    }
     return PartitionBalancer.balancePartitionsAcrossWorkers(conf,
         partitionOwnerList, allPartitionStatsList, availableWorkers);
   }
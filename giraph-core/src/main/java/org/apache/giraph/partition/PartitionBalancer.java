@@ -51,6 +51,12 @@ public class PartitionBalancer {
   /** Rebalance across supersteps by vertices */
   public static final String VERTICES_BALANCE_ALGORITHM =
     "vertices";
+  /**
+   * Rebalance across supersteps by measured compute time, see
+   * {@link ComputeTimePartitionBalancer}
+   */
+  public static final String COMPUTE_BALANCE_ALGORITHM =
+    "compute";
   /** Class logger */
   private static Logger LOG = Logger.getLogger(PartitionBalancer.class);
 
@@ -227,6 +233,11 @@ public class PartitionBalancer {
       balanceValue = BalanceValue.EDGES;
     } else if (balanceAlgorithm.equals(VERTICES_BALANCE_ALGORITHM)) {
       balanceValue = BalanceValue.VERTICES;
+    } else if (balanceAlgorithm.equals(COMPUTE_BALANCE_ALGORITHM)) {
+      // Without a history, only the last superstep is taken into account
+      return new ComputeTimePartitionBalancer(conf)
+          .balancePartitionsAcrossWorkers(
+              partitionOwners, allPartitionStats, availableWorkerInfos);
     } else {
       throw new IllegalArgumentException(
           "balancePartitionsAcrossWorkers: Illegal balance " +
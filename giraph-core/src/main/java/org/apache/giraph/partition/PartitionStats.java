@@ -40,6 +40,8 @@ public class PartitionStats implements Writable {
   private long messagesSentCount = 0;
   /** Message byetes sent from this partition */
   private long messageBytesSentCount = 0;
+  /** Milliseconds spent computing this partition */
+  private long computeMs = 0;
 
   /**
    * Default constructor for reflection.
@@ -95,6 +97,15 @@ public class PartitionStats implements Writable {
     ++vertexCount;
   }
 
+  /**
+   * Add vertices to the vertex count.
+   *
+   * @param vertexCount Number of vertices to add.
+   */
+  public void addVertexCount(long vertexCount) {
+    this.vertexCount += vertexCount;
+  }
+
   /**
    * Get the vertex count.
    *
@@ -111,6 +122,15 @@ public class PartitionStats implements Writable {
     ++finishedVertexCount;
   }
 
+  /**
+   * Add vertices to the finished vertex count.
+   *
+   * @param finishedVertexCount Number of finished vertices to add.
+   */
+  public void addFinishedVertexCount(long finishedVertexCount) {
+    this.finishedVertexCount += finishedVertexCount;
+  }
+
   /**
    * Get the finished vertex count.
    *
@@ -174,6 +194,38 @@ public class PartitionStats implements Writable {
     return messageBytesSentCount;
   }
 
+  /**
+   * Add time spent computing this partition.
+   *
+   * @param computeMs Milliseconds spent computing.
+   */
+  public void addComputeMs(long computeMs) {
+    this.computeMs += computeMs;
+  }
+
+  /**
+   * Get the time spent computing this partition, by all compute threads.
+   *
+   * @return Milliseconds spent computing.
+   */
+  public long getComputeMs() {
+    return computeMs;
+  }
+
+  /**
+   * Add the counts of other stats (for the same partition) to these stats.
+   *
+   * @param other Stats to add
+   */
+  public void addPartitionStats(PartitionStats other) {
+    vertexCount += other.vertexCount;
+    finishedVertexCount += other.finishedVertexCount;
+    edgeCount += other.edgeCount;
+    messagesSentCount += other.messagesSentCount;
+    messageBytesSentCount += other.messageBytesSentCount;
+    computeMs += other.computeMs;
+  }
+
   @Override
   public void readFields(DataInput input) throws IOException {
     partitionId = input.readInt();
@@ -182,6 +234,7 @@ public class PartitionStats implements Writable {
     edgeCount = input.readLong();
     messagesSentCount = input.readLong();
     messageBytesSentCount = input.readLong();
+    computeMs = input.readLong();
   }
 
   @Override
@@ -192,6 +245,7 @@ public class PartitionStats implements Writable {
     output.writeLong(edgeCount);
     output.writeLong(messagesSentCount);
     output.writeLong(messageBytesSentCount);
+    output.writeLong(computeMs);
   }
 
   @Override
@@ -199,6 +253,6 @@ public class PartitionStats implements Writable {
     return "(id=" + partitionId + ",vtx=" + vertexCount + ",finVtx=" +
         finishedVertexCount + ",edges=" + edgeCount + ",msgsSent=" +
         messagesSentCount + ",msgBytesSent=" +
-          messageBytesSentCount + ")";
+          messageBytesSentCount + ",computeMs=" + computeMs + ")";
   }
 }
@@ -0,0 +1,169 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.utils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.apache.giraph.utils.ByteUtils.SIZE_OF_BOOLEAN;
+import static org.apache.giraph.utils.ByteUtils.SIZE_OF_BYTE;
+import static org.apache.giraph.utils.ByteUtils.SIZE_OF_CHAR;
+import static org.apache.giraph.utils.ByteUtils.SIZE_OF_SHORT;
+import static org.apache.giraph.utils.ByteUtils.SIZE_OF_INT;
+import static org.apache.giraph.utils.ByteUtils.SIZE_OF_LONG;
+import static org.apache.giraph.utils.ByteUtils.SIZE_OF_FLOAT;
+import static org.apache.giraph.utils.ByteUtils.SIZE_OF_DOUBLE;
+
+/**
+ * Input deserializing directly from a (direct or memory-mapped)
+ * {@link ByteBuffer} with absolute reads in native byte order, without
+ * copying it to the heap first. Reads the same format
+ * {@link UnsafeByteArrayOutputStream} writes.
+ */
+public class ByteBufferReads extends UnsafeReads {
+  /** Buffer being read (in native byte order) */
+  private ByteBuffer buffer;
+  /** View of the buffer used for bulk reads */
+  private ByteBuffer bulkBuffer;
+
+  /**
+   * Constructor
+   *
+   * @param buffer Buffer to read from (from position 0 to its limit)
+   */
+  public ByteBufferReads(ByteBuffer buffer) {
+    super(0);
+    setBuffer(buffer);
+  }
+
+  /**
+   * Start reading another buffer from its beginning.
+   *
+   * @param buffer Buffer to read from (from position 0 to its limit)
+   */
+  protected void setBuffer(ByteBuffer buffer) {
+    this.buffer = buffer.duplicate().order(ByteOrder.nativeOrder());
+    bulkBuffer = buffer.duplicate();
+    pos = 0;
+    bufLength = buffer.limit();
+  }
+
+  @Override
+  public int available() {
+    return (int) (bufLength - pos);
+  }
+
+  @Override
+  public boolean endOfInput() {
+    return available() == 0;
+  }
+
+  @Override
+  public int getPos() {
+    return (int) pos;
+  }
+
+  @Override
+  public void readFully(byte[] b) throws IOException {
+    readFully(b, 0, b.length);
+  }
+
+  @Override
+  public void readFully(byte[] b, int off, int len) throws IOException {
+    ensureRemaining(len);
+    bulkBuffer.position((int) pos);
+    bulkBuffer.get(b, off, len);
+    pos += len;
+  }
+
+  @Override
+  public boolean readBoolean() throws IOException {
+    ensureRemaining(SIZE_OF_BOOLEAN);
+    boolean value = buffer.get((int) pos) != 0;
+    pos += SIZE_OF_BOOLEAN;
+    return value;
+  }
+
+  @Override
+  public byte readByte() throws IOException {
+    ensureRemaining(SIZE_OF_BYTE);
+    byte value = buffer.get((int) pos);
+    pos += SIZE_OF_BYTE;
+    return value;
+  }
+
+  @Override
+  public int readUnsignedByte() throws IOException {
+    return (short) (readByte() & 0xFF);
+  }
+
+  @Override
+  public short readShort() throws IOException {
+    ensureRemaining(SIZE_OF_SHORT);
+    short value = buffer.getShort((int) pos);
+    pos += SIZE_OF_SHORT;
+    return value;
+  }
+
+  @Override
+  public int readUnsignedShort() throws IOException {
+    return readShort() & 0xFFFF;
+  }
+
+  @Override
+  public char readChar() throws IOException {
+    ensureRemaining(SIZE_OF_CHAR);
+    char value = buffer.getChar((int) pos);
+    pos += SIZE_OF_CHAR;
+    return value;
+  }
+
+  @Override
+  public int readInt() throws IOException {
+    ensureRemaining(SIZE_OF_INT);
+    int value = buffer.getInt((int) pos);
+    pos += SIZE_OF_INT;
+    return value;
+  }
+
+  @Override
+  public long readLong() throws IOException {
+    ensureRemaining(SIZE_OF_LONG);
+    long value = buffer.getLong((int) pos);
+    pos += SIZE_OF_LONG;
+    return value;
+  }
+
+  @Override
+  public float readFloat() throws IOException {
+    ensureRemaining(SIZE_OF_FLOAT);
+    float value = buffer.getFloat((int) pos);
+    pos += SIZE_OF_FLOAT;
+    return value;
+  }
+
+  @Override
+  public double readDouble() throws IOException {
+    ensureRemaining(SIZE_OF_DOUBLE);
+    double value = buffer.getDouble((int) pos);
+    pos += SIZE_OF_DOUBLE;
+    return value;
+  }
+}
@@ -29,6 +29,7 @@ import java.io.IOException;
 import java.security.InvalidParameterException;
 
 import static org.apache.giraph.conf.GiraphConstants.CHECKPOINT_DIRECTORY;
+import static org.apache.giraph.conf.GiraphConstants.LOCAL_CHECKPOINT_DIRECTORY;
 
 /**
  * Holds useful functions to get checkpoint paths
@@ -43,6 +44,12 @@ public class CheckpointingUtils {
    * messages, etc.
    */
   public static final String CHECKPOINT_VERTICES_POSTFIX = ".vertices";
+  /**
+   * If at the end of a checkpoint file, indicates the checkpoints holding
+   * the vertices of partitions which weren't written by an incremental
+   * checkpoint.
+   */
+  public static final String CHECKPOINT_MANIFEST_POSTFIX = ".manifest";
   /**
    * If at the end of a checkpoint file, indicates metadata and data is valid
    * for the same filenames without .valid
@@ -80,6 +87,19 @@ public class CheckpointingUtils {
         CHECKPOINT_DIRECTORY.getDefaultValue() + "/" + jobId);
   }
 
+  /**
+   * Path to the local checkpoint's root (including job id)
+   * @param conf Immutable configuration of the job
+   * @param jobId job ID
+   * @return local checkpoint's root, or null if checkpoints are written
+   *         directly to the checkpoint directory
+   */
+  public static String getLocalCheckpointBasePath(Configuration conf,
+                                                  String jobId) {
+    String localDirectory = LOCAL_CHECKPOINT_DIRECTORY.get(conf);
+    return localDirectory.isEmpty() ? null : localDirectory + "/" + jobId;
+  }
+
   /**
    * Path to checkpoint&amp;halt node in hdfs.
    * It is set to let client know that master has
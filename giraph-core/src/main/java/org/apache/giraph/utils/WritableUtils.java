@@ -380,8 +380,13 @@ public class WritableUtils {
       ExtendedDataOutput extendedDataOutput, DataOutput out)
     throws IOException {
     out.writeInt(extendedDataOutput.getPos());
-    out.write(
-        extendedDataOutput.getByteArray(), 0, extendedDataOutput.getPos());
+    if (out instanceof ZeroCopyDataOutput) {
+      ((ZeroCopyDataOutput) out).writeNoCopy(
+          extendedDataOutput.getByteArray(), 0, extendedDataOutput.getPos());
+    } else {
+      out.write(
+          extendedDataOutput.getByteArray(), 0, extendedDataOutput.getPos());
+    }
   }
 
   /**
@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.utils;
+
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Output which can take a region of a byte array by reference instead of
+ * copying it. The array must not be modified until the output is consumed.
+ */
+public interface ZeroCopyDataOutput extends DataOutput {
+  /**
+   * Write a region of a byte array without copying it
+   *
+   * @param b Byte array
+   * @param off Offset of the region
+   * @param len Length of the region
+   * @throws IOException
+   */
+  void writeNoCopy(byte[] b, int off, int len) throws IOException;
+}
@@ -18,9 +18,12 @@
 
 package org.apache.giraph.worker;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
+import java.io.DataOutput;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -32,16 +35,26 @@ import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
+import it.unimi.dsi.fastutil.ints.Int2LongMap;
+import it.unimi.dsi.fastutil.ints.Int2LongOpenHashMap;
 import net.iharder.Base64;
 
 import org.apache.giraph.bsp.ApplicationState;
 import org.apache.giraph.bsp.BspService;
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.bsp.checkpoints.CheckpointStatus;
+import org.apache.giraph.bsp.checkpoints.IncrementalCheckpointTracker;
 import org.apache.giraph.comm.ServerData;
+import org.apache.giraph.comm.VertexMirrors;
 import org.apache.giraph.comm.WorkerClient;
 import org.apache.giraph.comm.WorkerClientRequestProcessor;
 import org.apache.giraph.comm.WorkerServer;
@@ -55,6 +68,7 @@ import org.apache.giraph.comm.netty.NettyWorkerServer;
 import org.apache.giraph.comm.requests.PartitionStatsRequest;
 import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.counters.GiraphTimers;
 import org.apache.giraph.edge.Edge;
 import org.apache.giraph.graph.AddressesAndPartitionsWritable;
 import org.apache.giraph.graph.FinishedSuperstepStats;
@@ -67,6 +81,8 @@ import org.apache.giraph.io.EdgeWriter;
 import org.apache.giraph.io.VertexOutputFormat;
 import org.apache.giraph.io.VertexWriter;
 import org.apache.giraph.io.superstep_output.SuperstepOutput;
+import org.apache.giraph.mapping.MappingStoreOps;
+import org.apache.giraph.mapping.OriginalIdsRestorer;
 import org.apache.giraph.mapping.translate.TranslateEdge;
 import org.apache.giraph.master.MasterInfo;
 import org.apache.giraph.master.SuperstepClasses;
@@ -77,6 +93,7 @@ import org.apache.giraph.metrics.ResetSuperstepMetricsObserver;
 import org.apache.giraph.metrics.SuperstepMetricsRegistry;
 import org.apache.giraph.metrics.WorkerSuperstepMetrics;
 import org.apache.giraph.ooc.OutOfCoreEngine;
+import org.apache.giraph.partition.BasicPartitionOwner;
 import org.apache.giraph.partition.Partition;
 import org.apache.giraph.partition.PartitionExchange;
 import org.apache.giraph.partition.PartitionOwner;
@@ -86,17 +103,23 @@ import org.apache.giraph.partition.WorkerGraphPartitioner;
 import org.apache.giraph.utils.BlockingElementsSet;
 import org.apache.giraph.utils.CallableFactory;
 import org.apache.giraph.utils.CheckpointingUtils;
+import org.apache.giraph.utils.ExtendedDataOutput;
 import org.apache.giraph.utils.JMapHistoDumper;
 import org.apache.giraph.utils.LoggerUtils;
 import org.apache.giraph.utils.MemoryUtils;
 import org.apache.giraph.utils.ProgressableUtils;
 import org.apache.giraph.utils.ReactiveJMapHistoDumper;
+import org.apache.giraph.utils.ThreadUtils;
 import org.apache.giraph.utils.WritableUtils;
 import org.apache.giraph.zk.BspEvent;
 import org.apache.giraph.zk.PredicateLock;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FSDataOutputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableComparable;
 import org.apache.hadoop.io.compress.CompressionCodec;
@@ -116,6 +139,7 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
 
 /**
  * ZooKeeper-based implementation of {@link CentralizedServiceWorker}.
@@ -188,6 +212,23 @@ public class BspServiceWorker<I extends WritableComparable,
   /** Memory observer */
   private final MemoryObserver memoryObserver;
 
+  /** Whether checkpoints are snapshotted and written in the background */
+  private final boolean asyncCheckpoints;
+  /** Writes checkpoints in the background (null if checkpoints are sync) */
+  private final ExecutorService checkpointWriter;
+  /** Checkpoint being written in the background */
+  private Future<Void> checkpointWrite;
+  /** Local filesystem */
+  private final FileSystem localFs;
+  /** Local directory to write checkpoints to first (null if not used) */
+  private final String localCheckpointBasePath;
+  /** Local directory of the checkpoints to restart from (null if not used) */
+  private final String savedLocalCheckpointBasePath;
+  /** Superstep of the last checkpoint uploaded from local disk */
+  private long lastUploadedCheckpoint = UNSET_SUPERSTEP;
+  /** Id of the worker which saved the checkpoint files this one restores */
+  private int checkpointRestoreWorkerId;
+
   /**
    * Constructor for setting up the worker.
    *
@@ -254,6 +295,21 @@ public class BspServiceWorker<I extends WritableComparable,
         workerInfo, masterInfo.getTaskId(), workerClient);
 
     memoryObserver = new MemoryObserver(getZkExt(), memoryObserverPath, conf);
+
+    localFs = FileSystem.getLocal(conf);
+    localCheckpointBasePath =
+        CheckpointingUtils.getLocalCheckpointBasePath(conf, getJobId());
+    String restartJobId = GiraphConstants.RESTART_JOB_ID.get(conf);
+    savedLocalCheckpointBasePath =
+        CheckpointingUtils.getLocalCheckpointBasePath(conf,
+            restartJobId == null ? getJobId() : restartJobId);
+    asyncCheckpoints = GiraphConstants.ASYNC_CHECKPOINTS.get(conf);
+    if (asyncCheckpoints || localCheckpointBasePath != null) {
+      checkpointWriter = Executors.newSingleThreadExecutor(
+          ThreadUtils.createThreadFactory("checkpoint-writer"));
+    } else {
+      checkpointWriter = null;
+    }
   }
 
   @Override
@@ -934,6 +990,24 @@ else[HADOOP_NON_SECURE]*/
     }
   }
 
+  /**
+   * Create a restorer of the original vertex ids for an output thread, if
+   * ids were rewritten by mapping and should be restored on output.
+   *
+   * @return Original ids restorer, or null if ids are written as stored
+   */
+  private OriginalIdsRestorer<I, V, E> newOriginalIdsRestorer() {
+    MappingStoreOps<I, ? extends Writable> mappingStoreOps =
+        localData.getMappingStoreOps();
+    if (mappingStoreOps == null || !mappingStoreOps.hasEmbedding() ||
+        !GiraphConstants.RESTORE_MAPPED_IDS_ON_OUTPUT.get(
+            getConfiguration())) {
+      return null;
+    }
+    return new OriginalIdsRestorer<I, V, E>(
+        getConfiguration(), mappingStoreOps);
+  }
+
   /**
    * Save the vertices using the user-defined VertexOutputFormat from our
    * vertexArray based on the split.
@@ -992,6 +1066,8 @@ else[HADOOP_NON_SECURE]*/
                 vertexOutputFormat.createVertexWriter(getContext());
             vertexWriter.setConf(getConfiguration());
             vertexWriter.initialize(getContext());
+            OriginalIdsRestorer<I, V, E> idsRestorer =
+                newOriginalIdsRestorer();
             long nextPrintVertices = 0;
             long nextUpdateProgressVertices = VERTICES_TO_UPDATE_PROGRESS;
             long nextPrintMsecs = System.currentTimeMillis() + 15000;
@@ -1006,7 +1082,8 @@ else[HADOOP_NON_SECURE]*/
 
               long verticesWritten = 0;
               for (Vertex<I, V, E> vertex : partition) {
-                vertexWriter.writeVertex(vertex);
+                vertexWriter.writeVertex(idsRestorer == null ? vertex :
+                    idsRestorer.restoreVertex(vertex));
                 ++verticesWritten;
 
                 // Update status at most every 250k vertices or 15 seconds
@@ -1105,6 +1182,8 @@ else[HADOOP_NON_SECURE]*/
                 edgeOutputFormat.createEdgeWriter(getContext());
             edgeWriter.setConf(conf);
             edgeWriter.initialize(getContext());
+            OriginalIdsRestorer<I, V, E> idsRestorer =
+                newOriginalIdsRestorer();
 
             long nextPrintVertices = 0;
             long nextPrintMsecs = System.currentTimeMillis() + 15000;
@@ -1122,7 +1201,14 @@ else[HADOOP_NON_SECURE]*/
               long partitionEdgeCount = partition.getEdgeCount();
               for (Vertex<I, V, E> vertex : partition) {
                 for (Edge<I, E> edge : vertex.getEdges()) {
-                  edgeWriter.writeEdge(vertex.getId(), vertex.getValue(), edge);
+                  if (idsRestorer == null) {
+                    edgeWriter.writeEdge(
+                        vertex.getId(), vertex.getValue(), edge);
+                  } else {
+                    edgeWriter.writeEdge(
+                        idsRestorer.restoreSourceId(vertex.getId()),
+                        vertex.getValue(), idsRestorer.restoreEdge(edge));
+                  }
                   ++edges;
                 }
                 ++vertices;
@@ -1180,6 +1266,17 @@ else[HADOOP_NON_SECURE]*/
   public void cleanup(FinishedSuperstepStats finishedSuperstepStats)
     throws IOException, InterruptedException {
     workerClient.closeConnections();
+    if (checkpointWriter != null) {
+      waitForCheckpointWrite();
+      checkpointWriter.shutdown();
+    }
+    if (localCheckpointBasePath != null &&
+        finishedSuperstepStats.getCheckpointStatus() !=
+            CheckpointStatus.CHECKPOINT_AND_HALT &&
+        GiraphConstants.CLEANUP_CHECKPOINTS_AFTER_SUCCESS.get(
+            getConfiguration())) {
+      localFs.delete(new Path(localCheckpointBasePath), true);
+    }
     setCachedSuperstep(getSuperstep() - 1);
     if (finishedSuperstepStats.getCheckpointStatus() !=
         CheckpointStatus.CHECKPOINT_AND_HALT) {
@@ -1247,20 +1344,23 @@ else[HADOOP_NON_SECURE]*/
             " - Attempt=" + getApplicationAttempt() +
             ", Superstep=" + getSuperstep());
 
+    // Only one checkpoint is written in the background at a time
+    waitForCheckpointWrite();
+
     // Algorithm:
     // For each partition, dump vertices and messages
     Path metadataFilePath = createCheckpointFilePathSafe(
         CheckpointingUtils.CHECKPOINT_METADATA_POSTFIX);
-    Path validFilePath = createCheckpointFilePathSafe(
+    final Path validFilePath = createCheckpointFilePathSafe(
         CheckpointingUtils.CHECKPOINT_VALID_POSTFIX);
-    Path checkpointFilePath = createCheckpointFilePathSafe(
+    final Path checkpointFilePath = createCheckpointFilePathSafe(
         CheckpointingUtils.CHECKPOINT_DATA_POSTFIX);
 
 
     // Metadata is buffered and written at the end since it's small and
     // needs to know how many partitions this worker owns
     FSDataOutputStream metadataOutputStream =
-        getFs().create(metadataFilePath);
+        getCheckpointFs().create(metadataFilePath);
     metadataOutputStream.writeInt(getPartitionStore().getNumPartitions());
 
     for (Integer partitionId : getPartitionStore().getPartitionIds()) {
@@ -1268,36 +1368,126 @@ else[HADOOP_NON_SECURE]*/
     }
     metadataOutputStream.close();
 
-    storeCheckpointVertices();
+    IncrementalCheckpointTracker checkpointTracker =
+        getServerData().getCheckpointTracker();
+    if (checkpointTracker != null) {
+      checkpointTracker.startCheckpoint();
+    }
+    final ConcurrentMap<Integer, ExtendedDataOutput> vertexSnapshots =
+        !asyncCheckpoints ? null :
+            new ConcurrentHashMap<Integer, ExtendedDataOutput>();
+    storeCheckpointVertices(checkpointTracker, vertexSnapshots);
+    if (checkpointTracker != null) {
+      storeCheckpointManifest(checkpointTracker);
+    }
+
+    final String workerWroteCheckpoint =
+        getWorkerWroteCheckpointPath(getApplicationAttempt(),
+            getSuperstep()) + "/" + getHostnamePartitionId();
+    final long superstep = getSuperstep();
+    if (checkpointWriter == null) {
+      FSDataOutputStream checkpointOutputStream =
+          getCheckpointFs().create(checkpointFilePath);
+      storeCheckpointData(checkpointOutputStream);
+      checkpointOutputStream.close();
+      finishCheckpoint(superstep, validFilePath, workerWroteCheckpoint);
+      return;
+    }
+
+    final ExtendedDataOutput dataSnapshot;
+    if (asyncCheckpoints) {
+      // Snapshot the rest of the checkpoint in memory too, and write it out
+      // while the next superstep is computed
+      dataSnapshot = getConfiguration().createExtendedDataOutput();
+      storeCheckpointData(dataSnapshot);
+    } else {
+      // Written to local disk, only the upload happens in the background
+      FSDataOutputStream checkpointOutputStream =
+          getCheckpointFs().create(checkpointFilePath);
+      storeCheckpointData(checkpointOutputStream);
+      checkpointOutputStream.close();
+      dataSnapshot = null;
+    }
+    checkpointWrite = ThreadUtils.submitToExecutor(checkpointWriter,
+        new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            long t0 = System.currentTimeMillis();
+            if (dataSnapshot != null) {
+              writeCheckpointVertices(superstep, vertexSnapshots);
+              FSDataOutputStream checkpointOutputStream =
+                  getCheckpointFs().create(checkpointFilePath);
+              checkpointOutputStream.write(dataSnapshot.getByteArray(), 0,
+                  dataSnapshot.getPos());
+              checkpointOutputStream.close();
+            }
+            finishCheckpoint(superstep, validFilePath, workerWroteCheckpoint);
+            if (LOG.isInfoEnabled()) {
+              LOG.info("storeCheckpoint: Wrote checkpoint of superstep " +
+                  superstep + " in the background in " +
+                  (System.currentTimeMillis() - t0) + " ms");
+            }
+            return null;
+          }
+        }, getGraphTaskManager().createUncaughtExceptionHandler());
+  }
+
+  /**
+   * Wait for the checkpoint being written in the background (if any) to be
+   * written completely.
+   */
+  private void waitForCheckpointWrite() {
+    if (checkpointWrite != null) {
+      ProgressableUtils.getFutureResult(checkpointWrite, getContext());
+      checkpointWrite = null;
+    }
+  }
 
-    FSDataOutputStream checkpointOutputStream =
-        getFs().create(checkpointFilePath);
-    workerContext.write(checkpointOutputStream);
+  /**
+   * Write the worker context, messages and worker to worker messages of a
+   * checkpoint.
+   *
+   * @param output Output to write to
+   * @throws IOException
+   */
+  private void storeCheckpointData(DataOutput output) throws IOException {
+    workerContext.write(output);
     getContext().progress();
 
     // TODO: checkpointing messages along with vertices to avoid multiple loads
     //       of a partition when out-of-core is enabled.
     for (Integer partitionId : getPartitionStore().getPartitionIds()) {
       // write messages
-      checkpointOutputStream.writeInt(partitionId);
+      output.writeInt(partitionId);
       getServerData().getCurrentMessageStore()
-          .writePartition(checkpointOutputStream, partitionId);
+          .writePartition(output, partitionId);
       getContext().progress();
 
     }
 
     List<Writable> w2wMessages =
         getServerData().getCurrentWorkerToWorkerMessages();
-    WritableUtils.writeList(w2wMessages, checkpointOutputStream);
-
-    checkpointOutputStream.close();
+    WritableUtils.writeList(w2wMessages, output);
+  }
 
-    getFs().createNewFile(validFilePath);
+  /**
+   * Mark the checkpoint files of this worker valid, upload them from the
+   * local checkpoint directory (if used), and notify the master that they
+   * are stored.
+   *
+   * @param superstep Superstep of the checkpoint
+   * @param validFilePath Path of the file marking the checkpoint valid
+   * @param workerWroteCheckpoint Znode to notify the master with
+   * @throws IOException
+   */
+  private void finishCheckpoint(long superstep, Path validFilePath,
+      String workerWroteCheckpoint) throws IOException {
+    getCheckpointFs().createNewFile(validFilePath);
+    if (localCheckpointBasePath != null) {
+      uploadCheckpoint(superstep);
+    }
 
     // Notify master that checkpoint is stored
-    String workerWroteCheckpoint =
-        getWorkerWroteCheckpointPath(getApplicationAttempt(),
-            getSuperstep()) + "/" + getHostnamePartitionId();
     try {
       getZkExt().createExt(workerWroteCheckpoint,
           new byte[0],
@@ -1324,17 +1514,143 @@ else[HADOOP_NON_SECURE]*/
    * @throws IOException
    */
   private Path createCheckpointFilePathSafe(String name) throws IOException {
-    Path validFilePath = new Path(getCheckpointBasePath(getSuperstep()) + '.' +
+    return createCheckpointFilePathSafe(getSuperstep(), name);
+  }
+
+  /**
+   * Create checkpoint file of a superstep safely. If file already exists
+   * remove it first.
+   * @param superstep superstep of the checkpoint
+   * @param name file extension
+   * @return full file path to newly created file
+   * @throws IOException
+   */
+  private Path createCheckpointFilePathSafe(long superstep, String name)
+    throws IOException {
+    String basePath = localCheckpointBasePath == null ?
+        getCheckpointBasePath(superstep) :
+        localCheckpointBasePath + "/" + superstep;
+    Path validFilePath = new Path(basePath + '.' +
         getWorkerId(workerInfo) + name);
     // Remove these files if they already exist (shouldn't though, unless
     // of previous failure of this worker)
-    if (getFs().delete(validFilePath, false)) {
+    if (getCheckpointFs().delete(validFilePath, false)) {
       LOG.warn("storeCheckpoint: Removed " + name + " file " +
           validFilePath);
     }
     return validFilePath;
   }
 
+  /**
+   * Get the filesystem checkpoints are written to by this worker.
+   *
+   * @return Local filesystem if checkpoints are written to local disk
+   *         first, checkpoint filesystem otherwise
+   */
+  private FileSystem getCheckpointFs() {
+    return localCheckpointBasePath == null ? getFs() : localFs;
+  }
+
+  /**
+   * Upload the checkpoint files of this worker from the local checkpoint
+   * directory to the checkpoint directory. The file marking the checkpoint
+   * valid is uploaded last. Local files of the previously uploaded
+   * checkpoint are removed, but the ones of this checkpoint are kept for
+   * restarts on this host.
+   *
+   * @param superstep Superstep of the checkpoint
+   * @throws IOException
+   */
+  private void uploadCheckpoint(long superstep) throws IOException {
+    long t0 = System.currentTimeMillis();
+    Path checkpointDir = new Path(getCheckpointBasePath(superstep)).getParent();
+    Path validFilePath = null;
+    long bytes = 0;
+    for (FileStatus file : listLocalCheckpointFiles(superstep)) {
+      if (file.getPath().getName().endsWith(
+          CheckpointingUtils.CHECKPOINT_VALID_POSTFIX)) {
+        validFilePath = file.getPath();
+        continue;
+      }
+      FileUtil.copy(localFs, file.getPath(), getFs(),
+          new Path(checkpointDir, file.getPath().getName()), false, true,
+          getConfiguration());
+      bytes += file.getLen();
+      getContext().progress();
+    }
+    if (validFilePath == null) {
+      throw new IllegalStateException("uploadCheckpoint: No valid file " +
+          "for the checkpoint of superstep " + superstep);
+    }
+    FileUtil.copy(localFs, validFilePath, getFs(),
+        new Path(checkpointDir, validFilePath.getName()), false, true,
+        getConfiguration());
+    if (LOG.isInfoEnabled()) {
+      LOG.info("uploadCheckpoint: Uploaded " + bytes + " bytes of the " +
+          "checkpoint of superstep " + superstep + " in " +
+          (System.currentTimeMillis() - t0) + " ms");
+    }
+
+    if (lastUploadedCheckpoint != UNSET_SUPERSTEP) {
+      for (FileStatus file : listLocalCheckpointFiles(lastUploadedCheckpoint)) {
+        localFs.delete(file.getPath(), false);
+      }
+    }
+    lastUploadedCheckpoint = superstep;
+  }
+
+  /**
+   * List the files of this worker in the local checkpoint directory for a
+   * superstep.
+   *
+   * @param superstep Superstep of the checkpoint
+   * @return Checkpoint files
+   * @throws IOException
+   */
+  private FileStatus[] listLocalCheckpointFiles(long superstep)
+    throws IOException {
+    final String prefix = Long.toString(superstep) + '.' +
+        getWorkerId(workerInfo);
+    FileStatus[] files = localFs.listStatus(new Path(localCheckpointBasePath),
+        new PathFilter() {
+          @Override
+          public boolean accept(Path path) {
+            return path.getName().startsWith(prefix + '.') ||
+                path.getName().startsWith(prefix + '_');
+          }
+        });
+    return files == null ? new FileStatus[0] : files;
+  }
+
+  /**
+   * Open a file of a saved checkpoint. The local copy is used when this
+   * host has a complete one (i.e. the worker is restarted on the same host).
+   *
+   * @param superstep saved superstep
+   * @param name extension name
+   * @return Stream to read the file from
+   * @throws IOException
+   */
+  private FSDataInputStream openSavedCheckpoint(long superstep, String name)
+    throws IOException {
+    Path path = getSavedCheckpoint(superstep, name);
+    if (savedLocalCheckpointBasePath != null) {
+      Path localPath = new Path(savedLocalCheckpointBasePath + "/" +
+          superstep + '.' + checkpointRestoreWorkerId + name);
+      // The local copy could have been left by a failed attempt, so it's
+      // only used when it matches the uploaded file
+      if (localFs.exists(localPath) &&
+          localFs.getFileStatus(localPath).getLen() ==
+              getFs().getFileStatus(path).getLen()) {
+        if (LOG.isDebugEnabled()) {
+          LOG.debug("openSavedCheckpoint: Reading local copy " + localPath);
+        }
+        return localFs.open(localPath);
+      }
+    }
+    return getFs().open(path);
+  }
+
   /**
    * Returns path to saved checkpoint.
    * Doesn't check if file actually exists.
@@ -1344,14 +1660,109 @@ else[HADOOP_NON_SECURE]*/
    */
   private Path getSavedCheckpoint(long superstep, String name) {
     return new Path(getSavedCheckpointBasePath(superstep) + '.' +
-        getWorkerId(workerInfo) + name);
+        checkpointRestoreWorkerId + name);
+  }
+
+  /**
+   * Get the id of the worker which saved the checkpoint files to restore.
+   * The master sets the checkpoint files prefix of the partitions it
+   * assigns to this worker, and workers without partitions (or with
+   * partition owners which don't carry a prefix) restore their own files.
+   *
+   * @return Id of the worker which saved the checkpoint
+   */
+  private int getCheckpointRestoreWorkerId() {
+    for (PartitionOwner partitionOwner :
+        workerGraphPartitioner.getPartitionOwners()) {
+      if (!(partitionOwner instanceof BasicPartitionOwner) ||
+          !partitionOwner.getWorkerInfo().equals(getWorkerInfo())) {
+        continue;
+      }
+      String prefix =
+          ((BasicPartitionOwner) partitionOwner).getCheckpointFilesPrefix();
+      if (prefix != null) {
+        return Integer.parseInt(
+            prefix.substring(prefix.lastIndexOf('.') + 1));
+      }
+    }
+    return getWorkerId(workerInfo);
+  }
+
+  /**
+   * Save which earlier checkpoints hold the vertices of the partitions not
+   * written by this (incremental) checkpoint.
+   *
+   * @param checkpointTracker Tracker of the partitions changed since they
+   *                          were last checkpointed
+   * @throws IOException
+   */
+  private void storeCheckpointManifest(
+      IncrementalCheckpointTracker checkpointTracker) throws IOException {
+    Int2LongOpenHashMap partitionSupersteps = new Int2LongOpenHashMap();
+    for (Integer partitionId : getPartitionStore().getPartitionIds()) {
+      long superstep = checkpointTracker.getCheckpointedSuperstep(partitionId);
+      if (superstep != getSuperstep()) {
+        partitionSupersteps.put(partitionId.intValue(), superstep);
+      }
+    }
+    FSDataOutputStream manifestOutputStream = getCheckpointFs().create(
+        createCheckpointFilePathSafe(
+            CheckpointingUtils.CHECKPOINT_MANIFEST_POSTFIX));
+    manifestOutputStream.writeInt(partitionSupersteps.size());
+    for (Int2LongMap.Entry entry :
+        partitionSupersteps.int2LongEntrySet()) {
+      manifestOutputStream.writeInt(entry.getIntKey());
+      manifestOutputStream.writeLong(entry.getLongValue());
+    }
+    manifestOutputStream.close();
+    if (LOG.isInfoEnabled()) {
+      LOG.info("storeCheckpointManifest: " + partitionSupersteps.size() +
+          " of " + getPartitionStore().getNumPartitions() +
+          " partitions are unchanged since earlier checkpoints");
+    }
+  }
+
+  /**
+   * Load which checkpoints hold the vertices of the partitions of a saved
+   * checkpoint.
+   *
+   * @param superstep Superstep of the saved checkpoint
+   * @return Map from partition id to the superstep of the checkpoint holding
+   *         its vertices (defaults to the given superstep)
+   * @throws IOException
+   */
+  private Int2LongOpenHashMap loadCheckpointManifest(long superstep)
+    throws IOException {
+    Int2LongOpenHashMap partitionSupersteps = new Int2LongOpenHashMap();
+    partitionSupersteps.defaultReturnValue(superstep);
+    Path manifestFilePath = getSavedCheckpoint(
+        superstep, CheckpointingUtils.CHECKPOINT_MANIFEST_POSTFIX);
+    if (getFs().exists(manifestFilePath)) {
+      DataInputStream manifestStream = openSavedCheckpoint(
+          superstep, CheckpointingUtils.CHECKPOINT_MANIFEST_POSTFIX);
+      int entries = manifestStream.readInt();
+      for (int i = 0; i < entries; i++) {
+        int partitionId = manifestStream.readInt();
+        partitionSupersteps.put(partitionId, manifestStream.readLong());
+      }
+      manifestStream.close();
+    }
+    return partitionSupersteps;
   }
 
   /**
    * Save partitions. To speed up this operation
    * runs in multiple threads.
+   *
+   * @param checkpointTracker Tracker of the partitions changed since they
+   *                          were last checkpointed (null to save all
+   *                          partitions)
+   * @param vertexSnapshots Map to serialize partitions to, for writing them
+   *                        later (null to write them right away)
    */
-  private void storeCheckpointVertices() {
+  private void storeCheckpointVertices(
+      final IncrementalCheckpointTracker checkpointTracker,
+      final ConcurrentMap<Integer, ExtendedDataOutput> vertexSnapshots) {
     final int numPartitions = getPartitionStore().getNumPartitions();
     int numThreads = Math.min(
         GiraphConstants.NUM_CHECKPOINT_IO_THREADS.get(getConfiguration()),
@@ -1380,12 +1791,31 @@ else[HADOOP_NON_SECURE]*/
               if (partition == null) {
                 break;
               }
+              if (checkpointTracker != null &&
+                  checkpointTracker.getCheckpointedSuperstep(
+                      partition.getId()) >= 0) {
+                // Unchanged since an earlier checkpoint
+                getPartitionStore().putPartition(partition);
+                continue;
+              }
+              if (vertexSnapshots != null) {
+                ExtendedDataOutput snapshot =
+                    getConfiguration().createExtendedDataOutput();
+                partition.write(snapshot);
+                vertexSnapshots.put(partition.getId(), snapshot);
+                if (checkpointTracker != null) {
+                  checkpointTracker.partitionCheckpointed(partition.getId(),
+                      getSuperstep());
+                }
+                getPartitionStore().putPartition(partition);
+                continue;
+              }
               Path path =
                   createCheckpointFilePathSafe("_" + partition.getId() +
                       CheckpointingUtils.CHECKPOINT_VERTICES_POSTFIX);
 
               FSDataOutputStream uncompressedStream =
-                  getFs().create(path);
+                  getCheckpointFs().create(path);
 
 
               DataOutputStream stream = codec == null ? uncompressedStream :
@@ -1395,6 +1825,10 @@ else[HADOOP_NON_SECURE]*/
 
               partition.write(stream);
 
+              if (checkpointTracker != null) {
+                checkpointTracker.partitionCheckpointed(partition.getId(),
+                    getSuperstep());
+              }
               getPartitionStore().putPartition(partition);
 
               stream.close();
@@ -1416,12 +1850,81 @@ else[HADOOP_NON_SECURE]*/
   }
 
   /**
-   * Load saved partitions in multiple threads.
-   * @param superstep superstep to load
+   * Write serialized partitions of a checkpoint in multiple threads.
+   *
+   * @param superstep Superstep of the checkpoint
+   * @param vertexSnapshots Map from partition id to serialized partition
+   */
+  private void writeCheckpointVertices(final long superstep,
+      ConcurrentMap<Integer, ExtendedDataOutput> vertexSnapshots) {
+    if (vertexSnapshots.isEmpty()) {
+      return;
+    }
+    int numThreads = Math.min(
+        GiraphConstants.NUM_CHECKPOINT_IO_THREADS.get(getConfiguration()),
+        vertexSnapshots.size());
+
+    final Queue<Map.Entry<Integer, ExtendedDataOutput>> snapshotQueue =
+        new ConcurrentLinkedQueue<>(vertexSnapshots.entrySet());
+
+    final CompressionCodec codec =
+        new CompressionCodecFactory(getConfiguration())
+            .getCodec(new Path(
+                GiraphConstants.CHECKPOINT_COMPRESSION_CODEC
+                    .get(getConfiguration())));
+
+    CallableFactory<Void> callableFactory = new CallableFactory<Void>() {
+      @Override
+      public Callable<Void> newCallable(int callableId) {
+        return new Callable<Void>() {
+          @Override
+          public Void call() throws Exception {
+            while (true) {
+              Map.Entry<Integer, ExtendedDataOutput> snapshot =
+                  snapshotQueue.poll();
+              if (snapshot == null) {
+                break;
+              }
+              Path path =
+                  createCheckpointFilePathSafe(superstep,
+                      "_" + snapshot.getKey() +
+                      CheckpointingUtils.CHECKPOINT_VERTICES_POSTFIX);
+
+              FSDataOutputStream uncompressedStream =
+                  getCheckpointFs().create(path);
+
+              DataOutputStream stream = codec == null ? uncompressedStream :
+                  new DataOutputStream(
+                      codec.createOutputStream(uncompressedStream));
+
+              stream.write(snapshot.getValue().getByteArray(), 0,
+                  snapshot.getValue().getPos());
+
+              stream.close();
+              uncompressedStream.close();
+            }
+            return null;
+          }
+        };
+      }
+    };
+
+    ProgressableUtils.getResultsWithNCallables(callableFactory, numThreads,
+        "write-checkpoint-vertices-%d", getContext());
+  }
+
+  /**
+   * Load saved partitions in multiple threads. With prefetching enabled,
+   * each thread reads the file of its next partition while deserializing
+   * the current one.
+   * @param partitionSupersteps superstep of the checkpoint to load each
+   *                            partition from
    * @param partitions list of partitions to load
+   * @return number of bytes read
    */
-  private void loadCheckpointVertices(final long superstep,
-                                      List<Integer> partitions) {
+  private long loadCheckpointVertices(
+      final Int2LongOpenHashMap partitionSupersteps,
+      List<Integer> partitions) {
     int numThreads = Math.min(
         GiraphConstants.NUM_CHECKPOINT_IO_THREADS.get(getConfiguration()),
         partitions.size());
@@ -1435,6 +1938,14 @@ else[HADOOP_NON_SECURE]*/
                 GiraphConstants.CHECKPOINT_COMPRESSION_CODEC
                     .get(getConfiguration())));
 
+    final ExecutorService prefetcher =
+        GiraphConstants.CHECKPOINT_RESTORE_PREFETCH.get(getConfiguration()) &&
+            numThreads > 0 ?
+            Executors.newFixedThreadPool(numThreads,
+                ThreadUtils.createThreadFactory("prefetch-vertices-%d")) :
+            null;
+    final AtomicLong bytesRead = new AtomicLong();
+
     long t0 = System.currentTimeMillis();
 
     CallableFactory<Void> callableFactory = new CallableFactory<Void>() {
@@ -1444,29 +1955,45 @@ else[HADOOP_NON_SECURE]*/
 
           @Override
           public Void call() throws Exception {
-            while (!partitionIdQueue.isEmpty()) {
-              Integer partitionId = partitionIdQueue.poll();
-              if (partitionId == null) {
-                break;
+            Integer partitionId = partitionIdQueue.poll();
+            Future<byte[]> prefetched = prefetcher == null ||
+                partitionId == null ? null : prefetchCheckpointVertices(
+                    prefetcher, partitionSupersteps, partitionId);
+            while (partitionId != null) {
+              InputStream compressedStream;
+              if (prefetched == null) {
+                compressedStream = openCheckpointVertices(
+                    partitionSupersteps, partitionId);
+              } else {
+                byte[] bytes = ProgressableUtils.getFutureResult(
+                    prefetched, getContext());
+                compressedStream = new ByteArrayInputStream(bytes);
+                bytesRead.addAndGet(bytes.length);
+              }
+              int currentPartitionId = partitionId;
+              partitionId = partitionIdQueue.poll();
+              if (prefetched != null) {
+                prefetched = partitionId == null ? null :
+                    prefetchCheckpointVertices(
+                        prefetcher, partitionSupersteps, partitionId);
               }
-              Path path =
-                  getSavedCheckpoint(superstep, "_" + partitionId +
-                      CheckpointingUtils.CHECKPOINT_VERTICES_POSTFIX);
-
-              FSDataInputStream compressedStream =
-                  getFs().open(path);
 
-              DataInputStream stream = codec == null ? compressedStream :
-                  new DataInputStream(
-                      codec.createInputStream(compressedStream));
+              DataInputStream stream = new DataInputStream(codec == null ?
+                  compressedStream :
+                  codec.createInputStream(compressedStream));
 
               Partition<I, V, E> partition =
-                  getConfiguration().createPartition(partitionId, getContext());
+                  getConfiguration().createPartition(currentPartitionId,
+                      getContext());
 
               partition.readFields(stream);
 
               getPartitionStore().addPartition(partition);
 
+              if (compressedStream instanceof FSDataInputStream) {
+                bytesRead.addAndGet(
+                    ((FSDataInputStream) compressedStream).getPos());
+              }
               stream.close();
             }
             return null;
@@ -1476,27 +2003,73 @@ else[HADOOP_NON_SECURE]*/
       }
     };
 
-    ProgressableUtils.getResultsWithNCallables(callableFactory, numThreads,
-        "load-vertices-%d", getContext());
+    try {
+      ProgressableUtils.getResultsWithNCallables(callableFactory, numThreads,
+          "load-vertices-%d", getContext());
+    } finally {
+      if (prefetcher != null) {
+        prefetcher.shutdown();
+      }
+    }
 
     LOG.info("Loaded checkpoint in " + (System.currentTimeMillis() - t0) +
         " ms, using " + numThreads + " threads");
+    return bytesRead.get();
+  }
+
+  /**
+   * Open the saved vertices of a partition.
+   *
+   * @param partitionSupersteps superstep of the checkpoint to load each
+   *                            partition from
+   * @param partitionId id of the partition
+   * @return Stream to read the vertices from
+   * @throws IOException
+   */
+  private FSDataInputStream openCheckpointVertices(
+      Int2LongOpenHashMap partitionSupersteps, int partitionId)
+    throws IOException {
+    return openSavedCheckpoint(partitionSupersteps.get(partitionId),
+        "_" + partitionId + CheckpointingUtils.CHECKPOINT_VERTICES_POSTFIX);
+  }
+
+  /**
+   * Read the saved vertices of a partition into memory in the background.
+   *
+   * @param prefetcher Executor to read with
+   * @param partitionSupersteps superstep of the checkpoint to load each
+   *                            partition from
+   * @param partitionId id of the partition
+   * @return Future with the contents of the file
+   */
+  private Future<byte[]> prefetchCheckpointVertices(
+      ExecutorService prefetcher,
+      final Int2LongOpenHashMap partitionSupersteps, final int partitionId) {
+    return prefetcher.submit(new Callable<byte[]>() {
+      @Override
+      public byte[] call() throws Exception {
+        FSDataInputStream stream =
+            openCheckpointVertices(partitionSupersteps, partitionId);
+        try {
+          return ByteStreams.toByteArray(stream);
+        } finally {
+          stream.close();
+        }
+      }
+    });
   }
 
   @Override
   public VertexEdgeCount loadCheckpoint(long superstep) {
-    Path metadataFilePath = getSavedCheckpoint(
-        superstep, CheckpointingUtils.CHECKPOINT_METADATA_POSTFIX);
-
-    Path checkpointFilePath = getSavedCheckpoint(
-        superstep, CheckpointingUtils.CHECKPOINT_DATA_POSTFIX);
     // Algorithm:
     // Examine all the partition owners and load the ones
     // that match my hostname and id from the master designated checkpoint
     // prefixes.
+    long t0 = System.currentTimeMillis();
+    checkpointRestoreWorkerId = getCheckpointRestoreWorkerId();
     try {
-      DataInputStream metadataStream =
-          getFs().open(metadataFilePath);
+      DataInputStream metadataStream = openSavedCheckpoint(
+          superstep, CheckpointingUtils.CHECKPOINT_METADATA_POSTFIX);
 
       int partitions = metadataStream.readInt();
       List<Integer> partitionIds = new ArrayList<>(partitions);
@@ -1505,14 +2078,16 @@ else[HADOOP_NON_SECURE]*/
         partitionIds.add(partitionId);
       }
 
-      loadCheckpointVertices(superstep, partitionIds);
+      long bytesRead = loadCheckpointVertices(
+          loadCheckpointManifest(superstep),
+          partitionIds);
 
       getContext().progress();
 
       metadataStream.close();
 
-      DataInputStream checkpointStream =
-          getFs().open(checkpointFilePath);
+      FSDataInputStream checkpointStream = openSavedCheckpoint(
+          superstep, CheckpointingUtils.CHECKPOINT_DATA_POSTFIX);
       workerContext.readFields(checkpointStream);
 
       // Load global stats and superstep classes
@@ -1527,6 +2102,11 @@ else[HADOOP_NON_SECURE]*/
       superstepClasses.readFields(finalizedStream);
       getConfiguration().updateSuperstepClasses(superstepClasses);
       getServerData().resetMessageStores();
+      VertexMirrors<I> vertexMirrors = getServerData().getVertexMirrors();
+      if (vertexMirrors != null) {
+        // Mirrors aren't checkpointed, every worker registers them again
+        vertexMirrors.clear();
+      }
 
       // TODO: checkpointing messages along with vertices to avoid multiple
       //       loads of a partition when out-of-core is enabled.
@@ -1540,12 +2120,19 @@ else[HADOOP_NON_SECURE]*/
           checkpointStream);
       getServerData().getCurrentWorkerToWorkerMessages().addAll(w2wMessages);
 
+      bytesRead += checkpointStream.getPos();
       checkpointStream.close();
 
+      long restoreMillis = System.currentTimeMillis() - t0;
+      GiraphTimers.addCheckpointRestore(getContext(), bytesRead,
+          restoreMillis);
       if (LOG.isInfoEnabled()) {
         LOG.info("loadCheckpoint: Loaded " +
             workerGraphPartitioner.getPartitionOwners().size() +
-            " total.");
+            " total, restored " + bytesRead + " bytes saved by worker " +
+            checkpointRestoreWorkerId + " in " + restoreMillis + " ms (" +
+            String.format("%.1f", GiraphTimers.getCheckpointRestoreThroughput(
+                bytesRead, restoreMillis)) + " MB/s)");
       }
 
       // Communication service needs to setup the connections prior to
@@ -1643,6 +2230,11 @@ else[HADOOP_NON_SECURE]*/
     PartitionExchange partitionExchange =
         workerGraphPartitioner.updatePartitionOwners(
             getWorkerInfo(), masterSetPartitionOwners);
+    VertexMirrors<I> vertexMirrors = getServerData().getVertexMirrors();
+    if (vertexMirrors != null) {
+      vertexMirrors.updatePartitionOwners(getPartitionOwners(),
+          getSuperstep());
+    }
     workerClient.openConnections();
 
     Map<WorkerInfo, List<Integer>> sendWorkerPartitionMap =
@@ -1653,6 +2245,13 @@ else[HADOOP_NON_SECURE]*/
 
     Set<WorkerInfo> myDependencyWorkerSet =
         partitionExchange.getMyDependencyWorkerSet();
+    IncrementalCheckpointTracker checkpointTracker =
+        getServerData().getCheckpointTracker();
+    if (checkpointTracker != null && (!sendWorkerPartitionMap.isEmpty() ||
+        !myDependencyWorkerSet.isEmpty())) {
+      // Partitions moved between workers, next checkpoint has to be a full one
+      checkpointTracker.allPartitionsChanged();
+    }
     Set<String> workerIdSet = new HashSet<String>();
     for (WorkerInfo tmpWorkerInfo : myDependencyWorkerSet) {
       if (!workerIdSet.add(tmpWorkerInfo.getHostnameId())) {
@@ -18,6 +18,7 @@
 package org.apache.giraph.worker;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
@@ -39,6 +40,8 @@ import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.util.Progressable;
 import org.apache.log4j.Logger;
 
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
@@ -60,6 +63,8 @@ public class WorkerAggregatorHandler implements WorkerThreadGlobalCommUsage {
   private final Progressable progressable;
   /** How big a single aggregator request can be */
   private final int maxBytesPerAggregatorRequest;
+  /** Fan-out of the aggregator tree (0 if not used) */
+  private final int aggregatorTreeFanOut;
   /** Giraph configuration */
   private final ImmutableClassesGiraphConfiguration conf;
 
@@ -80,6 +85,7 @@ public class WorkerAggregatorHandler implements WorkerThreadGlobalCommUsage {
     maxBytesPerAggregatorRequest = conf.getInt(
         AggregatorUtils.MAX_BYTES_PER_AGGREGATOR_REQUEST,
         AggregatorUtils.MAX_BYTES_PER_AGGREGATOR_REQUEST_DEFAULT);
+    aggregatorTreeFanOut = AggregatorUtils.getAggregatorTreeFanOut(conf);
   }
 
   @Override
@@ -147,6 +153,10 @@ public class WorkerAggregatorHandler implements WorkerThreadGlobalCommUsage {
     Iterable<byte[]> dataToDistribute =
         allGlobalCommData.getDataFromMasterWhenReady(
             serviceWorker.getMasterInfo());
+    if (aggregatorTreeFanOut > 0) {
+      prepareSuperstepInTree(requestProcessor, dataToDistribute);
+      return;
+    }
     try {
       // Distribute my aggregators
       requestProcessor.distributeReducedValues(dataToDistribute);
@@ -163,6 +173,51 @@ public class WorkerAggregatorHandler implements WorkerThreadGlobalCommUsage {
     }
   }
 
+  /**
+   * Prepare aggregators for current superstep, when they are distributed in
+   * a tree. Aggregators from the parent are forwarded to the children, after
+   * registering reducers for the partial values children will send back.
+   *
+   * @param requestProcessor Request processor for aggregators
+   * @param masterData Data received from master
+   */
+  private void prepareSuperstepInTree(
+      WorkerAggregatorRequestProcessor requestProcessor,
+      Iterable<byte[]> masterData) {
+    AllAggregatorServerData allGlobalCommData =
+        serviceWorker.getServerData().getAllAggregatorData();
+    WorkerInfo parent = AggregatorUtils.getTreeParent(
+        serviceWorker.getWorkerInfo(), serviceWorker.getWorkerInfoList(),
+        aggregatorTreeFanOut);
+    List<byte[]> dataToDistribute = Lists.newArrayList(masterData);
+    if (parent != null) {
+      Iterables.addAll(dataToDistribute,
+          allGlobalCommData.getDataFromParentWhenReady(parent.getTaskId()));
+    }
+    allGlobalCommData.fillNextSuperstepMaps(broadcastedMap, reducerMap);
+
+    OwnerAggregatorServerData ownerGlobalCommData =
+        serviceWorker.getServerData().getOwnerAggregatorData();
+    UnsafeByteArrayOutputStream out = new UnsafeByteArrayOutputStream();
+    UnsafeReusableByteArrayInput in = new UnsafeReusableByteArrayInput();
+    for (Map.Entry<String, Reducer<Object, Writable>> entry :
+        reducerMap.entrySet()) {
+      ownerGlobalCommData.registerReducer(entry.getKey(),
+          WritableUtils.createCopy(out, in, entry.getValue().getReduceOp(),
+              conf));
+    }
+
+    try {
+      requestProcessor.distributeReducedValues(dataToDistribute);
+    } catch (IOException e) {
+      throw new IllegalStateException("prepareSuperstepInTree: " +
+          "IOException occurred while trying to distribute aggregators", e);
+    }
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("prepareSuperstepInTree: Aggregators prepared");
+    }
+  }
+
   /**
    * Send aggregators to their owners and in the end to the master
    *
@@ -175,6 +230,10 @@ public class WorkerAggregatorHandler implements WorkerThreadGlobalCommUsage {
           "workers will send their aggregated values " +
           "once they are done with superstep computation");
     }
+    if (aggregatorTreeFanOut > 0) {
+      finishSuperstepInTree(requestProcessor);
+      return;
+    }
     OwnerAggregatorServerData ownerGlobalCommData =
         serviceWorker.getServerData().getOwnerAggregatorData();
     // First send partial aggregated values to their owners and determine
@@ -210,6 +269,81 @@ public class WorkerAggregatorHandler implements WorkerThreadGlobalCommUsage {
             getOtherWorkerIdsSet());
 
     // Send final aggregated values to master
+    sendReducedValuesToMaster(requestProcessor, myReducedValues);
+
+    ownerGlobalCommData.reset();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("finishSuperstep: Aggregators finished");
+    }
+  }
+
+  /**
+   * Reduce aggregators in a tree. Partial values of the children are merged
+   * with the values of this worker and sent to the parent, and the root
+   * sends final values to the master.
+   *
+   * @param requestProcessor Request processor for aggregators
+   */
+  private void finishSuperstepInTree(
+      WorkerAggregatorRequestProcessor requestProcessor) {
+    OwnerAggregatorServerData ownerGlobalCommData =
+        serviceWorker.getServerData().getOwnerAggregatorData();
+    for (Map.Entry<String, Reducer<Object, Writable>> entry :
+        reducerMap.entrySet()) {
+      ownerGlobalCommData.reduce(entry.getKey(),
+          entry.getValue().getCurrentValue());
+    }
+
+    // Wait to receive partial aggregated values from the children
+    Set<Integer> childrenIds = Sets.newHashSet();
+    for (WorkerInfo child : AggregatorUtils.getTreeChildren(
+        serviceWorker.getWorkerInfo(), serviceWorker.getWorkerInfoList(),
+        aggregatorTreeFanOut)) {
+      childrenIds.add(child.getTaskId());
+    }
+    Iterable<Map.Entry<String, Writable>> reducedValues =
+        ownerGlobalCommData.getMyReducedValuesWhenReady(childrenIds);
+
+    if (AggregatorUtils.getTreeParent(serviceWorker.getWorkerInfo(),
+        serviceWorker.getWorkerInfoList(), aggregatorTreeFanOut) == null) {
+      sendReducedValuesToMaster(requestProcessor, reducedValues);
+    } else {
+      for (Map.Entry<String, Writable> entry : reducedValues) {
+        try {
+          requestProcessor.sendReducedValue(entry.getKey(), entry.getValue());
+        } catch (IOException e) {
+          throw new IllegalStateException("finishSuperstepInTree: " +
+              "IOException occurred while sending aggregator " +
+              entry.getKey() + " to parent", e);
+        }
+        progressable.progress();
+      }
+      try {
+        requestProcessor.flush();
+      } catch (IOException e) {
+        throw new IllegalStateException("finishSuperstepInTree: " +
+            "IOException occurred while sending aggregators to parent", e);
+      }
+      // Wait for parent to receive partial values before proceeding
+      serviceWorker.getWorkerClient().waitAllRequests();
+    }
+
+    ownerGlobalCommData.reset();
+    if (LOG.isDebugEnabled()) {
+      LOG.debug("finishSuperstepInTree: Aggregators finished");
+    }
+  }
+
+  /**
+   * Send final aggregated values which this worker owns to master, and wait
+   * for master to receive them.
+   *
+   * @param requestProcessor Request processor for aggregators
+   * @param myReducedValues Final aggregated values
+   */
+  private void sendReducedValuesToMaster(
+      WorkerAggregatorRequestProcessor requestProcessor,
+      Iterable<Map.Entry<String, Writable>> myReducedValues) {
     GlobalCommValueOutputStream globalOutput =
         new GlobalCommValueOutputStream(false);
     for (Map.Entry<String, Writable> entry : myReducedValues) {
@@ -236,11 +370,6 @@ public class WorkerAggregatorHandler implements WorkerThreadGlobalCommUsage {
     }
     // Wait for master to receive aggregated values before proceeding
     serviceWorker.getWorkerClient().waitAllRequests();
-
-    ownerGlobalCommData.reset();
-    if (LOG.isDebugEnabled()) {
-      LOG.debug("finishSuperstep: Aggregators finished");
-    }
   }
 
   /**
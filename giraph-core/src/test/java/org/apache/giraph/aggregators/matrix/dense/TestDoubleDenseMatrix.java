@@ -19,11 +19,15 @@
 package org.apache.giraph.aggregators.matrix.dense;
 
 import org.apache.giraph.aggregators.matrix.dense.DoubleDenseVector;
-import static org.junit.Assert.assertEquals;
-
+import org.apache.giraph.utils.UnsafeByteArrayInputStream;
+import org.apache.giraph.utils.UnsafeByteArrayOutputStream;
 import org.apache.giraph.utils.WritableUtils;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
 public class TestDoubleDenseMatrix {
   private static double E = 0.0001f;
 
@@ -108,4 +112,73 @@ public class TestDoubleDenseMatrix {
     assertEquals(from.getSingletonValue(), to2.getSingletonValue(), E);
     assertEquals(from.getSingletonValue(), to2.getSingletonValue(), E);
   }
+
+  private static DoubleDenseVector createVector(int size) {
+    DoubleDenseVector vector = new DoubleDenseVector(size);
+    for (int i = 0; i < size; ++i) {
+      vector.set(i, (double) (i * 3));
+    }
+    return vector;
+  }
+
+  private static DoubleDenseVector readDelta(DoubleDenseVector previous,
+      UnsafeByteArrayOutputStream out) throws Exception {
+    DoubleDenseVector to = new DoubleDenseVector();
+    to.readDelta(previous, new UnsafeByteArrayInputStream(
+        out.getByteArray(), 0, out.getPos()));
+    return to;
+  }
+
+  @Test
+  public void testVectorDelta() throws Exception {
+    int size = 100;
+    DoubleDenseVector previous = createVector(size);
+    // Grown by 10 entries, with 3 entries changed
+    DoubleDenseVector from = createVector(size + 10);
+    from.set(0, (double) 7);
+    from.set(50, (double) 8);
+    from.set(99, (double) 9);
+
+    UnsafeByteArrayOutputStream out = new UnsafeByteArrayOutputStream();
+    assertTrue(from.writeDelta(previous, out));
+    DoubleDenseVector to = readDelta(previous, out);
+    for (int i = 0; i < size + 20; ++i) {
+      assertEquals(from.get(i), to.get(i), E);
+    }
+    // The previous vector is not modified
+    assertEquals((double) 0, previous.get(0), E);
+    assertEquals((double) 0, previous.get(size), E);
+
+    // Shrunk to half, with 1 entry changed
+    from = createVector(size / 2);
+    from.set(10, (double) 1);
+    out = new UnsafeByteArrayOutputStream();
+    assertTrue(from.writeDelta(previous, out));
+    to = readDelta(previous, out);
+    for (int i = 0; i < size; ++i) {
+      assertEquals(from.get(i), to.get(i), E);
+    }
+  }
+
+  @Test
+  public void testVectorDeltaFallback() throws Exception {
+    int size = 100;
+    DoubleDenseVector previous = createVector(size);
+
+    // All entries changed, the whole vector is smaller
+    DoubleDenseVector from = new DoubleDenseVector(size);
+    for (int i = 0; i < size; ++i) {
+      from.set(i, (double) (i * 3 + 1));
+    }
+    UnsafeByteArrayOutputStream out = new UnsafeByteArrayOutputStream();
+    assertFalse(from.writeDelta(previous, out));
+    assertEquals(0, out.getPos());
+
+    // Singletons are always sent whole
+    DoubleDenseVector singleton = new DoubleDenseVector();
+    singleton.setSingleton(3, (double) 10);
+    assertFalse(singleton.writeDelta(previous, out));
+    assertFalse(previous.writeDelta(singleton, out));
+    assertEquals(0, out.getPos());
+  }
 }
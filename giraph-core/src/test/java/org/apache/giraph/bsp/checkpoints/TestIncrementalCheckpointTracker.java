@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.bsp.checkpoints;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.partition.Partition;
+import org.apache.giraph.utils.IntNoOpComputation;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test case for {@link IncrementalCheckpointTracker}: partitions loaded
+ * through the checkpoints named by the tracker are the same as the ones
+ * checkpointed.
+ */
+public class TestIncrementalCheckpointTracker {
+  private static final int NUM_PARTITIONS = 4;
+  private static final int VERTICES_PER_PARTITION = 5;
+  private static final int MAX_INCREMENTAL = 2;
+
+  private ImmutableClassesGiraphConfiguration<IntWritable, IntWritable,
+      IntWritable> conf;
+  private Mapper<?, ?, ?, ?>.Context context;
+  /** Live partitions of the worker */
+  private Map<Integer, Partition<IntWritable, IntWritable, IntWritable>>
+  partitions;
+  /** Written partitions, by superstep of the checkpoint and partition id */
+  private Map<Long, Map<Integer, byte[]>> checkpointFiles;
+  private IncrementalCheckpointTracker tracker;
+
+  @Before
+  public void setUp() {
+    GiraphConfiguration configuration = new GiraphConfiguration();
+    configuration.setComputationClass(IntNoOpComputation.class);
+    GiraphConstants.INCREMENTAL_CHECKPOINTS.set(configuration, true);
+    GiraphConstants.MAX_INCREMENTAL_CHECKPOINTS.set(configuration,
+        MAX_INCREMENTAL);
+    conf = new ImmutableClassesGiraphConfiguration<>(configuration);
+    context = Mockito.mock(Mapper.Context.class);
+
+    partitions = Maps.newHashMap();
+    for (int partitionId = 0; partitionId < NUM_PARTITIONS; ++partitionId) {
+      Partition<IntWritable, IntWritable, IntWritable> partition =
+          conf.createPartition(partitionId, context);
+      for (int i = 0; i < VERTICES_PER_PARTITION; ++i) {
+        Vertex<IntWritable, IntWritable, IntWritable> vertex =
+            conf.createVertex();
+        vertex.initialize(
+            new IntWritable(partitionId * VERTICES_PER_PARTITION + i),
+            new IntWritable(0));
+        partition.putVertex(vertex);
+      }
+      partitions.put(partitionId, partition);
+    }
+    checkpointFiles = Maps.newHashMap();
+    tracker = new IncrementalCheckpointTracker(conf);
+  }
+
+  /**
+   * Compute the vertices of a partition, changing their values.
+   *
+   * @param partitionId Partition id
+   * @param superstep Current superstep
+   */
+  private void compute(int partitionId, long superstep) {
+    for (Vertex<IntWritable, IntWritable, IntWritable> vertex :
+        partitions.get(partitionId)) {
+      vertex.getValue().set((int) superstep * 100 + vertex.getId().get());
+    }
+    tracker.partitionChanged(partitionId);
+  }
+
+  /**
+   * Checkpoint the way workers do, writing the changed partitions only.
+   *
+   * @param superstep Superstep of the checkpoint
+   * @return Number of partitions written
+   */
+  private int checkpoint(long superstep) {
+    tracker.startCheckpoint();
+    Map<Integer, byte[]> files = Maps.newHashMap();
+    for (Partition<IntWritable, IntWritable, IntWritable> partition :
+        partitions.values()) {
+      if (tracker.getCheckpointedSuperstep(partition.getId()) < 0) {
+        files.put(partition.getId(),
+            WritableUtils.writeToByteArray(partition));
+        tracker.partitionCheckpointed(partition.getId(), superstep);
+      }
+    }
+    checkpointFiles.put(superstep, files);
+    return files.size();
+  }
+
+  /**
+   * Load every partition from the checkpoint the tracker names for it, and
+   * check it matches the live partition.
+   */
+  private void checkRestore() {
+    for (Partition<IntWritable, IntWritable, IntWritable> partition :
+        partitions.values()) {
+      long superstep = tracker.getCheckpointedSuperstep(partition.getId());
+      Partition<IntWritable, IntWritable, IntWritable> restored =
+          conf.createPartition(-1, context);
+      WritableUtils.readFieldsFromByteArray(
+          checkpointFiles.get(superstep).get(partition.getId()), restored);
+      assertEquals(partition.getId(), restored.getId());
+      assertEquals(partition.getVertexCount(), restored.getVertexCount());
+      for (Vertex<IntWritable, IntWritable, IntWritable> vertex :
+          partition) {
+        assertEquals(vertex.getValue(),
+            restored.getVertex(vertex.getId()).getValue());
+      }
+    }
+  }
+
+  @Test
+  public void testIncrementalRoundTrip() {
+    for (int partitionId = 0; partitionId < NUM_PARTITIONS; ++partitionId) {
+      compute(partitionId, 0);
+    }
+    assertEquals(NUM_PARTITIONS, checkpoint(0));
+    checkRestore();
+
+    compute(1, 1);
+    assertEquals(1, checkpoint(1));
+    checkRestore();
+    assertEquals(0, tracker.getCheckpointedSuperstep(0));
+    assertEquals(1, tracker.getCheckpointedSuperstep(1));
+
+    compute(2, 2);
+    compute(3, 2);
+    assertEquals(2, checkpoint(2));
+    checkRestore();
+
+    // Maximum number of incremental checkpoints reached, all are written
+    compute(0, 3);
+    assertEquals(NUM_PARTITIONS, checkpoint(3));
+    checkRestore();
+
+    assertEquals(0, checkpoint(4));
+    checkRestore();
+    assertEquals(3, tracker.getCheckpointedSuperstep(2));
+  }
+
+  @Test
+  public void testPartitionsMoved() {
+    for (int partitionId = 0; partitionId < NUM_PARTITIONS; ++partitionId) {
+      compute(partitionId, 0);
+    }
+    checkpoint(0);
+    compute(2, 1);
+    tracker.allPartitionsChanged();
+    assertEquals(NUM_PARTITIONS, checkpoint(1));
+    checkRestore();
+    assertEquals(1, tracker.getCheckpointedSuperstep(0));
+  }
+
+  @Test
+  public void testRestart() {
+    for (int partitionId = 0; partitionId < NUM_PARTITIONS; ++partitionId) {
+      compute(partitionId, 0);
+    }
+    checkpoint(0);
+    compute(3, 1);
+    checkpoint(1);
+
+    // A restarted worker doesn't know what earlier checkpoints hold
+    tracker = new IncrementalCheckpointTracker(conf);
+    assertEquals(-1, tracker.getCheckpointedSuperstep(0));
+    assertEquals(NUM_PARTITIONS, checkpoint(2));
+    checkRestore();
+  }
+}
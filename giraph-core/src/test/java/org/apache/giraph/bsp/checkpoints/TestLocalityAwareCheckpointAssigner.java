@@ -0,0 +1,161 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.giraph.bsp.checkpoints;
+
+import org.apache.giraph.worker.WorkerInfo;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test case for {@link LocalityAwareCheckpointAssigner}.
+ */
+public class TestLocalityAwareCheckpointAssigner {
+  private static final String CHECKPOINT_FILE = "/checkpoints/job/5";
+
+  private FileSystem fs;
+  private Map<Integer, WorkerInfo> workers;
+
+  @Before
+  public void setUp() throws IOException {
+    fs = mock(FileSystem.class);
+    workers = new HashMap<>();
+    for (int i = 0; i < 3; ++i) {
+      WorkerInfo worker = new WorkerInfo();
+      worker.setTaskId(i);
+      worker.setInetSocketAddress(
+          InetSocketAddress.createUnresolved("host" + i, 30000 + i),
+          "host" + i);
+      workers.put(i, worker);
+    }
+  }
+
+  /**
+   * Mock the files of the checkpoint, each stored in one block on the given
+   * hosts.
+   *
+   * @param names File names
+   * @param lengths File lengths
+   * @param hosts Hosts of each file
+   */
+  private void mockFiles(String[] names, long[] lengths, String[][] hosts)
+    throws IOException {
+    FileStatus[] files = new FileStatus[names.length];
+    for (int i = 0; i < names.length; ++i) {
+      files[i] = new FileStatus(lengths[i], false, hosts[i].length, 1024, 0,
+          new Path("/checkpoints/job/" + names[i]));
+      when(fs.getFileBlockLocations(files[i], 0, lengths[i])).thenReturn(
+          new BlockLocation[]{
+            new BlockLocation(hosts[i], hosts[i], 0, lengths[i])
+          });
+    }
+    when(fs.listStatus(new Path("/checkpoints/job"))).thenReturn(files);
+  }
+
+  @Test
+  public void testAssignToLocalWorkers() throws IOException {
+    mockFiles(
+        new String[]{"5.0.vertices", "5.0.metadata", "5.1.vertices",
+          "5.2.vertices", "4.0.vertices"},
+        new long[]{100, 10, 100, 100, 1000},
+        new String[][]{{"host2"}, {"host2"}, {"host0"}, {"host1"},
+          {"host0"}});
+    Map<Integer, WorkerInfo> assignment =
+        LocalityAwareCheckpointAssigner.assignWorkers(fs, CHECKPOINT_FILE,
+            Arrays.asList(0, 1, 2), workers);
+    assertEquals(3, assignment.size());
+    assertSame(workers.get(2), assignment.get(0));
+    assertSame(workers.get(0), assignment.get(1));
+    assertSame(workers.get(1), assignment.get(2));
+  }
+
+  @Test
+  public void testMostLocalBytesWin() throws IOException {
+    // Both saved workers have blocks on host0, saved worker 1 has more
+    mockFiles(
+        new String[]{"5.0.vertices", "5.1.vertices"},
+        new long[]{100, 200},
+        new String[][]{{"host0", "host1"}, {"host0"}});
+    Map<Integer, WorkerInfo> assignment =
+        LocalityAwareCheckpointAssigner.assignWorkers(fs, CHECKPOINT_FILE,
+            Arrays.asList(0, 1), workers);
+    assertSame(workers.get(0), assignment.get(1));
+    assertSame(workers.get(1), assignment.get(0));
+  }
+
+  @Test
+  public void testNonLocalFallback() throws IOException {
+    // No block is local to any worker
+    mockFiles(
+        new String[]{"5.0.vertices", "5.1.vertices", "5.2.vertices"},
+        new long[]{100, 100, 100},
+        new String[][]{{"other"}, {"other"}, {"other"}});
+    Map<Integer, WorkerInfo> assignment =
+        LocalityAwareCheckpointAssigner.assignWorkers(fs, CHECKPOINT_FILE,
+            Arrays.asList(0, 1, 2), workers);
+    for (int i = 0; i < 3; ++i) {
+      assertSame(workers.get(i), assignment.get(i));
+    }
+  }
+
+  @Test
+  public void testEachWorkerAssignedOnce() throws IOException {
+    // All blocks are on host0, only one saved worker can be restored there
+    mockFiles(
+        new String[]{"5.0.vertices", "5.1.vertices", "5.2.vertices"},
+        new long[]{300, 200, 100},
+        new String[][]{{"host0"}, {"host0"}, {"host0"}});
+    workers.remove(1);
+    WorkerInfo worker = new WorkerInfo();
+    worker.setTaskId(3);
+    worker.setInetSocketAddress(
+        InetSocketAddress.createUnresolved("host3", 30003), "host3");
+    workers.put(3, worker);
+    List<Integer> savedWorkerIds = Arrays.asList(0, 1, 2);
+    Map<Integer, WorkerInfo> assignment =
+        LocalityAwareCheckpointAssigner.assignWorkers(fs, CHECKPOINT_FILE,
+            savedWorkerIds, workers);
+    assertSame(workers.get(0), assignment.get(0));
+    assertSame(workers.get(2), assignment.get(2));
+    assertSame(workers.get(3), assignment.get(1));
+    assertEquals(3, new HashSet<>(assignment.values()).size());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testTooFewWorkers() throws IOException {
+    mockFiles(new String[0], new long[0], new String[0][]);
+    LocalityAwareCheckpointAssigner.assignWorkers(fs, CHECKPOINT_FILE,
+        Arrays.asList(0, 1, 2, 3), workers);
+  }
+}
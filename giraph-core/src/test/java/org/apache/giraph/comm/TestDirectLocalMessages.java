@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm;
+
+import org.apache.giraph.combiner.SimpleSumMessageCombiner;
+import org.apache.giraph.comm.messages.MessageEncodeAndStoreType;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.edge.ByteArrayEdges;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.graph.BasicComputation;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test case for adding messages to local vertices straight to the message
+ * store: jobs give the same results as when messages go through requests.
+ */
+public class TestDirectLocalMessages {
+  private static final int NUM_VERTICES = 100;
+  private static final long LAST_SUPERSTEP = 4;
+
+  /**
+   * Sums the messages into the vertex value. Even vertices send one
+   * message to all edges, odd vertices send a different message along each
+   * edge, reusing the message object.
+   */
+  public static class SummingComputation extends
+      BasicComputation<LongWritable, IntWritable, NullWritable,
+          IntWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, IntWritable, NullWritable> vertex,
+        Iterable<IntWritable> messages) {
+      int value = vertex.getValue().get();
+      for (IntWritable message : messages) {
+        value = (value + message.get()) % 1000003;
+      }
+      vertex.getValue().set(value);
+      if (getSuperstep() == LAST_SUPERSTEP) {
+        vertex.voteToHalt();
+      } else if (vertex.getId().get() % 2 == 0) {
+        sendMessageToAllEdges(vertex, new IntWritable(value % 1000 + 1));
+      } else {
+        IntWritable message = new IntWritable();
+        for (Edge<LongWritable, NullWritable> edge : vertex.getEdges()) {
+          message.set((int) (value + edge.getTargetVertexId().get()) % 1000);
+          sendMessage(edge.getTargetVertexId(), message);
+        }
+      }
+    }
+  }
+
+  /**
+   * Run the job.
+   *
+   * @param direct Whether to add local messages straight to the store
+   * @param combine Whether to use a message combiner
+   * @param sendSideCombining Whether to combine messages before sending
+   * @param storeType How messages are encoded and stored
+   * @return Map from vertex id to value
+   */
+  private static Map<Long, Integer> run(boolean direct, boolean combine,
+      boolean sendSideCombining, MessageEncodeAndStoreType storeType)
+    throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(SummingComputation.class);
+    conf.setOutEdgesClass(ByteArrayEdges.class);
+    if (combine) {
+      conf.setMessageCombinerClass(SimpleSumMessageCombiner.class);
+    }
+    GiraphConstants.NUM_COMPUTE_THREADS.set(conf, 2);
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, 4);
+    GiraphConstants.DIRECT_LOCAL_MESSAGES.set(conf, direct);
+    GiraphConstants.SEND_SIDE_COMBINING.set(conf, sendSideCombining);
+    GiraphConstants.MESSAGE_ENCODE_AND_STORE_TYPE.set(conf, storeType);
+
+    TestGraph<LongWritable, IntWritable, NullWritable> graph =
+        new TestGraph<>(conf);
+    for (long id = 0; id < NUM_VERTICES; ++id) {
+      graph.addVertex(new LongWritable(id), new IntWritable((int) id));
+      for (int i = 1; i <= 3; ++i) {
+        graph.addEdge(new LongWritable(id),
+            new LongWritable((id * i + 1) % NUM_VERTICES),
+            NullWritable.get());
+      }
+    }
+    TestGraph<LongWritable, IntWritable, NullWritable> results =
+        InternalVertexRunner.runWithInMemoryOutput(conf, graph);
+
+    Map<Long, Integer> values = Maps.newHashMap();
+    for (Vertex<LongWritable, IntWritable, NullWritable> vertex : results) {
+      values.put(vertex.getId().get(), vertex.getValue().get());
+    }
+    return values;
+  }
+
+  /**
+   * Check that a configuration gives the same results with and without
+   * direct local messages.
+   *
+   * @param combine Whether to use a message combiner
+   * @param sendSideCombining Whether to combine messages before sending
+   * @param storeType How messages are encoded and stored
+   */
+  private static void checkSameResults(boolean combine,
+      boolean sendSideCombining, MessageEncodeAndStoreType storeType)
+    throws Exception {
+    Map<Long, Integer> expected =
+        run(false, combine, sendSideCombining, storeType);
+    assertEquals(NUM_VERTICES, expected.size());
+    assertEquals(expected, run(true, combine, sendSideCombining, storeType));
+  }
+
+  @Test
+  public void testWithoutCombiner() throws Exception {
+    checkSameResults(false, false,
+        MessageEncodeAndStoreType.BYTEARRAY_PER_PARTITION);
+  }
+
+  @Test
+  public void testWithCombiner() throws Exception {
+    checkSameResults(true, false,
+        MessageEncodeAndStoreType.BYTEARRAY_PER_PARTITION);
+  }
+
+  @Test
+  public void testWithSendSideCombining() throws Exception {
+    checkSameResults(true, true,
+        MessageEncodeAndStoreType.BYTEARRAY_PER_PARTITION);
+  }
+
+  @Test
+  public void testOneMessageToManyIds() throws Exception {
+    checkSameResults(false, false,
+        MessageEncodeAndStoreType.POINTER_LIST_PER_VERTEX);
+    checkSameResults(false, false,
+        MessageEncodeAndStoreType.EXTRACT_BYTEARRAY_PER_PARTITION);
+  }
+}
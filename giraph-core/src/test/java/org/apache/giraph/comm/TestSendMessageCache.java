@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test case for the adaptive request sizes of {@link SendMessageCache}.
+ */
+public class TestSendMessageCache {
+  private static final int MIN_SIZE = 16;
+  private static final int MAX_SIZE = 256;
+
+  private static int next(int threshold, boolean backpressured) {
+    return SendMessageCache.getNextRequestSize(threshold, backpressured,
+        MIN_SIZE, MAX_SIZE);
+  }
+
+  @Test
+  public void testGrowOnBackpressure() {
+    int threshold = MIN_SIZE;
+    threshold = next(threshold, true);
+    assertEquals(32, threshold);
+    threshold = next(threshold, true);
+    assertEquals(64, threshold);
+    threshold = next(threshold, true);
+    assertEquals(128, threshold);
+    threshold = next(threshold, true);
+    assertEquals(256, threshold);
+    // Capped at the maximum
+    threshold = next(threshold, true);
+    assertEquals(MAX_SIZE, threshold);
+  }
+
+  @Test
+  public void testShrinkWhenIdle() {
+    int threshold = 128;
+    threshold = next(threshold, false);
+    assertEquals(64, threshold);
+    threshold = next(threshold, false);
+    assertEquals(32, threshold);
+    threshold = next(threshold, false);
+    assertEquals(16, threshold);
+    // Capped at the minimum
+    threshold = next(threshold, false);
+    assertEquals(MIN_SIZE, threshold);
+  }
+
+  @Test
+  public void testSizeOverTime() {
+    boolean[] backpressure =
+        {true, true, false, true, false, false, false, true, true};
+    int[] expected = {32, 64, 32, 64, 32, 16, 16, 32, 64};
+    int threshold = MIN_SIZE;
+    for (int i = 0; i < backpressure.length; ++i) {
+      threshold = next(threshold, backpressure[i]);
+      assertEquals(expected[i], threshold);
+    }
+  }
+
+  @Test
+  public void testNoOverflow() {
+    assertEquals(Integer.MAX_VALUE, SendMessageCache.getNextRequestSize(
+        Integer.MAX_VALUE / 2 + 1, true, MIN_SIZE, Integer.MAX_VALUE));
+  }
+}
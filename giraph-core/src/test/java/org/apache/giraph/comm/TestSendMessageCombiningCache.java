@@ -0,0 +1,150 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm;
+
+import org.apache.giraph.combiner.SimpleSumMessageCombiner;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.edge.ByteArrayEdges;
+import org.apache.giraph.graph.BasicComputation;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparable;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test case for {@link SendMessageCombiningCache}: jobs give the same
+ * results whether messages are combined before they are sent or not.
+ */
+public class TestSendMessageCombiningCache {
+  private static final int NUM_VERTICES = 100;
+  private static final long LAST_SUPERSTEP = 4;
+
+  /**
+   * Sums the messages into the vertex value, and sends messages to all
+   * edges, several of which lead to the same vertex.
+   *
+   * @param <I> Vertex id
+   */
+  public abstract static class SummingComputation<
+      I extends WritableComparable> extends
+      BasicComputation<I, IntWritable, NullWritable, IntWritable> {
+    @Override
+    public void compute(Vertex<I, IntWritable, NullWritable> vertex,
+        Iterable<IntWritable> messages) {
+      int value = vertex.getValue().get();
+      for (IntWritable message : messages) {
+        value = (value + message.get()) % 1000003;
+      }
+      vertex.getValue().set(value);
+      if (getSuperstep() < LAST_SUPERSTEP) {
+        sendMessageToAllEdges(vertex, new IntWritable(value % 1000 + 1));
+      } else {
+        vertex.voteToHalt();
+      }
+    }
+  }
+
+  /** Computation with primitive vertex ids */
+  public static class LongIdComputation
+      extends SummingComputation<LongWritable> { }
+
+  /** Computation with vertex ids which aren't primitive */
+  public static class TextIdComputation
+      extends SummingComputation<Text> { }
+
+  /**
+   * Run a job with a message combiner.
+   *
+   * @param computationClass Computation class
+   * @param textIds Whether vertex ids are Text
+   * @param maxVertices Combined vertices per worker to serialize at, or 0
+   *                    not to combine before sending
+   * @return Map from vertex id to value
+   */
+  private static Map<String, Integer> run(
+      Class<? extends SummingComputation> computationClass,
+      boolean textIds, int maxVertices) throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(computationClass);
+    conf.setOutEdgesClass(ByteArrayEdges.class);
+    conf.setMessageCombinerClass(SimpleSumMessageCombiner.class);
+    GiraphConstants.NUM_COMPUTE_THREADS.set(conf, 2);
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, 4);
+    GiraphConstants.SEND_SIDE_COMBINING.set(conf, maxVertices > 0);
+    if (maxVertices > 0) {
+      GiraphConstants.SEND_SIDE_COMBINING_MAX_VERTICES.set(conf,
+          maxVertices);
+    }
+
+    TestGraph<WritableComparable, IntWritable, NullWritable> graph =
+        new TestGraph<>(conf);
+    for (int id = 0; id < NUM_VERTICES; ++id) {
+      graph.addVertex(createId(id, textIds), new IntWritable(id));
+      // Edges to the next vertices, and repeated edges to a few hubs
+      for (int i = 1; i <= 3; ++i) {
+        graph.addEdge(createId(id, textIds),
+            createId((id + i) % NUM_VERTICES, textIds), NullWritable.get());
+        graph.addEdge(createId(id, textIds),
+            createId(id % 5, textIds), NullWritable.get());
+      }
+    }
+    TestGraph<WritableComparable, IntWritable, NullWritable> results =
+        InternalVertexRunner.runWithInMemoryOutput(conf, graph);
+
+    Map<String, Integer> values = Maps.newHashMap();
+    for (Vertex<WritableComparable, IntWritable, NullWritable> vertex :
+        results) {
+      values.put(vertex.getId().toString(), vertex.getValue().get());
+    }
+    return values;
+  }
+
+  private static WritableComparable createId(int id, boolean textId) {
+    return textId ? new Text(Integer.toString(id)) : new LongWritable(id);
+  }
+
+  @Test
+  public void testPrimitiveIds() throws Exception {
+    Map<String, Integer> expected = run(LongIdComputation.class, false, 0);
+    assertEquals(NUM_VERTICES, expected.size());
+    assertEquals(expected, run(LongIdComputation.class, false, 1000));
+    // Combined messages are serialized many times in each superstep
+    assertEquals(expected, run(LongIdComputation.class, false, 3));
+  }
+
+  @Test
+  public void testObjectIds() throws Exception {
+    Map<String, Integer> expected = run(TextIdComputation.class, true, 0);
+    assertEquals(NUM_VERTICES, expected.size());
+    assertEquals(expected, run(TextIdComputation.class, true, 1000));
+    assertEquals(expected, run(TextIdComputation.class, true, 3));
+  }
+}
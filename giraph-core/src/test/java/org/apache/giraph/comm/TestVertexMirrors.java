@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm;
+
+import org.apache.giraph.comm.VertexMirrors.Mirror;
+import org.apache.giraph.comm.VertexMirrors.MirroredVertex;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.partition.BasicPartitionOwner;
+import org.apache.giraph.partition.PartitionOwner;
+import org.apache.giraph.utils.IntNoOpComputation;
+import org.apache.giraph.worker.WorkerInfo;
+import org.apache.hadoop.io.IntWritable;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for {@link VertexMirrors}.
+ */
+public class TestVertexMirrors {
+  private static final byte[] TARGET_IDS = {0, 0, 0, 1, 0, 0, 0, 2};
+
+  private VertexMirrors<IntWritable> vertexMirrors;
+
+  @Before
+  public void setUp() {
+    GiraphConfiguration configuration = new GiraphConfiguration();
+    GiraphConstants.COMPUTATION_CLASS.set(configuration,
+        IntNoOpComputation.class);
+    GiraphConstants.VERTEX_MIRRORING.set(configuration, true);
+    vertexMirrors = new VertexMirrors<IntWritable>(
+        new ImmutableClassesGiraphConfiguration<IntWritable, IntWritable,
+            IntWritable>(configuration));
+  }
+
+  /**
+   * Create partition owners, partition i being owned by task owners[i].
+   *
+   * @param owners Task id of the owner of each partition
+   * @return Partition owners
+   */
+  private static List<PartitionOwner> createOwners(int... owners) {
+    List<PartitionOwner> partitionOwners = Lists.newArrayList();
+    for (int partitionId = 0; partitionId < owners.length; ++partitionId) {
+      WorkerInfo workerInfo = new WorkerInfo();
+      workerInfo.setTaskId(owners[partitionId]);
+      partitionOwners.add(new BasicPartitionOwner(partitionId, workerInfo));
+    }
+    return partitionOwners;
+  }
+
+  private static Mirror createMirror(long superstep) {
+    return new Mirror(superstep, TARGET_IDS, 2);
+  }
+
+  @Test
+  public void testRegistration() {
+    IntWritable vertexId = new IntWritable(7);
+    MirroredVertex mirroredVertex =
+        new MirroredVertex(TARGET_IDS.clone(), 3, new int[]{0, 2});
+    vertexMirrors.addMirroredVertex(vertexId, mirroredVertex);
+    // The id is copied, callers may reuse theirs
+    vertexId.set(8);
+    assertNull(vertexMirrors.getMirroredVertex(vertexId));
+    assertSame(mirroredVertex,
+        vertexMirrors.getMirroredVertex(new IntWritable(7)));
+    assertArrayEquals(new int[]{0, 2}, mirroredVertex.getTaskIds());
+
+    // Only usable after the superstep in which mirrors were registered
+    assertFalse(mirroredVertex.isUsable(TARGET_IDS, TARGET_IDS.length, 3));
+    assertTrue(mirroredVertex.isUsable(TARGET_IDS, TARGET_IDS.length, 4));
+    // Any change of target ids makes the registration stale
+    byte[] changed = TARGET_IDS.clone();
+    changed[7] = 3;
+    assertFalse(mirroredVertex.isUsable(changed, changed.length, 4));
+    assertFalse(mirroredVertex.isUsable(TARGET_IDS, 4, 4));
+    byte[] longer = new byte[TARGET_IDS.length + 4];
+    System.arraycopy(TARGET_IDS, 0, longer, 0, TARGET_IDS.length);
+    assertFalse(mirroredVertex.isUsable(longer, longer.length, 4));
+    // Only the written part of a reused buffer is compared
+    assertTrue(mirroredVertex.isUsable(longer, TARGET_IDS.length, 4));
+  }
+
+  @Test
+  public void testReregistration() {
+    IntWritable vertexId = new IntWritable(7);
+    assertNull(vertexMirrors.getMirror(vertexId));
+
+    Mirror first = createMirror(1);
+    vertexMirrors.addMirror(vertexId, first);
+    assertSame(first, vertexMirrors.getMirror(vertexId));
+    Mirror second = createMirror(2);
+    vertexMirrors.addMirror(new IntWritable(7), second);
+    assertSame(second, vertexMirrors.getMirror(vertexId));
+
+    // A removal doesn't undo a registration of the same superstep
+    vertexMirrors.addMirror(vertexId, new Mirror(2, new byte[0], 0));
+    assertSame(second, vertexMirrors.getMirror(vertexId));
+    vertexMirrors.addMirror(vertexId, new Mirror(3, new byte[0], 0));
+    assertNull(vertexMirrors.getMirror(vertexId));
+  }
+
+  @Test
+  public void testDropMirroredVertex() {
+    IntWritable vertexId = new IntWritable(7);
+    MirroredVertex mirroredVertex =
+        new MirroredVertex(TARGET_IDS, 1, new int[]{1});
+    vertexMirrors.addMirroredVertex(vertexId, mirroredVertex);
+    vertexMirrors.dropMirroredVertex(new IntWritable(9));
+    assertNull(vertexMirrors.pollDroppedVertex());
+
+    vertexMirrors.dropMirroredVertex(vertexId);
+    vertexId.set(8);
+    assertNull(vertexMirrors.getMirroredVertex(new IntWritable(7)));
+    Map.Entry<IntWritable, MirroredVertex> dropped =
+        vertexMirrors.pollDroppedVertex();
+    assertEquals(new IntWritable(7), dropped.getKey());
+    assertSame(mirroredVertex, dropped.getValue());
+    assertNull(vertexMirrors.pollDroppedVertex());
+  }
+
+  @Test
+  public void testPartitionOwnerChange() {
+    vertexMirrors.updatePartitionOwners(createOwners(0, 1, 0, 1), 1);
+    vertexMirrors.addMirroredVertex(new IntWritable(1),
+        new MirroredVertex(TARGET_IDS, 1, new int[]{1}));
+    vertexMirrors.addMirroredVertex(new IntWritable(2),
+        new MirroredVertex(TARGET_IDS, 1, new int[]{1}));
+    vertexMirrors.dropMirroredVertex(new IntWritable(2));
+    vertexMirrors.addMirror(new IntWritable(3), createMirror(1));
+
+    // Same owners, nothing is dropped
+    vertexMirrors.updatePartitionOwners(createOwners(0, 1, 0, 1), 2);
+    assertTrue(vertexMirrors.getMirroredVertex(new IntWritable(1)) != null);
+    assertTrue(vertexMirrors.getMirror(new IntWritable(3)) != null);
+    vertexMirrors.addMirror(new IntWritable(4), createMirror(3));
+
+    // Partition 3 moved, mirrors of earlier supersteps are dropped
+    vertexMirrors.updatePartitionOwners(createOwners(0, 1, 0, 0), 3);
+    assertNull(vertexMirrors.getMirroredVertex(new IntWritable(1)));
+    assertNull(vertexMirrors.pollDroppedVertex());
+    assertNull(vertexMirrors.getMirror(new IntWritable(3)));
+    // Registered by a worker which already saw the new owners
+    assertTrue(vertexMirrors.getMirror(new IntWritable(4)) != null);
+  }
+
+  @Test
+  public void testClear() {
+    vertexMirrors.updatePartitionOwners(createOwners(0, 1), 1);
+    vertexMirrors.addMirroredVertex(new IntWritable(1),
+        new MirroredVertex(TARGET_IDS, 1, new int[]{1}));
+    vertexMirrors.addMirroredVertex(new IntWritable(2),
+        new MirroredVertex(TARGET_IDS, 1, new int[]{1}));
+    vertexMirrors.dropMirroredVertex(new IntWritable(2));
+    vertexMirrors.addMirror(new IntWritable(3), createMirror(1));
+
+    // Restarting from a checkpoint forgets both sides
+    vertexMirrors.clear();
+    assertNull(vertexMirrors.getMirroredVertex(new IntWritable(1)));
+    assertNull(vertexMirrors.pollDroppedVertex());
+    assertNull(vertexMirrors.getMirror(new IntWritable(3)));
+
+    // Mirrors registered after the restart are kept
+    vertexMirrors.updatePartitionOwners(createOwners(1, 0), 4);
+    vertexMirrors.addMirror(new IntWritable(3), createMirror(4));
+    vertexMirrors.updatePartitionOwners(createOwners(1, 0), 5);
+    assertTrue(vertexMirrors.getMirror(new IntWritable(3)) != null);
+  }
+}
@@ -0,0 +1,193 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.aggregators;
+
+import org.apache.giraph.aggregators.LongMaxAggregator;
+import org.apache.giraph.aggregators.LongSumAggregator;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.edge.ByteArrayEdges;
+import org.apache.giraph.graph.BasicComputation;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.master.DefaultMasterCompute;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.giraph.worker.WorkerInfo;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for reducing and broadcasting aggregators in a tree of workers.
+ */
+public class TestAggregatorTree {
+  private static final int NUM_VERTICES = 50;
+  private static final long LAST_SUPERSTEP = 4;
+
+  /** Aggregated values seen by the master in each superstep */
+  private static final List<String> AGGREGATED = Lists.newArrayList();
+
+  private static List<WorkerInfo> createWorkers(int numWorkers) {
+    List<WorkerInfo> workers = Lists.newArrayList();
+    for (int i = 0; i < numWorkers; ++i) {
+      WorkerInfo worker = new WorkerInfo();
+      worker.setTaskId(i);
+      worker.setInetSocketAddress(
+          InetSocketAddress.createUnresolved("host" + i, 30000 + i),
+          "host" + i);
+      workers.add(worker);
+    }
+    return workers;
+  }
+
+  /**
+   * Reduce values of the workers of a subtree the way workers do, each
+   * merging the partial values of its children with its own.
+   *
+   * @param worker Root of the subtree
+   * @param workers All workers
+   * @param treeFanOut Fan-out of the tree
+   * @param visits Number of times each worker was reduced
+   * @return Sum of the values of the subtree
+   */
+  private static long reduce(WorkerInfo worker, List<WorkerInfo> workers,
+      int treeFanOut, int[] visits) {
+    visits[worker.getTaskId()]++;
+    long value = worker.getTaskId() + 1;
+    List<WorkerInfo> children =
+        AggregatorUtils.getTreeChildren(worker, workers, treeFanOut);
+    assertTrue(children.size() <= treeFanOut);
+    for (WorkerInfo child : children) {
+      assertSame(worker,
+          AggregatorUtils.getTreeParent(child, workers, treeFanOut));
+      value += reduce(child, workers, treeFanOut, visits);
+    }
+    return value;
+  }
+
+  @Test
+  public void testTreeReduction() {
+    for (int numWorkers = 1; numWorkers <= 20; ++numWorkers) {
+      List<WorkerInfo> workers = createWorkers(numWorkers);
+      for (int treeFanOut = 1; treeFanOut <= 4; ++treeFanOut) {
+        WorkerInfo root = workers.get(0);
+        assertSame(root, AggregatorUtils.getOwner("aggregator", workers,
+            treeFanOut));
+        assertNull(AggregatorUtils.getTreeParent(root, workers, treeFanOut));
+
+        // Every worker's value reaches the root exactly once
+        int[] visits = new int[numWorkers];
+        assertEquals(numWorkers * (numWorkers + 1) / 2,
+            reduce(root, workers, treeFanOut, visits));
+        for (int i = 0; i < numWorkers; ++i) {
+          assertEquals(1, visits[i]);
+        }
+      }
+    }
+  }
+
+  @Test
+  public void testFlatOwners() {
+    List<WorkerInfo> workers = createWorkers(5);
+    assertEquals(AggregatorUtils.getOwner("aggregator", workers),
+        AggregatorUtils.getOwner("aggregator", workers, 0));
+  }
+
+  /**
+   * Aggregates vertex ids mixed with a value the master broadcasts through
+   * an aggregator.
+   */
+  public static class AggregatingComputation extends
+      BasicComputation<LongWritable, LongWritable, NullWritable,
+          LongWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, LongWritable, NullWritable> vertex,
+        Iterable<LongWritable> messages) {
+      LongWritable broadcast = getAggregatedValue("broadcast");
+      long id = vertex.getId().get();
+      aggregate("sum", new LongWritable(id + broadcast.get()));
+      aggregate("max", new LongWritable(id * broadcast.get()));
+      if (getSuperstep() == LAST_SUPERSTEP) {
+        vertex.voteToHalt();
+      }
+    }
+  }
+
+  /** Broadcasts a value each superstep and records the aggregated ones */
+  public static class AggregatingMasterCompute extends DefaultMasterCompute {
+    @Override
+    public void initialize() throws InstantiationException,
+        IllegalAccessException {
+      registerAggregator("sum", LongSumAggregator.class);
+      registerAggregator("max", LongMaxAggregator.class);
+      registerPersistentAggregator("broadcast", LongSumAggregator.class);
+    }
+
+    @Override
+    public void compute() {
+      AGGREGATED.add(getSuperstep() + ": " +
+          getAggregatedValue("sum") + ", " + getAggregatedValue("max"));
+      setAggregatedValue("broadcast", new LongWritable(getSuperstep() + 1));
+    }
+  }
+
+  /**
+   * Run a job aggregating values.
+   *
+   * @param treeFanOut Fan-out of the aggregator tree (0 for none)
+   * @return Aggregated values seen by the master in each superstep
+   */
+  private static List<String> runAggregators(int treeFanOut)
+    throws Exception {
+    AGGREGATED.clear();
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(AggregatingComputation.class);
+    conf.setMasterComputeClass(AggregatingMasterCompute.class);
+    conf.setOutEdgesClass(ByteArrayEdges.class);
+    conf.setInt(AggregatorUtils.AGGREGATOR_TREE_FAN_OUT, treeFanOut);
+    TestGraph<LongWritable, LongWritable, NullWritable> graph =
+        new TestGraph<>(conf);
+    for (long id = 0; id < NUM_VERTICES; ++id) {
+      graph.addVertex(new LongWritable(id), new LongWritable(0));
+    }
+    InternalVertexRunner.runWithInMemoryOutput(conf, graph);
+    return Lists.newArrayList(AGGREGATED);
+  }
+
+  @Test
+  public void testTreeMatchesOwners() throws Exception {
+    List<String> expected = runAggregators(0);
+    assertEquals(expected, runAggregators(2));
+
+    // Values of superstep 2, computed with the broadcast value 3
+    long idSum = NUM_VERTICES * (NUM_VERTICES - 1) / 2;
+    assertTrue(expected.contains("3: " + (idSum + 3 * NUM_VERTICES) +
+        ", " + (NUM_VERTICES - 1) * 3));
+  }
+}
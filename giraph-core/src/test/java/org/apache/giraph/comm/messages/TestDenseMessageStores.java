@@ -0,0 +1,221 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages;
+
+import java.io.IOException;
+
+import org.apache.giraph.combiner.DoubleSumMessageCombiner;
+import org.apache.giraph.combiner.MinimumIntMessageCombiner;
+import org.apache.giraph.comm.messages.primitives.IntIntDenseMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongDoubleDenseMessageStore;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.factories.TestMessageValueFactory;
+import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.giraph.utils.UnsafeByteArrayInputStream;
+import org.apache.giraph.utils.UnsafeByteArrayOutputStream;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for the generated dense message stores, such as
+ * {@link LongDoubleDenseMessageStore}.
+ */
+public class TestDenseMessageStores {
+  /** Vertex ids of each partition */
+  private static final int RANGE_SIZE = 10;
+  private static final int NUM_PARTITIONS = 3;
+  private static final int KEY_SPACE_SIZE = RANGE_SIZE * NUM_PARTITIONS;
+
+  private PartitionSplitInfo<LongWritable> longPartitionInfo;
+  private PartitionSplitInfo<IntWritable> intPartitionInfo;
+
+  /**
+   * Partition of a vertex id, as with a range partitioner. Ids past the key
+   * space go to the last partition.
+   */
+  private static int getPartitionId(long vertexId) {
+    return (int) Math.min(vertexId / RANGE_SIZE, NUM_PARTITIONS - 1);
+  }
+
+  @Before
+  public void setUp() {
+    longPartitionInfo = Mockito.mock(PartitionSplitInfo.class);
+    Mockito.when(longPartitionInfo.getPartitionId(
+        Mockito.any(LongWritable.class))).thenAnswer(new Answer<Integer>() {
+          @Override
+          public Integer answer(InvocationOnMock invocation) {
+            return getPartitionId(
+                ((LongWritable) invocation.getArguments()[0]).get());
+          }
+        });
+    Mockito.when(longPartitionInfo.getPartitionIds()).thenReturn(
+        Lists.newArrayList(0, 1, 2));
+
+    intPartitionInfo = Mockito.mock(PartitionSplitInfo.class);
+    Mockito.when(intPartitionInfo.getPartitionId(
+        Mockito.any(IntWritable.class))).thenAnswer(new Answer<Integer>() {
+          @Override
+          public Integer answer(InvocationOnMock invocation) {
+            return getPartitionId(
+                ((IntWritable) invocation.getArguments()[0]).get());
+          }
+        });
+    Mockito.when(intPartitionInfo.getPartitionIds()).thenReturn(
+        Lists.newArrayList(0, 1, 2));
+  }
+
+  private static ByteArrayVertexIdMessages<LongWritable, DoubleWritable>
+  createLongDoubleMessages() {
+    ByteArrayVertexIdMessages<LongWritable, DoubleWritable> messages =
+        new ByteArrayVertexIdMessages<LongWritable, DoubleWritable>(
+            new TestMessageValueFactory<DoubleWritable>(DoubleWritable.class));
+    messages.setConf(
+        new ImmutableClassesGiraphConfiguration(new GiraphConfiguration()));
+    messages.initialize();
+    return messages;
+  }
+
+  private LongDoubleDenseMessageStore createLongDoubleStore(
+      LongDoubleDenseMessageStore releasedStore) {
+    return new LongDoubleDenseMessageStore(longPartitionInfo,
+        new DoubleSumMessageCombiner(), KEY_SPACE_SIZE, releasedStore);
+  }
+
+  private static double getMessage(
+      MessageStore<LongWritable, DoubleWritable> messageStore, long vertexId) {
+    return Iterables.getOnlyElement(
+        messageStore.getVertexMessages(new LongWritable(vertexId))).get();
+  }
+
+  @Test
+  public void testRangeLookup() throws IOException {
+    LongDoubleDenseMessageStore messageStore = createLongDoubleStore(null);
+    // First and last ids of each partition range
+    for (long vertexId : new long[]{0, 9, 10, 19, 20, 29}) {
+      messageStore.addMessage(new LongWritable(vertexId),
+          new DoubleWritable(vertexId + 0.5));
+    }
+    for (long vertexId : new long[]{0, 9, 10, 19, 20, 29}) {
+      assertTrue(messageStore.hasMessagesForVertex(
+          new LongWritable(vertexId)));
+      assertEquals(vertexId + 0.5, getMessage(messageStore, vertexId), 0);
+    }
+    assertFalse(messageStore.hasMessagesForVertex(new LongWritable(5)));
+    assertTrue(Iterables.isEmpty(
+        messageStore.getVertexMessages(new LongWritable(5))));
+
+    assertEquals(Lists.newArrayList(new LongWritable(10),
+        new LongWritable(19)), Lists.newArrayList(
+        messageStore.getPartitionDestinationVertices(1)));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testOutOfRange() throws IOException {
+    LongDoubleDenseMessageStore messageStore = createLongDoubleStore(null);
+    // Goes to the last partition, but is past the end of its range
+    messageStore.addMessage(new LongWritable(KEY_SPACE_SIZE + 5),
+        new DoubleWritable(1));
+  }
+
+  @Test
+  public void testCombining() throws IOException {
+    LongDoubleDenseMessageStore messageStore = createLongDoubleStore(null);
+    ByteArrayVertexIdMessages<LongWritable, DoubleWritable> messages =
+        createLongDoubleMessages();
+    messages.add(new LongWritable(11), new DoubleWritable(1));
+    messages.add(new LongWritable(12), new DoubleWritable(3));
+    messages.add(new LongWritable(11), new DoubleWritable(4));
+    messageStore.addPartitionMessages(1, messages);
+    messageStore.addMessage(new LongWritable(11), new DoubleWritable(5));
+
+    assertEquals(10, getMessage(messageStore, 11), 0);
+    assertEquals(3, getMessage(messageStore, 12), 0);
+    assertTrue(messageStore.hasMessagesForPartition(1));
+    assertFalse(messageStore.hasMessagesForPartition(0));
+
+    IntIntDenseMessageStore intStore = new IntIntDenseMessageStore(
+        intPartitionInfo, new MinimumIntMessageCombiner(), KEY_SPACE_SIZE);
+    intStore.addMessage(new IntWritable(25), new IntWritable(7));
+    intStore.addMessage(new IntWritable(25), new IntWritable(2));
+    intStore.addMessage(new IntWritable(25), new IntWritable(9));
+    assertEquals(2, Iterables.getOnlyElement(
+        intStore.getVertexMessages(new IntWritable(25))).get());
+  }
+
+  @Test
+  public void testReuseAfterClearAll() throws IOException {
+    LongDoubleDenseMessageStore first = createLongDoubleStore(null);
+    first.addMessage(new LongWritable(3), new DoubleWritable(1));
+    first.addMessage(new LongWritable(27), new DoubleWritable(2));
+
+    // Not cleared yet, nothing is reused
+    LongDoubleDenseMessageStore second = createLongDoubleStore(first);
+    assertEquals(1, getMessage(first, 3), 0);
+    assertFalse(second.hasMessagesForVertex(new LongWritable(3)));
+
+    first.clearAll();
+    LongDoubleDenseMessageStore third = createLongDoubleStore(first);
+    for (int partitionId = 0; partitionId < NUM_PARTITIONS; ++partitionId) {
+      assertFalse(third.hasMessagesForPartition(partitionId));
+    }
+    assertFalse(third.hasMessagesForVertex(new LongWritable(3)));
+    third.addMessage(new LongWritable(3), new DoubleWritable(4));
+    third.addMessage(new LongWritable(3), new DoubleWritable(4));
+    assertEquals(8, getMessage(third, 3), 0);
+    assertFalse(third.hasMessagesForVertex(new LongWritable(27)));
+
+    // Arrays are handed out only once
+    LongDoubleDenseMessageStore fourth = createLongDoubleStore(first);
+    fourth.addMessage(new LongWritable(3), new DoubleWritable(1));
+    assertEquals(8, getMessage(third, 3), 0);
+    assertEquals(1, getMessage(fourth, 3), 0);
+  }
+
+  @Test
+  public void testWriteAndReadPartition() throws IOException {
+    LongDoubleDenseMessageStore messageStore = createLongDoubleStore(null);
+    messageStore.addMessage(new LongWritable(21), new DoubleWritable(1));
+    messageStore.addMessage(new LongWritable(28), new DoubleWritable(2));
+    UnsafeByteArrayOutputStream out = new UnsafeByteArrayOutputStream();
+    messageStore.writePartition(out, 2);
+    messageStore.clearPartition(2);
+    assertFalse(messageStore.hasMessagesForPartition(2));
+
+    messageStore.readFieldsForPartition(
+        new UnsafeByteArrayInputStream(out.getByteArray(), 0, out.getPos()),
+        2);
+    assertEquals(1, getMessage(messageStore, 21), 0);
+    assertEquals(2, getMessage(messageStore, 28), 0);
+    assertFalse(messageStore.hasMessagesForVertex(new LongWritable(22)));
+  }
+}
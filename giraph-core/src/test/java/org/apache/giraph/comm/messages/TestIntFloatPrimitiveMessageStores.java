@@ -25,11 +25,17 @@ import junit.framework.Assert;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.combiner.FloatSumMessageCombiner;
+import org.apache.giraph.combiner.MinimumIntMessageCombiner;
 import org.apache.giraph.comm.messages.primitives.IdByteArrayMessageStore;
+import org.apache.giraph.comm.messages.primitives.IdOneMessagePerVertexStore;
 import org.apache.giraph.comm.messages.primitives.IntFloatMessageStore;
+import org.apache.giraph.comm.messages.primitives.IntFloatMessagesPerVertexStore;
+import org.apache.giraph.comm.messages.primitives.IntIntMessageStore;
+import org.apache.giraph.conf.DefaultMessageClasses;
 import org.apache.giraph.conf.GiraphConfiguration;
 import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.factories.DefaultMessageValueFactory;
 import org.apache.giraph.factories.TestMessageValueFactory;
 import org.apache.giraph.graph.BasicComputation;
 import org.apache.giraph.graph.Vertex;
@@ -180,4 +186,64 @@ public class TestIntFloatPrimitiveMessageStores {
     testIntByteArrayMessageStore();
     GiraphConstants.USE_MESSAGE_SIZE_ENCODING.set(conf, false);
   }
+
+  @Test
+  public void testIntFloatMessagesPerVertexStore() {
+    IntFloatMessagesPerVertexStore messageStore =
+        new IntFloatMessagesPerVertexStore(service);
+    insertIntFloatMessages(messageStore);
+
+    Iterable<FloatWritable> m0 =
+        messageStore.getVertexMessages(new IntWritable(0));
+    Assert.assertEquals(3, Iterables.size(m0));
+    Iterator<FloatWritable> i0 = m0.iterator();
+    Assert.assertEquals((float) 1.0, i0.next().get());
+    Assert.assertEquals((float) 4.0, i0.next().get());
+    Assert.assertEquals((float) 5.0, i0.next().get());
+    Iterable<FloatWritable> m1 =
+        messageStore.getVertexMessages(new IntWritable(1));
+    Assert.assertEquals(3, Iterables.size(m1));
+    Iterator<FloatWritable> i1 = m1.iterator();
+    Assert.assertEquals((float) 1.0, i1.next().get());
+    Assert.assertEquals((float) 3.0, i1.next().get());
+    Assert.assertEquals((float) 4.0, i1.next().get());
+    Iterable<FloatWritable> m2 =
+        messageStore.getVertexMessages(new IntWritable(2));
+    Assert.assertEquals(1, Iterables.size(m2));
+    Assert.assertEquals((float) 3.0, m2.iterator().next().get());
+    Assert.assertTrue(
+        Iterables.isEmpty(messageStore.getVertexMessages(new IntWritable(3))));
+  }
+
+  private static MessageStore newStore(Class<? extends Writable> messageClass,
+      Class combinerClass, boolean primitiveTypeStores) {
+    GiraphConfiguration initConf = new GiraphConfiguration();
+    initConf.setComputationClass(IntFloatNoOpComputation.class);
+    GiraphConstants.USE_PRIMITIVE_TYPE_MESSAGE_STORES.set(initConf,
+        primitiveTypeStores);
+    InMemoryMessageStoreFactory factory = new InMemoryMessageStoreFactory();
+    factory.initialize(service, new ImmutableClassesGiraphConfiguration(
+        initConf));
+    return factory.newStore(new DefaultMessageClasses(messageClass,
+        DefaultMessageValueFactory.class, combinerClass,
+        MessageEncodeAndStoreType.BYTEARRAY_PER_PARTITION));
+  }
+
+  @Test
+  public void testPrimitiveTypeStoresOptIn() {
+    Assert.assertTrue(newStore(FloatWritable.class, null, false)
+        instanceof IdByteArrayMessageStore);
+    Assert.assertTrue(newStore(FloatWritable.class, null, true)
+        instanceof IntFloatMessagesPerVertexStore);
+    Assert.assertTrue(newStore(IntWritable.class,
+        MinimumIntMessageCombiner.class, false)
+        instanceof IdOneMessagePerVertexStore);
+    Assert.assertTrue(newStore(IntWritable.class,
+        MinimumIntMessageCombiner.class, true)
+        instanceof IntIntMessageStore);
+    // The int/float combined store doesn't depend on the option
+    Assert.assertTrue(newStore(FloatWritable.class,
+        FloatSumMessageCombiner.class, false)
+        instanceof IntFloatMessageStore);
+  }
 }
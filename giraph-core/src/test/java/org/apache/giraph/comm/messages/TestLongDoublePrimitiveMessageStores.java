@@ -20,15 +20,22 @@ package org.apache.giraph.comm.messages;
 
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.Random;
 
 import junit.framework.Assert;
 
 import org.apache.giraph.bsp.CentralizedServiceWorker;
 import org.apache.giraph.combiner.DoubleSumMessageCombiner;
 import org.apache.giraph.comm.messages.primitives.IdByteArrayMessageStore;
+import org.apache.giraph.comm.messages.primitives.IdOneMessagePerVertexStore;
 import org.apache.giraph.comm.messages.primitives.LongDoubleMessageStore;
+import org.apache.giraph.comm.messages.primitives.LongDoubleMessagesPerVertexStore;
+import org.apache.giraph.comm.messages.primitives.LongLongMessagesPerVertexStore;
+import org.apache.giraph.conf.DefaultMessageClasses;
 import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
 import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.factories.DefaultMessageValueFactory;
 import org.apache.giraph.factories.TestMessageValueFactory;
 import org.apache.giraph.graph.BasicComputation;
 import org.apache.giraph.graph.Vertex;
@@ -174,4 +181,147 @@ public class TestLongDoublePrimitiveMessageStores {
     Assert.assertTrue(
         Iterables.isEmpty(messageStore.getVertexMessages(new LongWritable(3))));
   }
+
+  private static void insertRandomLongDoubleMessages(
+      MessageStore<LongWritable, DoubleWritable> messageStore) {
+    Random random = new Random(17);
+    for (int batch = 0; batch < 20; ++batch) {
+      int partitionId = batch % NUM_PARTITIONS;
+      ByteArrayVertexIdMessages<LongWritable, DoubleWritable> messages =
+          createLongDoubleMessages();
+      for (int i = 0; i < 100; ++i) {
+        // Integral values, so sums don't depend on the order of combining
+        messages.add(
+            new LongWritable(random.nextInt(50) * NUM_PARTITIONS + partitionId),
+            new DoubleWritable(random.nextInt(100)));
+      }
+      messageStore.addPartitionMessages(partitionId, messages);
+    }
+  }
+
+  private static void assertSameMessages(
+      MessageStore<LongWritable, DoubleWritable> expected,
+      MessageStore<LongWritable, DoubleWritable> actual) {
+    int numVerticesWithMessages = 0;
+    for (long id = 0; id < 50 * NUM_PARTITIONS; ++id) {
+      LongWritable vertexId = new LongWritable(id);
+      Assert.assertEquals(expected.hasMessagesForVertex(vertexId),
+          actual.hasMessagesForVertex(vertexId));
+      Iterable<DoubleWritable> expectedMessages =
+          expected.getVertexMessages(vertexId);
+      Iterable<DoubleWritable> actualMessages =
+          actual.getVertexMessages(vertexId);
+      Assert.assertEquals(Iterables.size(expectedMessages),
+          Iterables.size(actualMessages));
+      if (!Iterables.isEmpty(expectedMessages)) {
+        Assert.assertEquals(expectedMessages.iterator().next().get(),
+            actualMessages.iterator().next().get());
+        ++numVerticesWithMessages;
+      }
+    }
+    Assert.assertTrue(numVerticesWithMessages > 0);
+  }
+
+  @Test
+  public void testLongDoubleMessageStorePreCombine() {
+    LongDoubleMessageStore messageStore = new LongDoubleMessageStore(
+        service, new DoubleSumMessageCombiner(), false);
+    insertRandomLongDoubleMessages(messageStore);
+    LongDoubleMessageStore preCombinedStore = new LongDoubleMessageStore(
+        service, new DoubleSumMessageCombiner(), true);
+    insertRandomLongDoubleMessages(preCombinedStore);
+    assertSameMessages(messageStore, preCombinedStore);
+
+    // Thread-local batch maps are emptied between batches
+    insertLongDoubleMessages(messageStore);
+    insertLongDoubleMessages(preCombinedStore);
+    assertSameMessages(messageStore, preCombinedStore);
+  }
+
+  private static IdOneMessagePerVertexStore<LongWritable, DoubleWritable>
+  createIdOneMessagePerVertexStore(boolean preCombine) {
+    GiraphConfiguration initConf = new GiraphConfiguration();
+    initConf.setComputationClass(LongDoubleNoOpComputation.class);
+    GiraphConstants.PRE_COMBINE_PARTITION_MESSAGES.set(initConf, preCombine);
+    return new IdOneMessagePerVertexStore<>(
+        new TestMessageValueFactory<DoubleWritable>(DoubleWritable.class),
+        service, new DoubleSumMessageCombiner(),
+        new ImmutableClassesGiraphConfiguration(initConf));
+  }
+
+  @Test
+  public void testIdOneMessagePerVertexStorePreCombine() {
+    IdOneMessagePerVertexStore<LongWritable, DoubleWritable> messageStore =
+        createIdOneMessagePerVertexStore(false);
+    insertRandomLongDoubleMessages(messageStore);
+    IdOneMessagePerVertexStore<LongWritable, DoubleWritable>
+        preCombinedStore = createIdOneMessagePerVertexStore(true);
+    insertRandomLongDoubleMessages(preCombinedStore);
+    assertSameMessages(messageStore, preCombinedStore);
+  }
+
+  @Test
+  public void testLongDoubleMessagesPerVertexStore() {
+    LongDoubleMessagesPerVertexStore messageStore =
+        new LongDoubleMessagesPerVertexStore(service);
+    insertLongDoubleMessages(messageStore);
+
+    Iterable<DoubleWritable> m0 =
+        messageStore.getVertexMessages(new LongWritable(0));
+    Assert.assertEquals(3, Iterables.size(m0));
+    Iterator<DoubleWritable> i0 = m0.iterator();
+    Assert.assertEquals(1.0, i0.next().get());
+    Assert.assertEquals(4.0, i0.next().get());
+    Assert.assertEquals(5.0, i0.next().get());
+    Iterable<DoubleWritable> m1 =
+        messageStore.getVertexMessages(new LongWritable(1));
+    Assert.assertEquals(3, Iterables.size(m1));
+    Iterator<DoubleWritable> i1 = m1.iterator();
+    Assert.assertEquals(1.0, i1.next().get());
+    Assert.assertEquals(3.0, i1.next().get());
+    Assert.assertEquals(4.0, i1.next().get());
+    Iterable<DoubleWritable> m2 =
+        messageStore.getVertexMessages(new LongWritable(2));
+    Assert.assertEquals(1, Iterables.size(m2));
+    Assert.assertEquals(3.0, m2.iterator().next().get());
+    Assert.assertTrue(
+        Iterables.isEmpty(messageStore.getVertexMessages(new LongWritable(3))));
+
+    messageStore.clearPartition(0);
+    Assert.assertFalse(messageStore.hasMessagesForPartition(0));
+    Assert.assertTrue(messageStore.hasMessagesForPartition(1));
+  }
+
+  private static MessageStore newStore(Class<? extends Writable> messageClass,
+      Class combinerClass, boolean primitiveTypeStores) {
+    GiraphConfiguration initConf = new GiraphConfiguration();
+    initConf.setComputationClass(LongDoubleNoOpComputation.class);
+    GiraphConstants.USE_PRIMITIVE_TYPE_MESSAGE_STORES.set(initConf,
+        primitiveTypeStores);
+    InMemoryMessageStoreFactory factory = new InMemoryMessageStoreFactory();
+    factory.initialize(service, new ImmutableClassesGiraphConfiguration(
+        initConf));
+    return factory.newStore(new DefaultMessageClasses(messageClass,
+        DefaultMessageValueFactory.class, combinerClass,
+        MessageEncodeAndStoreType.BYTEARRAY_PER_PARTITION));
+  }
+
+  @Test
+  public void testPrimitiveTypeStoresOptIn() {
+    Assert.assertTrue(newStore(DoubleWritable.class, null, false)
+        instanceof IdByteArrayMessageStore);
+    Assert.assertTrue(newStore(DoubleWritable.class, null, true)
+        instanceof LongDoubleMessagesPerVertexStore);
+    Assert.assertTrue(newStore(LongWritable.class, null, false)
+        instanceof IdByteArrayMessageStore);
+    Assert.assertTrue(newStore(LongWritable.class, null, true)
+        instanceof LongLongMessagesPerVertexStore);
+    // The long/double combined store doesn't depend on the option
+    Assert.assertTrue(newStore(DoubleWritable.class,
+        DoubleSumMessageCombiner.class, false)
+        instanceof LongDoubleMessageStore);
+    Assert.assertTrue(newStore(DoubleWritable.class,
+        DoubleSumMessageCombiner.class, true)
+        instanceof LongDoubleMessageStore);
+  }
 }
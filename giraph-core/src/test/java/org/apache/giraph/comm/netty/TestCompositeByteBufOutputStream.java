@@ -0,0 +1,237 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.netty;
+
+import org.apache.giraph.comm.MockExceptionHandler;
+import org.apache.giraph.comm.ServerData;
+import org.apache.giraph.comm.netty.handler.WorkerRequestServerHandler;
+import org.apache.giraph.comm.requests.SendWorkerMessagesRequest;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.factories.TestMessageValueFactory;
+import org.apache.giraph.utils.ByteArrayVertexIdMessages;
+import org.apache.giraph.utils.ExtendedDataOutput;
+import org.apache.giraph.utils.IntNoOpComputation;
+import org.apache.giraph.utils.MockUtils;
+import org.apache.giraph.utils.PairList;
+import org.apache.giraph.utils.VertexIdMessages;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.giraph.worker.WorkerInfo;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.mapreduce.Mapper.Context;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test case for {@link CompositeByteBufOutputStream}: data written with
+ * large regions wrapped instead of copied reads back the same, also when
+ * sent as requests between a client and a server.
+ */
+@SuppressWarnings("unchecked")
+public class TestCompositeByteBufOutputStream {
+  private static byte[] createBytes(int size, int seed) {
+    byte[] bytes = new byte[size];
+    for (int i = 0; i < size; ++i) {
+      bytes[i] = (byte) (i * 31 + seed);
+    }
+    return bytes;
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    byte[] large = createBytes(CompositeByteBufOutputStream.MIN_WRAP_SIZE,
+        1);
+    byte[] small = createBytes(100, 2);
+    CompositeByteBufOutputStream output =
+        new CompositeByteBufOutputStream(UnpooledByteBufAllocator.DEFAULT, 16);
+    output.writeInt(42);
+    output.writeNoCopy(large, 0, large.length);
+    output.writeNoCopy(small, 10, 50);
+    output.writeLong(-7L);
+    output.writeUTF("composite");
+    output.writeNoCopy(large, 0, large.length);
+    output.writeDouble(0.5);
+    CompositeByteBuf buf = output.getBuffer();
+    // Int, large region, copied writes, large region, double
+    assertEquals(5, buf.numComponents());
+    assertEquals(4 + 2 * large.length + 50 + 8 + 2 + 9 + 8,
+        buf.readableBytes());
+
+    // Wrapped regions are read from the original array
+    large[0] = 99;
+    try {
+      DataInputStream input =
+          new DataInputStream(new ByteBufInputStream(buf));
+      assertEquals(42, input.readInt());
+      byte[] read = new byte[large.length];
+      input.readFully(read);
+      assertArrayEquals(large, read);
+      read = new byte[50];
+      input.readFully(read);
+      assertArrayEquals(Arrays.copyOfRange(small, 10, 60), read);
+      assertEquals(-7L, input.readLong());
+      assertEquals("composite", input.readUTF());
+      read = new byte[large.length];
+      input.readFully(read);
+      assertArrayEquals(large, read);
+      assertEquals(0.5, input.readDouble(), 0);
+      assertEquals(0, input.available());
+    } finally {
+      buf.release();
+    }
+  }
+
+  @Test
+  public void testExtendedDataOutput() throws IOException {
+    GiraphConfiguration tmpConf = new GiraphConfiguration();
+    tmpConf.setComputationClass(IntNoOpComputation.class);
+    ImmutableClassesGiraphConfiguration conf =
+        new ImmutableClassesGiraphConfiguration(tmpConf);
+    for (int size : new int[]{10, CompositeByteBufOutputStream.MIN_WRAP_SIZE,
+        10 * CompositeByteBufOutputStream.MIN_WRAP_SIZE}) {
+      ExtendedDataOutput extendedDataOutput = conf.createExtendedDataOutput();
+      extendedDataOutput.write(createBytes(size, size));
+      CompositeByteBufOutputStream output = new CompositeByteBufOutputStream(
+          UnpooledByteBufAllocator.DEFAULT, 16);
+      WritableUtils.writeExtendedDataOutput(extendedDataOutput, output);
+      CompositeByteBuf buf = output.getBuffer();
+      try {
+        ExtendedDataOutput read = WritableUtils.readExtendedDataOutput(
+            new DataInputStream(new ByteBufInputStream(buf)), conf);
+        assertEquals(size, read.getPos());
+        assertArrayEquals(extendedDataOutput.toByteArray(),
+            read.toByteArray());
+      } finally {
+        buf.release();
+      }
+    }
+  }
+
+  /**
+   * Send messages from a client to a server.
+   *
+   * @param messagesPerVertex Number of messages to send to each vertex
+   * @param sliceFrames Whether the server decodes requests from slices of
+   *                    the received data
+   */
+  private static void sendMessages(int messagesPerVertex,
+      boolean sliceFrames) {
+    GiraphConfiguration tmpConf = new GiraphConfiguration();
+    GiraphConstants.COMPUTATION_CLASS.set(tmpConf, IntNoOpComputation.class);
+    GiraphConstants.NETTY_ZERO_COPY.set(tmpConf, true);
+    // By default the execution group runs after the frame decoder, so
+    // frames are copied
+    GiraphConstants.NETTY_SERVER_USE_EXECUTION_HANDLER.set(tmpConf,
+        !sliceFrames);
+    ImmutableClassesGiraphConfiguration conf =
+        new ImmutableClassesGiraphConfiguration(tmpConf);
+
+    Context context = mock(Context.class);
+    when(context.getConfiguration()).thenReturn(conf);
+    ServerData<IntWritable, IntWritable, IntWritable> serverData =
+        MockUtils.createNewServerData(conf, context);
+    serverData.prepareSuperstep();
+    WorkerInfo workerInfo = new WorkerInfo();
+    NettyServer server = new NettyServer(conf,
+        new WorkerRequestServerHandler.Factory(serverData), workerInfo,
+        context, new MockExceptionHandler());
+    server.start();
+    workerInfo.setInetSocketAddress(server.getMyAddress(),
+        server.getLocalHostOrIp());
+    NettyClient client = new NettyClient(context, conf, new WorkerInfo(),
+        new MockExceptionHandler());
+    server.setFlowControl(client.getFlowControl());
+    client.connectAllAddresses(Lists.<WorkerInfo>newArrayList(workerInfo));
+
+    PairList<Integer, VertexIdMessages<IntWritable, IntWritable>>
+        dataToSend = new PairList<>();
+    dataToSend.initialize();
+    ByteArrayVertexIdMessages<IntWritable, IntWritable> vertexIdMessages =
+        new ByteArrayVertexIdMessages<>(
+            new TestMessageValueFactory<>(IntWritable.class));
+    vertexIdMessages.setConf(conf);
+    vertexIdMessages.initialize();
+    dataToSend.add(0, vertexIdMessages);
+    long expectedSum = 0;
+    for (int i = 1; i < 7; ++i) {
+      for (int j = 0; j < messagesPerVertex; ++j) {
+        vertexIdMessages.add(new IntWritable(i), new IntWritable(i * j));
+        expectedSum += i * j;
+      }
+    }
+    SendWorkerMessagesRequest<IntWritable, IntWritable> request =
+        new SendWorkerMessagesRequest<>(dataToSend);
+    request.setConf(conf);
+    client.sendWritableRequest(workerInfo.getTaskId(), request);
+    client.waitAllRequests();
+    client.stop();
+    server.stop();
+
+    int keySum = 0;
+    long messageSum = 0;
+    int messageCount = 0;
+    for (IntWritable vertexId : serverData.getIncomingMessageStore()
+        .getPartitionDestinationVertices(0)) {
+      keySum += vertexId.get();
+      Iterable<IntWritable> messages =
+          serverData.<IntWritable>getIncomingMessageStore()
+              .getVertexMessages(vertexId);
+      synchronized (messages) {
+        for (IntWritable message : messages) {
+          messageSum += message.get();
+          ++messageCount;
+        }
+      }
+    }
+    assertEquals(21, keySum);
+    assertEquals(6 * messagesPerVertex, messageCount);
+    assertEquals(expectedSum, messageSum);
+  }
+
+  @Test
+  public void testSendLargeRequest() {
+    // Payload well above the size at which it is wrapped
+    sendMessages(2000, true);
+  }
+
+  @Test
+  public void testSendSmallRequest() {
+    sendMessages(3, true);
+  }
+
+  @Test
+  public void testSendWithoutSlicedFrames() {
+    sendMessages(2000, false);
+  }
+}
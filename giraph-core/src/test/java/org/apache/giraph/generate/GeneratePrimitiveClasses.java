@@ -36,7 +36,8 @@ import freemarker.template.TemplateExceptionHandler;
 import freemarker.template.TemplateNotFoundException;
 
 /**
- * <p>Code generation utility that generates set of classes from a template files.
+ * <p>Code generation utility that generates set of classes from a template
+ * files.
  * Templates are found in giraph-core/template/ folder.
  * If you want to add new generation, look at the main function, and add a call
  * to appropriate generate* function.</p>
@@ -46,11 +47,14 @@ import freemarker.template.TemplateNotFoundException;
  * new file.</p>
  * Main rules:
  * <ul>
- * <li><code>${something}</code> gets replaced with value of <code>map.get("something")</code></li>
- * <li><code>${obj.method}</code> gets replaced with value of <code>map.get("obj").getMethod()</code></li>
+ * <li><code>${something}</code> gets replaced with value of
+ * <code>map.get("something")</code></li>
+ * <li><code>${obj.method}</code> gets replaced with value of
+ * <code>map.get("obj").getMethod()</code></li>
  * </ul>
  * More description about template format can be found at:
- * <a href="http://freemarker.org/docs/dgui_quickstart_template.html">tutorial</a>
+ * <a href="http://freemarker.org/docs/dgui_quickstart_template.html">
+ * tutorial</a>
  */
 public class GeneratePrimitiveClasses {
   public static enum PrimitiveType {
@@ -122,7 +126,8 @@ public class GeneratePrimitiveClasses {
     cfg.setTemplateExceptionHandler(TemplateExceptionHandler.RETHROW_HANDLER);
 
     String[] primitiveFunctions = {
-      "%sConsumer", "%sPredicate", "Obj2%sFunction", "%s2ObjFunction", "%s2%sFunction"
+      "%sConsumer", "%sPredicate", "Obj2%sFunction", "%s2ObjFunction",
+      "%s2%sFunction"
     };
 
     for (String function: primitiveFunctions) {
@@ -130,7 +135,8 @@ public class GeneratePrimitiveClasses {
           cfg,
           EnumSet.allOf(PrimitiveType.class),
           function.replaceAll("\\%s", "Type") + ".java",
-          "src/main/java/org/apache/giraph/function/primitive/" + function + ".java");
+          "src/main/java/org/apache/giraph/function/primitive/" + function +
+              ".java");
     }
 
 
@@ -138,7 +144,9 @@ public class GeneratePrimitiveClasses {
         cfg,
         EnumSet.allOf(PrimitiveType.class),
         "TypeComparatorFunction.java",
-        "../giraph-block-app-8/src/main/java/org/apache/giraph/function/primitive/comparators/%sComparatorFunction.java");
+        "../giraph-block-app-8/src/main/java/" +
+            "org/apache/giraph/function/primitive/comparators/" +
+            "%sComparatorFunction.java");
 
     EnumSet<PrimitiveType> writableSet = EnumSet.noneOf(PrimitiveType.class);
     EnumSet<PrimitiveType> ids = EnumSet.noneOf(PrimitiveType.class);
@@ -165,58 +173,96 @@ public class GeneratePrimitiveClasses {
         cfg,
         writableSet,
         "WTypeCollection.java",
-        "src/main/java/org/apache/giraph/types/ops/collections/W%sCollection.java");
+        "src/main/java/org/apache/giraph/types/ops/collections/" +
+            "W%sCollection.java");
 
     generateForAll(
         cfg,
         writableSet,
         "WTypeArrayList.java",
-        "src/main/java/org/apache/giraph/types/ops/collections/array/W%sArrayList.java");
+        "src/main/java/org/apache/giraph/types/ops/collections/array/" +
+            "W%sArrayList.java");
 
     generateForAll(
         cfg,
         writableSet,
         writableSet,
         "TypeTypeConsumer.java",
-        "src/main/java/org/apache/giraph/function/primitive/pairs/%s%sConsumer.java");
+        "src/main/java/org/apache/giraph/function/primitive/pairs/" +
+            "%s%sConsumer.java");
 
     generateForAll(
         cfg,
         writableSet,
         writableSet,
         "TypeTypePredicate.java",
-        "src/main/java/org/apache/giraph/function/primitive/pairs/%s%sPredicate.java");
+        "src/main/java/org/apache/giraph/function/primitive/pairs/" +
+            "%s%sPredicate.java");
 
     generateForAll(
         cfg,
         ids,
         numerics,
         "Type2TypeMapEntryIterable.java",
-        "src/main/java/org/apache/giraph/types/heaps/%s2%sMapEntryIterable.java");
+        "src/main/java/org/apache/giraph/types/heaps/" +
+            "%s2%sMapEntryIterable.java");
 
     generateForAll(
         cfg,
         ids,
         numerics,
         "FixedCapacityType2TypeMinHeap.java",
-        "src/main/java/org/apache/giraph/types/heaps/FixedCapacity%s%sMinHeap.java");
+        "src/main/java/org/apache/giraph/types/heaps/" +
+            "FixedCapacity%s%sMinHeap.java");
 
     generateForAll(
         cfg,
         ids,
         numerics,
         "TestFixedCapacityType2TypeMinHeap.java",
-        "src/test/java/org/apache/giraph/types/heaps/TestFixedCapacity%s%sMinHeap.java");
+        "src/test/java/org/apache/giraph/types/heaps/" +
+            "TestFixedCapacity%s%sMinHeap.java");
+
+    EnumSet<PrimitiveType> messages = EnumSet.of(
+        PrimitiveType.INT, PrimitiveType.LONG,
+        PrimitiveType.FLOAT, PrimitiveType.DOUBLE);
+
+    generateForAll(
+        cfg,
+        ids,
+        messages,
+        "TypeTypeMessageStore.java",
+        "src/main/java/org/apache/giraph/comm/messages/primitives/" +
+            "%s%sMessageStore.java");
+
+    generateForAll(
+        cfg,
+        ids,
+        messages,
+        "TypeTypeMessagesPerVertexStore.java",
+        "src/main/java/org/apache/giraph/comm/messages/primitives/" +
+            "%s%sMessagesPerVertexStore.java");
+
+    generateForAll(
+        cfg,
+        ids,
+        messages,
+        "TypeTypeDenseMessageStore.java",
+        "src/main/java/org/apache/giraph/comm/messages/primitives/" +
+            "%s%sDenseMessageStore.java");
 
     System.out.println("Successfully generated classes");
   }
 
   /**
-   * Generate a set of files from a template, one for each type in the passed set,
-   * where added entry for "type" to that object is added, on top of default entries.
+   * Generate a set of files from a template, one for each type in the passed
+   * set, where added entry for "type" to that object is added, on top of
+   * default entries.
    */
-  private static void generateForAll(Configuration cfg, EnumSet<PrimitiveType> types,
-      String template, String outputPattern) throws TemplateNotFoundException, MalformedTemplateNameException, ParseException, FileNotFoundException, IOException, TemplateException {
+  private static void generateForAll(Configuration cfg,
+      EnumSet<PrimitiveType> types, String template, String outputPattern)
+    throws TemplateNotFoundException, MalformedTemplateNameException,
+    ParseException, FileNotFoundException, IOException, TemplateException {
     for (PrimitiveType type : types) {
       Map<String, Object> props = defaultMap();
       props.put("type", type);
@@ -233,7 +279,9 @@ public class GeneratePrimitiveClasses {
    */
   private static void generateForAll(Configuration cfg,
       EnumSet<PrimitiveType> types1, EnumSet<PrimitiveType> types2,
-      String template, String outputPattern) throws TemplateNotFoundException, MalformedTemplateNameException, ParseException, FileNotFoundException, IOException, TemplateException {
+      String template, String outputPattern)
+    throws TemplateNotFoundException, MalformedTemplateNameException,
+    ParseException, FileNotFoundException, IOException, TemplateException {
     for (PrimitiveType type1 : types1) {
       for (PrimitiveType type2 : types2) {
         Map<String, Object> props = defaultMap();
@@ -246,11 +294,14 @@ public class GeneratePrimitiveClasses {
     }
   }
 
-  /** Generate a single file from a template, replacing mappings from given properties */
-  private static void generateAndWrite(Configuration cfg, Map<String, Object> props,
-      String template, String outputFile)
-          throws TemplateNotFoundException, MalformedTemplateNameException, ParseException,
-          IOException, FileNotFoundException, TemplateException {
+  /**
+   * Generate a single file from a template, replacing mappings from given
+   * properties
+   */
+  private static void generateAndWrite(Configuration cfg,
+      Map<String, Object> props, String template, String outputFile)
+    throws TemplateNotFoundException, MalformedTemplateNameException,
+    ParseException, IOException, FileNotFoundException, TemplateException {
     Template temp = cfg.getTemplate(template);
     Writer out = new OutputStreamWriter(new FileOutputStream(outputFile));
     temp.process(props, out);
@@ -264,5 +315,6 @@ public class GeneratePrimitiveClasses {
   }
 
   private static final String GENERATED_MESSAGE =
-      "// AUTO-GENERATED class via class:\n// " + GeneratePrimitiveClasses.class.getName();
+      "// AUTO-GENERATED class via class:\n// " +
+      GeneratePrimitiveClasses.class.getName();
 }
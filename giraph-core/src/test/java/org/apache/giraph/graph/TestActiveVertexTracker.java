@@ -0,0 +1,178 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.graph;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.edge.ByteArrayEdges;
+import org.apache.giraph.edge.EdgeFactory;
+import org.apache.giraph.master.DefaultMasterCompute;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for {@link ActiveVertexTracker}: computing only the frontier of
+ * sparse supersteps gives the same stats and results as visiting all
+ * vertices, also after mutations.
+ */
+public class TestActiveVertexTracker {
+  private static final int NUM_VERTICES = 200;
+  /** Superstep in which vertices are mutated */
+  private static final long MUTATION_SUPERSTEP = 3;
+  /** Last superstep in which some vertices stay active */
+  private static final long LAST_ACTIVE_SUPERSTEP = 6;
+
+  /** Number of vertices and edges seen by the master in each superstep */
+  private static final List<String> MASTER_STATS = Lists.newArrayList();
+  /** Number of vertices computed in each superstep */
+  private static final ConcurrentMap<Long, AtomicLong> COMPUTED =
+      Maps.newConcurrentMap();
+
+  /**
+   * Keeps one vertex in ten active for a few supersteps, sending messages
+   * to halted vertices, and mutates the graph once.
+   */
+  public static class SparseComputation extends
+      BasicComputation<LongWritable, LongWritable, NullWritable,
+          LongWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, LongWritable, NullWritable> vertex,
+        Iterable<LongWritable> messages) throws IOException {
+      AtomicLong computed = COMPUTED.get(getSuperstep());
+      if (computed == null) {
+        COMPUTED.putIfAbsent(getSuperstep(), new AtomicLong());
+        computed = COMPUTED.get(getSuperstep());
+      }
+      computed.incrementAndGet();
+
+      long id = vertex.getId().get();
+      long value = vertex.getValue().get() + 1;
+      for (LongWritable message : messages) {
+        value += message.get();
+      }
+      vertex.setValue(new LongWritable(value));
+
+      if (id == 0 && getSuperstep() == MUTATION_SUPERSTEP) {
+        removeVertexRequest(new LongWritable(NUM_VERTICES - 5));
+        addVertexRequest(new LongWritable(NUM_VERTICES + 1),
+            new LongWritable(100));
+        addEdgeRequest(new LongWritable(30), EdgeFactory.create(
+            new LongWritable(NUM_VERTICES + 1), NullWritable.get()));
+        removeEdgesRequest(new LongWritable(50), new LongWritable(51));
+      }
+      if (id % 10 == 0 && getSuperstep() <= LAST_ACTIVE_SUPERSTEP) {
+        sendMessageToAllEdges(vertex, new LongWritable(id));
+      } else {
+        vertex.voteToHalt();
+      }
+    }
+  }
+
+  /** Records the stats the master sees in each superstep */
+  public static class StatsMasterCompute extends DefaultMasterCompute {
+    @Override
+    public void compute() {
+      MASTER_STATS.add(getSuperstep() + ": " + getTotalNumVertices() +
+          " vertices, " + getTotalNumEdges() + " edges");
+    }
+  }
+
+  /**
+   * Run the computation, with or without frontiers.
+   *
+   * @param useFrontier Whether to compute only the frontier when sparse
+   * @return Map from vertex id to value and number of edges
+   */
+  private static Map<Long, String> run(boolean useFrontier)
+    throws Exception {
+    MASTER_STATS.clear();
+    COMPUTED.clear();
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(SparseComputation.class);
+    conf.setMasterComputeClass(StatsMasterCompute.class);
+    conf.setOutEdgesClass(ByteArrayEdges.class);
+    GiraphConstants.NUM_COMPUTE_THREADS.set(conf, 2);
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, 4);
+    GiraphConstants.ACTIVE_VERTEX_FRONTIER.set(conf, useFrontier);
+    GiraphConstants.ACTIVE_VERTEX_FRONTIER_MAX_RATIO.set(conf, 0.5f);
+
+    TestGraph<LongWritable, LongWritable, NullWritable> graph =
+        new TestGraph<>(conf);
+    for (long id = 0; id < NUM_VERTICES; ++id) {
+      graph.addVertex(new LongWritable(id), new LongWritable(0));
+      graph.addEdge(new LongWritable(id),
+          new LongWritable((id + 1) % NUM_VERTICES), NullWritable.get());
+      graph.addEdge(new LongWritable(id),
+          new LongWritable((id + 7) % NUM_VERTICES), NullWritable.get());
+    }
+    TestGraph<LongWritable, LongWritable, NullWritable> results =
+        InternalVertexRunner.runWithInMemoryOutput(conf, graph);
+
+    Map<Long, String> vertices = Maps.newHashMap();
+    for (Vertex<LongWritable, LongWritable, NullWritable> vertex : results) {
+      vertices.put(vertex.getId().get(),
+          vertex.getValue().get() + "/" + vertex.getNumEdges());
+    }
+    return vertices;
+  }
+
+  private static Map<Long, Long> getComputedCounts() {
+    Map<Long, Long> computed = Maps.newTreeMap();
+    for (Map.Entry<Long, AtomicLong> entry : COMPUTED.entrySet()) {
+      computed.put(entry.getKey(), entry.getValue().get());
+    }
+    return computed;
+  }
+
+  @Test
+  public void testFrontierMatchesFullScan() throws Exception {
+    Map<Long, String> expected = run(false);
+    List<String> expectedStats = Lists.newArrayList(MASTER_STATS);
+    Map<Long, Long> expectedComputed = getComputedCounts();
+
+    Map<Long, String> vertices = run(true);
+    assertEquals(expected, vertices);
+    assertEquals(expectedStats, MASTER_STATS);
+    assertEquals(expectedComputed, getComputedCounts());
+
+    // The mutations were applied
+    assertEquals(NUM_VERTICES, vertices.size());
+    assertFalse(vertices.containsKey((long) NUM_VERTICES - 5));
+    assertTrue(vertices.get((long) NUM_VERTICES + 1).endsWith("/0"));
+    assertTrue(vertices.get(30L).endsWith("/3"));
+    assertTrue(vertices.get(50L).endsWith("/1"));
+  }
+}
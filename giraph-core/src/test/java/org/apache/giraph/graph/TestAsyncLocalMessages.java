@@ -0,0 +1,302 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.graph;
+
+import org.apache.giraph.combiner.MinimumDoubleMessageCombiner;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.edge.ByteArrayEdges;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.giraph.worker.DefaultWorkerContext;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for {@link AsyncLocalMessages}: monotonic computations reach
+ * the same results with messages delivered within the superstep, without
+ * losing messages or running supersteps in which nothing is computed.
+ */
+public class TestAsyncLocalMessages {
+  private static final int NUM_VERTICES = 300;
+  private static final long SOURCE_ID = 0;
+
+  /** Messages sent by all vertices */
+  private static final AtomicLong SENT = new AtomicLong();
+  /** Messages received by all vertices */
+  private static final AtomicLong RECEIVED = new AtomicLong();
+  /** Last superstep started */
+  private static final AtomicLong LAST_SUPERSTEP = new AtomicLong();
+  /** Supersteps in which some vertex was computed */
+  private static final Set<Long> COMPUTED_SUPERSTEPS =
+      Collections.newSetFromMap(new ConcurrentHashMap<Long, Boolean>());
+
+  @Before
+  public void setUp() {
+    SENT.set(0);
+    RECEIVED.set(0);
+    LAST_SUPERSTEP.set(0);
+    COMPUTED_SUPERSTEPS.clear();
+  }
+
+  /** Records the last superstep */
+  public static class SuperstepWorkerContext extends DefaultWorkerContext {
+    @Override
+    public void preSuperstep() {
+      LAST_SUPERSTEP.set(getSuperstep());
+    }
+  }
+
+  /** Single source shortest paths */
+  public static class ShortestPathsComputation extends
+      BasicComputation<LongWritable, DoubleWritable, FloatWritable,
+          DoubleWritable> implements MonotonicComputation {
+    @Override
+    public void compute(
+        Vertex<LongWritable, DoubleWritable, FloatWritable> vertex,
+        Iterable<DoubleWritable> messages) {
+      COMPUTED_SUPERSTEPS.add(getSuperstep());
+      if (getSuperstep() == 0) {
+        vertex.getValue().set(Double.MAX_VALUE);
+      }
+      double minDist =
+          vertex.getId().get() == SOURCE_ID ? 0d : Double.MAX_VALUE;
+      for (DoubleWritable message : messages) {
+        RECEIVED.incrementAndGet();
+        minDist = Math.min(minDist, message.get());
+      }
+      if (minDist < vertex.getValue().get()) {
+        vertex.getValue().set(minDist);
+        for (Edge<LongWritable, FloatWritable> edge : vertex.getEdges()) {
+          sendMessage(edge.getTargetVertexId(),
+              new DoubleWritable(minDist + edge.getValue().get()));
+          SENT.incrementAndGet();
+        }
+      }
+      vertex.voteToHalt();
+    }
+  }
+
+  /** Connected components, labeled by their smallest vertex id */
+  public static class ConnectedComponentsComputation extends
+      BasicComputation<LongWritable, LongWritable, NullWritable,
+          LongWritable> implements MonotonicComputation {
+    @Override
+    public void compute(
+        Vertex<LongWritable, LongWritable, NullWritable> vertex,
+        Iterable<LongWritable> messages) {
+      COMPUTED_SUPERSTEPS.add(getSuperstep());
+      long component = vertex.getValue().get();
+      if (getSuperstep() == 0) {
+        component = vertex.getId().get();
+        for (Edge<LongWritable, NullWritable> edge : vertex.getEdges()) {
+          component = Math.min(component, edge.getTargetVertexId().get());
+        }
+      }
+      boolean changed = getSuperstep() == 0;
+      for (LongWritable message : messages) {
+        RECEIVED.incrementAndGet();
+        if (message.get() < component) {
+          component = message.get();
+          changed = true;
+        }
+      }
+      if (changed) {
+        vertex.getValue().set(component);
+        sendMessageToAllEdges(vertex, new LongWritable(component));
+        SENT.addAndGet(vertex.getNumEdges());
+      }
+      vertex.voteToHalt();
+    }
+  }
+
+  /**
+   * Create the configuration of a run, with several partitions per compute
+   * thread so messages cross partitions of the worker.
+   *
+   * @param computationClass Computation class
+   * @param async Whether to deliver local messages within the superstep
+   * @return Configuration
+   */
+  private static GiraphConfiguration createConf(
+      Class<? extends Computation> computationClass, boolean async) {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(computationClass);
+    conf.setOutEdgesClass(ByteArrayEdges.class);
+    conf.setWorkerContextClass(SuperstepWorkerContext.class);
+    GiraphConstants.NUM_COMPUTE_THREADS.set(conf, 2);
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, 8);
+    GiraphConstants.ASYNC_LOCAL_MESSAGES.set(conf, async);
+    // Leave messages for the next superstep too
+    GiraphConstants.ASYNC_MAX_LOCAL_ITERATIONS.set(conf, 2);
+    return conf;
+  }
+
+  /**
+   * Check that no message was lost or duplicated, and that every superstep
+   * computed some vertex, so the job didn't go on without messages.
+   *
+   * @return Number of supersteps run
+   */
+  private static long checkRun() {
+    assertEquals(SENT.get(), RECEIVED.get());
+    for (long superstep = 0; superstep <= LAST_SUPERSTEP.get();
+         ++superstep) {
+      assertTrue("Nothing computed in superstep " + superstep,
+          COMPUTED_SUPERSTEPS.contains(superstep));
+    }
+    return LAST_SUPERSTEP.get() + 1;
+  }
+
+  private static TestGraph<LongWritable, DoubleWritable, FloatWritable>
+  createWeightedGraph(GiraphConfiguration conf) {
+    TestGraph<LongWritable, DoubleWritable, FloatWritable> graph =
+        new TestGraph<>(conf);
+    Random random = new Random(17);
+    for (long id = 0; id < NUM_VERTICES; ++id) {
+      graph.addVertex(new LongWritable(id), new DoubleWritable());
+    }
+    for (long id = 0; id < NUM_VERTICES; ++id) {
+      // A path through all vertices, and a few random shortcuts
+      if (id + 1 < NUM_VERTICES) {
+        graph.addEdge(new LongWritable(id), new LongWritable(id + 1),
+            new FloatWritable(1 + random.nextInt(10)));
+      }
+      for (int i = 0; i < 2; ++i) {
+        graph.addEdge(new LongWritable(id),
+            new LongWritable(random.nextInt(NUM_VERTICES)),
+            new FloatWritable(1 + random.nextInt(100)));
+      }
+    }
+    return graph;
+  }
+
+  private static TestGraph<LongWritable, LongWritable, NullWritable>
+  createUndirectedGraph(GiraphConfiguration conf) {
+    TestGraph<LongWritable, LongWritable, NullWritable> graph =
+        new TestGraph<>(conf);
+    Random random = new Random(23);
+    for (long id = 0; id < NUM_VERTICES; ++id) {
+      graph.addVertex(new LongWritable(id), new LongWritable());
+    }
+    // Components of ten vertices each: chains, so labels take several
+    // supersteps to propagate, and a few random edges within them
+    for (long id = 0; id < NUM_VERTICES; ++id) {
+      if (id % 10 != 9) {
+        graph.addEdge(new LongWritable(id), new LongWritable(id + 1),
+            NullWritable.get());
+        graph.addEdge(new LongWritable(id + 1), new LongWritable(id),
+            NullWritable.get());
+      }
+      if (random.nextInt(10) == 0) {
+        long other = id - id % 10 + random.nextInt(10);
+        graph.addEdge(new LongWritable(id), new LongWritable(other),
+            NullWritable.get());
+        graph.addEdge(new LongWritable(other), new LongWritable(id),
+            NullWritable.get());
+      }
+    }
+    return graph;
+  }
+
+  private static Map<Long, Double> runShortestPaths(boolean async,
+      boolean combine) throws Exception {
+    GiraphConfiguration conf =
+        createConf(ShortestPathsComputation.class, async);
+    if (combine) {
+      conf.setMessageCombinerClass(MinimumDoubleMessageCombiner.class);
+    }
+    TestGraph<LongWritable, DoubleWritable, FloatWritable> results =
+        InternalVertexRunner.runWithInMemoryOutput(conf,
+            createWeightedGraph(conf));
+    Map<Long, Double> distances = Maps.newHashMap();
+    for (Vertex<LongWritable, DoubleWritable, FloatWritable> vertex :
+        results) {
+      distances.put(vertex.getId().get(), vertex.getValue().get());
+    }
+    return distances;
+  }
+
+  private static Map<Long, Long> runConnectedComponents(boolean async)
+    throws Exception {
+    GiraphConfiguration conf =
+        createConf(ConnectedComponentsComputation.class, async);
+    TestGraph<LongWritable, LongWritable, NullWritable> results =
+        InternalVertexRunner.runWithInMemoryOutput(conf,
+            createUndirectedGraph(conf));
+    Map<Long, Long> components = Maps.newHashMap();
+    for (Vertex<LongWritable, LongWritable, NullWritable> vertex : results) {
+      components.put(vertex.getId().get(), vertex.getValue().get());
+    }
+    return components;
+  }
+
+  @Test
+  public void testShortestPaths() throws Exception {
+    Map<Long, Double> expected = runShortestPaths(false, false);
+    long bspSupersteps = checkRun();
+
+    setUp();
+    Map<Long, Double> distances = runShortestPaths(true, false);
+    long asyncSupersteps = checkRun();
+    assertEquals(expected, distances);
+    assertTrue(asyncSupersteps <= bspSupersteps);
+    assertEquals(NUM_VERTICES, distances.size());
+    assertEquals(0d, distances.get(SOURCE_ID), 0d);
+  }
+
+  @Test
+  public void testShortestPathsWithCombiner() throws Exception {
+    Map<Long, Double> expected = runShortestPaths(false, true);
+    setUp();
+    assertEquals(expected, runShortestPaths(true, true));
+  }
+
+  @Test
+  public void testConnectedComponents() throws Exception {
+    Map<Long, Long> expected = runConnectedComponents(false);
+    long bspSupersteps = checkRun();
+
+    setUp();
+    Map<Long, Long> components = runConnectedComponents(true);
+    long asyncSupersteps = checkRun();
+    assertEquals(expected, components);
+    assertTrue(asyncSupersteps <= bspSupersteps);
+    for (long id = 0; id < NUM_VERTICES; ++id) {
+      assertEquals(id - id % 10, (long) components.get(id));
+    }
+  }
+}
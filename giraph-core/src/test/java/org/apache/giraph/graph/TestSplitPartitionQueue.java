@@ -0,0 +1,192 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.graph;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.edge.ByteArrayEdges;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.graph.SplitPartitionQueue.SplitPartition;
+import org.apache.giraph.partition.Partition;
+import org.apache.giraph.partition.PartitionStats;
+import org.apache.giraph.utils.IntNoOpComputation;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for {@link SplitPartitionQueue}: every vertex of a split
+ * partition is computed exactly once, and jobs give the same results
+ * whether partitions are split or not.
+ */
+public class TestSplitPartitionQueue {
+  private static final int NUM_VERTICES = 200;
+  private static final long LAST_SUPERSTEP = 5;
+
+  @Test
+  public void testChunks() {
+    GiraphConfiguration configuration = new GiraphConfiguration();
+    configuration.setComputationClass(IntNoOpComputation.class);
+    GiraphConstants.MIN_VERTICES_TO_SPLIT_PARTITION.set(configuration, 10);
+    GiraphConstants.SPLIT_PARTITION_CHUNK_SIZE.set(configuration, 3);
+    ImmutableClassesGiraphConfiguration<IntWritable, IntWritable,
+        IntWritable> conf =
+        new ImmutableClassesGiraphConfiguration<>(configuration);
+    Mapper<?, ?, ?, ?>.Context context = Mockito.mock(Mapper.Context.class);
+    Partition<IntWritable, IntWritable, IntWritable> partition =
+        conf.createPartition(7, context);
+    SplitPartitionQueue<IntWritable, IntWritable, IntWritable> queue =
+        new SplitPartitionQueue<>(conf);
+    for (int i = 0; i < 10; ++i) {
+      assertFalse(queue.shouldSplit(partition));
+      Vertex<IntWritable, IntWritable, IntWritable> vertex =
+          conf.createVertex();
+      vertex.initialize(new IntWritable(i), new IntWritable(i));
+      partition.putVertex(vertex);
+    }
+    assertTrue(queue.shouldSplit(partition));
+
+    // Two threads take chunks in turns
+    SplitPartition<IntWritable, IntWritable, IntWritable> shared =
+        queue.share(partition);
+    assertSame(shared, queue.steal());
+    Set<Integer> computed = Sets.newHashSet();
+    List<Vertex<IntWritable, IntWritable, IntWritable>> chunk =
+        Lists.newArrayList();
+    PartitionStats[] threadStats = {
+      new PartitionStats(7, 0, 0, 0, 0, 0),
+      new PartitionStats(7, 0, 0, 0, 0, 0)
+    };
+    int turn = 0;
+    while (shared.nextChunk(chunk, queue.getChunkSize())) {
+      assertTrue(chunk.size() <= queue.getChunkSize());
+      for (Vertex<IntWritable, IntWritable, IntWritable> vertex : chunk) {
+        assertTrue(computed.add(vertex.getId().get()));
+        threadStats[turn].incrVertexCount();
+      }
+      turn = 1 - turn;
+    }
+    assertEquals(10, computed.size());
+
+    // No vertices left to steal, and only the last thread finishes
+    assertNull(queue.steal());
+    assertFalse(shared.leave(threadStats[0]));
+    assertTrue(shared.leave(threadStats[1]));
+    assertEquals(10, shared.getPartitionStats().getVertexCount());
+    assertEquals(7, shared.getPartitionStats().getPartitionId());
+  }
+
+  /**
+   * Mixes the messages, the graph totals from the previous superstep and
+   * the vertex id into the value. Vertices halt every other superstep and
+   * are woken up by messages.
+   */
+  public static class MixingComputation extends
+      BasicComputation<LongWritable, LongWritable, NullWritable,
+          LongWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, LongWritable, NullWritable> vertex,
+        Iterable<LongWritable> messages) {
+      long value = vertex.getValue().get() * 31 + getTotalNumVertices() +
+          getTotalNumEdges() * 7;
+      for (LongWritable message : messages) {
+        value += message.get();
+      }
+      value %= 1000003;
+      vertex.getValue().set(value);
+      if (getSuperstep() == LAST_SUPERSTEP) {
+        vertex.voteToHalt();
+        return;
+      }
+      for (Edge<LongWritable, NullWritable> edge : vertex.getEdges()) {
+        if ((value + edge.getTargetVertexId().get()) % 3 != 0) {
+          sendMessage(edge.getTargetVertexId(), new LongWritable(value));
+        }
+      }
+      if ((vertex.getId().get() + getSuperstep()) % 2 == 0) {
+        vertex.voteToHalt();
+      }
+    }
+  }
+
+  /**
+   * Run the job.
+   *
+   * @param split Whether to split large partitions among compute threads
+   * @return Map from vertex id to value
+   */
+  private static Map<Long, Long> run(boolean split) throws Exception {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(MixingComputation.class);
+    conf.setOutEdgesClass(ByteArrayEdges.class);
+    GiraphConstants.NUM_COMPUTE_THREADS.set(conf, 4);
+    // Fewer partitions than threads, so idle threads have to steal
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, 3);
+    GiraphConstants.SPLIT_LARGE_PARTITIONS_IN_COMPUTE.set(conf, split);
+    GiraphConstants.MIN_VERTICES_TO_SPLIT_PARTITION.set(conf, 10);
+    GiraphConstants.SPLIT_PARTITION_CHUNK_SIZE.set(conf, 7);
+
+    TestGraph<LongWritable, LongWritable, NullWritable> graph =
+        new TestGraph<>(conf);
+    for (long id = 0; id < NUM_VERTICES; ++id) {
+      graph.addVertex(new LongWritable(id), new LongWritable(id));
+      for (long i = 1; i <= id % 4; ++i) {
+        graph.addEdge(new LongWritable(id),
+            new LongWritable((id * 13 + i) % NUM_VERTICES),
+            NullWritable.get());
+      }
+    }
+    TestGraph<LongWritable, LongWritable, NullWritable> results =
+        InternalVertexRunner.runWithInMemoryOutput(conf, graph);
+
+    Map<Long, Long> values = Maps.newHashMap();
+    for (Vertex<LongWritable, LongWritable, NullWritable> vertex : results) {
+      values.put(vertex.getId().get(), vertex.getValue().get());
+    }
+    return values;
+  }
+
+  @Test
+  public void testSplitMatchesUnsplit() throws Exception {
+    Map<Long, Long> expected = run(false);
+    assertEquals(NUM_VERTICES, expected.size());
+    assertEquals(expected, run(true));
+  }
+}
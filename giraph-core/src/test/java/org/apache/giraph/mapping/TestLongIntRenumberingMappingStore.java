@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.mapping;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.edge.ArrayListEdges;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.edge.EdgeFactory;
+import org.apache.giraph.edge.OutEdges;
+import org.apache.giraph.graph.BasicComputation;
+import org.apache.giraph.graph.Vertex;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for {@link LongIntRenumberingMappingStore} and restoring the
+ * original ids with {@link OriginalIdsRestorer}.
+ */
+public class TestLongIntRenumberingMappingStore {
+  /** Original ids added by two loading threads, with duplicates */
+  private static final long[][] THREAD_IDS = {
+    {1000, -5, 77, 1L << 40},
+    {77, 3, 1000, 12}
+  };
+  /** Distinct original ids in increasing order */
+  private static final long[] SORTED_IDS = {-5, 3, 12, 77, 1000, 1L << 40};
+
+  /** Computation giving the types of the configuration */
+  private static class LongFloatComputation extends
+      BasicComputation<LongWritable, FloatWritable, FloatWritable,
+          FloatWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, FloatWritable, FloatWritable> vertex,
+        Iterable<FloatWritable> messages) {
+    }
+  }
+
+  private ImmutableClassesGiraphConfiguration<LongWritable, FloatWritable,
+      FloatWritable> conf;
+  private LongIntRenumberingMappingStore mappingStore;
+  private LongIntRenumberingOps mappingStoreOps;
+
+  @Before
+  public void setUp() throws InterruptedException {
+    GiraphConfiguration configuration = new GiraphConfiguration();
+    configuration.setComputationClass(LongFloatComputation.class);
+    configuration.setOutEdgesClass(ArrayListEdges.class);
+    conf = new ImmutableClassesGiraphConfiguration<>(configuration);
+    mappingStore = createMappingStore(conf);
+    mappingStoreOps = new LongIntRenumberingOps();
+    mappingStoreOps.initialize(mappingStore);
+  }
+
+  /**
+   * Create a mapping store filled with the ids of all threads.
+   *
+   * @param conf Configuration
+   * @return Mapping store
+   */
+  private static LongIntRenumberingMappingStore createMappingStore(
+      ImmutableClassesGiraphConfiguration conf) throws InterruptedException {
+    final LongIntRenumberingMappingStore store =
+        new LongIntRenumberingMappingStore();
+    store.setConf(conf);
+    store.initialize();
+    List<Thread> threads = Lists.newArrayList();
+    for (final long[] ids : THREAD_IDS) {
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          for (long id : ids) {
+            store.addEntry(new LongWritable(id), new IntWritable());
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    store.postFilling();
+    return store;
+  }
+
+  @Test
+  public void testRenumbering() {
+    assertEquals(SORTED_IDS.length, mappingStore.getNumIds());
+    assertEquals(SORTED_IDS.length, mappingStore.getStats());
+    for (int i = 0; i < SORTED_IDS.length; ++i) {
+      assertEquals(i, mappingStore.getDenseId(SORTED_IDS[i]));
+      assertEquals(SORTED_IDS[i], mappingStore.getOriginalId(i));
+      assertEquals(i, mappingStore.getTarget(
+          new LongWritable(SORTED_IDS[i]), new IntWritable()).get());
+    }
+    assertEquals(-1, mappingStore.getDenseId(4));
+    assertNull(mappingStore.getTarget(new LongWritable(4),
+        new IntWritable()));
+  }
+
+  @Test
+  public void testEmbedAndRemove() {
+    LongWritable id = new LongWritable(1000);
+    mappingStoreOps.embedTargetInfo(id);
+    assertEquals(4, id.get());
+    mappingStoreOps.removeTargetInfo(id);
+    assertEquals(1000, id.get());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testEmbedMissingId() {
+    mappingStoreOps.embedTargetInfo(new LongWritable(4));
+  }
+
+  @Test
+  public void testPartitionsInIdOrder() {
+    int previous = 0;
+    for (int i = 0; i < SORTED_IDS.length; ++i) {
+      int partition =
+          mappingStoreOps.getPartition(new LongWritable(i), 3, 2);
+      assertTrue(partition >= previous && partition < 3);
+      previous = partition;
+    }
+    assertEquals(2, previous);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testKeySpaceTooSmall() throws InterruptedException {
+    GiraphConfiguration configuration = new GiraphConfiguration();
+    configuration.setComputationClass(LongFloatComputation.class);
+    configuration.setLong(GiraphConstants.PARTITION_VERTEX_KEY_SPACE_SIZE,
+        SORTED_IDS.length - 1);
+    createMappingStore(
+        new ImmutableClassesGiraphConfiguration<>(configuration));
+  }
+
+  @Test
+  public void testRestoreVertex() {
+    OriginalIdsRestorer<LongWritable, FloatWritable, FloatWritable>
+        restorer = new OriginalIdsRestorer<>(conf, mappingStoreOps);
+    Vertex<LongWritable, FloatWritable, FloatWritable> vertex =
+        conf.createVertex();
+    OutEdges<LongWritable, FloatWritable> edges =
+        conf.createAndInitializeOutEdges(2);
+    edges.add(EdgeFactory.create(new LongWritable(0), new FloatWritable(1)));
+    edges.add(EdgeFactory.create(new LongWritable(5), new FloatWritable(2)));
+    vertex.initialize(new LongWritable(3), new FloatWritable(7), edges);
+
+    Vertex<LongWritable, FloatWritable, FloatWritable> restored =
+        restorer.restoreVertex(vertex);
+    assertEquals(77, restored.getId().get());
+    assertSame(vertex.getValue(), restored.getValue());
+    List<Long> targetIds = Lists.newArrayList();
+    for (Edge<LongWritable, FloatWritable> edge : restored.getEdges()) {
+      targetIds.add(edge.getTargetVertexId().get());
+    }
+    assertEquals(Lists.newArrayList(-5L, 1L << 40), targetIds);
+    // Stored vertex is untouched
+    assertEquals(3, vertex.getId().get());
+    assertEquals(0, vertex.getEdges().iterator().next()
+        .getTargetVertexId().get());
+
+    // Restoring another vertex doesn't change the edges handed out before
+    Vertex<LongWritable, FloatWritable, FloatWritable> other =
+        conf.createVertex();
+    other.initialize(new LongWritable(1), new FloatWritable(8),
+        conf.createAndInitializeOutEdges(0));
+    Iterable<Edge<LongWritable, FloatWritable>> restoredEdges =
+        restored.getEdges();
+    restorer.restoreVertex(other);
+    assertEquals(-5, restoredEdges.iterator().next()
+        .getTargetVertexId().get());
+  }
+
+  @Test
+  public void testRestoreEdge() {
+    OriginalIdsRestorer<LongWritable, FloatWritable, FloatWritable>
+        restorer = new OriginalIdsRestorer<>(conf, mappingStoreOps);
+    assertEquals(12, restorer.restoreSourceId(new LongWritable(2)).get());
+    Edge<LongWritable, FloatWritable> edge =
+        EdgeFactory.create(new LongWritable(1), new FloatWritable(3));
+    Edge<LongWritable, FloatWritable> restored = restorer.restoreEdge(edge);
+    assertEquals(3, restored.getTargetVertexId().get());
+    assertSame(edge.getValue(), restored.getValue());
+    assertEquals(1, edge.getTargetVertexId().get());
+  }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.master;
+
+import org.apache.giraph.aggregators.matrix.dense.DoubleDenseVector;
+import org.apache.giraph.comm.GlobalCommType;
+import org.apache.giraph.comm.MasterClient;
+import org.apache.giraph.comm.aggregators.AggregatorUtils;
+import org.apache.giraph.comm.aggregators.DeltaBroadcastValue;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.util.Progressable;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Test case for the delta broadcasts of {@link MasterAggregatorHandler}.
+ */
+public class TestMasterAggregatorHandler {
+  private static final String NAME = "vector";
+  private static final int SIZE = 100;
+
+  private ImmutableClassesGiraphConfiguration<?, ?, ?> conf;
+  private MasterAggregatorHandler handler;
+
+  @Before
+  public void setUp() {
+    GiraphConfiguration configuration = new GiraphConfiguration();
+    configuration.setBoolean(AggregatorUtils.USE_DELTA_BROADCASTS, true);
+    conf = new ImmutableClassesGiraphConfiguration<>(configuration);
+    handler = new MasterAggregatorHandler(conf, mock(Progressable.class));
+  }
+
+  private static DoubleDenseVector createVector(double first) {
+    DoubleDenseVector vector = new DoubleDenseVector(SIZE);
+    vector.set(0, first);
+    for (int i = 1; i < SIZE; ++i) {
+      vector.set(i, i);
+    }
+    return vector;
+  }
+
+  /**
+   * Broadcast a value and get what is sent for it.
+   *
+   * @param value Value to broadcast
+   * @param type Expected type of the value sent
+   * @return Value sent
+   */
+  private Writable broadcast(DoubleDenseVector value, GlobalCommType type)
+    throws IOException {
+    handler.broadcast(NAME, value);
+    MasterClient masterClient = mock(MasterClient.class);
+    handler.sendDataToOwners(masterClient);
+    ArgumentCaptor<Writable> sent = ArgumentCaptor.forClass(Writable.class);
+    verify(masterClient).sendToOwner(eq(NAME), eq(type), sent.capture());
+    return sent.getValue();
+  }
+
+  private static void assertVectorEquals(DoubleDenseVector expected,
+      Writable actual) {
+    assertTrue(actual instanceof DoubleDenseVector);
+    for (int i = 0; i < SIZE; ++i) {
+      assertEquals(expected.get(i), ((DoubleDenseVector) actual).get(i), 0);
+    }
+  }
+
+  @Test
+  public void testDeltaBroadcast() throws IOException {
+    DoubleDenseVector first = createVector(1);
+    assertVectorEquals(first, broadcast(first, GlobalCommType.BROADCAST));
+
+    DoubleDenseVector second = createVector(2);
+    Writable delta = broadcast(second, GlobalCommType.BROADCAST_DELTA);
+    assertVectorEquals(second,
+        ((DeltaBroadcastValue) delta).applyTo(first, conf));
+  }
+
+  @Test
+  public void testWholeBroadcastAfterRestart() throws IOException {
+    broadcast(createVector(1), GlobalCommType.BROADCAST);
+    byte[] checkpoint = WritableUtils.writeToByteArray(handler);
+    broadcast(createVector(2), GlobalCommType.BROADCAST_DELTA);
+
+    // Restarted workers don't have the previous value
+    WritableUtils.readFieldsFromByteArray(checkpoint, handler);
+    DoubleDenseVector third = createVector(3);
+    assertVectorEquals(third, broadcast(third, GlobalCommType.BROADCAST));
+    broadcast(createVector(4), GlobalCommType.BROADCAST_DELTA);
+  }
+
+  @Test
+  public void testWholeBroadcastAfterRestoreInNewMaster() throws IOException {
+    broadcast(createVector(1), GlobalCommType.BROADCAST);
+    byte[] checkpoint = WritableUtils.writeToByteArray(handler);
+
+    handler = new MasterAggregatorHandler(conf, mock(Progressable.class));
+    WritableUtils.readFieldsFromByteArray(checkpoint, handler);
+    broadcast(createVector(2), GlobalCommType.BROADCAST);
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.ooc;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.ooc.command.IOCommand;
+import org.apache.giraph.ooc.command.LoadPartitionIOCommand;
+import org.apache.giraph.ooc.command.WaitIOCommand;
+import org.apache.giraph.ooc.data.MetaPartitionManager;
+import org.apache.giraph.ooc.policy.OutOfCoreOracle;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test case for {@link OutOfCorePrefetcher}.
+ */
+public class TestOutOfCorePrefetcher {
+  private OutOfCoreEngine oocEngine;
+  private OutOfCoreIOScheduler ioScheduler;
+  private OutOfCorePrefetcher prefetcher;
+
+  @Before
+  public void setUp() {
+    GiraphConfiguration configuration = new GiraphConfiguration();
+    OutOfCorePrefetcher.OOC_PREFETCH_PARTITIONS.set(configuration, 2);
+    OutOfCoreIOScheduler.OOC_WAIT_INTERVAL.set(configuration, 1);
+    ImmutableClassesGiraphConfiguration<?, ?, ?> conf =
+        new ImmutableClassesGiraphConfiguration<>(configuration);
+
+    MetaPartitionManager metaPartitionManager =
+        mock(MetaPartitionManager.class);
+    when(metaPartitionManager.getPartitionIds())
+        .thenReturn(Arrays.asList(3, 1, 0, 2));
+    when(metaPartitionManager.isPartitionOnDisk(anyInt())).thenReturn(true);
+    when(metaPartitionManager.isPartitionProcessed(anyInt()))
+        .thenReturn(false);
+    when(metaPartitionManager.getOwnerThreadId(anyInt())).thenReturn(0);
+
+    OutOfCoreIOStatistics statistics = mock(OutOfCoreIOStatistics.class);
+    when(statistics.getCommandTypeStats(
+        IOCommand.IOCommandType.LOAD_PARTITION))
+        .thenReturn(new OutOfCoreIOStatistics.BytesDuration(0, 0, 0));
+
+    OutOfCoreOracle oracle = mock(OutOfCoreOracle.class);
+    when(oracle.getNextIOActions()).thenReturn(new OutOfCoreOracle.IOAction[] {
+      OutOfCoreOracle.IOAction.LOAD_PARTITION
+    });
+    when(oracle.approve(any(IOCommand.class))).thenReturn(true);
+
+    oocEngine = mock(OutOfCoreEngine.class);
+    when(oocEngine.getMetaPartitionManager()).thenReturn(metaPartitionManager);
+    when(oocEngine.getIOStatistics()).thenReturn(statistics);
+    when(oocEngine.getOracle()).thenReturn(oracle);
+    ioScheduler = new OutOfCoreIOScheduler(conf, oocEngine, 1);
+    when(oocEngine.getIOScheduler()).thenReturn(ioScheduler);
+    prefetcher = new OutOfCorePrefetcher(conf, oocEngine);
+  }
+
+  private void assertLoad(int partitionId, long superstep) {
+    IOCommand command = ioScheduler.getNextIOCommand(0);
+    assertTrue(command instanceof LoadPartitionIOCommand);
+    assertEquals(partitionId, command.getPartitionId());
+    assertEquals(superstep,
+        ((LoadPartitionIOCommand) command).getSuperstep());
+  }
+
+  @Test
+  public void testPrefetchInOrder() {
+    when(oocEngine.getSuperstep()).thenReturn(3L);
+    prefetcher.startIteration();
+    assertLoad(0, 3);
+    assertLoad(1, 3);
+    assertTrue(ioScheduler.getNextIOCommand(0) instanceof WaitIOCommand);
+
+    prefetcher.partitionHandedOut(0);
+    assertLoad(2, 3);
+  }
+
+  @Test
+  public void testPrefetchesDroppedAcrossSuperstep() {
+    when(oocEngine.getSuperstep()).thenReturn(3L);
+    prefetcher.startIteration();
+    assertLoad(0, 3);
+    // Partition 1 is still queued when the superstep is over
+
+    when(oocEngine.getSuperstep()).thenReturn(4L);
+    prefetcher.startIteration();
+    assertLoad(0, 4);
+    assertLoad(1, 4);
+    assertTrue(ioScheduler.getNextIOCommand(0) instanceof WaitIOCommand);
+  }
+
+  @Test
+  public void testStaleLoadNotExecuted() {
+    when(oocEngine.getSuperstep()).thenReturn(3L);
+    prefetcher.startIteration();
+
+    // A stale load put back in the queue is dropped by the scheduler
+    when(oocEngine.getSuperstep()).thenReturn(4L);
+    assertTrue(ioScheduler.getNextIOCommand(0) instanceof WaitIOCommand);
+    assertEquals(1, ioScheduler.removeStaleLoadCommands());
+    assertTrue(ioScheduler.getNextIOCommand(0) instanceof WaitIOCommand);
+  }
+}
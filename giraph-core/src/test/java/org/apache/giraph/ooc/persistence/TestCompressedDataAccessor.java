@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.ooc.persistence;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.ooc.persistence.DataIndex.NumericIndexEntry;
+import org.apache.giraph.ooc.persistence.OutOfCoreDataAccessor.DataInputWrapper;
+import org.apache.giraph.ooc.persistence.OutOfCoreDataAccessor.DataOutputWrapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for {@link CompressedDataAccessor}.
+ */
+public class TestCompressedDataAccessor {
+  /** Uncompressed block size, much smaller than the data written */
+  private static final int BLOCK_SIZE = 256;
+
+  private File directory;
+  private GiraphConfiguration configuration;
+
+  @Before
+  public void setUp() {
+    directory = Files.createTempDir();
+    configuration = new GiraphConfiguration();
+    GiraphConstants.PARTITIONS_DIRECTORY.set(configuration,
+        new File(directory, "giraph_partitions").toString());
+    CompressedDataAccessor.OOC_COMPRESSION_BLOCK_SIZE.set(configuration,
+        BLOCK_SIZE);
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    FileUtils.deleteDirectory(directory);
+  }
+
+  private CompressedDataAccessor createAccessor() {
+    CompressedDataAccessor accessor = new CompressedDataAccessor(
+        new ImmutableClassesGiraphConfiguration<>(configuration));
+    accessor.initialize();
+    return accessor;
+  }
+
+  private static void writeRecords(DataOutput output, int from, int to)
+      throws IOException {
+    for (int i = from; i < to; ++i) {
+      output.writeInt(i);
+      output.writeLong(i * 1000000007L);
+      output.writeDouble(i / 3.0);
+      output.writeUTF("record" + (i % 10));
+    }
+  }
+
+  private static void readRecords(DataInput input, int from, int to)
+      throws IOException {
+    for (int i = from; i < to; ++i) {
+      assertEquals(i, input.readInt());
+      assertEquals(i * 1000000007L, input.readLong());
+      assertEquals(i / 3.0, input.readDouble(), 0);
+      assertEquals("record" + (i % 10), input.readUTF());
+    }
+  }
+
+  /**
+   * Write compressible records and random bytes (which are stored
+   * uncompressed), then read them back.
+   *
+   * @param accessor Accessor to test
+   */
+  private static void testRoundTrip(CompressedDataAccessor accessor)
+      throws IOException {
+    DataIndex index = new DataIndex().addIndex(
+        NumericIndexEntry.createPartitionEntry(1));
+    byte[] randomBytes = new byte[3 * BLOCK_SIZE + 5];
+    new Random(17).nextBytes(randomBytes);
+    byte[] smallRandomBytes = new byte[BLOCK_SIZE / 2];
+    new Random(18).nextBytes(smallRandomBytes);
+
+    DataOutputWrapper outputWrapper =
+        accessor.prepareOutput(0, index.copy(), false);
+    DataOutput output = outputWrapper.getDataOutput();
+    writeRecords(output, 0, 500);
+    output.write(randomBytes);
+    output.write(smallRandomBytes);
+    writeRecords(output, 500, 1000);
+    long bytesWritten = outputWrapper.finalizeOutput();
+    assertTrue(bytesWritten > 1000 * 20);
+
+    DataInputWrapper inputWrapper = accessor.prepareInput(0, index.copy());
+    DataInput input = inputWrapper.getDataInput();
+    readRecords(input, 0, 500);
+    byte[] readBytes = new byte[randomBytes.length];
+    input.readFully(readBytes);
+    assertArrayEquals(randomBytes, readBytes);
+    readBytes = new byte[smallRandomBytes.length];
+    input.readFully(readBytes);
+    assertArrayEquals(smallRandomBytes, readBytes);
+    readRecords(input, 500, 1000);
+    assertEquals(bytesWritten, inputWrapper.finalizeInput(true));
+  }
+
+  @Test
+  public void testDefaultCodec() throws IOException {
+    // Falls back to DefaultCodec without the native Hadoop library
+    CompressedDataAccessor accessor = createAccessor();
+    testRoundTrip(accessor);
+    accessor.shutdown();
+  }
+
+  @Test
+  public void testZlibCodec() throws IOException {
+    CompressedDataAccessor.OOC_COMPRESSION_CODEC.set(configuration,
+        "org.apache.hadoop.io.compress.DefaultCodec");
+    CompressedDataAccessor accessor = createAccessor();
+    testRoundTrip(accessor);
+    accessor.shutdown();
+  }
+
+  @Test
+  public void testNoCompression() throws IOException {
+    // No block is small enough to be kept compressed
+    CompressedDataAccessor.OOC_MAX_COMPRESSION_RATIO.set(configuration, 0);
+    CompressedDataAccessor accessor = createAccessor();
+    testRoundTrip(accessor);
+    accessor.shutdown();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMissingCodec() {
+    CompressedDataAccessor.OOC_COMPRESSION_CODEC.set(configuration,
+        "org.apache.giraph.NoSuchCodec");
+    createAccessor();
+  }
+}
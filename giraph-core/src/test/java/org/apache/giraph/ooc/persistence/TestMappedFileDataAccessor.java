@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.ooc.persistence;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.ooc.persistence.DataIndex.NumericIndexEntry;
+import org.apache.giraph.ooc.persistence.OutOfCoreDataAccessor.DataInputWrapper;
+import org.apache.giraph.ooc.persistence.OutOfCoreDataAccessor.DataOutputWrapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Test case for {@link MappedFileDataAccessor}.
+ */
+public class TestMappedFileDataAccessor {
+  /** Mapped region size, much smaller than the data written */
+  private static final int REGION_SIZE = 64;
+
+  private File directory;
+  private MappedFileDataAccessor accessor;
+
+  @Before
+  public void setUp() {
+    directory = Files.createTempDir();
+    GiraphConfiguration configuration = new GiraphConfiguration();
+    GiraphConstants.PARTITIONS_DIRECTORY.set(configuration,
+        new File(directory, "giraph_partitions").toString());
+    MappedFileDataAccessor.OOC_MAPPED_REGION_SIZE.set(configuration,
+        REGION_SIZE);
+    LocalDiskDataAccessor.OOC_DISK_BUFFER_SIZE.set(configuration, 32);
+    accessor = new MappedFileDataAccessor(
+        new ImmutableClassesGiraphConfiguration<>(configuration));
+    accessor.initialize();
+  }
+
+  @After
+  public void tearDown() throws IOException {
+    accessor.shutdown();
+    FileUtils.deleteDirectory(directory);
+  }
+
+  private static byte[] createBytes(int length) {
+    byte[] bytes = new byte[length];
+    for (int i = 0; i < length; ++i) {
+      bytes[i] = (byte) (i * 7);
+    }
+    return bytes;
+  }
+
+  private static void writeRecords(DataOutput output, int from, int to)
+      throws IOException {
+    for (int i = from; i < to; ++i) {
+      output.writeInt(i);
+      output.writeLong(i * 1000000007L);
+      output.writeDouble(i / 3.0);
+      output.writeBoolean(i % 2 == 0);
+      output.writeUTF("record" + i);
+    }
+  }
+
+  private static void readRecords(DataInput input, int from, int to)
+      throws IOException {
+    for (int i = from; i < to; ++i) {
+      assertEquals(i, input.readInt());
+      assertEquals(i * 1000000007L, input.readLong());
+      assertEquals(i / 3.0, input.readDouble(), 0);
+      assertEquals(i % 2 == 0, input.readBoolean());
+      assertEquals("record" + i, input.readUTF());
+    }
+  }
+
+  @Test
+  public void testReadAcrossRegions() throws IOException {
+    DataIndex index = new DataIndex().addIndex(
+        NumericIndexEntry.createPartitionEntry(1));
+    // Records are smaller than a region, the byte arrays are larger
+    byte[] largeBytes = createBytes(10 * REGION_SIZE + 3);
+    DataOutputWrapper outputWrapper =
+        accessor.prepareOutput(0, index.copy(), false);
+    DataOutput output = outputWrapper.getDataOutput();
+    writeRecords(output, 0, 100);
+    output.writeInt(largeBytes.length);
+    output.write(largeBytes);
+    writeRecords(output, 100, 200);
+    output.write(largeBytes);
+    long bytesWritten = outputWrapper.finalizeOutput();
+
+    DataInputWrapper inputWrapper = accessor.prepareInput(0, index.copy());
+    DataInput input = inputWrapper.getDataInput();
+    readRecords(input, 0, 100);
+    byte[] readBytes = new byte[input.readInt()];
+    input.readFully(readBytes);
+    assertArrayEquals(largeBytes, readBytes);
+    readRecords(input, 100, 200);
+    input.readFully(readBytes);
+    assertArrayEquals(largeBytes, readBytes);
+    assertEquals(bytesWritten, inputWrapper.finalizeInput(true));
+  }
+
+  @Test
+  public void testAppend() throws IOException {
+    DataIndex index = new DataIndex().addIndex(
+        NumericIndexEntry.createPartitionEntry(2));
+    DataOutputWrapper outputWrapper =
+        accessor.prepareOutput(0, index.copy(), false);
+    writeRecords(outputWrapper.getDataOutput(), 0, 10);
+    long bytesWritten = outputWrapper.finalizeOutput();
+    outputWrapper = accessor.prepareOutput(0, index.copy(), true);
+    writeRecords(outputWrapper.getDataOutput(), 10, 30);
+    bytesWritten += outputWrapper.finalizeOutput();
+
+    DataInputWrapper inputWrapper = accessor.prepareInput(0, index.copy());
+    readRecords(inputWrapper.getDataInput(), 0, 30);
+    assertEquals(bytesWritten, inputWrapper.finalizeInput(true));
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadPastEnd() throws IOException {
+    DataIndex index = new DataIndex().addIndex(
+        NumericIndexEntry.createPartitionEntry(3));
+    DataOutputWrapper outputWrapper =
+        accessor.prepareOutput(0, index.copy(), false);
+    writeRecords(outputWrapper.getDataOutput(), 0, 10);
+    outputWrapper.finalizeOutput();
+
+    DataInputWrapper inputWrapper = accessor.prepareInput(0, index.copy());
+    DataInput input = inputWrapper.getDataInput();
+    try {
+      readRecords(input, 0, 10);
+      input.readFully(new byte[2 * REGION_SIZE]);
+    } finally {
+      inputWrapper.finalizeInput(true);
+    }
+  }
+}
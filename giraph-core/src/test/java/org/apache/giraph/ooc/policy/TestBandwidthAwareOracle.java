@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.ooc.policy;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.ooc.OutOfCoreEngine;
+import org.apache.giraph.ooc.OutOfCoreIOStatistics;
+import org.apache.giraph.ooc.command.IOCommand;
+import org.apache.giraph.ooc.command.LoadPartitionIOCommand;
+import org.apache.giraph.ooc.command.StorePartitionIOCommand;
+import org.apache.giraph.ooc.data.MetaPartitionManager;
+import org.apache.giraph.ooc.policy.OutOfCoreOracle.IOAction;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Test case for {@link BandwidthAwareOracle}. Memory pressure thresholds are
+ * set close to 1, so the test JVM is always under low memory pressure.
+ */
+public class TestBandwidthAwareOracle {
+  private static final int NUM_PARTITIONS = 10;
+  private static final int NUM_COMPUTE_THREADS = 3;
+  private static final long SUPERSTEP = 5;
+
+  /** Partitions prefetched ahead of compute threads */
+  private static final IOAction[] BELOW_DEPTH = {
+    IOAction.LOAD_UNPROCESSED_PARTITION,
+    IOAction.STORE_MESSAGES_AND_BUFFERS
+  };
+  /** Enough partitions prefetched, prefetch for the next superstep too */
+  private static final IOAction[] DEPTH_REACHED = {
+    IOAction.LOAD_UNPROCESSED_PARTITION,
+    IOAction.LOAD_PARTITION
+  };
+
+  private OutOfCoreEngine oocEngine;
+  private MetaPartitionManager metaPartitionManager;
+  private OutOfCoreIOStatistics.BytesDuration loadStats;
+  private BandwidthAwareOracle oracle;
+
+  @Before
+  public void setUp() {
+    GiraphConfiguration configuration = new GiraphConfiguration();
+    GiraphConstants.NUM_COMPUTE_THREADS.set(configuration,
+        NUM_COMPUTE_THREADS);
+    BandwidthAwareOracle.HIGH_MEMORY_PRESSURE.set(configuration, 0.999f);
+    BandwidthAwareOracle.OPTIMAL_MEMORY_PRESSURE.set(configuration, 0.998f);
+    BandwidthAwareOracle.LOW_MEMORY_PRESSURE.set(configuration, 0.997f);
+    ImmutableClassesGiraphConfiguration<?, ?, ?> conf =
+        new ImmutableClassesGiraphConfiguration<>(configuration);
+
+    metaPartitionManager = mock(MetaPartitionManager.class);
+    when(metaPartitionManager.getNumPartitions()).thenReturn(NUM_PARTITIONS);
+    loadStats = mock(OutOfCoreIOStatistics.BytesDuration.class);
+    OutOfCoreIOStatistics statistics = mock(OutOfCoreIOStatistics.class);
+    when(statistics.getCommandTypeStats(
+        IOCommand.IOCommandType.LOAD_PARTITION)).thenReturn(loadStats);
+
+    oocEngine = mock(OutOfCoreEngine.class);
+    when(oocEngine.getMetaPartitionManager()).thenReturn(metaPartitionManager);
+    when(oocEngine.getIOStatistics()).thenReturn(statistics);
+    when(oocEngine.getSuperstep()).thenReturn(SUPERSTEP);
+    oracle = new BandwidthAwareOracle(conf, oocEngine);
+  }
+
+  /**
+   * Set the average time it took to load a partition.
+   *
+   * @param loadTime Time to load a partition (ms), or 0 if none was loaded
+   */
+  private void setLoadTime(long loadTime) {
+    when(loadStats.getOccurrence()).thenReturn(loadTime > 0 ? 4 : 0);
+    when(loadStats.getDuration()).thenReturn(loadTime * 4);
+  }
+
+  /**
+   * Check the actions once the given number of unprocessed partitions are
+   * in memory.
+   *
+   * @param inMemory Unprocessed partitions in memory
+   * @param expected Expected actions
+   */
+  private void assertActions(int inMemory, IOAction[] expected) {
+    when(metaPartitionManager.getNumInMemoryUnprocessedPartitions())
+        .thenReturn(inMemory);
+    assertArrayEquals(expected, oracle.getNextIOActions());
+  }
+
+  @Test
+  public void testPrefetchDepthWithoutStats() {
+    // Nothing was loaded yet, so a single partition is kept ahead
+    setLoadTime(0);
+    assertActions(0, BELOW_DEPTH);
+    assertActions(1, DEPTH_REACHED);
+  }
+
+  @Test
+  public void testPrefetchDepthWithoutComputeTime() {
+    // Loads were measured but no partition was computed, so there is a
+    // partition ahead of each compute thread
+    setLoadTime(100);
+    assertActions(NUM_COMPUTE_THREADS - 1, BELOW_DEPTH);
+    assertActions(NUM_COMPUTE_THREADS, DEPTH_REACHED);
+  }
+
+  @Test
+  public void testPrefetchDepthSlowLoads() throws InterruptedException {
+    // Loading takes far longer than computing, so every partition should
+    // be prefetched
+    setLoadTime(1000000);
+    when(metaPartitionManager.getNumPartitionsProcessed()).thenReturn(1);
+    Thread.sleep(5);
+    assertActions(NUM_PARTITIONS - 1, BELOW_DEPTH);
+    assertActions(NUM_PARTITIONS, DEPTH_REACHED);
+  }
+
+  @Test
+  public void testLoadsInFlight() {
+    setLoadTime(100);
+    when(metaPartitionManager.getNumInMemoryUnprocessedPartitions())
+        .thenReturn(0);
+
+    // Loads for the next superstep wait until the current one is prefetched
+    LoadPartitionIOCommand nextLoad =
+        new LoadPartitionIOCommand(oocEngine, 9, SUPERSTEP + 1);
+    assertFalse(oracle.approve(nextLoad));
+    LoadPartitionIOCommand[] loads =
+        new LoadPartitionIOCommand[NUM_COMPUTE_THREADS];
+    for (int i = 0; i < NUM_COMPUTE_THREADS; ++i) {
+      loads[i] = new LoadPartitionIOCommand(oocEngine, i, SUPERSTEP);
+      assertTrue(oracle.approve(loads[i]));
+    }
+    // Approved loads count towards the depth until they complete
+    assertActions(0, DEPTH_REACHED);
+    assertTrue(oracle.approve(nextLoad));
+
+    oracle.commandCompleted(loads[0]);
+    assertActions(0, BELOW_DEPTH);
+    assertActions(1, DEPTH_REACHED);
+  }
+
+  @Test
+  public void testStoreOnlyProcessedPartitions() {
+    when(metaPartitionManager.isPartitionProcessed(anyInt()))
+        .thenReturn(false);
+    assertFalse(oracle.approve(new StorePartitionIOCommand(oocEngine, 1)));
+    when(metaPartitionManager.isPartitionProcessed(anyInt()))
+        .thenReturn(true);
+    assertTrue(oracle.approve(new StorePartitionIOCommand(oocEngine, 1)));
+  }
+}
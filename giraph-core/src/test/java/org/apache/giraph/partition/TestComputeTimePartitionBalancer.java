@@ -0,0 +1,231 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.partition;
+
+import org.apache.giraph.utils.WritableUtils;
+import org.apache.giraph.worker.WorkerInfo;
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for {@link ComputeTimePartitionBalancer}.
+ */
+public class TestComputeTimePartitionBalancer {
+  /** Vertices and edges of each partition, 1 ms to transfer by default */
+  private static final long PARTITION_ELEMENTS = 1000;
+
+  private Configuration conf;
+  private List<WorkerInfo> workers;
+
+  @Before
+  public void setUp() {
+    conf = new Configuration();
+    workers = Lists.newArrayList();
+    for (int i = 0; i < 3; ++i) {
+      WorkerInfo worker = new WorkerInfo();
+      worker.setTaskId(i);
+      worker.setInetSocketAddress(
+          InetSocketAddress.createUnresolved("host" + i, 30000 + i),
+          "host" + i);
+      workers.add(worker);
+    }
+  }
+
+  /**
+   * Create partition owners and their stats.
+   *
+   * @param owners Index of the worker owning each partition
+   * @param computeMs Compute time of each partition
+   * @param partitionOwners Partition owners to fill
+   * @return Stats of the partitions
+   */
+  private List<PartitionStats> createPartitions(int[] owners,
+      long[] computeMs, List<PartitionOwner> partitionOwners) {
+    List<PartitionStats> allPartitionStats = Lists.newArrayList();
+    for (int partitionId = 0; partitionId < owners.length; ++partitionId) {
+      partitionOwners.add(new BasicPartitionOwner(partitionId,
+          workers.get(owners[partitionId])));
+      PartitionStats stats = new PartitionStats(partitionId,
+          PARTITION_ELEMENTS / 2, 0, PARTITION_ELEMENTS / 2, 0, 0);
+      stats.addComputeMs(computeMs[partitionId]);
+      allPartitionStats.add(stats);
+    }
+    return allPartitionStats;
+  }
+
+  /**
+   * Get the compute time assigned to each worker.
+   *
+   * @param partitionOwners Partition owners
+   * @param computeMs Compute time of each partition
+   * @return Map from worker to its compute time
+   */
+  private static Map<WorkerInfo, Long> getLoads(
+      Collection<PartitionOwner> partitionOwners, long[] computeMs) {
+    Map<WorkerInfo, Long> loads = Maps.newHashMap();
+    for (PartitionOwner partitionOwner : partitionOwners) {
+      Long load = loads.get(partitionOwner.getWorkerInfo());
+      loads.put(partitionOwner.getWorkerInfo(),
+          (load == null ? 0 : load) +
+              computeMs[partitionOwner.getPartitionId()]);
+    }
+    return loads;
+  }
+
+  @Test
+  public void testBalanceComputeTime() {
+    int[] owners = {0, 0, 0, 0, 1, 1};
+    long[] computeMs = {100, 100, 100, 100, 10, 10};
+    List<PartitionOwner> partitionOwners = Lists.newArrayList();
+    List<PartitionStats> allPartitionStats =
+        createPartitions(owners, computeMs, partitionOwners);
+
+    Collection<PartitionOwner> balanced =
+        new ComputeTimePartitionBalancer(conf).balancePartitionsAcrossWorkers(
+            partitionOwners, allPartitionStats, workers.subList(0, 2));
+    assertEquals(owners.length, balanced.size());
+    Map<WorkerInfo, Long> loads = getLoads(balanced, computeMs);
+    assertEquals(210, (long) loads.get(workers.get(0)));
+    assertEquals(210, (long) loads.get(workers.get(1)));
+    for (PartitionOwner partitionOwner : balanced) {
+      WorkerInfo original =
+          workers.get(owners[partitionOwner.getPartitionId()]);
+      if (partitionOwner.getWorkerInfo().equals(original)) {
+        assertNull(partitionOwner.getPreviousWorkerInfo());
+      } else {
+        assertEquals(original, partitionOwner.getPreviousWorkerInfo());
+      }
+    }
+  }
+
+  @Test
+  public void testTransferTooExpensive() {
+    // Moving a partition costs more than the compute time it saves
+    conf.setLong(
+        ComputeTimePartitionBalancer.COMPUTE_BALANCE_TRANSFER_NS_PER_ELEMENT,
+        1000000);
+    int[] owners = {0, 0, 1};
+    long[] computeMs = {100, 100, 10};
+    List<PartitionOwner> partitionOwners = Lists.newArrayList();
+    List<PartitionStats> allPartitionStats =
+        createPartitions(owners, computeMs, partitionOwners);
+
+    for (PartitionOwner partitionOwner :
+        new ComputeTimePartitionBalancer(conf).balancePartitionsAcrossWorkers(
+            partitionOwners, allPartitionStats, workers.subList(0, 2))) {
+      assertEquals(workers.get(owners[partitionOwner.getPartitionId()]),
+          partitionOwner.getWorkerInfo());
+      assertNull(partitionOwner.getPreviousWorkerInfo());
+    }
+  }
+
+  @Test
+  public void testLostWorker() {
+    conf.setLong(
+        ComputeTimePartitionBalancer.COMPUTE_BALANCE_TRANSFER_NS_PER_ELEMENT,
+        1000000);
+    int[] owners = {0, 1, 2, 2};
+    long[] computeMs = {100, 100, 50, 50};
+    List<PartitionOwner> partitionOwners = Lists.newArrayList();
+    List<PartitionStats> allPartitionStats =
+        createPartitions(owners, computeMs, partitionOwners);
+
+    Collection<PartitionOwner> balanced =
+        new ComputeTimePartitionBalancer(conf).balancePartitionsAcrossWorkers(
+            partitionOwners, allPartitionStats, workers.subList(0, 2));
+    // Partitions of the lost worker move even though transfers are costly
+    Map<WorkerInfo, Long> loads = getLoads(balanced, computeMs);
+    assertEquals(2, loads.size());
+    assertEquals(150, (long) loads.get(workers.get(0)));
+    assertEquals(150, (long) loads.get(workers.get(1)));
+    for (PartitionOwner partitionOwner : balanced) {
+      if (owners[partitionOwner.getPartitionId()] == 2) {
+        assertEquals(workers.get(2), partitionOwner.getPreviousWorkerInfo());
+      }
+    }
+  }
+
+  @Test
+  public void testComputeTimeHistory() {
+    int[] owners = {0, 0, 1, 1};
+    List<PartitionOwner> partitionOwners = Lists.newArrayList();
+    ComputeTimePartitionBalancer balancer =
+        new ComputeTimePartitionBalancer(conf);
+    balancer.balancePartitionsAcrossWorkers(partitionOwners,
+        createPartitions(owners, new long[]{100, 100, 100, 100},
+            partitionOwners), workers.subList(0, 2));
+    balancer.balancePartitionsAcrossWorkers(partitionOwners,
+        createPartitions(owners, new long[]{100, 100, 100, 100},
+            Lists.<PartitionOwner>newArrayList()), workers.subList(0, 2));
+
+    // A single slow superstep of one partition is averaged out, so no
+    // move evens out the workers
+    partitionOwners.clear();
+    Collection<PartitionOwner> balanced =
+        balancer.balancePartitionsAcrossWorkers(partitionOwners,
+            createPartitions(owners, new long[]{400, 100, 100, 100},
+                partitionOwners), workers.subList(0, 2));
+    for (PartitionOwner partitionOwner : balanced) {
+      assertNull(partitionOwner.getPreviousWorkerInfo());
+    }
+
+    // Without history it would have moved
+    partitionOwners.clear();
+    balanced = new ComputeTimePartitionBalancer(conf)
+        .balancePartitionsAcrossWorkers(partitionOwners,
+            createPartitions(owners, new long[]{400, 100, 100, 100},
+                partitionOwners), workers.subList(0, 2));
+    boolean moved = false;
+    for (PartitionOwner partitionOwner : balanced) {
+      moved |= partitionOwner.getPreviousWorkerInfo() != null;
+    }
+    assertTrue(moved);
+  }
+
+  @Test
+  public void testComputeMsStats() {
+    PartitionStats stats = new PartitionStats(3, 10, 2, 20, 5, 50);
+    stats.addComputeMs(7);
+    PartitionStats other = new PartitionStats(3, 1, 1, 1, 1, 1);
+    other.addComputeMs(5);
+    stats.addPartitionStats(other);
+    assertEquals(12, stats.getComputeMs());
+
+    PartitionStats read = new PartitionStats();
+    WritableUtils.readFieldsFromByteArray(
+        WritableUtils.writeToByteArray(stats), read);
+    assertEquals(12, read.getComputeMs());
+    assertEquals(3, read.getPartitionId());
+    assertEquals(11, read.getVertexCount());
+    assertEquals(21, read.getEdgeCount());
+  }
+}
@@ -0,0 +1,228 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.partition;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.ImmutableClassesGiraphConfiguration;
+import org.apache.giraph.edge.Edge;
+import org.apache.giraph.edge.EdgeFactory;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.utils.NoOpComputation;
+import org.apache.giraph.utils.UnsafeByteArrayInputStream;
+import org.apache.giraph.utils.UnsafeByteArrayOutputStream;
+import org.apache.hadoop.io.DoubleWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for {@link LongDoubleFloatOffHeapPartition}.
+ */
+@SuppressWarnings("unchecked")
+public class TestLongDoubleFloatOffHeapPartition {
+  private ImmutableClassesGiraphConfiguration<LongWritable, DoubleWritable,
+      FloatWritable> conf;
+  private Mapper<?, ?, ?, ?>.Context context;
+
+  public static class MyComputation extends NoOpComputation<LongWritable,
+      DoubleWritable, FloatWritable, DoubleWritable> { }
+
+  @Before
+  public void setUp() {
+    GiraphConfiguration configuration = new GiraphConfiguration();
+    configuration.setComputationClass(MyComputation.class);
+    configuration.setPartitionClass(LongDoubleFloatOffHeapPartition.class);
+    conf = new ImmutableClassesGiraphConfiguration<>(configuration);
+    context = Mockito.mock(Mapper.Context.class);
+  }
+
+  private Vertex<LongWritable, DoubleWritable, FloatWritable> createVertex(
+      long id, int numEdges) {
+    Vertex<LongWritable, DoubleWritable, FloatWritable> vertex =
+        conf.createVertex();
+    vertex.initialize(new LongWritable(id), new DoubleWritable(id * 1.5),
+        conf.createOutEdges());
+    for (int i = 0; i < numEdges; ++i) {
+      vertex.addEdge(EdgeFactory.create(new LongWritable(id * 100000 + i),
+          new FloatWritable(i + 0.25f)));
+    }
+    return vertex;
+  }
+
+  private void checkVertex(
+      Partition<LongWritable, DoubleWritable, FloatWritable> partition,
+      long id, int numEdges, boolean halted) {
+    Vertex<LongWritable, DoubleWritable, FloatWritable> vertex =
+        partition.getVertex(new LongWritable(id));
+    assertEquals(id, vertex.getId().get());
+    assertEquals(id * 1.5, vertex.getValue().get(), 0);
+    assertEquals(halted, vertex.isHalted());
+    assertEquals(numEdges, vertex.getNumEdges());
+    int i = 0;
+    for (Edge<LongWritable, FloatWritable> edge : vertex.getEdges()) {
+      assertEquals(id * 100000 + i, edge.getTargetVertexId().get());
+      assertEquals(i + 0.25f, edge.getValue().get(), 0);
+      ++i;
+    }
+    assertEquals(numEdges, i);
+  }
+
+  @Test
+  public void testEdgeGrowth() {
+    Partition<LongWritable, DoubleWritable, FloatWritable> partition =
+        conf.createPartition(1, context);
+    for (long id = 0; id < 100; ++id) {
+      partition.putVertex(createVertex(id, 10));
+    }
+    // Grow every vertex past the space it had, one at a time
+    for (int numEdges = 11; numEdges <= 40; ++numEdges) {
+      for (long id = 0; id < 100; ++id) {
+        partition.saveVertex(createVertex(id, numEdges));
+      }
+    }
+    assertEquals(100, partition.getVertexCount());
+    assertEquals(100 * 40, partition.getEdgeCount());
+    for (long id = 0; id < 100; ++id) {
+      checkVertex(partition, id, 40, false);
+    }
+
+    // Shrinking keeps the edges in place
+    partition.saveVertex(createVertex(7, 3));
+    checkVertex(partition, 7, 3, false);
+    assertEquals(99 * 40 + 3, partition.getEdgeCount());
+  }
+
+  @Test
+  public void testCompactionWhileGrowingLargeVertex() {
+    Partition<LongWritable, DoubleWritable, FloatWritable> partition =
+        conf.createPartition(1, context);
+    partition.putVertex(createVertex(0, 5000));
+    for (long id = 1; id <= 10; ++id) {
+      partition.putVertex(createVertex(id, 100));
+    }
+    // Most of the edge buffer becomes unused, so it is compacted while
+    // making room for the grown vertex
+    partition.saveVertex(createVertex(0, 5001));
+    checkVertex(partition, 0, 5001, false);
+    for (long id = 1; id <= 10; ++id) {
+      checkVertex(partition, id, 100, false);
+    }
+    assertEquals(5001 + 10 * 100, partition.getEdgeCount());
+
+    // And again, with the space of the previous edges already dropped
+    partition.saveVertex(createVertex(0, 12000));
+    checkVertex(partition, 0, 12000, false);
+    for (long id = 1; id <= 10; ++id) {
+      checkVertex(partition, id, 100, false);
+    }
+    assertEquals(12000 + 10 * 100, partition.getEdgeCount());
+  }
+
+  @Test
+  public void testCompactionAfterRemovals() {
+    Partition<LongWritable, DoubleWritable, FloatWritable> partition =
+        conf.createPartition(1, context);
+    for (long id = 0; id < 1000; ++id) {
+      partition.putVertex(createVertex(id, 20));
+    }
+    for (long id = 0; id < 1000; ++id) {
+      if (id % 10 != 0) {
+        assertEquals(id, partition.removeVertex(new LongWritable(id)).getId()
+            .get());
+      }
+    }
+    assertNull(partition.removeVertex(new LongWritable(1)));
+    // Removed vertices leave most edges unused, the next move compacts them
+    partition.saveVertex(createVertex(0, 30));
+    // Freed slots are reused
+    partition.putVertex(createVertex(5, 7));
+    assertEquals(101, partition.getVertexCount());
+    assertEquals(99 * 20 + 30 + 7, partition.getEdgeCount());
+    checkVertex(partition, 0, 30, false);
+    checkVertex(partition, 5, 7, false);
+    for (long id = 10; id < 1000; id += 10) {
+      checkVertex(partition, id, 20, false);
+    }
+    assertNull(partition.getVertex(new LongWritable(1)));
+  }
+
+  @Test
+  public void testWriteReadFields() throws IOException {
+    Partition<LongWritable, DoubleWritable, FloatWritable> partition =
+        conf.createPartition(3, context);
+    for (long id = 0; id < 50; ++id) {
+      Vertex<LongWritable, DoubleWritable, FloatWritable> vertex =
+          createVertex(id, (int) id);
+      if (id % 3 == 0) {
+        vertex.voteToHalt();
+      }
+      partition.putVertex(vertex);
+    }
+    partition.removeVertex(new LongWritable(10));
+    partition.saveVertex(createVertex(20, 60));
+
+    UnsafeByteArrayOutputStream outputStream =
+        new UnsafeByteArrayOutputStream();
+    partition.write(outputStream);
+
+    // Read into a partition holding other vertices, reusing its buffers
+    Partition<LongWritable, DoubleWritable, FloatWritable> readPartition =
+        conf.createPartition(-1, context);
+    for (long id = 100; id < 200; ++id) {
+      readPartition.putVertex(createVertex(id, 50));
+    }
+    readPartition.readFields(new UnsafeByteArrayInputStream(
+        outputStream.getByteArray(), 0, outputStream.getPos()));
+
+    assertEquals(3, readPartition.getId());
+    assertEquals(49, readPartition.getVertexCount());
+    assertEquals(partition.getEdgeCount(), readPartition.getEdgeCount());
+    assertNull(readPartition.getVertex(new LongWritable(10)));
+    assertNull(readPartition.getVertex(new LongWritable(150)));
+    for (long id = 0; id < 50; ++id) {
+      if (id == 10) {
+        continue;
+      }
+      checkVertex(readPartition, id, id == 20 ? 60 : (int) id,
+          id % 3 == 0 && id != 20);
+    }
+    int numVertices = 0;
+    for (Vertex<LongWritable, DoubleWritable, FloatWritable> vertex :
+        readPartition) {
+      assertFalse(vertex.getId().get() == 10);
+      assertTrue(vertex.getId().get() < 50);
+      ++numVertices;
+    }
+    assertEquals(49, numVertices);
+
+    // The read partition keeps working after growing its edges
+    readPartition.saveVertex(createVertex(49, 500));
+    checkVertex(readPartition, 49, 500, false);
+  }
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.worker;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.edge.ByteArrayEdges;
+import org.apache.giraph.graph.BasicComputation;
+import org.apache.giraph.graph.Vertex;
+import org.apache.giraph.utils.CheckpointingUtils;
+import org.apache.giraph.utils.FileUtils;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.apache.giraph.utils.TestGraph;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Maps;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for checkpoints written in the background: restarting from one
+ * gives the same results as running without interruption.
+ */
+public class TestAsyncCheckpoints {
+  private static final int NUM_VERTICES = 100;
+  private static final long LAST_SUPERSTEP = 7;
+  private static final long RESTART_SUPERSTEP = 4;
+  private static final String JOB_ID = "async_checkpoints_job";
+
+  private File tmpDir;
+  private String checkpointsDir;
+
+  /**
+   * Mixes messages into the vertex values, so any vertex or message
+   * missing from a checkpoint changes the results.
+   */
+  public static class MixingComputation extends
+      BasicComputation<LongWritable, LongWritable, NullWritable,
+          LongWritable> {
+    @Override
+    public void compute(
+        Vertex<LongWritable, LongWritable, NullWritable> vertex,
+        Iterable<LongWritable> messages) {
+      long value = vertex.getValue().get() * 31 + getSuperstep();
+      for (LongWritable message : messages) {
+        value += message.get();
+      }
+      vertex.getValue().set(value % 1000003);
+      if (getSuperstep() < LAST_SUPERSTEP) {
+        sendMessageToAllEdges(vertex, vertex.getValue());
+      } else {
+        vertex.voteToHalt();
+      }
+    }
+  }
+
+  @Before
+  public void setUp() throws IOException {
+    tmpDir = FileUtils.createTestDir(getClass().getSimpleName());
+    checkpointsDir = new File(tmpDir, "_checkpoints").toString();
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.delete(tmpDir);
+  }
+
+  /**
+   * Create the configuration of a run.
+   *
+   * @param async Whether to write checkpoints in the background
+   * @param incremental Whether to checkpoint only changed partitions
+   * @return Configuration
+   */
+  private static GiraphConfiguration createConf(boolean async,
+      boolean incremental) {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(MixingComputation.class);
+    conf.setOutEdgesClass(ByteArrayEdges.class);
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, 8);
+    GiraphConstants.ASYNC_CHECKPOINTS.set(conf, async);
+    GiraphConstants.INCREMENTAL_CHECKPOINTS.set(conf, incremental);
+    GiraphConstants.CLEANUP_CHECKPOINTS_AFTER_SUCCESS.set(conf, false);
+    conf.setCheckpointFrequency(2);
+    return conf;
+  }
+
+  static TestGraph<LongWritable, LongWritable, NullWritable>
+  createGraph(GiraphConfiguration conf) {
+    TestGraph<LongWritable, LongWritable, NullWritable> graph =
+        new TestGraph<>(conf);
+    for (long id = 0; id < NUM_VERTICES; ++id) {
+      graph.addVertex(new LongWritable(id), new LongWritable(id));
+      graph.addEdge(new LongWritable(id),
+          new LongWritable((id + 1) % NUM_VERTICES), NullWritable.get());
+      graph.addEdge(new LongWritable(id),
+          new LongWritable(id * 7 % NUM_VERTICES), NullWritable.get());
+    }
+    return graph;
+  }
+
+  static Map<Long, Long> toMap(
+      TestGraph<LongWritable, LongWritable, NullWritable> graph) {
+    Map<Long, Long> values = Maps.newHashMap();
+    for (Vertex<LongWritable, LongWritable, NullWritable> vertex : graph) {
+      values.put(vertex.getId().get(), vertex.getValue().get());
+    }
+    return values;
+  }
+
+  /**
+   * Run the job from the start writing checkpoints, then restart it from
+   * one of them, and check both runs give the same results.
+   *
+   * @param async Whether to write checkpoints in the background
+   * @param incremental Whether to checkpoint only changed partitions
+   */
+  private void testRestart(boolean async, boolean incremental)
+    throws Exception {
+    GiraphConfiguration conf = createConf(async, incremental);
+    conf.set("mapred.job.id", JOB_ID);
+    Map<Long, Long> expected = toMap(InternalVertexRunner
+        .runWithInMemoryOutput(conf, createGraph(conf),
+            FileUtils.createTempDir(tmpDir, "original"), checkpointsDir));
+    assertEquals(NUM_VERTICES, expected.size());
+    String[] checkpointFiles = new File(checkpointsDir).list();
+    assertTrue(checkpointFiles != null &&
+        Arrays.asList(checkpointFiles).contains(RESTART_SUPERSTEP +
+            CheckpointingUtils.CHECKPOINT_FINALIZED_POSTFIX));
+
+    GiraphConfiguration restartConf = createConf(async, incremental);
+    restartConf.set("mapred.job.id", JOB_ID + "_restarted");
+    GiraphConstants.RESTART_JOB_ID.set(restartConf, JOB_ID);
+    restartConf.setLong(GiraphConstants.RESTART_SUPERSTEP,
+        RESTART_SUPERSTEP);
+    Map<Long, Long> restarted = toMap(InternalVertexRunner
+        .runWithInMemoryOutput(restartConf, createGraph(restartConf),
+            FileUtils.createTempDir(tmpDir, "restarted"), checkpointsDir));
+    assertEquals(expected, restarted);
+  }
+
+  @Test
+  public void testSyncCheckpoints() throws Exception {
+    testRestart(false, false);
+  }
+
+  @Test
+  public void testAsyncCheckpoints() throws Exception {
+    testRestart(true, false);
+  }
+
+  @Test
+  public void testAsyncIncrementalCheckpoints() throws Exception {
+    testRestart(true, true);
+  }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.worker;
+
+import org.apache.giraph.conf.GiraphConfiguration;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.edge.ByteArrayEdges;
+import org.apache.giraph.utils.CheckpointingUtils;
+import org.apache.giraph.utils.FileUtils;
+import org.apache.giraph.utils.InternalVertexRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test case for checkpoints written to a local directory and uploaded in
+ * the background: restarting from the uploaded checkpoints gives the same
+ * results with or without the local copy.
+ */
+public class TestLocalCheckpoints {
+  private static final String JOB_ID = "local_checkpoints_job";
+
+  private File tmpDir;
+  private String checkpointsDir;
+  private String localCheckpointsDir;
+  /** Results of the job run without interruption */
+  private Map<Long, Long> expected;
+  /** Superstep of the local copy kept by the job */
+  private long localSuperstep;
+
+  /**
+   * Create the configuration of a run.
+   *
+   * @param jobId Job id
+   * @return Configuration
+   */
+  private GiraphConfiguration createConf(String jobId) {
+    GiraphConfiguration conf = new GiraphConfiguration();
+    conf.setComputationClass(TestAsyncCheckpoints.MixingComputation.class);
+    conf.setOutEdgesClass(ByteArrayEdges.class);
+    GiraphConstants.USER_PARTITION_COUNT.set(conf, 8);
+    GiraphConstants.LOCAL_CHECKPOINT_DIRECTORY.set(conf, localCheckpointsDir);
+    GiraphConstants.CLEANUP_CHECKPOINTS_AFTER_SUCCESS.set(conf, false);
+    conf.setCheckpointFrequency(2);
+    conf.set("mapred.job.id", jobId);
+    return conf;
+  }
+
+  /**
+   * Run the job from a checkpoint of the first run.
+   *
+   * @param restartSuperstep Superstep to restart from
+   * @param name Name of the run
+   * @return Results
+   */
+  private Map<Long, Long> restart(long restartSuperstep, String name)
+    throws Exception {
+    GiraphConfiguration conf = createConf(JOB_ID + "_" + name);
+    GiraphConstants.RESTART_JOB_ID.set(conf, JOB_ID);
+    conf.setLong(GiraphConstants.RESTART_SUPERSTEP, restartSuperstep);
+    return TestAsyncCheckpoints.toMap(
+        InternalVertexRunner.runWithInMemoryOutput(conf,
+            TestAsyncCheckpoints.createGraph(conf),
+            FileUtils.createTempDir(tmpDir, name), checkpointsDir));
+  }
+
+  /**
+   * Get the local checkpoint files the first run kept, without checksum
+   * files.
+   *
+   * @return Local checkpoint files
+   */
+  private List<File> getLocalFiles() {
+    List<File> files = Lists.newArrayList();
+    File[] allFiles = new File(localCheckpointsDir, JOB_ID).listFiles();
+    if (allFiles != null) {
+      for (File file : allFiles) {
+        if (!file.getName().startsWith(".")) {
+          files.add(file);
+        }
+      }
+    }
+    assertTrue(!files.isEmpty());
+    return files;
+  }
+
+  @Before
+  public void setUp() throws Exception {
+    tmpDir = FileUtils.createTestDir(getClass().getSimpleName());
+    checkpointsDir = new File(tmpDir, "_checkpoints").toString();
+    localCheckpointsDir = new File(tmpDir, "_local").toString();
+
+    GiraphConfiguration conf = createConf(JOB_ID);
+    expected = TestAsyncCheckpoints.toMap(
+        InternalVertexRunner.runWithInMemoryOutput(conf,
+            TestAsyncCheckpoints.createGraph(conf),
+            FileUtils.createTempDir(tmpDir, "original"), checkpointsDir));
+
+    // Only the local copy of the last uploaded checkpoint is kept
+    Set<Long> localSupersteps = Sets.newHashSet();
+    for (File file : getLocalFiles()) {
+      String name = file.getName();
+      localSupersteps.add(
+          Long.parseLong(name.substring(0, name.indexOf('.'))));
+    }
+    assertEquals(1, localSupersteps.size());
+    localSuperstep = localSupersteps.iterator().next();
+    assertTrue(localSuperstep > 2);
+
+    // All checkpoints were uploaded
+    for (long superstep = 2; superstep <= localSuperstep; superstep += 2) {
+      assertTrue(new File(checkpointsDir, superstep +
+          CheckpointingUtils.CHECKPOINT_FINALIZED_POSTFIX).exists());
+    }
+  }
+
+  @After
+  public void tearDown() {
+    FileUtils.delete(tmpDir);
+  }
+
+  @Test
+  public void testRestartFromLocalCopy() throws Exception {
+    assertEquals(expected, restart(localSuperstep, "local"));
+  }
+
+  @Test
+  public void testRestartWithoutLocalCopy() throws Exception {
+    assertEquals(expected, restart(2, "uploaded"));
+  }
+
+  @Test
+  public void testRestartWithStaleLocalCopy() throws Exception {
+    // Files left by a failed attempt don't match the uploaded ones
+    for (File file : getLocalFiles()) {
+      FileOutputStream out = new FileOutputStream(file);
+      try {
+        out.write(0);
+      } finally {
+        out.close();
+      }
+    }
+    assertEquals(expected, restart(localSuperstep, "stale"));
+  }
+}
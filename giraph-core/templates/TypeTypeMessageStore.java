@@ -0,0 +1,316 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages.primitives;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.${type1.lower}s.${type1.camel}2${type2.camel}Map;
+import it.unimi.dsi.fastutil.${type1.lower}s.${type1.camel}2${type2.camel}OpenHashMap;
+import it.unimi.dsi.fastutil.${type1.lower}s.${type1.camel}Iterator;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.giraph.combiner.MessageCombiner;
+import org.apache.giraph.comm.messages.MessageStore;
+import org.apache.giraph.comm.messages.PartitionSplitInfo;
+import org.apache.giraph.conf.GiraphConstants;
+import org.apache.giraph.utils.EmptyIterable;
+import org.apache.giraph.utils.VertexIdMessageIterator;
+import org.apache.giraph.utils.VertexIdMessages;
+import org.apache.hadoop.io.${type1.camel}Writable;
+<#if type1.camel != type2.camel>
+import org.apache.hadoop.io.${type2.camel}Writable;
+</#if>
+
+import com.google.common.collect.Lists;
+
+${generated_message}
+
+/**
+ * Special message store to be used when ids are ${type1.camel}Writable and
+ * messages are ${type2.camel}Writable and messageCombiner is used.
+ * Uses fastutil primitive maps in order to decrease number of objects and
+ * get better performance.
+ */
+public class ${type1.camel}${type2.camel}MessageStore
+    implements MessageStore<${type1.camel}Writable, ${type2.camel}Writable> {
+  /** Map from partition id to map from vertex id to message */
+  private final
+  Int2ObjectOpenHashMap<${type1.camel}2${type2.camel}OpenHashMap> map;
+  /** Message messageCombiner */
+  private final MessageCombiner<? super ${type1.camel}Writable,
+      ${type2.camel}Writable> messageCombiner;
+  /** Partition split info */
+  private final PartitionSplitInfo<${type1.camel}Writable> partitionInfo;
+  /** Whether to combine each batch of messages before storing it */
+  private final boolean preCombine;
+  /** Per-thread map to combine a batch of messages in */
+  private final
+  ThreadLocal<${type1.camel}2${type2.camel}OpenHashMap> batchMaps =
+      new ThreadLocal<${type1.camel}2${type2.camel}OpenHashMap>() {
+        @Override
+        protected ${type1.camel}2${type2.camel}OpenHashMap initialValue() {
+          return new ${type1.camel}2${type2.camel}OpenHashMap();
+        }
+      };
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   * @param messageCombiner Message messageCombiner
+   */
+  public ${type1.camel}${type2.camel}MessageStore(
+    PartitionSplitInfo<${type1.camel}Writable> partitionInfo,
+    MessageCombiner<? super ${type1.camel}Writable,
+        ${type2.camel}Writable> messageCombiner
+  ) {
+    this(partitionInfo, messageCombiner,
+        GiraphConstants.PRE_COMBINE_PARTITION_MESSAGES.getDefaultValue());
+  }
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   * @param messageCombiner Message messageCombiner
+   * @param preCombine Whether to combine each batch of messages in a
+   *                   thread-local map before storing it
+   */
+  public ${type1.camel}${type2.camel}MessageStore(
+    PartitionSplitInfo<${type1.camel}Writable> partitionInfo,
+    MessageCombiner<? super ${type1.camel}Writable,
+        ${type2.camel}Writable> messageCombiner,
+    boolean preCombine
+  ) {
+    this.partitionInfo = partitionInfo;
+    this.messageCombiner = messageCombiner;
+    this.preCombine = preCombine;
+
+    map = new Int2ObjectOpenHashMap<${type1.camel}2${type2.camel}OpenHashMap>();
+    for (int partitionId : partitionInfo.getPartitionIds()) {
+      ${type1.camel}2${type2.camel}OpenHashMap partitionMap =
+          new ${type1.camel}2${type2.camel}OpenHashMap(
+              (int) partitionInfo.getPartitionVertexCount(partitionId));
+      map.put(partitionId, partitionMap);
+    }
+  }
+
+  @Override
+  public boolean isPointerListEncoding() {
+    return false;
+  }
+
+  /**
+   * Get map which holds messages for partition which vertex belongs to.
+   *
+   * @param vertexId Id of the vertex
+   * @return Map which holds messages for partition which vertex belongs to.
+   */
+  private ${type1.camel}2${type2.camel}OpenHashMap getPartitionMap(
+      ${type1.camel}Writable vertexId) {
+    return map.get(partitionInfo.getPartitionId(vertexId));
+  }
+
+  /**
+   * Combine a message into the messages held in a map.
+   *
+   * @param messageMap Map from vertex id to message
+   * @param vertexId Target vertex id
+   * @param message Message to combine
+   * @param reusableVertexId Reusable vertex id object
+   * @param reusableMessage Reusable message object
+   * @param reusableCurrentMessage Reusable message object
+   */
+  private void combine(${type1.camel}2${type2.camel}OpenHashMap messageMap,
+      ${type1.lower} vertexId, ${type2.lower} message,
+      ${type1.camel}Writable reusableVertexId,
+      ${type2.camel}Writable reusableMessage,
+      ${type2.camel}Writable reusableCurrentMessage) {
+    if (messageMap.containsKey(vertexId)) {
+      reusableVertexId.set(vertexId);
+      reusableMessage.set(message);
+      reusableCurrentMessage.set(messageMap.get(vertexId));
+      messageCombiner.combine(reusableVertexId, reusableCurrentMessage,
+          reusableMessage);
+      message = reusableCurrentMessage.get();
+    }
+    // FIXME: messageCombiner should create an initial message instead
+    messageMap.put(vertexId, message);
+  }
+
+  @Override
+  public void addPartitionMessages(int partitionId,
+      VertexIdMessages<${type1.camel}Writable,
+          ${type2.camel}Writable> messages) {
+    ${type1.camel}Writable reusableVertexId = new ${type1.camel}Writable();
+    ${type2.camel}Writable reusableMessage = new ${type2.camel}Writable();
+    ${type2.camel}Writable reusableCurrentMessage =
+        new ${type2.camel}Writable();
+
+    ${type1.camel}2${type2.camel}OpenHashMap partitionMap =
+        map.get(partitionId);
+    VertexIdMessageIterator<${type1.camel}Writable,
+        ${type2.camel}Writable> iterator =
+        messages.getVertexIdMessageIterator();
+    if (!preCombine) {
+      synchronized (partitionMap) {
+        while (iterator.hasNext()) {
+          iterator.next();
+          combine(partitionMap, iterator.getCurrentVertexId().get(),
+              iterator.getCurrentMessage().get(), reusableVertexId,
+              reusableMessage, reusableCurrentMessage);
+        }
+      }
+      return;
+    }
+
+    // Combine the batch outside of the lock, so the partition map is only
+    // hashed into and locked once per target vertex
+    ${type1.camel}2${type2.camel}OpenHashMap batchMap = batchMaps.get();
+    while (iterator.hasNext()) {
+      iterator.next();
+      combine(batchMap, iterator.getCurrentVertexId().get(),
+          iterator.getCurrentMessage().get(), reusableVertexId,
+          reusableMessage, reusableCurrentMessage);
+    }
+    ObjectIterator<${type1.camel}2${type2.camel}Map.Entry> batchIterator =
+        batchMap.${type1.lower}2${type2.camel}EntrySet().fastIterator();
+    synchronized (partitionMap) {
+      while (batchIterator.hasNext()) {
+        ${type1.camel}2${type2.camel}Map.Entry entry = batchIterator.next();
+        combine(partitionMap, entry.get${type1.camel}Key(),
+            entry.get${type2.camel}Value(), reusableVertexId, reusableMessage,
+            reusableCurrentMessage);
+      }
+    }
+    int batchSize = batchMap.size();
+    batchMap.clear();
+    batchMap.trim(batchSize);
+  }
+
+  @Override
+  public void addMessage(
+    ${type1.camel}Writable vertexId,
+    ${type2.camel}Writable message
+  ) throws IOException {
+    ${type1.camel}2${type2.camel}OpenHashMap partitionMap =
+        getPartitionMap(vertexId);
+    synchronized (partitionMap) {
+      ${type2.lower} originalValue = partitionMap.get(vertexId.get());
+      ${type2.camel}Writable originalMessage =
+          new ${type2.camel}Writable(originalValue);
+      messageCombiner.combine(vertexId, originalMessage, message);
+      partitionMap.put(vertexId.get(), originalMessage.get());
+    }
+  }
+
+  @Override
+  public void finalizeStore() {
+  }
+
+  @Override
+  public void clearPartition(int partitionId) {
+    map.get(partitionId).clear();
+  }
+
+  @Override
+  public boolean hasMessagesForVertex(${type1.camel}Writable vertexId) {
+    return getPartitionMap(vertexId).containsKey(vertexId.get());
+  }
+
+  @Override
+  public boolean hasMessagesForPartition(int partitionId) {
+    ${type1.camel}2${type2.camel}OpenHashMap partitionMessages =
+        map.get(partitionId);
+    return partitionMessages != null && !partitionMessages.isEmpty();
+  }
+
+  @Override
+  public Iterable<${type2.camel}Writable> getVertexMessages(
+      ${type1.camel}Writable vertexId) {
+    ${type1.camel}2${type2.camel}OpenHashMap partitionMap =
+        getPartitionMap(vertexId);
+    if (!partitionMap.containsKey(vertexId.get())) {
+      return EmptyIterable.get();
+    } else {
+      return Collections.singleton(
+          new ${type2.camel}Writable(partitionMap.get(vertexId.get())));
+    }
+  }
+
+  @Override
+  public void clearVertexMessages(${type1.camel}Writable vertexId) {
+    getPartitionMap(vertexId).remove(vertexId.get());
+  }
+
+  @Override
+  public void clearAll() {
+    map.clear();
+  }
+
+  @Override
+  public Iterable<${type1.camel}Writable> getPartitionDestinationVertices(
+      int partitionId) {
+    ${type1.camel}2${type2.camel}OpenHashMap partitionMap =
+        map.get(partitionId);
+    List<${type1.camel}Writable> vertices =
+        Lists.newArrayListWithCapacity(partitionMap.size());
+    ${type1.camel}Iterator iterator = partitionMap.keySet().iterator();
+    while (iterator.hasNext()) {
+      vertices.add(new ${type1.camel}Writable(iterator.next${type1.camel}()));
+    }
+    return vertices;
+  }
+
+  @Override
+  public void writePartition(DataOutput out,
+      int partitionId) throws IOException {
+    ${type1.camel}2${type2.camel}OpenHashMap partitionMap =
+        map.get(partitionId);
+    out.writeInt(partitionMap.size());
+    ObjectIterator<${type1.camel}2${type2.camel}Map.Entry> iterator =
+        partitionMap.${type1.lower}2${type2.camel}EntrySet().fastIterator();
+    while (iterator.hasNext()) {
+      ${type1.camel}2${type2.camel}Map.Entry entry = iterator.next();
+      out.write${type1.camel}(entry.get${type1.camel}Key());
+      out.write${type2.camel}(entry.get${type2.camel}Value());
+    }
+  }
+
+  @Override
+  public void readFieldsForPartition(DataInput in,
+      int partitionId) throws IOException {
+    int size = in.readInt();
+    ${type1.camel}2${type2.camel}OpenHashMap partitionMap =
+        new ${type1.camel}2${type2.camel}OpenHashMap(size);
+    while (size-- > 0) {
+      ${type1.lower} vertexId = in.read${type1.camel}();
+      ${type2.lower} message = in.read${type2.camel}();
+      partitionMap.put(vertexId, message);
+    }
+    synchronized (map) {
+      map.put(partitionId, partitionMap);
+    }
+  }
+}
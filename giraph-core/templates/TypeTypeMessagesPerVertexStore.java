@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.giraph.comm.messages.primitives;
+
+import it.unimi.dsi.fastutil.ints.Int2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.${type1.lower}s.${type1.camel}2ObjectMap;
+import it.unimi.dsi.fastutil.${type1.lower}s.${type1.camel}2ObjectOpenHashMap;
+import it.unimi.dsi.fastutil.${type1.lower}s.${type1.camel}Iterator;
+import it.unimi.dsi.fastutil.objects.ObjectIterator;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.giraph.comm.messages.MessageStore;
+import org.apache.giraph.comm.messages.PartitionSplitInfo;
+import org.apache.giraph.types.ops.collections.array.W${type2.camel}ArrayList;
+import org.apache.giraph.utils.EmptyIterable;
+import org.apache.giraph.utils.VertexIdMessageIterator;
+import org.apache.giraph.utils.VertexIdMessages;
+import org.apache.hadoop.io.${type1.camel}Writable;
+<#if type1.camel != type2.camel>
+import org.apache.hadoop.io.${type2.camel}Writable;
+</#if>
+
+import com.google.common.collect.Lists;
+
+${generated_message}
+
+/**
+ * Special message store to be used when ids are ${type1.camel}Writable and
+ * messages are ${type2.camel}Writable and no messageCombiner is used.
+ * Messages of each vertex are kept in a primitive array list, so storing
+ * and iterating over them needs neither message objects nor serialization.
+ */
+public class ${type1.camel}${type2.camel}MessagesPerVertexStore
+    implements MessageStore<${type1.camel}Writable, ${type2.camel}Writable> {
+  /** Map from partition id to map from vertex id to messages */
+  private final Int2ObjectOpenHashMap<
+      ${type1.camel}2ObjectOpenHashMap<W${type2.camel}ArrayList>> map;
+  /** Partition split info */
+  private final PartitionSplitInfo<${type1.camel}Writable> partitionInfo;
+
+  /**
+   * Constructor
+   *
+   * @param partitionInfo Partition split info
+   */
+  public ${type1.camel}${type2.camel}MessagesPerVertexStore(
+    PartitionSplitInfo<${type1.camel}Writable> partitionInfo
+  ) {
+    this.partitionInfo = partitionInfo;
+
+    map = new Int2ObjectOpenHashMap<>();
+    for (int partitionId : partitionInfo.getPartitionIds()) {
+      ${type1.camel}2ObjectOpenHashMap<W${type2.camel}ArrayList> partitionMap =
+          new ${type1.camel}2ObjectOpenHashMap<>(
+              (int) partitionInfo.getPartitionVertexCount(partitionId));
+      map.put(partitionId, partitionMap);
+    }
+  }
+
+  @Override
+  public boolean isPointerListEncoding() {
+    return false;
+  }
+
+  /**
+   * Get map which holds messages for partition which vertex belongs to.
+   *
+   * @param vertexId Id of the vertex
+   * @return Map which holds messages for partition which vertex belongs to.
+   */
+  private ${type1.camel}2ObjectOpenHashMap<W${type2.camel}ArrayList>
+  getPartitionMap(${type1.camel}Writable vertexId) {
+    return map.get(partitionInfo.getPartitionId(vertexId));
+  }
+
+  /**
+   * Add a message to the messages of a vertex.
+   *
+   * @param partitionMap Map from vertex id to messages
+   * @param vertexId Target vertex id
+   * @param message Message to add
+   */
+  private static void addMessage(
+      ${type1.camel}2ObjectOpenHashMap<W${type2.camel}ArrayList> partitionMap,
+      ${type1.lower} vertexId, ${type2.lower} message) {
+    W${type2.camel}ArrayList messages = partitionMap.get(vertexId);
+    if (messages == null) {
+      messages = new W${type2.camel}ArrayList(2);
+      partitionMap.put(vertexId, messages);
+    }
+    messages.add(message);
+  }
+
+  @Override
+  public void addPartitionMessages(int partitionId,
+      VertexIdMessages<${type1.camel}Writable,
+          ${type2.camel}Writable> messages) {
+    ${type1.camel}2ObjectOpenHashMap<W${type2.camel}ArrayList> partitionMap =
+        map.get(partitionId);
+    VertexIdMessageIterator<${type1.camel}Writable,
+        ${type2.camel}Writable> iterator =
+        messages.getVertexIdMessageIterator();
+    synchronized (partitionMap) {
+      while (iterator.hasNext()) {
+        iterator.next();
+        addMessage(partitionMap, iterator.getCurrentVertexId().get(),
+            iterator.getCurrentMessage().get());
+      }
+    }
+  }
+
+  @Override
+  public void addMessage(
+    ${type1.camel}Writable vertexId,
+    ${type2.camel}Writable message
+  ) throws IOException {
+    ${type1.camel}2ObjectOpenHashMap<W${type2.camel}ArrayList> partitionMap =
+        getPartitionMap(vertexId);
+    synchronized (partitionMap) {
+      addMessage(partitionMap, vertexId.get(), message.get());
+    }
+  }
+
+  @Override
+  public void finalizeStore() {
+  }
+
+  @Override
+  public void clearPartition(int partitionId) {
+    map.get(partitionId).clear();
+  }
+
+  @Override
+  public boolean hasMessagesForVertex(${type1.camel}Writable vertexId) {
+    return getPartitionMap(vertexId).containsKey(vertexId.get());
+  }
+
+  @Override
+  public boolean hasMessagesForPartition(int partitionId) {
+    ${type1.camel}2ObjectOpenHashMap<W${type2.camel}ArrayList>
+        partitionMessages = map.get(partitionId);
+    return partitionMessages != null && !partitionMessages.isEmpty();
+  }
+
+  @Override
+  public Iterable<${type2.camel}Writable> getVertexMessages(
+      ${type1.camel}Writable vertexId) {
+    final W${type2.camel}ArrayList messages =
+        getPartitionMap(vertexId).get(vertexId.get());
+    if (messages == null) {
+      return EmptyIterable.get();
+    }
+    return new Iterable<${type2.camel}Writable>() {
+      @Override
+      public Iterator<${type2.camel}Writable> iterator() {
+        return messages.fastIteratorW();
+      }
+    };
+  }
+
+  @Override
+  public void clearVertexMessages(${type1.camel}Writable vertexId) {
+    getPartitionMap(vertexId).remove(vertexId.get());
+  }
+
+  @Override
+  public void clearAll() {
+    map.clear();
+  }
+
+  @Override
+  public Iterable<${type1.camel}Writable> getPartitionDestinationVertices(
+      int partitionId) {
+    ${type1.camel}2ObjectOpenHashMap<W${type2.camel}ArrayList> partitionMap =
+        map.get(partitionId);
+    List<${type1.camel}Writable> vertices =
+        Lists.newArrayListWithCapacity(partitionMap.size());
+    ${type1.camel}Iterator iterator = partitionMap.keySet().iterator();
+    while (iterator.hasNext()) {
+      vertices.add(new ${type1.camel}Writable(iterator.next${type1.camel}()));
+    }
+    return vertices;
+  }
+
+  @Override
+  public void writePartition(DataOutput out,
+      int partitionId) throws IOException {
+    ${type1.camel}2ObjectOpenHashMap<W${type2.camel}ArrayList> partitionMap =
+        map.get(partitionId);
+    out.writeInt(partitionMap.size());
+    ObjectIterator<${type1.camel}2ObjectMap.Entry<W${type2.camel}ArrayList>>
+        iterator = partitionMap.${type1.lower}2ObjectEntrySet().fastIterator();
+    while (iterator.hasNext()) {
+      ${type1.camel}2ObjectMap.Entry<W${type2.camel}ArrayList> entry =
+          iterator.next();
+      out.write${type1.camel}(entry.get${type1.camel}Key());
+      entry.getValue().write(out);
+    }
+  }
+
+  @Override
+  public void readFieldsForPartition(DataInput in,
+      int partitionId) throws IOException {
+    int size = in.readInt();
+    ${type1.camel}2ObjectOpenHashMap<W${type2.camel}ArrayList> partitionMap =
+        new ${type1.camel}2ObjectOpenHashMap<>(size);
+    while (size-- > 0) {
+      ${type1.lower} vertexId = in.read${type1.camel}();
+      W${type2.camel}ArrayList messages = new W${type2.camel}ArrayList();
+      messages.readFields(in);
+      partitionMap.put(vertexId, messages);
+    }
+    synchronized (map) {
+      map.put(partitionId, partitionMap);
+    }
+  }
+}